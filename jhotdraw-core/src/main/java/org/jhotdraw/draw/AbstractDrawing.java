@@ -12,11 +12,11 @@ import org.jhotdraw.draw.figure.AbstractAttributedCompositeFigure;
 import java.awt.font.*;
 import java.io.*;
 import java.util.*;
-import javax.swing.*;
 import javax.swing.event.*;
 import javax.swing.undo.*;
 import org.jhotdraw.draw.io.InputFormat;
 import org.jhotdraw.draw.io.OutputFormat;
+import org.jhotdraw.util.ReversedList;
 import org.jhotdraw.xml.*;
 
 /**
@@ -28,11 +28,32 @@ import org.jhotdraw.xml.*;
 public abstract class AbstractDrawing extends AbstractAttributedCompositeFigure implements Drawing {
 
     private static final long serialVersionUID = 1L;
-    private static final Object LOCK = new JPanel().getTreeLock();
+    /**
+     * The lock of this drawing. This is created lazily, so that it is
+     * not shared by clones and is recreated after deserialization.
+     */
+    private transient Object lock;
     private transient FontRenderContext fontRenderContext;
     private LinkedList<InputFormat> inputFormats = new LinkedList<>();
     private LinkedList<OutputFormat> outputFormats = new LinkedList<>();
     private static boolean debugMode = false;
+    /**
+     * The number of figures which are added at once when a drawing is read.
+     */
+    private static final int READ_BATCH_SIZE = 1024;
+    /**
+     * The render snapshot which has been published last.
+     */
+    private transient volatile RenderSnapshot renderSnapshot;
+    /**
+     * The modification count of the children when the render snapshot was
+     * taken.
+     */
+    private transient int renderSnapshotModCount;
+    /**
+     * The children which have changed since the render snapshot was taken.
+     */
+    private transient Set<Figure> changedChildren;
 
     /**
      * Creates a new instance.
@@ -87,11 +108,18 @@ public abstract class AbstractDrawing extends AbstractAttributedCompositeFigure
     @Override
     public void read(DOMInput in) throws IOException {
         in.openElement("figures");
-        for (int i = 0; i < in.getElementCount(); i++) {
-            Figure f;
-            add(f = (Figure) in.readObject(i));
+        // Add the figures in batches, so that a streaming DOMInput does not
+        // have to read the whole document before the first figures are added
+        ArrayList<Figure> figures = new ArrayList<>(READ_BATCH_SIZE);
+        for (int i = 0; in.hasElement(i); i++) {
+            figures.add((Figure) in.readObject(i));
+            if (figures.size() == READ_BATCH_SIZE) {
+                addAll(figures);
+                figures.clear();
+            }
         }
         in.closeElement();
+        addAll(figures);
     }
 
     @Override
@@ -104,11 +132,68 @@ public abstract class AbstractDrawing extends AbstractAttributedCompositeFigure
     }
 
     /**
-     * The drawing view synchronizes on the lock when drawing a drawing.
+     * Returns the lock of this drawing. Each drawing has its own lock.
+     * Drawing views do not synchronize on it, because they draw the drawing
+     * from a render snapshot.
+     */
+    @Override
+    public synchronized Object getLock() {
+        if (lock == null) {
+            lock = new Object();
+        }
+        return lock;
+    }
+
+    /**
+     * Returns the render snapshot of the drawing.
+     * <p>
+     * If the drawing has changed since the last snapshot was taken, a new
+     * snapshot is taken and published. If only some children have changed, the
+     * new snapshot shares the render state of the other children with the
+     * previous snapshot.
+     * <p>
+     * This method must be called by the thread which changes the drawing,
+     * because it may sort the children and it reads the state of the
+     * children.
      */
     @Override
-    public Object getLock() {
-        return LOCK;
+    public RenderSnapshot getRenderSnapshot() {
+        // Sort the children first, because sorting changes the children
+        java.util.List<Figure> frontToBack = getFiguresFrontToBack();
+        RenderSnapshot snapshot = renderSnapshot;
+        int modCount = getChildrenModCount();
+        // Children which change while the snapshot is taken are recorded
+        // in a new set, so that they are taken into the next snapshot
+        Set<Figure> changed = changedChildren;
+        changedChildren = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (snapshot == null || modCount == -1 || modCount != renderSnapshotModCount
+                || changed.size() > snapshot.size() / RenderSnapshot.CHUNK_SIZE) {
+            snapshot = RenderSnapshot.create(new ReversedList<>(frontToBack));
+        } else if (!changed.isEmpty()) {
+            int[] indices = new int[changed.size()];
+            int n = 0;
+            for (Figure f : changed) {
+                int index = indexOf(f);
+                if (index != -1) {
+                    indices[n++] = index;
+                }
+            }
+            snapshot = snapshot.update(Arrays.copyOf(indices, n));
+        } else {
+            changedChildren = changed;
+            return snapshot;
+        }
+        renderSnapshotModCount = modCount;
+        renderSnapshot = snapshot;
+        return snapshot;
+    }
+
+    @Override
+    protected void childChanged(Figure child) {
+        super.childChanged(child);
+        if (renderSnapshot != null) {
+            changedChildren.add(child);
+        }
     }
 
     @Override
@@ -152,6 +237,11 @@ public abstract class AbstractDrawing extends AbstractAttributedCompositeFigure
         return this;
     }
 
+    @Override
+    protected boolean isUnionOfChildren() {
+        return true;
+    }
+
     /*@Override
     public Rectangle2D.Double getDrawingArea() {
         Rectangle2D.Double drawingArea;
@@ -173,6 +263,9 @@ public abstract class AbstractDrawing extends AbstractAttributedCompositeFigure
     @SuppressWarnings("unchecked")
     public AbstractDrawing clone() {
         AbstractDrawing that = (AbstractDrawing) super.clone();
+        that.lock = null;
+        that.renderSnapshot = null;
+        that.changedChildren = null;
         that.inputFormats = (this.inputFormats == null) ? null : (LinkedList<InputFormat>) this.inputFormats.clone();
         that.outputFormats = (this.outputFormats == null) ? null : (LinkedList<OutputFormat>) this.outputFormats.clone();
         return that;
@@ -218,6 +218,21 @@ public abstract class AbstractDrawingView implements DrawingView, EditableCompon
             removeFromSelection(evt.getChildFigure());
         }
 
+        @Override
+        public void figuresAdded(CompositeFigureEvent evt) {
+            figureAdded(evt);
+        }
+
+        @Override
+        public void figuresRemoved(CompositeFigureEvent evt) {
+            if (drawing.getChildCount() == 0 && getEmptyDrawingMessage() != null) {
+                repaint();
+            } else {
+                repaintDrawingArea(evt.getCompositeFigure().getDrawingArea(AttributeKeys.getScaleFactor(getDrawingToViewTransform())));
+            }
+            removeAllFromSelection(evt.getChildFigures());
+        }
+
         @Override
         public void areaInvalidated(FigureEvent evt) {
             repaintDrawingArea(evt.getFigure().getDrawingArea(AttributeKeys.getScaleFactor(getDrawingToViewTransform())));
@@ -584,6 +599,18 @@ public abstract class AbstractDrawingView implements DrawingView, EditableCompon
         }
     }
 
+    /**
+     * Removes the specified figures from the selection, and fires a single
+     * selection event.
+     */
+    private void removeAllFromSelection(Collection<Figure> figures) {
+        HashSet<Figure> removed = new HashSet<>(figures);
+        ArrayList<Figure> newSelection = new ArrayList<>(selectedFigures);
+        if (newSelection.removeAll(removed)) {
+            setSelectedFigures(newSelection);
+        }
+    }
+
     /**
      * If a figure isn't selected it is added to the selection. Otherwise it is removed from the
      * selection.
@@ -598,23 +625,46 @@ public abstract class AbstractDrawingView implements DrawingView, EditableCompon
     }
 
     /**
-     * Selects all selectable figures.
+     * Replaces the current selection by the specified figures.
      */
     @Override
-    public void selectAll() {
+    public void setSelectedFigures(Collection<Figure> figures) {
         Set<Figure> oldSelection = new HashSet<>(selectedFigures);
-        selectedFigures.clear();
-        for (Figure figure : drawing.getChildren()) {
-            if (figure.isSelectable()) {
-                selectedFigures.add(figure);
+        Set<Figure> newSelection = new LinkedHashSet<>(figures);
+        if (oldSelection.equals(newSelection)) {
+            return;
+        }
+        for (Figure figure : selectedFigures) {
+            if (!newSelection.contains(figure)) {
+                figure.removeFigureListener(handleInvalidator);
             }
         }
-        Set<Figure> newSelection = new HashSet<>(selectedFigures);
+        for (Figure figure : newSelection) {
+            if (!oldSelection.contains(figure)) {
+                figure.addFigureListener(handleInvalidator);
+            }
+        }
+        selectedFigures.clear();
+        selectedFigures.addAll(newSelection);
         invalidateHandles();
         fireSelectionChanged(oldSelection, newSelection);
         repaint();
     }
 
+    /**
+     * Selects all selectable figures.
+     */
+    @Override
+    public void selectAll() {
+        ArrayList<Figure> selectable = new ArrayList<>();
+        for (Figure figure : drawing.getChildren()) {
+            if (figure.isSelectable()) {
+                selectable.add(figure);
+            }
+        }
+        setSelectedFigures(selectable);
+    }
+
     /**
      * Clears the current selection.
      */
@@ -622,6 +672,9 @@ public abstract class AbstractDrawingView implements DrawingView, EditableCompon
     public void clearSelection() {
         if (getSelectionCount() > 0) {
             Set<Figure> oldSelection = new HashSet<>(selectedFigures);
+            for (Figure figure : selectedFigures) {
+                figure.removeFigureListener(handleInvalidator);
+            }
             selectedFigures.clear();
             Set<Figure> newSelection = new HashSet<>(selectedFigures);
             invalidateHandles();
@@ -963,21 +1016,14 @@ public abstract class AbstractDrawingView implements DrawingView, EditableCompon
             public void undo() throws CannotUndoException {
                 super.undo();
                 clearSelection();
-                Drawing d = drawing;
-                for (int i = 0; i
-                        < deletedFigureIndices.length; i++) {
-                    d.add(deletedFigureIndices[i], deletedFigures.get(i));
-                }
+                drawing.addAll(deletedFigureIndices, deletedFigures);
                 addToSelection(deletedFigures);
             }
 
             @Override
             public void redo() throws CannotRedoException {
                 super.redo();
-                for (int i = 0; i
-                        < deletedFigureIndices.length; i++) {
-                    drawing.remove(deletedFigures.get(i));
-                }
+                drawing.removeAll(deletedFigures);
             }
         });
     }
@@ -995,8 +1041,8 @@ public abstract class AbstractDrawingView implements DrawingView, EditableCompon
             d.transform(tx);
             duplicates.add(d);
             originalToDuplicateMap.put(f, d);
-            drawing.add(d);
         }
+        drawing.addAll(duplicates);
         for (Figure f : duplicates) {
             f.remap(originalToDuplicateMap, false);
         }
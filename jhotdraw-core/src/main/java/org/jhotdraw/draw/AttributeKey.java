@@ -8,6 +8,8 @@
 package org.jhotdraw.draw;
 
 import org.jhotdraw.draw.figure.Figure;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.*;
 import javax.swing.undo.*;
@@ -56,6 +58,15 @@ public class AttributeKey<T> implements Serializable {
      * assignability of attribute values at runtime.
      */
     private Class<T> clazz;
+    /**
+     * A dense number which identifies the key string. All attribute keys
+     * with the same key string have the same ordinal.
+     */
+    private transient int ordinal;
+    /**
+     * Maps key strings to ordinals.
+     */
+    private static final HashMap<String, Integer> ordinals = new HashMap<>();
 
     /**
      * Creates a new instance with the specified attribute key, type token class,
@@ -99,6 +110,32 @@ public class AttributeKey<T> implements Serializable {
         this.defaultValue = defaultValue;
         this.isNullValueAllowed = isNullValueAllowed;
         this.labels = (labels == null) ? ResourceBundleUtil.getBundle("org.jhotdraw.draw.Labels") : labels;
+        this.ordinal = ordinalOf(key);
+    }
+
+    private static int ordinalOf(String key) {
+        synchronized (ordinals) {
+            Integer ordinal = ordinals.get(key);
+            if (ordinal == null) {
+                ordinal = ordinals.size();
+                ordinals.put(key, ordinal);
+            }
+            return ordinal;
+        }
+    }
+
+    /**
+     * Returns a dense number which identifies the key string of this
+     * attribute key. The ordinal is only valid in the running virtual
+     * machine; it must not be stored.
+     */
+    int getOrdinal() {
+        return ordinal;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        ordinal = ordinalOf(key);
     }
 
     /**
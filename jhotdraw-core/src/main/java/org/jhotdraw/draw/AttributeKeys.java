@@ -7,6 +7,7 @@
  */
 package org.jhotdraw.draw;
 
+import org.jhotdraw.draw.figure.AbstractAttributedFigure;
 import org.jhotdraw.draw.figure.Figure;
 import java.awt.*;
 import java.awt.geom.*;
@@ -31,6 +32,11 @@ import org.jhotdraw.util.ResourceBundleUtil;
 public class AttributeKeys {
 
     private static final ResourceBundleUtil LABELS = ResourceBundleUtil.getBundle("org.jhotdraw.draw.Labels");
+    /**
+     * Identify the strokes which are cached in an {@link AttributeStyle}.
+     */
+    private static final Object STROKE_CACHE_KIND = new Object();
+    private static final Object HIT_STROKE_CACHE_KIND = new Object();
     /**
      * Canvas fill color. The value of this attribute is a Color object. This attribute is used by a
      * Drawing object to specify the fill color of the drawing. The default value is white.
@@ -423,7 +429,35 @@ public class AttributeKeys {
         }
     }
 
+    /**
+     * Returns the stroke for the specified figure and scale factor.
+     * <p>
+     * The strokes of figures which extend {@link AbstractAttributedFigure}
+     * are cached in their attribute style, so that repeated calls with the
+     * same attributes and scale factor return the same stroke.
+     */
     public static Stroke getStroke(Figure f, double factor) {
+        AttributeStyle style = getAttributeStyle(f);
+        if (style == null) {
+            return createStroke(f, factor);
+        }
+        Stroke stroke = (Stroke) style.getCachedValue(STROKE_CACHE_KIND, factor);
+        if (stroke == null) {
+            stroke = createStroke(f, factor);
+            style.putCachedValue(STROKE_CACHE_KIND, factor, stroke);
+        }
+        return stroke;
+    }
+
+    /**
+     * Returns the attribute style of the figure, if the stroke and other
+     * values which are derived from its attributes can be cached in it.
+     */
+    private static AttributeStyle getAttributeStyle(Figure f) {
+        return (f instanceof AbstractAttributedFigure) ? ((AbstractAttributedFigure) f).getAttributeStyle() : null;
+    }
+
+    private static Stroke createStroke(Figure f, double factor) {
         double strokeWidth = f.get(STROKE_WIDTH) * getGlobalValueFactor(f, factor);
         float miterLimit = (float) getStrokeTotalMiterLimit(f, factor);
         double dashFactor = f.get(IS_STROKE_DASH_FACTOR) ? strokeWidth : 1d;
@@ -481,6 +515,19 @@ public class AttributeKeys {
      * @return A stroke suited for creating a shape for hit testing.
      */
     public static Stroke getHitStroke(Figure f, double factor) {
+        AttributeStyle style = getAttributeStyle(f);
+        if (style == null) {
+            return createHitStroke(f, factor);
+        }
+        Stroke stroke = (Stroke) style.getCachedValue(HIT_STROKE_CACHE_KIND, factor);
+        if (stroke == null) {
+            stroke = createHitStroke(f, factor);
+            style.putCachedValue(HIT_STROKE_CACHE_KIND, factor, stroke);
+        }
+        return stroke;
+    }
+
+    private static Stroke createHitStroke(Figure f, double factor) {
         double strokeWidth = Math.max(1, f.get(STROKE_WIDTH) * getGlobalValueFactor(f, factor));
         float miterLimit = (float) getStrokeTotalMiterLimit(f, factor);
         double dashFactor = f.get(IS_STROKE_DASH_FACTOR) ? strokeWidth : 1d;
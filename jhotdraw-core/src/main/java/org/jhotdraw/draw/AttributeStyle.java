@@ -0,0 +1,380 @@
+/*
+ * @(#)AttributeStyle.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * An immutable set of attribute values.
+ * <p>
+ * The values are held in an array which is indexed by the ordinal of the
+ * {@link AttributeKey}. Changing an attribute creates a new style
+ * ("copy on write"). Styles are interned: figures which have the same
+ * attribute values share the same style instance.
+ * <p>
+ * Only values of immutable types, such as {@code String}, {@code Color},
+ * {@code Font}, enums and boxed primitives, are compared by equality when
+ * styles are interned. Values of other types are compared by identity, so
+ * that a figure never shares a mutable value with another figure, unless it
+ * already did so before.
+ *
+ * @version $Id$
+ */
+public final class AttributeStyle implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    /**
+     * Holds the interned styles.
+     */
+    private static final WeakHashMap<AttributeStyle, WeakReference<AttributeStyle>> internedStyles = new WeakHashMap<>();
+    /**
+     * The style without attributes.
+     */
+    public static final AttributeStyle EMPTY = new AttributeStyle(new AttributeKey<?>[0], new Object[0]).intern();
+
+    /**
+     * The key at index {@code i} has ordinal {@code i}. Holds null for
+     * attributes which are not in this style.
+     */
+    private transient AttributeKey<?>[] keys;
+    private transient Object[] values;
+    private transient int size;
+    private transient int hash;
+    /**
+     * Caches the result of the last call to {@code with}. Loading a drawing
+     * sets the same sequence of attributes on many figures; this makes most
+     * of these calls cheap.
+     */
+    private transient volatile Transition lastTransition;
+    /**
+     * Holds values which have been derived from the attributes of this
+     * style, such as strokes. The list is immutable and replaced on change.
+     */
+    private transient volatile CachedValue cachedValues;
+    /**
+     * The maximal number of cached values per style.
+     */
+    private static final int MAX_CACHED_VALUES = 8;
+
+    private static class CachedValue {
+
+        final Object kind;
+        final double factor;
+        final Object value;
+        final CachedValue next;
+
+        CachedValue(Object kind, double factor, Object value, CachedValue next) {
+            this.kind = kind;
+            this.factor = factor;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    private static class Transition {
+
+        final AttributeKey<?> key;
+        final Object value;
+        final AttributeStyle result;
+
+        Transition(AttributeKey<?> key, Object value, AttributeStyle result) {
+            this.key = key;
+            this.value = value;
+            this.result = result;
+        }
+    }
+
+    private AttributeStyle(AttributeKey<?>[] keys, Object[] values) {
+        init(keys, values);
+    }
+
+    private void init(AttributeKey<?>[] keys, Object[] values) {
+        this.keys = keys;
+        this.values = values;
+        int n = 0;
+        int h = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                n++;
+                h += i ^ valueHashCode(values[i]);
+            }
+        }
+        this.size = n;
+        this.hash = h;
+    }
+
+    /**
+     * Returns the interned style with the attributes of the specified map.
+     */
+    @SuppressWarnings("unchecked")
+    public static AttributeStyle of(Map<AttributeKey<?>, Object> map) {
+        AttributeStyle style = EMPTY;
+        for (Map.Entry<AttributeKey<?>, Object> entry : map.entrySet()) {
+            style = style.with((AttributeKey<Object>) entry.getKey(), entry.getValue());
+        }
+        return style;
+    }
+
+    /**
+     * Returns the value of the specified attribute, or its default value if
+     * the attribute is not in this style.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(AttributeKey<T> key) {
+        int ordinal = key.getOrdinal();
+        return (ordinal < keys.length && keys[ordinal] != null) ? (T) values[ordinal] : key.getDefaultValue();
+    }
+
+    /**
+     * Returns true if the specified attribute is in this style.
+     */
+    public boolean contains(AttributeKey<?> key) {
+        int ordinal = key.getOrdinal();
+        return ordinal < keys.length && keys[ordinal] != null;
+    }
+
+    /**
+     * Returns the number of attributes in this style.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the interned style which has the attributes of this style, and
+     * the specified attribute set to the specified value.
+     *
+     * @throws NullPointerException if the value is null and the key does not
+     * allow null values.
+     */
+    public <T> AttributeStyle with(AttributeKey<T> key, T value) {
+        if (value == null && !key.isNullValueAllowed()) {
+            throw new NullPointerException("Null value not allowed for AttributeKey " + key.getKey());
+        }
+        int ordinal = key.getOrdinal();
+        if (ordinal < keys.length && keys[ordinal] != null && valueEquals(values[ordinal], value)) {
+            return this;
+        }
+        Transition t = lastTransition;
+        if (t != null && t.key == key && valueEquals(t.value, value)) {
+            return t.result;
+        }
+        int length = Math.max(keys.length, ordinal + 1);
+        AttributeKey<?>[] newKeys = Arrays.copyOf(keys, length);
+        Object[] newValues = Arrays.copyOf(values, length);
+        newKeys[ordinal] = key;
+        newValues[ordinal] = value;
+        AttributeStyle result = new AttributeStyle(newKeys, newValues).intern();
+        lastTransition = new Transition(key, value, result);
+        return result;
+    }
+
+    /**
+     * Returns the interned style which has the attributes of this style
+     * except the specified attribute.
+     */
+    public AttributeStyle without(AttributeKey<?> key) {
+        if (!contains(key)) {
+            return this;
+        }
+        int ordinal = key.getOrdinal();
+        int length = keys.length;
+        if (ordinal == length - 1) {
+            // Trim the arrays
+            do {
+                length--;
+            } while (length > 0 && keys[length - 1] == null);
+        }
+        AttributeKey<?>[] newKeys = Arrays.copyOf(keys, length);
+        Object[] newValues = Arrays.copyOf(values, length);
+        if (ordinal < length) {
+            newKeys[ordinal] = null;
+            newValues[ordinal] = null;
+        }
+        return new AttributeStyle(newKeys, newValues).intern();
+    }
+
+    /**
+     * Returns a value which has been derived from the attributes of this
+     * style and the specified factor, or null if no such value is cached.
+     * <p>
+     * Since a style is immutable, a cached value is valid as long as the
+     * style exists; a figure whose attributes change gets a different style.
+     * The cached values must be immutable.
+     *
+     * @param kind identifies the kind of the value, for example the method
+     * which computes it.
+     * @param factor a scale factor which was used to compute the value.
+     */
+    public Object getCachedValue(Object kind, double factor) {
+        for (CachedValue c = cachedValues; c != null; c = c.next) {
+            if (c.kind == kind && c.factor == factor) {
+                return c.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Caches a value which has been derived from the attributes of this
+     * style and the specified factor. If more than 8 values are cached, the
+     * value which was cached first is discarded.
+     */
+    public void putCachedValue(Object kind, double factor, Object value) {
+        CachedValue[] old = new CachedValue[MAX_CACHED_VALUES - 1];
+        int n = 0;
+        for (CachedValue c = cachedValues; c != null && n < old.length; c = c.next) {
+            if (c.kind != kind || c.factor != factor) {
+                old[n++] = c;
+            }
+        }
+        CachedValue list = null;
+        for (int i = n - 1; i >= 0; i--) {
+            list = new CachedValue(old[i].kind, old[i].factor, old[i].value, list);
+        }
+        cachedValues = new CachedValue(kind, factor, value, list);
+    }
+
+    /**
+     * Returns the keys of the attributes in this style.
+     */
+    public List<AttributeKey<?>> getKeys() {
+        ArrayList<AttributeKey<?>> list = new ArrayList<>(size);
+        for (AttributeKey<?> key : keys) {
+            if (key != null) {
+                list.add(key);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Returns a new map with the attributes of this style.
+     */
+    public HashMap<AttributeKey<?>, Object> toMap() {
+        HashMap<AttributeKey<?>, Object> map = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                map.put(keys[i], values[i]);
+            }
+        }
+        return map;
+    }
+
+    private AttributeStyle intern() {
+        synchronized (internedStyles) {
+            WeakReference<AttributeStyle> ref = internedStyles.get(this);
+            AttributeStyle interned = (ref == null) ? null : ref.get();
+            if (interned == null) {
+                internedStyles.put(this, new WeakReference<>(this));
+                interned = this;
+            }
+            return interned;
+        }
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value instanceof String
+                || value instanceof Double || value instanceof Float
+                || value instanceof Integer || value instanceof Long
+                || value instanceof Boolean || value instanceof Enum
+                || value instanceof Color || value instanceof Font;
+    }
+
+    private static int valueHashCode(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        return isImmutable(value) ? value.hashCode() : System.identityHashCode(value);
+    }
+
+    private static boolean valueEquals(Object v1, Object v2) {
+        return v1 == v2 || v1 != null && isImmutable(v1) && v1.equals(v2);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof AttributeStyle)) {
+            return false;
+        }
+        AttributeStyle that = (AttributeStyle) o;
+        if (that.hash != this.hash || that.size != this.size || that.keys.length != this.keys.length) {
+            return false;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if ((keys[i] == null) != (that.keys[i] == null)
+                    || keys[i] != null && !valueEquals(values[i], that.values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "AttributeStyle" + toMap();
+    }
+
+    /**
+     * The ordinals of the keys are only valid in the running virtual machine;
+     * so we write the keys and values as pairs.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                out.writeObject(keys[i]);
+                out.writeObject(values[i]);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int n = in.readInt();
+        AttributeKey<?>[] readKeys = new AttributeKey<?>[0];
+        Object[] readValues = new Object[0];
+        for (int i = 0; i < n; i++) {
+            AttributeKey<?> key = (AttributeKey<?>) in.readObject();
+            Object value = in.readObject();
+            int ordinal = key.getOrdinal();
+            if (ordinal >= readKeys.length) {
+                readKeys = Arrays.copyOf(readKeys, ordinal + 1);
+                readValues = Arrays.copyOf(readValues, ordinal + 1);
+            }
+            readKeys[ordinal] = key;
+            readValues[ordinal] = value;
+        }
+        init(readKeys, readValues);
+    }
+
+    private Object readResolve() {
+        return intern();
+    }
+}
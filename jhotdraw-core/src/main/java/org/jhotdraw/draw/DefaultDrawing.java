@@ -10,16 +10,17 @@ package org.jhotdraw.draw;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.awt.Rectangle;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 import static org.jhotdraw.draw.AttributeKeys.*;
 import org.jhotdraw.draw.figure.Figure;
 import org.jhotdraw.geom.Geom;
@@ -57,20 +58,18 @@ public class DefaultDrawing
         invalidateSortOrder();
     }
 
+    @Override
+    public void basicAddAll(int[] indices, List<? extends Figure> figures) {
+        super.basicAddAll(indices, figures);
+        invalidateSortOrder();
+    }
+
+    /**
+     * Draws the figures from the render snapshot of the drawing.
+     */
     @Override
     public void draw(Graphics2D g) {
-        synchronized (getLock()) {
-            ensureSorted();
-            List<Figure> toDraw = new ArrayList<>(getChildren().size());
-            Rectangle clipRect = g.getClipBounds();
-            double scale = AttributeKeys.getScaleFactorFromGraphics(g);
-            for (Figure f : getChildren()) {
-                if (f.getDrawingArea(scale).intersects(clipRect)) {
-                    toDraw.add(f);
-                }
-            }
-            draw(g, toDraw);
-        }
+        getRenderSnapshot().draw(g);
     }
 
     public void draw(Graphics2D g, Collection<Figure> children) {
@@ -91,23 +90,45 @@ public class DefaultDrawing
         }
     }
 
+    /**
+     * Sorts the figures by their index in the children list. Since the
+     * index of a child is looked up in constant time, the cost is
+     * proportional to the number of figures to be sorted. Figures which are
+     * not children of the drawing are appended in their original order.
+     */
     @Override
     public List<Figure> sort(Collection<? extends Figure> c) {
-        Set<Figure> unsorted = new HashSet<>();
-        unsorted.addAll(c);
-        List<Figure> sorted = new ArrayList<>(c.size());
-        for (Figure f : getChildren()) {
-            if (unsorted.contains(f)) {
-                sorted.add(f);
-                unsorted.remove(f);
+        ArrayList<Figure> figures = new ArrayList<>(c);
+        // Each key holds the index of a child in the upper half, and the
+        // position of the child in the figures list in the lower half
+        long[] keys = new long[figures.size()];
+        int n = 0;
+        Set<Figure> orphans = null;
+        for (int i = 0; i < figures.size(); i++) {
+            Figure f = figures.get(i);
+            int index = indexOf(f);
+            if (index != -1) {
+                keys[n++] = ((long) index << 32) | i;
+            } else {
+                if (orphans == null) {
+                    orphans = new LinkedHashSet<>();
+                }
+                orphans.add(f);
             }
         }
-        for (Figure f : c) {
-            if (unsorted.contains(f)) {
-                sorted.add(f);
-                unsorted.remove(f);
+        Arrays.sort(keys, 0, n);
+        List<Figure> sorted = new ArrayList<>(figures.size());
+        long previousIndex = -1;
+        for (int i = 0; i < n; i++) {
+            long index = keys[i] >>> 32;
+            if (index != previousIndex) {
+                sorted.add(figures.get((int) keys[i]));
+                previousIndex = index;
             }
         }
+        if (orphans != null) {
+            sorted.addAll(orphans);
+        }
         return sorted;
     }
 
@@ -184,6 +205,15 @@ public class DefaultDrawing
         return intersection;
     }
 
+    @Override
+    public void findFigures(Rectangle2D.Double bounds, Consumer<? super Figure> visitor) {
+        for (Figure f : getChildren()) {
+            if (f.isVisible() && f.getBounds().intersects(bounds)) {
+                visitor.accept(f);
+            }
+        }
+    }
+
     @Override
     public List<Figure> findFiguresWithin(Rectangle2D.Double bounds) {
         List<Figure> contained = new LinkedList<>();
@@ -239,11 +269,6 @@ public class DefaultDrawing
         // empty
     }
 
-    @Override
-    public int indexOf(Figure figure) {
-        return children.indexOf(figure);
-    }
-
     @Override
     protected void drawFill(Graphics2D g) {
     }
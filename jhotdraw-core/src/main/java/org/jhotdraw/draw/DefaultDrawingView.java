@@ -28,6 +28,10 @@ import org.jhotdraw.draw.event.FigureSelectionListener;
 import org.jhotdraw.draw.event.HandleEvent;
 import org.jhotdraw.draw.event.HandleListener;
 import org.jhotdraw.draw.handle.Handle;
+import org.jhotdraw.geom.DirtyRegion;
+import org.jhotdraw.geom.RTree;
+import org.jhotdraw.undo.SizedEdit;
+import org.jhotdraw.undo.UndoRedoManager;
 import org.jhotdraw.util.*;
 
 /**
@@ -56,6 +60,28 @@ public class DefaultDrawingView
      */
     private Set<Figure> selectedFigures = new LinkedHashSet<>();
     private LinkedList<Handle> selectionHandles = new LinkedList<>();
+    /**
+     * The selected figures for which handles have been created.
+     */
+    private Set<Figure> figuresWithHandles = new HashSet<>();
+    /**
+     * The area of the view for which selection handles have been created.
+     * Handles of selected figures outside of this area are created when the
+     * area becomes visible. Null if handles have been created for all
+     * selected figures.
+     */
+    private Rectangle handlesArea;
+    /**
+     * Indexes the drawing areas of the selection handles in view coordinates.
+     * The z-order value of a handle is its position in
+     * {@code selectionHandles}. Null if the index must be rebuilt.
+     */
+    private RTree<Handle> handleIndex;
+    /**
+     * Handles whose drawing area has changed since they have been indexed.
+     */
+    private Set<Handle> movedHandles = new HashSet<>();
+    private final ArrayList<Handle> handleHits = new ArrayList<>();
     private boolean isConstrainerVisible = false;
     private Constrainer visibleConstrainer = new GridConstrainer(8, 8);
     private Constrainer invisibleConstrainer = new GridConstrainer();
@@ -75,6 +101,16 @@ public class DefaultDrawingView
         public void figureHandlesChanged(FigureEvent e) {
             invalidateHandles();
         }
+
+        @Override
+        public void areaInvalidated(FigureEvent e) {
+            createHandlesIfInHandlesArea(e.getFigure());
+        }
+
+        @Override
+        public void figureChanged(FigureEvent e) {
+            createHandlesIfInHandlesArea(e.getFigure());
+        }
     };
     private transient Rectangle2D.Double cachedDrawingArea;
     public static final String DRAWING_DOUBLE_BUFFERED_PROPERTY = "drawingDoubleBuffered";
@@ -98,7 +134,21 @@ public class DefaultDrawingView
      * Holds the drawing area (in view coordinates) which has not been redrawn yet in the drawing
      * buffer.
      */
-    private Rectangle dirtyArea = new Rectangle(0, 0, -1, -1);
+    private DirtyRegion dirtyRegion = new DirtyRegion();
+    /**
+     * The number of pixels which were redrawn in the drawing buffer by the last paint.
+     */
+    private long repaintedPixelCount;
+    public static final String DRAWING_TILED_PROPERTY = "drawingTiled";
+    /**
+     * Holds the rendered tiles of the drawing, if the drawing is rendered in
+     * tiles; null otherwise.
+     */
+    private DrawingTileCache tileCache;
+    /**
+     * The drag preview, or null if no drag preview is shown.
+     */
+    private DragPreview dragPreview;
     private boolean paintEnabled = true;
     private static final boolean IS_WINDOWS;
 
@@ -205,6 +255,22 @@ public class DefaultDrawingView
             invalidateDimension();
         }
 
+        @Override
+        public void figuresAdded(CompositeFigureEvent evt) {
+            figureAdded(evt);
+        }
+
+        @Override
+        public void figuresRemoved(CompositeFigureEvent evt) {
+            if (drawing.getChildCount() == 0 && getEmptyDrawingMessage() != null) {
+                repaint();
+            } else {
+                repaintDrawingArea(evt.getInvalidatedArea());
+            }
+            removeAllFromSelection(evt.getChildFigures());
+            invalidateDimension();
+        }
+
         @Override
         public void areaInvalidated(FigureEvent evt) {
             repaintDrawingArea(evt.getInvalidatedArea());
@@ -213,6 +279,9 @@ public class DefaultDrawingView
 
         @Override
         public void areaInvalidated(HandleEvent evt) {
+            if (handleIndex != null) {
+                movedHandles.add(evt.getHandle());
+            }
             repaint(evt.getInvalidatedArea());
             invalidateDimension();
         }
@@ -358,11 +427,15 @@ public class DefaultDrawingView
     @Override
     public void paintComponent(Graphics gr) {
         Graphics2D g = (Graphics2D) gr;
+        repaintedPixelCount = 0;
         setViewRenderingHints(g);
         drawBackground(g);
         drawCanvas(g);
         drawConstrainer(g);
-        if (isDrawingDoubleBuffered()) {
+        if (tileCache != null && drawing != null
+                && (drawing.getChildCount() != 0 || emptyDrawingLabel == null)) {
+            tileCache.paint(g, drawing, scaleFactor, translation, getVisibleRect());
+        } else if (isDrawingDoubleBuffered()) {
             if (IS_WINDOWS) {
                 drawDrawingNonvolatileBuffered(g);
             } else {
@@ -371,6 +444,7 @@ public class DefaultDrawingView
         } else {
             drawDrawing(g);
         }
+        drawDragPreview(g);
         drawHandles(g);
         drawTool(g);
     }
@@ -387,14 +461,14 @@ public class DefaultDrawingView
             shift.x = bufferedArea.x - vr.x;
             shift.y = bufferedArea.y - vr.y;
             if (shift.x > 0) {
-                dirtyArea.add(new Rectangle(bufferedArea.x - shift.x, vr.y, shift.x + bufferedArea.width - vr.width, bufferedArea.height));
+                dirtyRegion.add(new Rectangle(bufferedArea.x - shift.x, vr.y, shift.x + bufferedArea.width - vr.width, bufferedArea.height));
             } else if (shift.x < 0) {
-                dirtyArea.add(new Rectangle(bufferedArea.x + vr.width, vr.y, -shift.x + bufferedArea.width - vr.width, bufferedArea.height));
+                dirtyRegion.add(new Rectangle(bufferedArea.x + vr.width, vr.y, -shift.x + bufferedArea.width - vr.width, bufferedArea.height));
             }
             if (shift.y > 0) {
-                dirtyArea.add(new Rectangle(vr.x, bufferedArea.y - shift.y, bufferedArea.width, shift.y + bufferedArea.height - vr.height));
+                dirtyRegion.add(new Rectangle(vr.x, bufferedArea.y - shift.y, bufferedArea.width, shift.y + bufferedArea.height - vr.height));
             } else if (shift.y < 0) {
-                dirtyArea.add(new Rectangle(vr.x, bufferedArea.y + vr.height, bufferedArea.width, -shift.y + bufferedArea.height - vr.height));
+                dirtyRegion.add(new Rectangle(vr.x, bufferedArea.y + vr.height, bufferedArea.width, -shift.y + bufferedArea.height - vr.height));
             }
             bufferedArea.x = vr.x;
             bufferedArea.y = vr.y;
@@ -402,7 +476,7 @@ public class DefaultDrawingView
             // The buffered drawing area does not match the visible rect;
             // resize it, and mark everything as dirty.
             bufferedArea.setBounds(vr);
-            dirtyArea.setBounds(vr);
+            dirtyRegion.set(vr);
             if (drawingBufferV != null
                     && (drawingBufferV.getWidth() != vr.width
                     || drawingBufferV.getHeight() != vr.height)) {
@@ -425,11 +499,11 @@ public class DefaultDrawingView
                 } catch (OutOfMemoryError e) {
                     drawingBufferV = null;
                 }
-                dirtyArea.setBounds(bufferedArea);
+                dirtyRegion.set(bufferedArea);
                 break;
                 case VolatileImage.IMAGE_RESTORED:
                     // image was restored, but buffer lost; redraw everything
-                    dirtyArea.setBounds(bufferedArea);
+                    dirtyRegion.set(bufferedArea);
                     break;
             }
             if (drawingBufferV == null) {
@@ -438,7 +512,7 @@ public class DefaultDrawingView
                 drawDrawing(g);
                 break;
             }
-            if (!dirtyArea.isEmpty()) {
+            if (!dirtyRegion.isEmpty()) {
                 // An area of the drawing buffer is dirty; repaint it
                 Graphics2D gBuf = drawingBufferV.createGraphics();
                 setViewRenderingHints(gBuf);
@@ -449,24 +523,18 @@ public class DefaultDrawingView
                     gBuf.copyArea(Math.max(0, -shift.x), Math.max(0, -shift.y), drawingBufferV.getWidth() - Math.abs(shift.x), drawingBufferV.getHeight() - Math.abs(shift.y), shift.x, shift.y);
                     shift.x = shift.y = 0;
                 }
-                // Clip the dirty area
-                gBuf.translate(-bufferedArea.x, -bufferedArea.y);
-                gBuf.clip(dirtyArea);
-                // Clear the dirty area
-                gBuf.setBackground(new Color(0x0, true));
-                gBuf.clearRect(dirtyArea.x, dirtyArea.y, dirtyArea.width, dirtyArea.height);
-                gBuf.setComposite(AlphaComposite.SrcOver);
                 // Repaint the dirty area
-                drawDrawing(gBuf);
+                gBuf.translate(-bufferedArea.x, -bufferedArea.y);
+                drawDirtyRegion(gBuf);
                 gBuf.dispose();
             }
             if (!drawingBufferV.contentsLost()) {
                 g.drawImage(drawingBufferV, bufferedArea.x, bufferedArea.y, null);
             }
             if (drawingBufferV.contentsLost()) {
-                dirtyArea.setBounds(bufferedArea);
+                dirtyRegion.set(bufferedArea);
             } else {
-                dirtyArea.setSize(-1, -1);
+                dirtyRegion.clear();
                 break;
             }
         }
@@ -484,14 +552,14 @@ public class DefaultDrawingView
             shift.x = bufferedArea.x - vr.x;
             shift.y = bufferedArea.y - vr.y;
             if (shift.x > 0) {
-                dirtyArea.add(new Rectangle(bufferedArea.x - shift.x, vr.y, shift.x + bufferedArea.width - vr.width, bufferedArea.height));
+                dirtyRegion.add(new Rectangle(bufferedArea.x - shift.x, vr.y, shift.x + bufferedArea.width - vr.width, bufferedArea.height));
             } else if (shift.x < 0) {
-                dirtyArea.add(new Rectangle(bufferedArea.x + vr.width, vr.y, -shift.x + bufferedArea.width - vr.width, bufferedArea.height));
+                dirtyRegion.add(new Rectangle(bufferedArea.x + vr.width, vr.y, -shift.x + bufferedArea.width - vr.width, bufferedArea.height));
             }
             if (shift.y > 0) {
-                dirtyArea.add(new Rectangle(vr.x, bufferedArea.y - shift.y, bufferedArea.width, shift.y + bufferedArea.height - vr.height));
+                dirtyRegion.add(new Rectangle(vr.x, bufferedArea.y - shift.y, bufferedArea.width, shift.y + bufferedArea.height - vr.height));
             } else if (shift.y < 0) {
-                dirtyArea.add(new Rectangle(vr.x, bufferedArea.y + vr.height, bufferedArea.width, -shift.y + bufferedArea.height - vr.height));
+                dirtyRegion.add(new Rectangle(vr.x, bufferedArea.y + vr.height, bufferedArea.width, -shift.y + bufferedArea.height - vr.height));
             }
             bufferedArea.x = vr.x;
             bufferedArea.y = vr.y;
@@ -499,7 +567,7 @@ public class DefaultDrawingView
             // The buffered drawing area does not match the visible rect;
             // resize it, and mark everything as dirty.
             bufferedArea.setBounds(vr);
-            dirtyArea.setBounds(vr);
+            dirtyRegion.set(vr);
             if (drawingBufferNV != null
                     && (drawingBufferNV.getWidth() != vr.width
                     || drawingBufferNV.getHeight() != vr.height)) {
@@ -520,7 +588,7 @@ public class DefaultDrawingView
             } catch (OutOfMemoryError e) {
                 drawingBufferNV = null;
             }
-            dirtyArea.setBounds(bufferedArea);
+            dirtyRegion.set(bufferedArea);
             break;
         }
         if (drawingBufferNV == null) {
@@ -529,7 +597,7 @@ public class DefaultDrawingView
             drawDrawing(g);
             return;
         }
-        if (!dirtyArea.isEmpty()) {
+        if (!dirtyRegion.isEmpty()) {
             // An area of the drawing buffer is dirty; repaint it
             Graphics2D gBuf = drawingBufferNV.createGraphics();
             setViewRenderingHints(gBuf);
@@ -540,19 +608,55 @@ public class DefaultDrawingView
                 gBuf.copyArea(Math.max(0, -shift.x), Math.max(0, -shift.y), drawingBufferNV.getWidth() - Math.abs(shift.x), drawingBufferNV.getHeight() - Math.abs(shift.y), shift.x, shift.y);
                 shift.x = shift.y = 0;
             }
-            // Clip the dirty area
-            gBuf.translate(-bufferedArea.x, -bufferedArea.y);
-            gBuf.clip(dirtyArea);
-            // Clear the dirty area
-            gBuf.setBackground(new Color(0x0, true));
-            gBuf.clearRect(dirtyArea.x, dirtyArea.y, dirtyArea.width, dirtyArea.height);
-            gBuf.setComposite(AlphaComposite.SrcOver);
             // Repaint the dirty area
-            drawDrawing(gBuf);
+            gBuf.translate(-bufferedArea.x, -bufferedArea.y);
+            drawDirtyRegion(gBuf);
             gBuf.dispose();
         }
         g.drawImage(drawingBufferNV, bufferedArea.x, bufferedArea.y, null);
-        dirtyArea.setSize(-1, -1);
+        dirtyRegion.clear();
+    }
+
+    /**
+     * Clears and redraws the rectangles of the dirty region in the drawing
+     * buffer.
+     *
+     * @param gBuf the graphics of the drawing buffer, translated to view
+     * coordinates, with the composite set to {@code AlphaComposite.Src}.
+     */
+    private void drawDirtyRegion(Graphics2D gBuf) {
+        long pixelCount = 0;
+        Color transparent = new Color(0x0, true);
+        for (Rectangle r : dirtyRegion.getRectangles()) {
+            Rectangle clip = r.intersection(bufferedArea);
+            if (clip.isEmpty()) {
+                continue;
+            }
+            pixelCount += (long) clip.width * clip.height;
+            Graphics2D g = (Graphics2D) gBuf.create();
+            g.clipRect(clip.x, clip.y, clip.width, clip.height);
+            // Clear the dirty area
+            g.setBackground(transparent);
+            g.clearRect(clip.x, clip.y, clip.width, clip.height);
+            g.setComposite(AlphaComposite.SrcOver);
+            drawDrawing(g);
+            g.dispose();
+        }
+        repaintedPixelCount = pixelCount;
+        if (DEBUG) {
+            System.out.println("DefaultDrawingView.drawDirtyRegion " + dirtyRegion + " " + pixelCount + " pixels");
+        }
+    }
+
+    /**
+     * Returns the number of pixels which were redrawn in the drawing buffer
+     * by the last paint. Returns 0 if the drawing buffer was valid.
+     * <p>
+     * This can be used to measure how much work is saved by only redrawing
+     * the areas which have changed.
+     */
+    public long getRepaintedPixelCount() {
+        return repaintedPixelCount;
     }
 
     /**
@@ -648,14 +752,39 @@ public class DefaultDrawingView
                 tx.scale(scaleFactor, scaleFactor);
                 g.setTransform(tx);
                 drawing.setFontRenderContext(g.getFontRenderContext());
-                drawing.draw(g);
+                if (dragPreview == null) {
+                    drawing.draw(g);
+                } else {
+                    // The figures of the drag preview are drawn by
+                    // drawDragPreview
+                    Rectangle2D clip = g.getClipBounds();
+                    RenderSnapshot snapshot = drawing.getRenderSnapshot();
+                    for (Figure f : (clip == null) ? snapshot.getVisibleFigures() : snapshot.findIntersects(clip)) {
+                        if (!dragPreview.figures.contains(f)) {
+                            f.draw(g);
+                        }
+                    }
+                }
                 g.dispose();
             }
         }
     }
 
+    /**
+     * Draws the image of the drag preview at its offset.
+     */
+    protected void drawDragPreview(Graphics2D g) {
+        if (dragPreview != null) {
+            if (dragPreview.scale != scaleFactor) {
+                renderDragPreview();
+            }
+            Rectangle r = getDragPreviewBounds();
+            g.drawImage(dragPreview.image, r.x, r.y, null);
+        }
+    }
+
     protected void drawHandles(java.awt.Graphics2D g) {
-        if (editor != null && editor.getActiveView() == this) {
+        if (editor != null && editor.getActiveView() == this && dragPreview == null) {
             validateHandles();
             for (Handle h : getSelectionHandles()) {
                 h.draw(g);
@@ -675,6 +804,7 @@ public class DefaultDrawingView
     @Override
     public void setDrawing(Drawing newValue) {
         Drawing oldValue = drawing;
+        endDragPreview();
         if (this.drawing != null) {
             this.drawing.removeCompositeFigureListener(eventHandler);
             this.drawing.removeFigureListener(eventHandler);
@@ -685,7 +815,10 @@ public class DefaultDrawingView
             this.drawing.addCompositeFigureListener(eventHandler);
             this.drawing.addFigureListener(eventHandler);
         }
-        dirtyArea.add(bufferedArea);
+        dirtyRegion.add(bufferedArea);
+        if (tileCache != null) {
+            tileCache.invalidateAll();
+        }
         firePropertyChange(DRAWING_PROPERTY, oldValue, newValue);
         // Revalidate without flickering
         revalidate();
@@ -712,7 +845,10 @@ public class DefaultDrawingView
     protected void repaintDrawingArea(Rectangle2D.Double r) {
         Rectangle vr = drawingToView(r);
         vr.grow(2, 2);
-        dirtyArea.add(vr);
+        dirtyRegion.add(vr);
+        if (tileCache != null) {
+            tileCache.invalidate(r);
+        }
         repaint(vr);
     }
 
@@ -733,6 +869,9 @@ public class DefaultDrawingView
             drawingBufferV.flush();
             drawingBufferV = null;
         }
+        if (tileCache != null) {
+            tileCache.flush();
+        }
     }
 
     /**
@@ -748,17 +887,8 @@ public class DefaultDrawingView
             figure.addFigureListener(handleInvalidator);
             Set<Figure> newSelection = new HashSet<>(selectedFigures);
             Rectangle invalidatedArea = null;
-            if (handlesAreValid && getEditor() != null) {
-                for (Handle h : figure.createHandles(detailLevel)) {
-                    h.setView(this);
-                    selectionHandles.add(h);
-                    h.addHandleListener(eventHandler);
-                    if (invalidatedArea == null) {
-                        invalidatedArea = h.getDrawingArea();
-                    } else {
-                        invalidatedArea.add(h.getDrawingArea());
-                    }
-                }
+            if (handlesAreValid && getEditor() != null && isInHandlesArea(figure)) {
+                invalidatedArea = createSelectionHandles(figure, invalidatedArea);
             }
             fireSelectionChanged(oldSelection, newSelection);
             if (invalidatedArea != null) {
@@ -781,17 +911,8 @@ public class DefaultDrawingView
                 selectionChanged = true;
                 newSelection.add(figure);
                 figure.addFigureListener(handleInvalidator);
-                if (handlesAreValid && getEditor() != null) {
-                    for (Handle h : figure.createHandles(detailLevel)) {
-                        h.setView(this);
-                        selectionHandles.add(h);
-                        h.addHandleListener(eventHandler);
-                        if (invalidatedArea == null) {
-                            invalidatedArea = h.getDrawingArea();
-                        } else {
-                            invalidatedArea.add(h.getDrawingArea());
-                        }
-                    }
+                if (handlesAreValid && getEditor() != null && isInHandlesArea(figure)) {
+                    invalidatedArea = createSelectionHandles(figure, invalidatedArea);
                 }
             }
         }
@@ -818,6 +939,18 @@ public class DefaultDrawingView
         }
     }
 
+    /**
+     * Removes the specified figures from the selection, and fires a single
+     * selection event.
+     */
+    private void removeAllFromSelection(Collection<Figure> figures) {
+        HashSet<Figure> removed = new HashSet<>(figures);
+        ArrayList<Figure> newSelection = new ArrayList<>(selectedFigures);
+        if (newSelection.removeAll(removed)) {
+            setSelectedFigures(newSelection);
+        }
+    }
+
     /**
      * If a figure isn't selected it is added to the selection. Otherwise it is removed from the
      * selection.
@@ -838,23 +971,48 @@ public class DefaultDrawingView
     }
 
     /**
-     * Selects all selectable figures.
+     * Replaces the current selection by the specified figures.
+     * <p>
+     * The handles of the figures are created when they are needed.
      */
     @Override
-    public void selectAll() {
+    public void setSelectedFigures(Collection<Figure> figures) {
         Set<Figure> oldSelection = new HashSet<>(selectedFigures);
-        selectedFigures.clear();
-        for (Figure figure : drawing.getChildren()) {
-            if (figure.isSelectable()) {
-                selectedFigures.add(figure);
+        Set<Figure> newSelection = new LinkedHashSet<>(figures);
+        if (oldSelection.equals(newSelection)) {
+            return;
+        }
+        for (Figure figure : selectedFigures) {
+            if (!newSelection.contains(figure)) {
+                figure.removeFigureListener(handleInvalidator);
             }
         }
-        Set<Figure> newSelection = new HashSet<>(selectedFigures);
+        for (Figure figure : newSelection) {
+            if (!oldSelection.contains(figure)) {
+                figure.addFigureListener(handleInvalidator);
+            }
+        }
+        selectedFigures.clear();
+        selectedFigures.addAll(newSelection);
         invalidateHandles();
         fireSelectionChanged(oldSelection, newSelection);
         repaint();
     }
 
+    /**
+     * Selects all selectable figures.
+     */
+    @Override
+    public void selectAll() {
+        ArrayList<Figure> selectable = new ArrayList<>();
+        for (Figure figure : drawing.getChildren()) {
+            if (figure.isSelectable()) {
+                selectable.add(figure);
+            }
+        }
+        setSelectedFigures(selectable);
+    }
+
     /**
      * Clears the current selection.
      */
@@ -862,6 +1020,9 @@ public class DefaultDrawingView
     public void clearSelection() {
         if (getSelectionCount() > 0) {
             Set<Figure> oldSelection = new HashSet<>(selectedFigures);
+            for (Figure figure : selectedFigures) {
+                figure.removeFigureListener(handleInvalidator);
+            }
             selectedFigures.clear();
             Set<Figure> newSelection = new HashSet<>(selectedFigures);
             invalidateHandles();
@@ -937,6 +1098,8 @@ public class DefaultDrawingView
             }
             selectionHandles.clear();
             secondaryHandles.clear();
+            figuresWithHandles.clear();
+            invalidateHandleIndex();
             setActiveHandle(null);
             if (invalidatedArea != null) {
                 repaint(invalidatedArea);
@@ -946,6 +1109,10 @@ public class DefaultDrawingView
 
     /**
      * Validates the handles.
+     * <p>
+     * Handles are only created for selected figures which are in or near the
+     * visible area of the view. When the view is scrolled, the handles of
+     * the figures which come into view are created.
      */
     private void validateHandles() {
         // Validate handles only, if they are invalid, and if
@@ -953,21 +1120,20 @@ public class DefaultDrawingView
         if (!handlesAreValid && getEditor() != null) {
             handlesAreValid = true;
             selectionHandles.clear();
+            figuresWithHandles.clear();
+            invalidateHandleIndex();
+            handlesArea = computeHandlesArea();
             Rectangle invalidatedArea = null;
             while (true) {
-                for (Figure figure : getSelectedFigures()) {
-                    for (Handle handle : figure.createHandles(detailLevel)) {
-                        handle.setView(this);
-                        selectionHandles.add(handle);
-                        handle.addHandleListener(eventHandler);
-                        if (invalidatedArea == null) {
-                            invalidatedArea = handle.getDrawingArea();
-                        } else {
-                            invalidatedArea.add(handle.getDrawingArea());
-                        }
+                boolean isAnyFigureInArea = false;
+                for (Figure figure : selectedFigures) {
+                    if (isInHandlesArea(figure)) {
+                        isAnyFigureInArea = true;
+                        invalidatedArea = createSelectionHandles(figure, invalidatedArea);
                     }
                 }
-                if (selectionHandles.size() == 0 && detailLevel != 0) {
+                if (selectionHandles.isEmpty() && detailLevel != 0
+                        && (isAnyFigureInArea || selectedFigures.isEmpty())) {
                     // No handles are available at the desired detail level.
                     // Retry with detail level 0.
                     detailLevel = 0;
@@ -978,11 +1144,128 @@ public class DefaultDrawingView
             if (invalidatedArea != null) {
                 repaint(invalidatedArea);
             }
+        } else if (handlesAreValid && handlesArea != null && !handlesArea.contains(getVisibleRect())) {
+            extendHandlesArea(computeHandlesArea());
         }
     }
 
+    /**
+     * Creates the handles of the selected figures which are in the specified
+     * area and have no handles yet.
+     *
+     * @param area An area of the view, or null to create the handles of all
+     * selected figures.
+     */
+    private void extendHandlesArea(Rectangle area) {
+        handlesArea = area;
+        Rectangle invalidatedArea = null;
+        for (Figure figure : selectedFigures) {
+            if (!figuresWithHandles.contains(figure) && isInHandlesArea(figure)) {
+                invalidatedArea = createSelectionHandles(figure, invalidatedArea);
+            }
+        }
+        if (invalidatedArea != null) {
+            repaint(invalidatedArea);
+        }
+    }
+
+    /**
+     * Creates the handles of a selected figure which has been moved into the
+     * handles area.
+     */
+    private void createHandlesIfInHandlesArea(Figure figure) {
+        if (handlesAreValid && handlesArea != null && getEditor() != null
+                && selectedFigures.contains(figure)
+                && !figuresWithHandles.contains(figure) && isInHandlesArea(figure)) {
+            Rectangle invalidatedArea = createSelectionHandles(figure, null);
+            if (invalidatedArea != null) {
+                repaint(invalidatedArea);
+            }
+        }
+    }
+
+    /**
+     * Returns the visible area of the view, grown by half of its size in each
+     * direction, so that scrolling by small amounts does not create handles.
+     * Returns null if the view is not showing.
+     */
+    private Rectangle computeHandlesArea() {
+        Rectangle r = getVisibleRect();
+        if (r.isEmpty()) {
+            return null;
+        }
+        r.grow(r.width / 2, r.height / 2);
+        return r;
+    }
+
+    private boolean isInHandlesArea(Figure figure) {
+        return handlesArea == null
+                || drawingToView(figure.getDrawingArea()).intersects(handlesArea);
+    }
+
+    /**
+     * Creates the handles of a selected figure.
+     *
+     * @return The union of the invalidated area and the area of the handles.
+     */
+    private Rectangle createSelectionHandles(Figure figure, Rectangle invalidatedArea) {
+        figuresWithHandles.add(figure);
+        for (Handle handle : figure.createHandles(detailLevel)) {
+            handle.setView(this);
+            if (handleIndex != null) {
+                handleIndex.add(handle, toDouble(handle.getDrawingArea()), selectionHandles.size());
+            }
+            selectionHandles.add(handle);
+            handle.addHandleListener(eventHandler);
+            if (invalidatedArea == null) {
+                invalidatedArea = handle.getDrawingArea();
+            } else {
+                invalidatedArea.add(handle.getDrawingArea());
+            }
+        }
+        return invalidatedArea;
+    }
+
+    private void invalidateHandleIndex() {
+        handleIndex = null;
+        movedHandles.clear();
+    }
+
+    /**
+     * Builds the handle index, or updates the entries of the handles which
+     * have moved.
+     */
+    private void validateHandleIndex() {
+        if (handleIndex == null || movedHandles.size() > selectionHandles.size() / 4) {
+            ArrayList<Handle> handles = new ArrayList<>(selectionHandles);
+            ArrayList<Rectangle2D.Double> bounds = new ArrayList<>(handles.size());
+            double[] zOrders = new double[handles.size()];
+            for (Handle handle : handles) {
+                zOrders[bounds.size()] = bounds.size();
+                bounds.add(toDouble(handle.getDrawingArea()));
+            }
+            handleIndex = new RTree<>();
+            handleIndex.addAll(handles, bounds, zOrders);
+        } else {
+            for (Handle handle : movedHandles) {
+                if (handleIndex.contains(handle)) {
+                    handleIndex.add(handle, toDouble(handle.getDrawingArea()), handleIndex.getZOrder(handle));
+                }
+            }
+        }
+        movedHandles.clear();
+    }
+
+    private static Rectangle2D.Double toDouble(Rectangle r) {
+        return new Rectangle2D.Double(r.x, r.y, r.width, r.height);
+    }
+
     /**
      * Finds a handle at a given coordinates.
+     * <p>
+     * The selection handles are looked up in a spatial index. This assumes,
+     * that a handle only contains points which are inside of its drawing
+     * area.
      *
      * @return A handle, null if no handle is found.
      */
@@ -995,10 +1278,17 @@ public class DefaultDrawingView
                 return handle;
             }
         }
-        for (Handle handle : new ReversedList<>(getSelectionHandles())) {
-            if (handle.contains(p)) {
-                return handle;
+        validateHandleIndex();
+        try {
+            handleIndex.findContainsInZOrder(new Point2D.Double(p.x, p.y), handleHits);
+            for (int i = handleHits.size() - 1; i >= 0; i--) {
+                Handle handle = handleHits.get(i);
+                if (handle.contains(p)) {
+                    return handle;
+                }
             }
+        } finally {
+            handleHits.clear();
         }
         return null;
     }
@@ -1011,6 +1301,10 @@ public class DefaultDrawingView
     @Override
     public Collection<Handle> getCompatibleHandles(Handle master) {
         validateHandles();
+        if (handlesAreValid && handlesArea != null) {
+            // Compatible handles may be outside of the visible area
+            extendHandlesArea(null);
+        }
         HashSet<Figure> owners = new HashSet<>();
         LinkedList<Handle> compatibleHandles = new LinkedList<>();
         owners.add(master.getOwner());
@@ -1246,7 +1540,7 @@ public class DefaultDrawingView
         double oldValue = scaleFactor;
         scaleFactor = newValue;
         validateViewTranslation();
-        dirtyArea.setBounds(bufferedArea);
+        dirtyRegion.set(bufferedArea);
         invalidateHandles();
         revalidate();
         repaint();
@@ -1254,6 +1548,7 @@ public class DefaultDrawingView
     }
 
     protected void fireViewTransformChanged() {
+        invalidateHandleIndex();
         for (Handle handle : selectionHandles) {
             handle.viewTransformChanged();
         }
@@ -1295,7 +1590,8 @@ public class DefaultDrawingView
                 return;
             }
         }
-        // Get z-indices of deleted figures
+        // Get z-indices of deleted figures. The figures are sorted, so the
+        // indices are ascending.
         final int[] deletedFigureIndices = new int[deletedFigures.size()];
         for (int i = 0; i
                 < deletedFigureIndices.length; i++) {
@@ -1303,36 +1599,53 @@ public class DefaultDrawingView
         }
         clearSelection();
         getDrawing().removeAll(deletedFigures);
-        getDrawing().fireUndoableEditHappened(new AbstractUndoableEdit() {
-            private static final long serialVersionUID = 1L;
+        getDrawing().fireUndoableEditHappened(new DeleteEdit(deletedFigures, deletedFigureIndices));
+    }
 
-            @Override
-            public String getPresentationName() {
-                ResourceBundleUtil labels = ResourceBundleUtil.getBundle("org.jhotdraw.draw.Labels");
-                return labels.getString("edit.delete.text");
-            }
+    /**
+     * Undoes and redoes the deletion of figures. The deleted figures are only
+     * kept alive by this edit, so its estimated size grows with the number
+     * of figures.
+     */
+    private class DeleteEdit extends AbstractUndoableEdit implements SizedEdit {
 
-            @Override
-            public void undo() throws CannotUndoException {
-                super.undo();
-                clearSelection();
-                Drawing d = getDrawing();
-                for (int i = 0; i
-                        < deletedFigureIndices.length; i++) {
-                    d.add(deletedFigureIndices[i], deletedFigures.get(i));
-                }
-                addToSelection(deletedFigures);
-            }
+        private static final long serialVersionUID = 1L;
+        /**
+         * A rough estimate of the memory held by a deleted figure.
+         */
+        private static final long ESTIMATED_FIGURE_SIZE = 512;
+        private final java.util.List<Figure> deletedFigures;
+        private final int[] deletedFigureIndices;
 
-            @Override
-            public void redo() throws CannotRedoException {
-                super.redo();
-                for (int i = 0; i
-                        < deletedFigureIndices.length; i++) {
-                    drawing.remove(deletedFigures.get(i));
-                }
-            }
-        });
+        public DeleteEdit(java.util.List<Figure> deletedFigures, int[] deletedFigureIndices) {
+            this.deletedFigures = deletedFigures;
+            this.deletedFigureIndices = deletedFigureIndices;
+        }
+
+        @Override
+        public String getPresentationName() {
+            ResourceBundleUtil labels = ResourceBundleUtil.getBundle("org.jhotdraw.draw.Labels");
+            return labels.getString("edit.delete.text");
+        }
+
+        @Override
+        public void undo() throws CannotUndoException {
+            super.undo();
+            clearSelection();
+            getDrawing().addAll(deletedFigureIndices, deletedFigures);
+            addToSelection(deletedFigures);
+        }
+
+        @Override
+        public void redo() throws CannotRedoException {
+            super.redo();
+            getDrawing().removeAll(deletedFigures);
+        }
+
+        @Override
+        public long getEstimatedSize() {
+            return UndoRedoManager.DEFAULT_EDIT_SIZE + (ESTIMATED_FIGURE_SIZE + 4) * deletedFigures.size();
+        }
     }
 
     @Override
@@ -1348,8 +1661,8 @@ public class DefaultDrawingView
             d.transform(tx);
             duplicates.add(d);
             originalToDuplicateMap.put(f, d);
-            drawing.add(d);
         }
+        drawing.addAll(duplicates);
         for (Figure f : duplicates) {
             f.remap(originalToDuplicateMap, false);
         }
@@ -1464,6 +1777,165 @@ public class DefaultDrawingView
         return isDrawingDoubleBuffered;
     }
 
+    /**
+     * Sets whether the drawing is rendered in tiles by multiple threads.
+     * <p>
+     * The default value is false.
+     * <p>
+     * This is a bound property.
+     * <p>
+     * Rendering in tiles speeds up the repainting of large drawings after
+     * scrolling or zooming. The figures are drawn by worker threads while the
+     * event dispatch thread waits for them, so the drawing is never painted
+     * from stale tiles. See {@link DrawingTileCache}.
+     */
+    public void setDrawingTiled(boolean newValue) {
+        boolean oldValue = isDrawingTiled();
+        if (newValue && tileCache == null) {
+            tileCache = new DrawingTileCache();
+        } else if (!newValue && tileCache != null) {
+            tileCache.flush();
+            tileCache = null;
+        }
+        firePropertyChange(DRAWING_TILED_PROPERTY, oldValue, newValue);
+        repaint();
+    }
+
+    /**
+     * Returns true, if the drawing is rendered in tiles.
+     */
+    public boolean isDrawingTiled() {
+        return tileCache != null;
+    }
+
+    /**
+     * Starts a drag preview of the specified figures.
+     * <p>
+     * The figures are rendered once into an image, which is painted instead
+     * of the figures at the offset set with {@link #setDragPreviewOffset},
+     * until {@link #endDragPreview} is called. This allows to show the drag of
+     * many figures without changing the figures on each mouse event. The
+     * handles of the selection are not drawn during the drag preview.
+     * <p>
+     * The image only covers the figures near the visible area of the view.
+     */
+    public void startDragPreview(Collection<Figure> figures) {
+        if (dragPreview != null) {
+            endDragPreview();
+        }
+        if (drawing == null || figures.isEmpty()) {
+            return;
+        }
+        dragPreview = new DragPreview();
+        dragPreview.figures = Collections.newSetFromMap(new IdentityHashMap<Figure, Boolean>());
+        dragPreview.figures.addAll(figures);
+        dragPreview.sortedFigures = drawing.sort(figures);
+        for (Figure f : dragPreview.sortedFigures) {
+            if (dragPreview.drawingArea == null) {
+                dragPreview.drawingArea = f.getDrawingArea();
+            } else {
+                dragPreview.drawingArea.add(f.getDrawingArea());
+            }
+        }
+        renderDragPreview();
+        if (tileCache != null) {
+            tileCache.setExcludedFigures(dragPreview.figures);
+        }
+        repaintDrawingArea(dragPreview.drawingArea);
+        repaintHandles();
+    }
+
+    /**
+     * Sets the offset of the drag preview.
+     *
+     * @param dx The horizontal offset in drawing coordinates.
+     * @param dy The vertical offset in drawing coordinates.
+     */
+    public void setDragPreviewOffset(double dx, double dy) {
+        if (dragPreview != null) {
+            Rectangle oldBounds = getDragPreviewBounds();
+            dragPreview.dx = dx;
+            dragPreview.dy = dy;
+            Rectangle newBounds = getDragPreviewBounds();
+            if (!newBounds.equals(oldBounds)) {
+                repaint(oldBounds);
+                repaint(newBounds);
+            }
+        }
+    }
+
+    /**
+     * Ends the drag preview. The figures are drawn again by the drawing.
+     */
+    public void endDragPreview() {
+        if (dragPreview != null) {
+            repaint(getDragPreviewBounds());
+            dragPreview.image.flush();
+            Rectangle2D.Double drawingArea = dragPreview.drawingArea;
+            dragPreview = null;
+            if (tileCache != null) {
+                tileCache.setExcludedFigures(Collections.<Figure>emptySet());
+            }
+            repaintDrawingArea(drawingArea);
+            repaintHandles();
+        }
+    }
+
+    /**
+     * Returns true, if a drag preview is shown.
+     */
+    public boolean isDragPreviewActive() {
+        return dragPreview != null;
+    }
+
+    /**
+     * Renders the figures of the drag preview into its image at the current
+     * scale factor.
+     */
+    private void renderDragPreview() {
+        Rectangle2D.Double da = dragPreview.drawingArea;
+        Rectangle r = new Rectangle(
+                (int) Math.floor(da.x * scaleFactor) - 2,
+                (int) Math.floor(da.y * scaleFactor) - 2,
+                (int) Math.ceil(da.width * scaleFactor) + 5,
+                (int) Math.ceil(da.height * scaleFactor) + 5);
+        // Limit the size of the image to the area around the visible area
+        Rectangle vr = getVisibleRect();
+        vr.translate(translation.x, translation.y);
+        vr.grow(vr.width, vr.height);
+        r = r.intersection(vr);
+        r.width = Math.max(1, r.width);
+        r.height = Math.max(1, r.height);
+        if (dragPreview.image != null) {
+            dragPreview.image.flush();
+        }
+        dragPreview.image = new BufferedImage(r.width, r.height, BufferedImage.TYPE_INT_ARGB_PRE);
+        dragPreview.bounds = r;
+        dragPreview.scale = scaleFactor;
+        Graphics2D g = dragPreview.image.createGraphics();
+        setViewRenderingHints(g);
+        g.translate(-r.x, -r.y);
+        g.scale(scaleFactor, scaleFactor);
+        for (Figure f : dragPreview.sortedFigures) {
+            if (f.isVisible()) {
+                f.draw(g);
+            }
+        }
+        g.dispose();
+    }
+
+    /**
+     * Returns the bounds of the image of the drag preview in view
+     * coordinates.
+     */
+    private Rectangle getDragPreviewBounds() {
+        Rectangle r = new Rectangle(dragPreview.bounds);
+        r.translate(
+                (int) Math.round(dragPreview.dx * dragPreview.scale) - translation.x,
+                (int) Math.round(dragPreview.dy * dragPreview.scale) - translation.y);
+        return r;
+    }
+
     /**
      * Returns a paint for drawing the background of the drawing area.
      *
@@ -1489,6 +1961,36 @@ public class DefaultDrawingView
     public DrawingEditor getEditor() {
         return editor;
     }
+
+    /**
+     * Holds the figures and the rendered image of a drag preview.
+     */
+    private static class DragPreview {
+
+        Set<Figure> figures;
+        /**
+         * The figures in Z-order from back to front.
+         */
+        java.util.List<Figure> sortedFigures;
+        /**
+         * The drawing area of the figures.
+         */
+        Rectangle2D.Double drawingArea;
+        BufferedImage image;
+        /**
+         * The bounds of the image in scaled drawing coordinates.
+         */
+        Rectangle bounds;
+        /**
+         * The scale factor with which the image has been rendered.
+         */
+        double scale;
+        /**
+         * The offset in drawing coordinates.
+         */
+        double dx;
+        double dy;
+    }
     // Variables declaration - do not modify//GEN-BEGIN:variables
     // End of variables declaration//GEN-END:variables
     @Override
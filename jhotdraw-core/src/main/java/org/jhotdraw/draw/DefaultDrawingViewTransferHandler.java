@@ -26,12 +26,14 @@ import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.*;
 import javax.swing.undo.*;
-import org.jhotdraw.datatransfer.CompositeTransferable;
+import org.jhotdraw.datatransfer.LazyTransferable;
 import org.jhotdraw.draw.event.CompositeFigureEvent;
 import org.jhotdraw.draw.event.CompositeFigureListener;
 import org.jhotdraw.draw.io.InputFormat;
@@ -55,6 +57,11 @@ public class DefaultDrawingViewTransferHandler extends TransferHandler {
      * on figure selection, when method exportDone is called.
      */
     private HashSet<Figure> exportedFigures;
+    /**
+     * The executor with which the data of a Transferable is created in the
+     * background, or null.
+     */
+    private transient Executor transferDataExecutor;
 
     /**
      * Creates a new instance.
@@ -321,9 +328,18 @@ FileFormatLoop:                     for (InputFormat format : drawing.getInputFo
         return retValue;
     }
 
+    /**
+     * Creates a Transferable for the specified figures.
+     * <p>
+     * The data of an output format which declares its data flavors is only
+     * created, when it is requested. For this, the figures are copied, so
+     * that the data reflects the state of the figures at the time the
+     * Transferable was created. Connections to figures which are not
+     * transferred are not copied.
+     */
     protected Transferable createTransferable(DrawingView view, java.util.Set<Figure> transferFigures) {
         Transferable retValue;
-        Drawing drawing = view.getDrawing();
+        final Drawing drawing = view.getDrawing();
         exportedFigures = null;
         if (drawing.getOutputFormats() == null
             || drawing.getOutputFormats().size() == 0) {
@@ -332,16 +348,35 @@ FileFormatLoop:                     for (InputFormat format : drawing.getInputFo
             java.util.List<Figure> toBeCopied = drawing.sort(transferFigures);
             if (toBeCopied.size() > 0) {
                 try {
-                    CompositeTransferable transfer = new CompositeTransferable();
-                    for (OutputFormat format : drawing.getOutputFormats()) {
-                        Transferable t = format.createTransferable(
-                                drawing,
-                                toBeCopied,
-                                view.getScaleFactor());
-                        if (!transfer.isDataFlavorSupported(t.getTransferDataFlavors()[0])) {
-                            transfer.add(t);
+                    final double scaleFactor = view.getScaleFactor();
+                    java.util.List<Figure> snapshot = null;
+                    LazyTransferable transfer = new LazyTransferable();
+                    for (final OutputFormat format : drawing.getOutputFormats()) {
+                        DataFlavor[] flavors = format.getTransferDataFlavors();
+                        if (flavors == null) {
+                            Transferable t = format.createTransferable(
+                                    drawing,
+                                    toBeCopied,
+                                    scaleFactor);
+                            if (!transfer.isDataFlavorSupported(t.getTransferDataFlavors()[0])) {
+                                transfer.add(t);
+                            }
+                        } else if (!transfer.isDataFlavorSupported(flavors[0])) {
+                            if (snapshot == null) {
+                                snapshot = copyFigures(toBeCopied);
+                            }
+                            final java.util.List<Figure> figures = snapshot;
+                            transfer.add(flavors, new Callable<Transferable>() {
+                                @Override
+                                public Transferable call() throws IOException {
+                                    return format.createTransferable(drawing, figures, scaleFactor);
+                                }
+                            });
                         }
                     }
+                    if (transferDataExecutor != null) {
+                        transfer.createInBackground(transferDataExecutor);
+                    }
                     exportedFigures = new HashSet<>(transferFigures);
                     retValue
                             = transfer;
@@ -356,6 +391,43 @@ FileFormatLoop:                     for (InputFormat format : drawing.getInputFo
         return retValue;
     }
 
+    /**
+     * Returns copies of the specified figures. Connections to figures which
+     * are not in the list are disconnected.
+     */
+    private static java.util.List<Figure> copyFigures(java.util.List<Figure> figures) {
+        HashMap<Figure, Figure> originalToDuplicateMap = new HashMap<>(figures.size());
+        ArrayList<Figure> duplicates = new ArrayList<>(figures.size());
+        for (Figure f : figures) {
+            Figure d = f.clone();
+            duplicates.add(d);
+            originalToDuplicateMap.put(f, d);
+        }
+        for (Figure d : duplicates) {
+            d.remap(originalToDuplicateMap, true);
+        }
+        return duplicates;
+    }
+
+    /**
+     * Sets the executor with which the data of a Transferable is created in
+     * the background, right after the Transferable has been created.
+     * <p>
+     * If the executor is null, which is the default, the data is only created
+     * when it is requested.
+     */
+    public void setTransferDataExecutor(Executor newValue) {
+        transferDataExecutor = newValue;
+    }
+
+    /**
+     * Returns the executor with which the data of a Transferable is created
+     * in the background, or null.
+     */
+    public Executor getTransferDataExecutor() {
+        return transferDataExecutor;
+    }
+
     @Override
     protected void exportDone(JComponent source, Transferable data, int action) {
         if (source instanceof DrawingView) {
@@ -384,6 +456,11 @@ FileFormatLoop:                     for (InputFormat format : drawing.getInputFo
                     public void figureRemoved(CompositeFigureEvent evt) {
                         deletionEvents.addFirst(evt);
                     }
+
+                    @Override
+                    public void figuresRemoved(CompositeFigureEvent evt) {
+                        deletionEvents.addFirst(evt);
+                    }
                 };
                 drawing.addCompositeFigureListener(removeListener);
                 drawing.removeAll(selectedFigures);
@@ -403,7 +480,13 @@ FileFormatLoop:                     for (InputFormat format : drawing.getInputFo
                         super.undo();
                         view.clearSelection();
                         for (CompositeFigureEvent evt : deletionEvents) {
-                            drawing.add(evt.getIndex(), evt.getChildFigure());
+                            // The indices are ascending, so inserting in this
+                            // order restores the original z-order
+                            int[] indices = new int[evt.getChildCount()];
+                            for (int i = 0; i < indices.length; i++) {
+                                indices[i] = evt.getIndex(i);
+                            }
+                            drawing.addAll(indices, evt.getChildFigures());
                         }
                         view.addToSelection(selectedFigures);
                     }
@@ -412,7 +495,7 @@ FileFormatLoop:                     for (InputFormat format : drawing.getInputFo
                     public void redo() throws CannotRedoException {
                         super.redo();
                         for (CompositeFigureEvent evt : new ReversedList<>(deletionEvents)) {
-                            drawing.remove(evt.getChildFigure());
+                            drawing.removeAll(evt.getChildFigures());
                         }
                     }
                 });
@@ -12,6 +12,7 @@ import java.awt.font.*;
 import java.awt.geom.*;
 import java.io.*;
 import java.util.*;
+import java.util.function.Consumer;
 import javax.swing.event.*;
 import javax.swing.undo.*;
 import org.jhotdraw.draw.figure.CompositeFigure;
@@ -152,6 +153,24 @@ public interface Drawing extends CompositeFigure, Serializable, DOMStorable {
      */
     void addAll(int index, Collection<? extends Figure> figures);
 
+    /**
+     * Adds the figures at the specified z-indices, and fires a single event
+     * for all of them.
+     * The drawing sends an {@code addNotify} message to each figure
+     * after it has been added.
+     * <p>
+     * This is the inverse of {@link #removeAll}: the figures and z-indices
+     * of the event which {@code removeAll} fires, restore the removed
+     * figures at their original positions.
+     *
+     * @see Figure#addNotify
+     *
+     * @param indices The z-indices which the figures have after they have
+     * been added, in strictly ascending order.
+     * @param figures to be added to the drawing
+     */
+    void addAll(int[] indices, List<? extends Figure> figures);
+
     /**
      * Removes a figure from the drawing.
      * The drawing sends a {@code removeNotify} message to the figure
@@ -228,12 +247,33 @@ public interface Drawing extends CompositeFigure, Serializable, DOMStorable {
      */
     void basicAddAll(int index, Collection<? extends Figure> figures);
 
+    /**
+     * Reinserts the specified figures at the specified z-indices.
+     *
+     * @param indices The z-indices which the figures have after they have
+     * been reinserted, in strictly ascending order.
+     * @param figures A collection of figures which are part of the drawing
+     * and should be reinserted.
+     * @see #basicRemoveAll(Collection)
+     */
+    void basicAddAll(int[] indices, List<? extends Figure> figures);
+
     /**
      * Returns all figures that lie within or intersect the specified
      * bounds. The figures are returned in Z-order from back to front.
      */
     List<Figure> findFigures(Rectangle2D.Double bounds);
 
+    /**
+     * Calls the visitor for all figures that lie within or intersect the
+     * specified bounds. The figures are visited in Z-order from back to front.
+     * <p>
+     * Unlike {@link #findFigures(Rectangle2D.Double)}, this method does not
+     * need to create a list, and is thus better suited for queries which are
+     * made very often.
+     */
+    void findFigures(Rectangle2D.Double bounds, Consumer<? super Figure> visitor);
+
     /**
      * Returns all figures that lie within the specified
      * bounds. The figures are returned in Z-order from back to front.
@@ -348,6 +388,21 @@ public interface Drawing extends CompositeFigure, Serializable, DOMStorable {
      */
     Object getLock();
 
+    /**
+     * Returns an immutable snapshot of the figures of the drawing for
+     * rendering.
+     * <p>
+     * This method must be called by the thread which changes the drawing,
+     * normally the event dispatch thread. It takes a new snapshot if the
+     * drawing has changed since the last snapshot was taken.
+     * <p>
+     * The snapshot holds the figures of the drawing, and not copies of them.
+     * So the figures of the snapshot must not be drawn by another thread
+     * while the drawing is changed. Use {@link RenderSnapshot#copyOf(Drawing)}
+     * for this.
+     */
+    RenderSnapshot getRenderSnapshot();
+
     /**
      * Adds an input format to the drawing.
      */
@@ -0,0 +1,350 @@
+/*
+ * @(#)DrawingTileCache.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import org.jhotdraw.draw.figure.Figure;
+
+/**
+ * Renders a drawing into a cache of image tiles, using multiple threads.
+ * <p>
+ * Painting is synchronous. Tiles which are not valid are rendered in parallel,
+ * and {@link #paint} returns when all of them are complete. Stale tiles are
+ * never shown while their replacements are rendered, because the figures of
+ * the drawing are not copied, and must not be changed while they are drawn.
+ * The cache speeds up repainting, because valid tiles are reused, for example
+ * after scrolling, and because the tiles which are newly exposed, for example
+ * after zooming, are rendered by several threads.
+ * <p>
+ * The tiles have a size of {@link #TILE_SIZE} pixels, and are keyed by their
+ * column and row in the scaled drawing coordinate space. The cache holds the
+ * tiles of one scale factor. When the scale factor changes, all tiles are
+ * discarded.
+ * <p>
+ * All methods of this class must be called on the event dispatch thread.
+ * When tiles need to be rendered, the figures of each tile are looked up on
+ * the event dispatch thread, using the spatial index if the drawing is a
+ * {@link QuadTreeDrawing}, and the {@link RenderSnapshot} of the drawing
+ * otherwise. The figures are then drawn into the tiles by the threads of a
+ * {@code ForkJoinPool}, while the event dispatch thread waits until all tiles
+ * have been rendered. Thus the figures are never changed while they are
+ * drawn. A figure which intersects several tiles is drawn into one tile at a
+ * time. A tile which could not be rendered in the background is rendered
+ * again on the event dispatch thread.
+ *
+ * @version $Id$
+ */
+public class DrawingTileCache {
+
+    /**
+     * The width and height of a tile in pixels.
+     */
+    public static final int TILE_SIZE = 256;
+
+    private static class Tile {
+
+        final int column;
+        final int row;
+        /**
+         * The rendered image. The image must be rendered again before it is
+         * painted, if {@code valid} is false.
+         */
+        BufferedImage image;
+        boolean valid;
+
+        Tile(int column, int row) {
+            this.column = column;
+            this.row = row;
+        }
+    }
+
+    private static class RenderTask extends RecursiveTask<BufferedImage> {
+
+        private static final long serialVersionUID = 1L;
+        private final Tile tile;
+        private final double scale;
+        private final List<Figure> figures;
+        private final RenderingHints hints;
+
+        RenderTask(Tile tile, double scale, List<Figure> figures, RenderingHints hints) {
+            this.tile = tile;
+            this.scale = scale;
+            this.figures = figures;
+            this.hints = hints;
+        }
+
+        @Override
+        protected BufferedImage compute() {
+            return render(tile, scale, figures, hints);
+        }
+    }
+
+    private final ForkJoinPool pool;
+    /**
+     * The scale factor of the tiles.
+     */
+    private double scale = Double.NaN;
+    private HashMap<Long, Tile> tiles = new HashMap<>();
+    /**
+     * The translation used by the last call to {@code paint}.
+     */
+    private Point translation = new Point();
+    /**
+     * Figures which are not drawn into the tiles.
+     */
+    private Set<Figure> excludedFigures = Collections.emptySet();
+
+    /**
+     * Creates a new instance which renders on the common {@code ForkJoinPool}.
+     */
+    public DrawingTileCache() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public DrawingTileCache(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the figures which are not drawn into the tiles. This does not
+     * invalidate any tiles, the caller must invalidate the areas of the
+     * figures.
+     */
+    public void setExcludedFigures(Set<Figure> newValue) {
+        excludedFigures = newValue;
+    }
+
+    public Set<Figure> getExcludedFigures() {
+        return excludedFigures;
+    }
+
+    /**
+     * Paints the drawing from the tiles which intersect the clip bounds of the
+     * graphics. Renders the tiles which are not valid.
+     * <p>
+     * The figures are drawn with the rendering hints of the graphics.
+     *
+     * @param g the graphics in view coordinates.
+     * @param drawing the drawing.
+     * @param scale the scale factor from drawing to view coordinates.
+     * @param translation the translation from the scaled drawing to view
+     * coordinates.
+     * @param visibleRect the visible rectangle in view coordinates. Tiles
+     * outside of this rectangle are discarded.
+     */
+    public void paint(Graphics2D g, Drawing drawing, double scale, Point translation, Rectangle visibleRect) {
+        if (scale != this.scale) {
+            tiles.clear();
+            this.scale = scale;
+        }
+        this.translation.setLocation(translation);
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = visibleRect;
+        }
+        Rectangle range = getTileRange(clip);
+
+        // Render the tiles which are not valid
+        ArrayList<RenderTask> tasks = new ArrayList<>();
+        RenderingHints hints = null;
+        RenderSnapshot snapshot = null;
+        for (int row = range.y; row < range.y + range.height; row++) {
+            for (int column = range.x; column < range.x + range.width; column++) {
+                Long key = key(column, row);
+                Tile tile = tiles.get(key);
+                if (tile == null) {
+                    tile = new Tile(column, row);
+                    tiles.put(key, tile);
+                }
+                if (!tile.valid) {
+                    if (hints == null) {
+                        hints = g.getRenderingHints();
+                        snapshot = (drawing instanceof QuadTreeDrawing) ? null
+                                : drawing.getRenderSnapshot();
+                    }
+                    RenderTask task = new RenderTask(tile, scale, findFigures(drawing, snapshot, tile), hints);
+                    pool.execute(task);
+                    tasks.add(task);
+                }
+            }
+        }
+        // The figures must not be changed while they are drawn, so we wait
+        // until all tasks are done, even if we are interrupted.
+        for (RenderTask task : tasks) {
+            task.quietlyJoin();
+            install(task);
+        }
+
+        // Blit the tiles
+        for (int row = range.y; row < range.y + range.height; row++) {
+            for (int column = range.x; column < range.x + range.width; column++) {
+                Tile tile = tiles.get(key(column, row));
+                g.drawImage(tile.image, column * TILE_SIZE - translation.x, row * TILE_SIZE - translation.y, null);
+            }
+        }
+        discardTiles(visibleRect);
+    }
+
+    /**
+     * Invalidates the tiles which intersect the specified area.
+     *
+     * @param r an area in drawing coordinates.
+     */
+    public void invalidate(Rectangle2D.Double r) {
+        if (tiles.isEmpty()) {
+            return;
+        }
+        // Grow the area by 2 pixels to account for anti-aliasing
+        Rectangle sr = new Rectangle(
+                (int) Math.floor(r.x * scale) - 2,
+                (int) Math.floor(r.y * scale) - 2,
+                (int) Math.ceil(r.width * scale) + 5,
+                (int) Math.ceil(r.height * scale) + 5);
+        Rectangle range = getTileRange(sr);
+        if ((long) range.width * range.height > tiles.size()) {
+            for (Tile tile : tiles.values()) {
+                if (range.contains(tile.column, tile.row)) {
+                    invalidate(tile);
+                }
+            }
+        } else {
+            for (int row = range.y; row < range.y + range.height; row++) {
+                for (int column = range.x; column < range.x + range.width; column++) {
+                    Tile tile = tiles.get(key(column, row));
+                    if (tile != null) {
+                        invalidate(tile);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Invalidates all tiles.
+     */
+    public void invalidateAll() {
+        for (Tile tile : tiles.values()) {
+            invalidate(tile);
+        }
+    }
+
+    /**
+     * Discards all tiles.
+     */
+    public void flush() {
+        tiles.clear();
+        scale = Double.NaN;
+    }
+
+    private void invalidate(Tile tile) {
+        tile.valid = false;
+    }
+
+    /**
+     * Returns the range of tile columns and rows which intersect the
+     * specified rectangle in view coordinates.
+     */
+    private Rectangle getTileRange(Rectangle r) {
+        int x = r.x + translation.x;
+        int y = r.y + translation.y;
+        int column = Math.floorDiv(x, TILE_SIZE);
+        int row = Math.floorDiv(y, TILE_SIZE);
+        return new Rectangle(column, row,
+                Math.floorDiv(x + Math.max(r.width, 1) - 1, TILE_SIZE) - column + 1,
+                Math.floorDiv(y + Math.max(r.height, 1) - 1, TILE_SIZE) - row + 1);
+    }
+
+    private static Long key(int column, int row) {
+        return ((long) column << 32) | (row & 0xffffffffL);
+    }
+
+    /**
+     * Returns the figures which have to be drawn into the specified tile in
+     * Z-order from back to front.
+     *
+     * @param snapshot the render snapshot of the drawing, or null if the
+     * drawing is a QuadTreeDrawing.
+     */
+    private List<Figure> findFigures(Drawing drawing, RenderSnapshot snapshot, Tile tile) {
+        Rectangle2D.Double r = new Rectangle2D.Double(
+                tile.column * TILE_SIZE / scale, tile.row * TILE_SIZE / scale,
+                TILE_SIZE / scale, TILE_SIZE / scale);
+        List<Figure> figures = (snapshot == null) ? drawing.findFigures(r) : snapshot.findIntersects(r);
+        if (!excludedFigures.isEmpty()) {
+            figures = new ArrayList<>(figures);
+            figures.removeAll(excludedFigures);
+        }
+        return figures;
+    }
+
+    private static BufferedImage render(Tile tile, double scale, List<Figure> figures, RenderingHints hints) {
+        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHints(hints);
+            g.clipRect(0, 0, TILE_SIZE, TILE_SIZE);
+            g.translate(-tile.column * TILE_SIZE, -tile.row * TILE_SIZE);
+            g.scale(scale, scale);
+            for (Figure f : figures) {
+                if (f.isVisible()) {
+                    // A figure which intersects several tiles must not be
+                    // drawn by several threads at the same time
+                    synchronized (f) {
+                        f.draw(g);
+                    }
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Installs the image rendered by a task into its tile.
+     */
+    private void install(RenderTask task) {
+        Tile tile = task.tile;
+        if (task.isCompletedNormally()) {
+            tile.image = task.getRawResult();
+        } else {
+            // A figure could not be drawn in the background; render the tile
+            // on the event dispatch thread.
+            tile.image = render(tile, task.scale, task.figures, task.hints);
+        }
+        tile.valid = true;
+    }
+
+    /**
+     * Discards the tiles which are more than one tile away from the visible
+     * rectangle.
+     */
+    private void discardTiles(Rectangle visibleRect) {
+        Rectangle range = getTileRange(visibleRect);
+        range.grow(1, 1);
+        for (Iterator<Tile> i = tiles.values().iterator(); i.hasNext();) {
+            Tile tile = i.next();
+            if (!range.contains(tile.column, tile.row)) {
+                i.remove();
+            }
+        }
+    }
+}
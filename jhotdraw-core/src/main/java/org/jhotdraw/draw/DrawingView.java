@@ -211,6 +211,14 @@ public interface DrawingView {
      */
     public void addToSelection(Collection<Figure> figures);
 
+    /**
+     * Replaces the current selection by the specified figures.
+     * <p>
+     * Unlike a sequence of {@code clearSelection} and {@code addToSelection}
+     * calls, this fires a single {@code FigureSelectionEvent}.
+     */
+    public void setSelectedFigures(Collection<Figure> figures);
+
     /**
      * Removes a figure from the selection.
      */
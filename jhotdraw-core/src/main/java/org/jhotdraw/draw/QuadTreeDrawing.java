@@ -16,12 +16,17 @@ import static org.jhotdraw.draw.AttributeKeys.*;
 import org.jhotdraw.draw.event.FigureEvent;
 import org.jhotdraw.geom.Geom;
 import org.jhotdraw.geom.QuadTree;
+import org.jhotdraw.geom.SpatialIndex;
 import org.jhotdraw.util.*;
 
 /**
  * An implementation of {@link Drawing} which uses a
- * {@link org.jhotdraw.geom.QuadTree} to provide a good responsiveness for
+ * {@link org.jhotdraw.geom.SpatialIndex} to provide a good responsiveness for
  * drawings which contain many figures.
+ * <p>
+ * By default a {@link org.jhotdraw.geom.QuadTree} is used. For large drawings
+ * which are loaded at once, an {@link org.jhotdraw.geom.RTree} can be
+ * specified in the constructor.
  *
  * @author Werner Randelshofer
  * @version $Id$
@@ -29,37 +34,189 @@ import org.jhotdraw.util.*;
 public class QuadTreeDrawing extends AbstractDrawing {
 
     private static final long serialVersionUID = 1L;
-    private QuadTree<Figure> quadTree = new QuadTree<>();
+    /**
+     * Holds the children together with their z-order values.
+     * <p>
+     * The z-order values are strictly increasing in the sequence of the
+     * {@code children} list, unless {@code needsRanking} is true.
+     */
+    private SpatialIndex<Figure> spatialIndex;
     private boolean needsSorting = false;
+    /**
+     * Set to true, when the z-order values in the spatial index have to be
+     * renumbered.
+     */
+    private boolean needsRanking = false;
+    /**
+     * A list which is reused for the results of queries on the spatial index.
+     * The list is taken from this field while it is in use, so that nested
+     * queries get a list of their own.
+     */
+    private transient ArrayList<Figure> scratchList;
+
+    /**
+     * Creates a new instance which uses a {@link QuadTree}.
+     */
+    public QuadTreeDrawing() {
+        this(new QuadTree<Figure>());
+    }
+
+    /**
+     * Creates a new instance which uses the specified spatial index.
+     *
+     * @param spatialIndex an empty spatial index.
+     */
+    public QuadTreeDrawing(SpatialIndex<Figure> spatialIndex) {
+        this.spatialIndex = spatialIndex;
+    }
 
     @Override
     public int indexOf(Figure figure) {
-        return children.indexOf(figure);
+        ensureRanked();
+        double zOrder = spatialIndex.getZOrder(figure);
+        if (Double.isNaN(zOrder)) {
+            return -1;
+        }
+        // The children are ordered by ascending z-order value
+        int low = 0;
+        int high = children.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            double midZOrder = spatialIndex.getZOrder(children.get(mid));
+            if (midZOrder < zOrder) {
+                low = mid + 1;
+            } else if (midZOrder > zOrder) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
     }
 
     @Override
     public void basicAdd(int index, Figure figure) {
         super.basicAdd(index, figure);
-        quadTree.add(figure, figure.getDrawingArea());
-        needsSorting = true;
+        spatialIndex.add(figure, figure.getDrawingArea(), rankAt(index));
+        checkLayerOrder(index);
+    }
+
+    /**
+     * Adds the figures to the spatial index in a single bulk operation.
+     */
+    @Override
+    public void basicAddAll(int index, Collection<? extends Figure> newFigures) {
+        ArrayList<Figure> figures = new ArrayList<>(newFigures);
+        int n = figures.size();
+        if (n == 0) {
+            return;
+        }
+        children.addAll(index, figures);
+        ArrayList<Rectangle2D.Double> bounds = new ArrayList<>(n);
+        double[] zOrders = new double[n];
+        double previous = (index > 0 && !needsRanking) ? spatialIndex.getZOrder(children.get(index - 1)) : Double.NaN;
+        if (index + n < children.size()) {
+            // We insert in the middle, renumber later.
+            needsRanking = true;
+        }
+        for (int i = 0; i < n; i++) {
+            Figure f = figures.get(i);
+            f.addFigureListener(eventHandler);
+            bounds.add(f.getDrawingArea());
+            zOrders[i] = Double.isNaN(previous) ? index + i : previous + 1 + i;
+        }
+        spatialIndex.addAll(figures, bounds, zOrders);
+        for (int i = index, end = index + n; i < end; i++) {
+            checkLayerOrder(i);
+        }
+    }
+
+    /**
+     * Adds the figures to the spatial index in a single bulk operation. Each
+     * run of adjacent figures gets z-order values which are evenly spaced
+     * between the z-order values of its neighbours.
+     */
+    @Override
+    public void basicAddAll(int[] indices, java.util.List<? extends Figure> newFigures) {
+        super.basicAddAll(indices, newFigures);
+        int n = newFigures.size();
+        if (n == 0) {
+            return;
+        }
+        ArrayList<Figure> figures = new ArrayList<>(newFigures);
+        ArrayList<Rectangle2D.Double> bounds = new ArrayList<>(n);
+        double[] zOrders = new double[n];
+        int size = children.size();
+        for (int i = 0; i < n;) {
+            int j = i;
+            while (j + 1 < n && indices[j + 1] == indices[j] + 1) {
+                j++;
+            }
+            int count = j - i + 1;
+            if (needsRanking) {
+                for (int k = i; k <= j; k++) {
+                    zOrders[k] = indices[k];
+                }
+            } else {
+                double previous = (indices[i] > 0) ? spatialIndex.getZOrder(children.get(indices[i] - 1)) : Double.NaN;
+                double next = (indices[j] < size - 1) ? spatialIndex.getZOrder(children.get(indices[j] + 1)) : Double.NaN;
+                if (Double.isNaN(previous)) {
+                    previous = Double.isNaN(next) ? -1d : next - count - 1d;
+                }
+                if (Double.isNaN(next)) {
+                    next = previous + count + 1d;
+                }
+                double step = (next - previous) / (count + 1);
+                for (int k = i; k <= j; k++) {
+                    zOrders[k] = previous + step * (k - i + 1);
+                    if (zOrders[k] <= previous || zOrders[k] >= next) {
+                        needsRanking = true;
+                    }
+                }
+            }
+            i = j + 1;
+        }
+        for (int i = 0; i < n; i++) {
+            bounds.add(figures.get(i).getDrawingArea());
+        }
+        spatialIndex.addAll(figures, bounds, zOrders);
+        for (int index : indices) {
+            checkLayerOrder(index);
+        }
     }
 
     @Override
     public Figure basicRemoveChild(int index) {
         Figure figure = getChild(index);
-        quadTree.remove(figure);
-        needsSorting = true;
+        spatialIndex.remove(figure);
         super.basicRemoveChild(index);
         return figure;
     }
 
+    /**
+     * Removing children keeps the order of the z-order values of the
+     * remaining children; so they need not be renumbered.
+     */
+    @Override
+    protected int[] basicRemoveChildren(Collection<? extends Figure> figures, java.util.List<Figure> removed) {
+        int[] indices = super.basicRemoveChildren(figures, removed);
+        for (Figure f : removed) {
+            spatialIndex.remove(f);
+        }
+        return indices;
+    }
+
     @Override
     public void draw(Graphics2D g) {
         Rectangle2D clipBounds = g.getClipBounds();
         if (clipBounds != null) {
-            Collection<Figure> c = quadTree.findIntersects(clipBounds);
-            Collection<Figure> toDraw = sort(c);
-            draw(g, toDraw);
+            ArrayList<Figure> c = acquireScratchList();
+            try {
+                spatialIndex.findIntersectsInZOrder(new Rectangle2D.Double(clipBounds.getX(), clipBounds.getY(), clipBounds.getWidth(), clipBounds.getHeight()), c);
+                draw(g, c);
+            } finally {
+                releaseScratchList(c);
+            }
         } else {
             draw(g, children);
         }
@@ -72,11 +229,12 @@ public class QuadTreeDrawing extends AbstractDrawing {
     public java.util.List<Figure> sort(Collection<? extends Figure> c) {
         ensureSorted();
         ArrayList<Figure> sorted = new ArrayList<>(c.size());
-        for (Figure f : children) {
-            if (c.contains(f)) {
+        for (Figure f : c) {
+            if (spatialIndex.contains(f)) {
                 sorted.add(f);
             }
         }
+        Collections.sort(sorted, (f1, f2) -> Double.compare(spatialIndex.getZOrder(f1), spatialIndex.getZOrder(f2)));
         return sorted;
     }
 
@@ -101,7 +259,7 @@ public class QuadTreeDrawing extends AbstractDrawing {
     }
 
     public java.util.List<Figure> getChildren(Rectangle2D.Double bounds) {
-        return new LinkedList<>(quadTree.findInside(bounds));
+        return new LinkedList<>(spatialIndex.findInside(bounds));
     }
 
     @Override
@@ -111,13 +269,18 @@ public class QuadTreeDrawing extends AbstractDrawing {
 
     @Override
     public Figure findFigureInside(Point2D.Double p) {
-        Collection<Figure> c = quadTree.findContains(p);
-        for (Figure f : getFiguresFrontToBack()) {
-            if (c.contains(f) && f.contains(p)) {
-                return f.findFigureInside(p);
+        ArrayList<Figure> c = findFiguresBackToFront(p);
+        try {
+            for (int i = c.size() - 1; i >= 0; i--) {
+                Figure f = c.get(i);
+                if (f.contains(p)) {
+                    return f.findFigureInside(p);
+                }
             }
+            return null;
+        } finally {
+            releaseScratchList(c);
         }
-        return null;
     }
 
     /**
@@ -130,105 +293,136 @@ public class QuadTreeDrawing extends AbstractDrawing {
         return new ReversedList<>(children);
     }
 
+    /**
+     * Returns the children whose drawing area contains the specified point
+     * in Z-order back to front.
+     * <p>
+     * The returned list must be passed to {@code releaseScratchList} when it
+     * is no longer needed.
+     */
+    private ArrayList<Figure> findFiguresBackToFront(Point2D.Double p) {
+        ArrayList<Figure> c = acquireScratchList();
+        spatialIndex.findContainsInZOrder(p, c);
+        return c;
+    }
+
+    private ArrayList<Figure> acquireScratchList() {
+        ensureSorted();
+        ArrayList<Figure> c = scratchList;
+        scratchList = null;
+        return (c == null) ? new ArrayList<Figure>() : c;
+    }
+
+    private void releaseScratchList(ArrayList<Figure> c) {
+        c.clear();
+        scratchList = c;
+    }
+
     @Override
     public Figure findFigure(Point2D.Double p) {
-        Collection<Figure> c = quadTree.findContains(p);
-        switch (c.size()) {
-            case 0:
-                return null;
-            case 1:
-                Figure f = c.iterator().next();
-                return (f.contains(p)) ? f : null;
-            default: 
-                for (Figure f2 : getFiguresFrontToBack()) {
-                    if (c.contains(f2) && f2.contains(p)) {
-                        return f2;
-                    }
+        ArrayList<Figure> c = findFiguresBackToFront(p);
+        try {
+            for (int i = c.size() - 1; i >= 0; i--) {
+                Figure f = c.get(i);
+                if (f.contains(p)) {
+                    return f;
                 }
-                return null;
+            }
+            return null;
+        } finally {
+            releaseScratchList(c);
         }
     }
 
     @Override
     public Figure findFigureExcept(Point2D.Double p, Figure ignore) {
-        Collection<Figure> c = quadTree.findContains(p);
-        switch (c.size()) {
-            case 0:
-                return null;
-            case 1: 
-                Figure f = c.iterator().next();
-                return (f == ignore || !f.contains(p)) ? null : f;
-            default: 
-                for (Figure f2 : getFiguresFrontToBack()) {
-                    if (f2 != ignore && f2.contains(p)) {
-                        return f2;
-                    }
+        ArrayList<Figure> c = findFiguresBackToFront(p);
+        try {
+            for (int i = c.size() - 1; i >= 0; i--) {
+                Figure f = c.get(i);
+                if (f != ignore && f.contains(p)) {
+                    return f;
                 }
-                return null;
+            }
+            return null;
+        } finally {
+            releaseScratchList(c);
         }
     }
 
     @Override
     public Figure findFigureExcept(Point2D.Double p, Collection<? extends Figure> ignore) {
-        Collection<Figure> c = quadTree.findContains(p);
-        switch (c.size()) {
-            case 0:
-                return null;
-            case 1:
-                Figure f = c.iterator().next();
-                return (!ignore.contains(f) || !f.contains(p)) ? null : f;
-            default: 
-                for (Figure f2 : getFiguresFrontToBack()) {
-                    if (!ignore.contains(f2) && f2.contains(p)) {
-                        return f2;
-                    }
+        ArrayList<Figure> c = findFiguresBackToFront(p);
+        try {
+            for (int i = c.size() - 1; i >= 0; i--) {
+                Figure f = c.get(i);
+                if (!ignore.contains(f) && f.contains(p)) {
+                    return f;
                 }
-                return null;
+            }
+            return null;
+        } finally {
+            releaseScratchList(c);
         }
     }
 
     @Override
     public Figure findFigureBehind(Point2D.Double p, Figure figure) {
-        boolean isBehind = false;
-        for (Figure f : getFiguresFrontToBack()) {
-            if (isBehind) {
-                if (f.isVisible() && f.contains(p)) {
-                    return f;
-                }
-            } else {
-                isBehind = figure == f;
-            }
+        double zOrder = spatialIndex.getZOrder(figure);
+        if (Double.isNaN(zOrder)) {
+            return null;
         }
-        return null;
+        return findFigureBehind(p, zOrder);
     }
 
     @Override
     public Figure findFigureBehind(Point2D.Double p, Collection<? extends Figure> children) {
-        int inFrontOf = children.size();
-        for (Figure f : getFiguresFrontToBack()) {
-            if (inFrontOf == 0) {
-                if (f.isVisible() && f.contains(p)) {
+        double zOrder = Double.POSITIVE_INFINITY;
+        for (Figure f : children) {
+            double fZOrder = spatialIndex.getZOrder(f);
+            if (Double.isNaN(fZOrder)) {
+                return null;
+            }
+            zOrder = Math.min(zOrder, fZOrder);
+        }
+        return findFigureBehind(p, zOrder);
+    }
+
+    /**
+     * Returns the front most visible figure which contains the specified
+     * point and has a z-order value below the specified value.
+     */
+    private Figure findFigureBehind(Point2D.Double p, double zOrder) {
+        ArrayList<Figure> c = findFiguresBackToFront(p);
+        try {
+            for (int i = c.size() - 1; i >= 0; i--) {
+                Figure f = c.get(i);
+                if (spatialIndex.getZOrder(f) < zOrder && f.isVisible() && f.contains(p)) {
                     return f;
                 }
-            } else {
-                if (children.contains(f)) {
-                    inFrontOf--;
-                }
             }
+            return null;
+        } finally {
+            releaseScratchList(c);
         }
-        return null;
     }
 
     @Override
     public java.util.List<Figure> findFigures(Rectangle2D.Double r) {
-        LinkedList<Figure> c = new LinkedList<>(quadTree.findIntersects(r));
-        switch (c.size()) {
-            case 0:
-            // fall through
-            case 1:
-                return c;
-            default:
-                return sort(c);
+        ensureSorted();
+        return spatialIndex.findIntersectsInZOrder(r);
+    }
+
+    @Override
+    public void findFigures(Rectangle2D.Double r, java.util.function.Consumer<? super Figure> visitor) {
+        ArrayList<Figure> c = acquireScratchList();
+        try {
+            spatialIndex.findIntersectsInZOrder(r, c);
+            for (int i = 0, n = c.size(); i < n; i++) {
+                visitor.accept(c.get(i));
+            }
+        } finally {
+            releaseScratchList(c);
         }
     }
 
@@ -252,7 +446,8 @@ public class QuadTreeDrawing extends AbstractDrawing {
     public void bringToFront(Figure figure) {
         if (children.remove(figure)) {
             children.add(figure);
-            needsSorting = true;
+            spatialIndex.setZOrder(figure, rankAt(children.size() - 1));
+            checkLayerOrder(children.size() - 1);
             fireAreaInvalidated(figure.getDrawingArea());
         }
     }
@@ -261,14 +456,54 @@ public class QuadTreeDrawing extends AbstractDrawing {
     public void sendToBack(Figure figure) {
         if (children.remove(figure)) {
             children.add(0, figure);
-            needsSorting = true;
+            spatialIndex.setZOrder(figure, rankAt(0));
+            checkLayerOrder(0);
             fireAreaInvalidated(figure.getDrawingArea());
         }
     }
 
     @Override
     public boolean contains(Figure f) {
-        return children.contains(f);
+        return spatialIndex.contains(f);
+    }
+
+    /**
+     * Computes a z-order value for the child at the specified index, which
+     * lies between the z-order values of its neighbours.
+     * <p>
+     * If there is no room left between the neighbours, the z-order values of
+     * all children will be renumbered lazily by {@link #ensureRanked}.
+     */
+    private double rankAt(int index) {
+        if (needsRanking) {
+            return index;
+        }
+        int size = children.size();
+        double previous = (index > 0) ? spatialIndex.getZOrder(children.get(index - 1)) : Double.NaN;
+        double next = (index < size - 1) ? spatialIndex.getZOrder(children.get(index + 1)) : Double.NaN;
+        if (Double.isNaN(previous)) {
+            return Double.isNaN(next) ? 0d : next - 1d;
+        } else if (Double.isNaN(next)) {
+            return previous + 1d;
+        } else {
+            double rank = (previous + next) / 2d;
+            if (rank <= previous || rank >= next) {
+                needsRanking = true;
+            }
+            return rank;
+        }
+    }
+
+    /**
+     * Invalidates the sort order, if the layer of the child at the specified
+     * index does not fit between the layers of its neighbours.
+     */
+    private void checkLayerOrder(int index) {
+        int layer = children.get(index).getLayer();
+        if (index > 0 && children.get(index - 1).getLayer() > layer
+                || index < children.size() - 1 && children.get(index + 1).getLayer() < layer) {
+            needsSorting = true;
+        }
     }
 
     /**
@@ -278,6 +513,21 @@ public class QuadTreeDrawing extends AbstractDrawing {
         if (needsSorting) {
             Collections.sort(children, FigureLayerComparator.INSTANCE);
             needsSorting = false;
+            needsRanking = true;
+        }
+        ensureRanked();
+    }
+
+    /**
+     * Ensures that the z-order values in the spatial index match the sequence
+     * of the children.
+     */
+    private void ensureRanked() {
+        if (needsRanking) {
+            for (int i = 0, n = children.size(); i < n; i++) {
+                spatialIndex.setZOrder(children.get(i), i);
+            }
+            needsRanking = false;
         }
     }
 
@@ -289,10 +539,17 @@ public class QuadTreeDrawing extends AbstractDrawing {
     @Override
     public QuadTreeDrawing clone() {
         QuadTreeDrawing that = (QuadTreeDrawing) super.clone();
-        that.quadTree = new QuadTree<>();
-        for (Figure f : getChildren()) {
-            quadTree.add(f, f.getDrawingArea());
+        that.spatialIndex = spatialIndex.createEmpty();
+        int n = that.children.size();
+        ArrayList<Rectangle2D.Double> bounds = new ArrayList<>(n);
+        double[] zOrders = new double[n];
+        for (int i = 0; i < n; i++) {
+            bounds.add(that.children.get(i).getDrawingArea());
+            zOrders[i] = i;
         }
+        that.spatialIndex.addAll(that.children, bounds, zOrders);
+        that.needsRanking = false;
+        that.scratchList = null;
         return that;
     }
 
@@ -310,11 +567,20 @@ public class QuadTreeDrawing extends AbstractDrawing {
 
         @Override
         public void figureChanged(FigureEvent e) {
+            childChanged(e.getFigure());
             if (!isChanging()) {
-                quadTree.remove(e.getFigure());
-                quadTree.add(e.getFigure(), e.getFigure().getDrawingArea());
-                needsSorting = true;
-                invalidate();
+                Figure f = e.getFigure();
+                double zOrder = spatialIndex.getZOrder(f);
+                spatialIndex.remove(f);
+                spatialIndex.add(f, f.getDrawingArea(), zOrder);
+                // The figure may have changed its layer
+                int index = indexOf(f);
+                if (index != -1) {
+                    checkLayerOrder(index);
+                }
+                if (!updateCachedAreas(f)) {
+                    invalidate();
+                }
                 fireAreaInvalidated(e);
             }
         }
@@ -0,0 +1,425 @@
+/*
+ * @(#)RenderSnapshot.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.EventQueue;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import org.jhotdraw.draw.figure.CompositeFigure;
+import org.jhotdraw.draw.figure.ConnectionFigure;
+import org.jhotdraw.draw.figure.Figure;
+
+/**
+ * An immutable snapshot of the figures of a drawing, which is used for
+ * rendering the drawing.
+ * <p>
+ * The snapshot holds the figures of the drawing in Z-order from back to front,
+ * and for each figure the drawing area and the visibility which the figure had
+ * when the snapshot was taken. Figures are culled with this render state, so
+ * that the list of figures of a snapshot does not change when the drawing
+ * changes.
+ * <p>
+ * The figures themselves are not copied. They must only be drawn by the
+ * thread which changes them, normally the event dispatch thread, or while
+ * the drawing is not changed, for example while that thread waits for the
+ * drawing to complete. Figures build caches lazily when they are drawn, so a
+ * figure must not be drawn by several threads at the same time.
+ * <p>
+ * To draw figures on another thread while the drawing is being changed, a
+ * snapshot of copies of the figures can be created with {@link #copyOf(Drawing)}
+ * or {@link #copyOf(List)}. This is an explicit opt-in, because it holds a
+ * copy of every figure in memory until the snapshot is discarded.
+ * <p>
+ * The figures are stored in chunks of {@link #CHUNK_SIZE} figures. A new
+ * snapshot of a drawing in which only some figures have changed shares the
+ * chunks of the unchanged figures with the previous snapshot. The bounds of
+ * each chunk are stored, so that chunks which do not intersect the clip
+ * bounds are skipped when drawing.
+ * <p>
+ * Snapshots are created by {@link Drawing#getRenderSnapshot}.
+ *
+ * @version $Id$
+ */
+public final class RenderSnapshot {
+
+    /**
+     * The number of figures in a chunk.
+     */
+    public static final int CHUNK_SIZE = 64;
+    private static final int CHUNK_SHIFT = 6;
+
+    /**
+     * The render state of a figure.
+     */
+    private static final class Entry {
+
+        final Figure figure;
+        final double x, y, width, height;
+        final boolean visible;
+
+        Entry(Figure figure) {
+            Rectangle2D.Double r = figure.getDrawingArea();
+            this.figure = figure;
+            this.x = r.x;
+            this.y = r.y;
+            this.width = r.width;
+            this.height = r.height;
+            this.visible = figure.isVisible();
+        }
+
+        boolean intersects(Rectangle2D r) {
+            return r.intersects(x, y, width, height);
+        }
+    }
+
+    private final Entry[][] chunks;
+    /**
+     * The bounds of the chunks. Each chunk is stored as minX, minY, maxX,
+     * maxY.
+     */
+    private final double[] chunkBounds;
+    private final int size;
+    private final List<Figure> figures = new FigureList();
+
+    private RenderSnapshot(Entry[][] chunks, double[] chunkBounds, int size) {
+        this.chunks = chunks;
+        this.chunkBounds = chunkBounds;
+        this.size = size;
+    }
+
+    /**
+     * Creates a snapshot of the specified figures.
+     *
+     * @param figures The figures in Z-order from back to front.
+     */
+    public static RenderSnapshot create(List<Figure> figures) {
+        int n = figures.size();
+        int chunkCount = (n + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+        Entry[][] chunks = new Entry[chunkCount][];
+        double[] chunkBounds = new double[chunkCount * 4];
+        for (int c = 0; c < chunkCount; c++) {
+            Entry[] chunk = new Entry[Math.min(CHUNK_SIZE, n - (c << CHUNK_SHIFT))];
+            for (int i = 0; i < chunk.length; i++) {
+                chunk[i] = new Entry(figures.get((c << CHUNK_SHIFT) + i));
+            }
+            chunks[c] = chunk;
+            computeChunkBounds(chunk, chunkBounds, c);
+        }
+        return new RenderSnapshot(chunks, chunkBounds, n);
+    }
+
+    /**
+     * Creates a snapshot of copies of the figures of the specified drawing.
+     * <p>
+     * See {@link #copyOf(List)}.
+     */
+    public static RenderSnapshot copyOf(final Drawing drawing) {
+        return onEventDispatchThread(new Callable<RenderSnapshot>() {
+            @Override
+            public RenderSnapshot call() {
+                return copy(drawing.getRenderSnapshot().getFigures());
+            }
+        });
+    }
+
+    /**
+     * Creates a snapshot of copies of the specified figures.
+     * <p>
+     * The figures are copied on the event dispatch thread, which is the thread
+     * that changes them. If this method is called by another thread, it waits
+     * until the event dispatch thread has copied them. The copies are only
+     * referenced by the returned snapshot, so they can be drawn by another
+     * thread while the figures are being changed.
+     * <p>
+     * The copies of connection figures are connected to copies of their start
+     * and end figures. Start and end figures which are not in the list are
+     * copied as well, but are not part of the snapshot.
+     * <p>
+     * The copies take about as much memory as the figures themselves. This
+     * method must not be called by a thread for which the event dispatch
+     * thread waits, because the two threads would then wait for each other.
+     *
+     * @param figures The figures in Z-order from back to front.
+     */
+    public static RenderSnapshot copyOf(final List<Figure> figures) {
+        return onEventDispatchThread(new Callable<RenderSnapshot>() {
+            @Override
+            public RenderSnapshot call() {
+                return copy(figures);
+            }
+        });
+    }
+
+    private static RenderSnapshot onEventDispatchThread(Callable<RenderSnapshot> c) {
+        FutureTask<RenderSnapshot> task = new FutureTask<>(c);
+        if (EventQueue.isDispatchThread()) {
+            task.run();
+        } else {
+            EventQueue.invokeLater(task);
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.cancel(false);
+            throw new CancellationException("Interrupted while waiting for the figures to be copied");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new InternalError(cause);
+        }
+    }
+
+    private static RenderSnapshot copy(List<Figure> figures) {
+        HashMap<Figure, Figure> originalToCopy = new HashMap<>();
+        ArrayList<Figure> connections = new ArrayList<>();
+        ArrayList<Figure> copies = new ArrayList<>(figures.size());
+        for (Figure f : figures) {
+            Figure copy = f.clone();
+            copies.add(copy);
+            map(f, copy, originalToCopy, connections);
+        }
+        // The copy of a connection listens to the start and end figures of the
+        // original, until it is remapped to copies of them
+        for (int i = 0; i < connections.size(); i++) {
+            ConnectionFigure c = (ConnectionFigure) connections.get(i);
+            for (Figure end : new Figure[]{c.getStartFigure(), c.getEndFigure()}) {
+                if (end != null && !originalToCopy.containsKey(end)) {
+                    map(end, end.clone(), originalToCopy, connections);
+                }
+            }
+        }
+        for (Figure c : connections) {
+            c.remap(originalToCopy, false);
+        }
+        return create(copies);
+    }
+
+    /**
+     * Maps a figure and its descendants to their copies, and collects the
+     * copies which are connection figures.
+     */
+    private static void map(Figure original, Figure copy, Map<Figure, Figure> originalToCopy,
+            List<Figure> connections) {
+        originalToCopy.put(original, copy);
+        if (copy instanceof ConnectionFigure) {
+            connections.add(copy);
+        }
+        if (original instanceof CompositeFigure && copy instanceof CompositeFigure) {
+            List<Figure> originalChildren = ((CompositeFigure) original).getChildren();
+            List<Figure> copiedChildren = ((CompositeFigure) copy).getChildren();
+            if (originalChildren.size() == copiedChildren.size()) {
+                for (int i = 0; i < originalChildren.size(); i++) {
+                    map(originalChildren.get(i), copiedChildren.get(i), originalToCopy, connections);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot in which the render state of the figures at the
+     * specified indices has been taken anew. The chunks of the other figures
+     * are shared with this snapshot.
+     *
+     * @param indices The indices of the figures which have changed.
+     */
+    public RenderSnapshot update(int[] indices) {
+        if (indices.length == 0) {
+            return this;
+        }
+        Entry[][] newChunks = chunks.clone();
+        double[] newChunkBounds = chunkBounds.clone();
+        boolean[] isCopied = new boolean[chunks.length];
+        for (int index : indices) {
+            int c = index >>> CHUNK_SHIFT;
+            if (!isCopied[c]) {
+                newChunks[c] = newChunks[c].clone();
+                isCopied[c] = true;
+            }
+            Entry[] chunk = newChunks[c];
+            int i = index & (CHUNK_SIZE - 1);
+            chunk[i] = new Entry(chunk[i].figure);
+        }
+        for (int c = 0; c < isCopied.length; c++) {
+            if (isCopied[c]) {
+                computeChunkBounds(newChunks[c], newChunkBounds, c);
+            }
+        }
+        return new RenderSnapshot(newChunks, newChunkBounds, size);
+    }
+
+    private static void computeChunkBounds(Entry[] chunk, double[] chunkBounds, int c) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (Entry e : chunk) {
+            if (e.visible) {
+                minX = Math.min(minX, e.x);
+                minY = Math.min(minY, e.y);
+                maxX = Math.max(maxX, e.x + e.width);
+                maxY = Math.max(maxY, e.y + e.height);
+            }
+        }
+        chunkBounds[c * 4] = minX;
+        chunkBounds[c * 4 + 1] = minY;
+        chunkBounds[c * 4 + 2] = maxX;
+        chunkBounds[c * 4 + 3] = maxY;
+    }
+
+    private Entry getEntry(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return chunks[index >>> CHUNK_SHIFT][index & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * Returns the number of figures.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the figure at the specified index.
+     */
+    public Figure getFigure(int index) {
+        return getEntry(index).figure;
+    }
+
+    /**
+     * Returns true, if the figure at the specified index was visible when the
+     * snapshot was taken.
+     */
+    public boolean isVisible(int index) {
+        return getEntry(index).visible;
+    }
+
+    /**
+     * Returns the drawing area which the figure at the specified index had
+     * when the snapshot was taken.
+     */
+    public Rectangle2D.Double getDrawingArea(int index) {
+        Entry e = getEntry(index);
+        return new Rectangle2D.Double(e.x, e.y, e.width, e.height);
+    }
+
+    /**
+     * Returns the union of the drawing areas of the visible figures, or null
+     * if no figure is visible.
+     */
+    public Rectangle2D.Double getDrawingArea() {
+        Rectangle2D.Double area = null;
+        for (int c = 0; c < chunks.length; c++) {
+            if (chunkBounds[c * 4] <= chunkBounds[c * 4 + 2]) {
+                Rectangle2D.Double r = new Rectangle2D.Double(
+                        chunkBounds[c * 4], chunkBounds[c * 4 + 1],
+                        chunkBounds[c * 4 + 2] - chunkBounds[c * 4],
+                        chunkBounds[c * 4 + 3] - chunkBounds[c * 4 + 1]);
+                if (area == null) {
+                    area = r;
+                } else {
+                    area.add(r);
+                }
+            }
+        }
+        return area;
+    }
+
+    /**
+     * Returns an unmodifiable list of all figures in Z-order from back to
+     * front.
+     */
+    public List<Figure> getFigures() {
+        return figures;
+    }
+
+    /**
+     * Returns the figures which were visible when the snapshot was taken, in
+     * Z-order from back to front.
+     */
+    public List<Figure> getVisibleFigures() {
+        ArrayList<Figure> found = new ArrayList<>(size);
+        for (Entry[] chunk : chunks) {
+            for (Entry e : chunk) {
+                if (e.visible) {
+                    found.add(e.figure);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the visible figures whose drawing area intersects the
+     * specified rectangle, in Z-order from back to front.
+     */
+    public List<Figure> findIntersects(Rectangle2D r) {
+        ArrayList<Figure> found = new ArrayList<>();
+        for (int c = 0; c < chunks.length; c++) {
+            if (chunkIntersects(c, r)) {
+                for (Entry e : chunks[c]) {
+                    if (e.visible && e.intersects(r)) {
+                        found.add(e.figure);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private boolean chunkIntersects(int c, Rectangle2D r) {
+        return chunkBounds[c * 4] <= chunkBounds[c * 4 + 2]
+                && r.intersects(chunkBounds[c * 4], chunkBounds[c * 4 + 1],
+                        chunkBounds[c * 4 + 2] - chunkBounds[c * 4],
+                        chunkBounds[c * 4 + 3] - chunkBounds[c * 4 + 1]);
+    }
+
+    /**
+     * Draws the visible figures which intersect the clip bounds of the
+     * graphics, in Z-order from back to front.
+     */
+    public void draw(Graphics2D g) {
+        Rectangle2D clipBounds = g.getClipBounds();
+        for (int c = 0; c < chunks.length; c++) {
+            if (clipBounds == null || chunkIntersects(c, clipBounds)) {
+                for (Entry e : chunks[c]) {
+                    if (e.visible && (clipBounds == null || e.intersects(clipBounds))) {
+                        e.figure.draw(g);
+                    }
+                }
+            }
+        }
+    }
+
+    private class FigureList extends AbstractList<Figure> implements RandomAccess {
+
+        @Override
+        public Figure get(int index) {
+            return getFigure(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
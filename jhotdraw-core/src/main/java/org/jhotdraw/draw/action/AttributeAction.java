@@ -12,6 +12,8 @@ import java.util.*;
 import javax.swing.*;
 import javax.swing.undo.*;
 import org.jhotdraw.draw.*;
+import org.jhotdraw.undo.SizedEdit;
+import org.jhotdraw.undo.UndoRedoManager;
 import org.jhotdraw.util.ActionUtil;
 import org.jhotdraw.util.ResourceBundleUtil;
 
@@ -90,57 +92,79 @@ public class AttributeAction extends AbstractSelectedAction {
         for (Map.Entry<AttributeKey<?>, Object> entry : a.entrySet()) {
             getEditor().setDefaultAttribute((AttributeKey<Object>) entry.getKey(), entry.getValue());
         }
-        final ArrayList<Figure> selectedFigures = new ArrayList<>(figures);
-        final ArrayList<Object> restoreData = new ArrayList<>(selectedFigures.size());
-        for (Figure figure : selectedFigures) {
-            restoreData.add(figure.getAttributesRestoreData());
+        Figure[] selectedFigures = figures.toArray(new Figure[figures.size()]);
+        Object[] restoreData = new Object[selectedFigures.length];
+        for (int i = 0; i < selectedFigures.length; i++) {
+            Figure figure = selectedFigures[i];
+            restoreData[i] = figure.getAttributesRestoreData();
             figure.willChange();
             for (Map.Entry<AttributeKey<?>, Object> entry : a.entrySet()) {
                 figure.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
             }
             figure.changed();
         }
-        UndoableEdit edit = new AbstractUndoableEdit() {
-            private static final long serialVersionUID = 1L;
-
-            @Override
-            public String getPresentationName() {
-                String name = (String) getValue(ActionUtil.UNDO_PRESENTATION_NAME_KEY);
-                if (name == null) {
-                    name = (String) getValue(AbstractAction.NAME);
-                }
-                if (name == null) {
-                    ResourceBundleUtil labels = ResourceBundleUtil.getBundle("org.jhotdraw.draw.Labels");
-                    name = labels.getString("attribute.text");
-                }
-                return name;
+        getDrawing().fireUndoableEditHappened(new AttributeEdit(a, selectedFigures, restoreData));
+    }
+
+    /**
+     * Undoes and redoes the application of attributes. The figures and their
+     * attribute restore data are kept in arrays. The restore data of
+     * attributed figures is their immutable attribute style, which is shared
+     * with other figures, so that the edit holds little memory of its own.
+     */
+    private class AttributeEdit extends AbstractUndoableEdit implements SizedEdit {
+
+        private static final long serialVersionUID = 1L;
+        private final Map<AttributeKey<?>, Object> attributes;
+        private final Figure[] figures;
+        private final Object[] restoreData;
+
+        public AttributeEdit(Map<AttributeKey<?>, Object> attributes, Figure[] figures, Object[] restoreData) {
+            this.attributes = attributes;
+            this.figures = figures;
+            this.restoreData = restoreData;
+        }
+
+        @Override
+        public String getPresentationName() {
+            String name = (String) getValue(ActionUtil.UNDO_PRESENTATION_NAME_KEY);
+            if (name == null) {
+                name = (String) getValue(AbstractAction.NAME);
+            }
+            if (name == null) {
+                ResourceBundleUtil labels = ResourceBundleUtil.getBundle("org.jhotdraw.draw.Labels");
+                name = labels.getString("attribute.text");
             }
+            return name;
+        }
 
-            @Override
-            public void undo() {
-                super.undo();
-                Iterator<Object> iRestore = restoreData.iterator();
-                for (Figure figure : selectedFigures) {
-                    figure.willChange();
-                    figure.restoreAttributesTo(iRestore.next());
-                    figure.changed();
-                }
+        @Override
+        public void undo() {
+            super.undo();
+            for (int i = 0; i < figures.length; i++) {
+                figures[i].willChange();
+                figures[i].restoreAttributesTo(restoreData[i]);
+                figures[i].changed();
             }
+        }
 
-            @Override
-            public void redo() {
-                super.redo();
-                for (Figure figure : selectedFigures) {
-                    //restoreData.add(figure.getAttributesRestoreData());
-                    figure.willChange();
-                    for (Map.Entry<AttributeKey<?>, Object> entry : a.entrySet()) {
-                        figure.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
-                    }
-                    figure.changed();
+        @Override
+        @SuppressWarnings("unchecked")
+        public void redo() {
+            super.redo();
+            for (Figure figure : figures) {
+                figure.willChange();
+                for (Map.Entry<AttributeKey<?>, Object> entry : attributes.entrySet()) {
+                    figure.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
                 }
+                figure.changed();
             }
-        };
-        getDrawing().fireUndoableEditHappened(edit);
+        }
+
+        @Override
+        public long getEstimatedSize() {
+            return UndoRedoManager.DEFAULT_EDIT_SIZE + 8L * (figures.length + restoreData.length);
+        }
     }
 
     @Override
@@ -15,6 +15,9 @@ import org.jhotdraw.draw.*;
 
 /**
  * An {@code EventObject} sent to {@link CompositeFigureListener}s.
+ * <p>
+ * An event is either about a single child, or about several children which
+ * have been added or removed at once.
  *
  * <hr>
  * <b>Design Patterns</b>
@@ -35,6 +38,8 @@ public class CompositeFigureEvent extends EventObject {
     private Rectangle2D.Double invalidatedArea;
     private Figure child;
     private int index;
+    private List<Figure> children;
+    private int[] indices;
 
     /**
      * Constructs an event for the provided CompositeFigure.
@@ -47,7 +52,27 @@ public class CompositeFigureEvent extends EventObject {
         super(source);
         this.child = child;
         this.invalidatedArea = invalidatedArea;
-        this.index = 0;
+        this.index = zIndex;
+    }
+
+    /**
+     * Constructs an event about several children of the provided
+     * CompositeFigure.
+     *
+     * @param source The composite figure.
+     * @param children The added or removed children in ascending z-order.
+     * @param indices The z-indices of the children. These are the indices
+     * after the children have been added, or the indices before the children
+     * have been removed.
+     * @param invalidatedArea The union of the drawing areas of the children.
+     */
+    public CompositeFigureEvent(CompositeFigure source, List<Figure> children, int[] indices, Rectangle2D.Double invalidatedArea) {
+        super(source);
+        this.child = children.isEmpty() ? null : children.get(0);
+        this.index = indices.length == 0 ? 0 : indices[0];
+        this.children = Collections.unmodifiableList(children);
+        this.indices = indices;
+        this.invalidatedArea = invalidatedArea;
     }
 
     /**
@@ -58,12 +83,27 @@ public class CompositeFigureEvent extends EventObject {
     }
 
     /**
-     * Gets the changed child figure.
+     * Gets the changed child figure. If the event is about several children,
+     * returns the first one.
      */
     public Figure getChildFigure() {
         return child;
     }
 
+    /**
+     * Gets the changed child figures in ascending z-order.
+     */
+    public List<Figure> getChildFigures() {
+        return (children == null) ? Collections.singletonList(child) : children;
+    }
+
+    /**
+     * Returns the number of changed child figures.
+     */
+    public int getChildCount() {
+        return (children == null) ? 1 : children.size();
+    }
+
     /**
      * Gets the bounds of the invalidated area on the drawing.
      */
@@ -72,9 +112,17 @@ public class CompositeFigureEvent extends EventObject {
     }
 
     /**
-     * Returns the z-index of the child figure.
+     * Returns the z-index of the child figure. If the event is about several
+     * children, returns the z-index of the first one.
      */
     public int getIndex() {
         return index;
     }
+
+    /**
+     * Returns the z-index of the i-th changed child figure.
+     */
+    public int getIndex(int i) {
+        return (indices == null) ? index : indices[i];
+    }
 }
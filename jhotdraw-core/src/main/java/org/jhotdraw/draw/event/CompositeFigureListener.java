@@ -8,6 +8,7 @@
 package org.jhotdraw.draw.event;
 
 import java.util.*;
+import org.jhotdraw.draw.figure.Figure;
 
 /**
  * Interface implemented by observers of {@link org.jhotdraw.draw.CompositeFigure}.
@@ -36,4 +37,35 @@ public interface CompositeFigureListener extends EventListener {
      * Sent when a figure was removed.
      */
     public void figureRemoved(CompositeFigureEvent e);
+
+    /**
+     * Sent when several figures were added at once.
+     * <p>
+     * The default implementation calls {@link #figureAdded} for each figure,
+     * as if the figures had been added one after the other in ascending
+     * z-order. Listeners which can handle all figures at once should
+     * override this method.
+     */
+    default void figuresAdded(CompositeFigureEvent e) {
+        for (int i = 0, n = e.getChildCount(); i < n; i++) {
+            Figure child = e.getChildFigures().get(i);
+            figureAdded(new CompositeFigureEvent(e.getCompositeFigure(), child, child.getDrawingArea(), e.getIndex(i)));
+        }
+    }
+
+    /**
+     * Sent when several figures were removed at once.
+     * <p>
+     * The default implementation calls {@link #figureRemoved} for each
+     * figure, as if the figures had been removed one after the other in
+     * ascending z-order. Listeners which can handle all figures at once
+     * should override this method.
+     */
+    default void figuresRemoved(CompositeFigureEvent e) {
+        for (int i = 0, n = e.getChildCount(); i < n; i++) {
+            Figure child = e.getChildFigures().get(i);
+            // The preceding figures have already been removed
+            figureRemoved(new CompositeFigureEvent(e.getCompositeFigure(), child, child.getDrawingArea(), e.getIndex(i) - i));
+        }
+    }
 }
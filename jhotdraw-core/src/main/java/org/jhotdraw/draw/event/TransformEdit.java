@@ -12,6 +12,8 @@ import java.awt.geom.*;
 import java.util.*;
 import javax.swing.undo.*;
 import org.jhotdraw.draw.*;
+import org.jhotdraw.undo.SizedEdit;
+import org.jhotdraw.undo.UndoRedoManager;
 import org.jhotdraw.util.*;
 
 /**
@@ -28,7 +30,7 @@ import org.jhotdraw.util.*;
  * @author Werner Randelshofer
  * @version $Id$
  */
-public class TransformEdit extends AbstractUndoableEdit {
+public class TransformEdit extends AbstractUndoableEdit implements SizedEdit {
 
     private static final long serialVersionUID = 1L;
     private Collection<Figure> figures;
@@ -38,8 +40,7 @@ public class TransformEdit extends AbstractUndoableEdit {
      * Creates a new instance.
      */
     public TransformEdit(Figure figure, AffineTransform tx) {
-        figures = new LinkedList<>();
-        ((LinkedList<Figure>) figures).add(figure);
+        figures = Collections.singletonList(figure);
         this.tx = (AffineTransform) tx.clone();
     }
 
@@ -105,6 +106,11 @@ public class TransformEdit extends AbstractUndoableEdit {
         }
     }
 
+    @Override
+    public long getEstimatedSize() {
+        return UndoRedoManager.DEFAULT_EDIT_SIZE + 16L * figures.size();
+    }
+
     @Override
     public String toString() {
         return getClass().getName() + '@' + hashCode() + " tx:" + tx;
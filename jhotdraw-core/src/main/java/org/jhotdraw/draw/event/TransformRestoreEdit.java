@@ -8,8 +8,12 @@
 package org.jhotdraw.draw.event;
 
 import org.jhotdraw.draw.figure.Figure;
+import java.util.Collection;
 import org.jhotdraw.draw.*;
 import javax.swing.undo.*;
+import org.jhotdraw.geom.BezierPath;
+import org.jhotdraw.undo.SizedEdit;
+import org.jhotdraw.undo.UndoRedoManager;
 import org.jhotdraw.util.*;
 
 /**
@@ -21,24 +25,46 @@ import org.jhotdraw.util.*;
  * <p>
  * The transform restore data may consume a lot of memory. Undos of lossless
  * transforms, such as translations of a figure, should use {@link TransformEdit}.
+ * The edit keeps only the restore data of one state of the figure, the other
+ * state is taken from the figure, when the edit is undone or redone.
  *
  * @author Werner Randelshofer
  * @version $Id$
  */
-public class TransformRestoreEdit extends AbstractUndoableEdit {
+public class TransformRestoreEdit extends AbstractUndoableEdit implements SizedEdit {
 
     private static final long serialVersionUID = 1L;
     private Figure owner;
-    private Object oldTransformRestoreData;
-    private Object newTransformRestoreData;
+    /**
+     * Holds the transform restore data of the state to which the figure is
+     * restored by the next undo or redo. Before the edit is undone, the
+     * figure is in the transformed state, and before it is redone, the
+     * figure is in the original state. So each undo and redo swaps the
+     * restore data with the current transform restore data of the figure,
+     * and the edit only needs to keep one of the two states.
+     */
+    private Object restoreData;
 
     /**
      * Creates a new instance.
+     *
+     * @param owner The transformed figure.
+     * @param oldTransformRestoreData The transform restore data of the figure
+     * before it was transformed.
      */
-    public TransformRestoreEdit(Figure owner, Object oldTransformRestoreData, Object newTransformRestoreData) {
+    public TransformRestoreEdit(Figure owner, Object oldTransformRestoreData) {
         this.owner = owner;
-        this.oldTransformRestoreData = oldTransformRestoreData;
-        this.newTransformRestoreData = newTransformRestoreData;
+        this.restoreData = oldTransformRestoreData;
+    }
+
+    /**
+     * Creates a new instance.
+     * <p>
+     * The new transform restore data is not kept, because it is taken from
+     * the figure when the edit is undone.
+     */
+    public TransformRestoreEdit(Figure owner, Object oldTransformRestoreData, Object newTransformRestoreData) {
+        this(owner, oldTransformRestoreData);
     }
 
     @Override
@@ -50,16 +76,48 @@ public class TransformRestoreEdit extends AbstractUndoableEdit {
     @Override
     public void undo() throws CannotUndoException {
         super.undo();
-        owner.willChange();
-        owner.restoreTransformTo(oldTransformRestoreData);
-        owner.changed();
+        swapRestoreData();
     }
 
     @Override
     public void redo() throws CannotRedoException {
         super.redo();
+        swapRestoreData();
+    }
+
+    private void swapRestoreData() {
+        Object currentRestoreData = owner.getTransformRestoreData();
         owner.willChange();
-        owner.restoreTransformTo(newTransformRestoreData);
+        owner.restoreTransformTo(restoreData);
         owner.changed();
+        restoreData = currentRestoreData;
+    }
+
+    @Override
+    public long getEstimatedSize() {
+        return UndoRedoManager.DEFAULT_EDIT_SIZE + estimateSize(restoreData);
+    }
+
+    /**
+     * Estimates the size of transform restore data.
+     */
+    private static long estimateSize(Object data) {
+        if (data instanceof BezierPath) {
+            return 64 + ((BezierPath) data).size() * 64L;
+        } else if (data instanceof Object[]) {
+            long size = 16;
+            for (Object elem : (Object[]) data) {
+                size += 8 + estimateSize(elem);
+            }
+            return size;
+        } else if (data instanceof Collection) {
+            long size = 32;
+            for (Object elem : (Collection<?>) data) {
+                size += 16 + estimateSize(elem);
+            }
+            return size;
+        } else {
+            return (data == null) ? 0 : 48;
+        }
     }
 }
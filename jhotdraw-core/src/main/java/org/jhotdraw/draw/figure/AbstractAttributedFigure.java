@@ -13,6 +13,7 @@ import java.io.*;
 import java.util.*;
 import org.jhotdraw.draw.AttributeKey;
 import org.jhotdraw.draw.AttributeKeys;
+import org.jhotdraw.draw.AttributeStyle;
 import static org.jhotdraw.draw.AttributeKeys.*;
 import org.jhotdraw.geom.Dimension2DDouble;
 import org.jhotdraw.geom.Geom;
@@ -33,8 +34,11 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
     private static final long serialVersionUID = 1L;
     /**
      * Holds the attributes of the figure.
+     * <p>
+     * The style is immutable and shared with other figures which have the
+     * same attributes.
      */
-    private HashMap<AttributeKey<?>, Object> attributes = new HashMap<>();
+    private AttributeStyle attributes = AttributeStyle.EMPTY;
     /**
      * Forbidden attributes can't be put by the put() operation. They can only
      * be changed by put().
@@ -71,20 +75,36 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
 
     @Override
     public Map<AttributeKey<?>, Object> getAttributes() {
-        return (Map<AttributeKey<?>, Object>) new HashMap<>(attributes);
+        return attributes.toMap();
     }
 
+    /**
+     * Returns the attribute style of this figure. Since the style is
+     * immutable, this method does not need to copy the attributes.
+     */
     @Override
     public Object getAttributesRestoreData() {
-        return getAttributes();
+        return attributes;
+    }
+
+    /**
+     * Returns the immutable attribute style of this figure. The style is
+     * replaced each time an attribute is changed.
+     */
+    public AttributeStyle getAttributeStyle() {
+        return attributes;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void restoreAttributesTo(Object restoreData) {
-        attributes.clear();
-        @SuppressWarnings("unchecked")
-        HashMap<AttributeKey<?>, Object> restoreDataHashMap = (HashMap<AttributeKey<?>, Object>) restoreData;
-        setAttributes(restoreDataHashMap);
+        AttributeStyle style = (restoreData instanceof AttributeStyle)
+                ? (AttributeStyle) restoreData
+                : AttributeStyle.of((Map<AttributeKey<?>, Object>) restoreData);
+        attributes = AttributeStyle.EMPTY;
+        for (AttributeKey<?> key : style.getKeys()) {
+            set((AttributeKey<Object>) key, style.get(key));
+        }
     }
 
     /**
@@ -95,8 +115,8 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
     public <T> void set(AttributeKey<T> key, T newValue) {
         if (forbiddenAttributes == null
                 || !forbiddenAttributes.contains(key)) {
-            @SuppressWarnings("unchecked")
-            T oldValue = key.put(attributes, newValue);
+            T oldValue = attributes.contains(key) ? attributes.get(key) : null;
+            attributes = attributes.with(key, newValue);
             fireAttributeChanged(key, oldValue, newValue);
         }
     }
@@ -106,7 +126,7 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
      */
     @Override
     public <T> T get(AttributeKey<T> key) {
-        return key.get(attributes);
+        return attributes.get(key);
     }
 
     @Override
@@ -187,7 +207,6 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
     @Override
     public AbstractAttributedFigure clone() {
         AbstractAttributedFigure that = (AbstractAttributedFigure) super.clone();
-        that.attributes = new HashMap<>(this.attributes);
         if (this.forbiddenAttributes != null) {
             that.forbiddenAttributes = new HashSet<>(this.forbiddenAttributes);
         }
@@ -197,8 +216,7 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
     protected void writeAttributes(DOMOutput out) throws IOException {
         Figure prototype = (Figure) out.getPrototype();
         boolean isElementOpen = false;
-        for (Map.Entry<AttributeKey<?>, Object> entry : attributes.entrySet()) {
-            AttributeKey<?> key = entry.getKey();
+        for (AttributeKey<?> key : attributes.getKeys()) {
             if (forbiddenAttributes == null
                     || !forbiddenAttributes.contains(key)) {
                 @SuppressWarnings("unchecked")
@@ -213,7 +231,7 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
                         isElementOpen = true;
                     }
                     out.openElement(key.getKey());
-                    out.writeObject(entry.getValue());
+                    out.writeObject(attributeValue);
                     out.closeElement();
                 }
             }
@@ -253,8 +271,8 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
      */
     @SuppressWarnings("unchecked")
     protected void applyAttributesTo(Figure that) {
-        for (Map.Entry<AttributeKey<?>, Object> entry : attributes.entrySet()) {
-            that.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
+        for (AttributeKey<?> key : attributes.getKeys()) {
+            that.set((AttributeKey<Object>) key, attributes.get(key));
         }
     }
 
@@ -281,12 +299,12 @@ public abstract class AbstractAttributedFigure extends AbstractFigure implements
     public <T> void removeAttribute(AttributeKey<T> key) {
         if (hasAttribute(key)) {
             T oldValue = get(key);
-            attributes.remove(key);
+            attributes = attributes.without(key);
             fireAttributeChanged(key, oldValue, key.getDefaultValue());
         }
     }
 
     public boolean hasAttribute(AttributeKey<?> key) {
-        return attributes.containsKey(key);
+        return attributes.contains(key);
     }
 }
@@ -53,7 +53,24 @@ public abstract class AbstractCompositeFigure
      * @see #add
      * @see #removeChild
      */
-    protected ArrayList<Figure> children = new ArrayList<>();
+    protected ArrayList<Figure> children = new ChildList();
+    /**
+     * Maps the children to their index in the children list. The map is valid
+     * as long as the modification count of the list is
+     * {@code childIndicesModCount}.
+     */
+    private transient IdentityHashMap<Figure, Integer> childIndices;
+    private transient int childIndicesModCount;
+    /**
+     * The number of lookups since the child indices have become invalid.
+     */
+    private transient int staleIndexLookups;
+    /**
+     * The child indices are rebuilt after this many lookups. Until then, a
+     * child is looked up by a linear search, which is cheaper if the children
+     * change after each lookup.
+     */
+    private static final int MAX_STALE_INDEX_LOOKUPS = 8;
     /**
      * Caches the drawing area to improve the performance of method {@link #getDrawingArea}.
      */
@@ -62,11 +79,37 @@ public abstract class AbstractCompositeFigure
      * Caches the bounds to improve the performance of method {@link #getBounds}.
      */
     protected transient Rectangle2D.Double cachedBounds;
+    /**
+     * The scale factor with which the cached drawing area has been computed.
+     */
+    private transient double cachedDrawingAreaFactor;
+    /**
+     * The child which has invalidated its area since the cached areas have
+     * been updated last, or null.
+     */
+    private transient Figure invalidatingChild;
+    /**
+     * True if the cached areas may shrink when the invalidating child changes.
+     */
+    private transient boolean isShrinkPending;
     /**
      * Handles figure changes in the children.
      */
     protected EventHandler eventHandler;
 
+    /**
+     * The list of children. It exposes its modification count, so that we
+     * can tell whether the child indices are still valid.
+     */
+    private static class ChildList extends ArrayList<Figure> {
+
+        private static final long serialVersionUID = 1L;
+
+        int getModCount() {
+            return modCount;
+        }
+    }
+
     protected class EventHandler extends FigureAdapter implements UndoableEditListener, Serializable {
 
         private static final long serialVersionUID = 1L;
@@ -78,13 +121,17 @@ public abstract class AbstractCompositeFigure
 
         @Override
         public void figureChanged(FigureEvent e) {
+            childChanged(e.getFigure());
             if (!isChanging()) {
                 Rectangle2D.Double invalidatedArea = getDrawingArea();
                 invalidatedArea.add(e.getInvalidatedArea());
                 // We call invalidate/validate here, because we must layout
-                // the figure again.
-                invalidate();
-                validate();
+                // the figure again. Without a layouter, it is sufficient
+                // to update the cached areas.
+                if (getLayouter() != null || !updateCachedAreas(e.getFigure())) {
+                    invalidate();
+                    validate();
+                }
                 // Forward the figureChanged event to listeners on AbstractCompositeFigure.
                 invalidatedArea.add(getDrawingArea());
                 fireFigureChanged(invalidatedArea);
@@ -93,6 +140,8 @@ public abstract class AbstractCompositeFigure
 
         @Override
         public void areaInvalidated(FigureEvent e) {
+            childChanged(e.getFigure());
+            childAreaInvalidated(e.getFigure());
             fireAreaInvalidated(e);
         }
 
@@ -155,14 +204,49 @@ public abstract class AbstractCompositeFigure
         addAll(getChildCount(), figures);
     }
 
+    /**
+     * Adds the figures at the specified index, and fires a single event for
+     * all of them.
+     */
     public final void addAll(int index, Collection<? extends Figure> figures) {
-        for (Figure f : figures) {
-            basicAdd(index++, f);
+        ArrayList<Figure> added = new ArrayList<>(figures);
+        if (added.isEmpty()) {
+            return;
+        }
+        basicAddAll(index, added);
+        int[] indices = new int[added.size()];
+        for (int i = 0; i < indices.length; i++) {
             if (getDrawing() != null) {
+                added.get(i).addNotify(getDrawing());
+            }
+            indices[i] = index + i;
+        }
+        fireFiguresAdded(added, indices);
+        invalidate();
+    }
+
+    /**
+     * Adds the figures at the specified indices, and fires a single event for
+     * all of them. This is the inverse of {@link #removeAll}: the figures
+     * and indices of the event which {@code removeAll} has fired restore the
+     * removed figures at their original positions.
+     *
+     * @param indices The indices which the figures have after they have been
+     * added, in strictly ascending order.
+     * @param figures The figures.
+     */
+    public void addAll(int[] indices, java.util.List<? extends Figure> figures) {
+        if (figures.isEmpty()) {
+            return;
+        }
+        basicAddAll(indices, figures);
+        ArrayList<Figure> added = new ArrayList<>(figures);
+        if (getDrawing() != null) {
+            for (Figure f : added) {
                 f.addNotify(getDrawing());
             }
-            fireFigureAdded(f, index);
         }
+        fireFiguresAdded(added, indices.clone());
         invalidate();
     }
 
@@ -177,6 +261,48 @@ public abstract class AbstractCompositeFigure
         }
     }
 
+    /**
+     * Inserts the figures at the specified indices with a single pass over
+     * the children list, which starts at the first index.
+     * <p>
+     * Subclasses which keep additional data about their children must
+     * override this method as well as {@link #basicAdd(int, Figure)}.
+     *
+     * @param indices The indices which the figures have after they have been
+     * added, in strictly ascending order.
+     * @param figures The figures.
+     */
+    public void basicAddAll(int[] indices, java.util.List<? extends Figure> figures) {
+        int n = figures.size();
+        int newSize = children.size() + n;
+        if (indices.length != n) {
+            throw new IllegalArgumentException("indices.length=" + indices.length + ", figures.size=" + n);
+        }
+        for (int i = 0; i < n; i++) {
+            if (indices[i] < 0 || indices[i] >= newSize || i > 0 && indices[i] <= indices[i - 1]) {
+                throw new IllegalArgumentException("Illegal index " + indices[i] + " at " + i + ", size after insertion " + newSize);
+            }
+        }
+        if (n == 0) {
+            return;
+        }
+        // Grow the list, and move the children behind the insertion points
+        // to the back, starting at the end of the list
+        int src = children.size() - 1;
+        children.addAll(Collections.nCopies(n, null));
+        for (int dst = newSize - 1, k = n - 1; k >= 0; dst--) {
+            if (indices[k] == dst) {
+                children.set(dst, figures.get(k--));
+            } else {
+                children.set(dst, children.get(src--));
+            }
+        }
+        for (Figure f : figures) {
+            f.addFigureListener(eventHandler);
+        }
+        invalidate();
+    }
+
     @Override
     public void addNotify(Drawing drawing) {
         super.addNotify(drawing);
@@ -196,7 +322,7 @@ public abstract class AbstractCompositeFigure
 
     @Override
     public boolean remove(final Figure figure) {
-        int index = children.indexOf(figure);
+        int index = indexOf(figure);
         if (index == -1) {
             return false;
         } else {
@@ -219,16 +345,26 @@ public abstract class AbstractCompositeFigure
     }
 
     /**
-     * Removes all specified children.
+     * Removes all specified children, and fires a single event for all of
+     * them. Figures which are not children of this figure are ignored.
      *
      * @see #add
      */
     public void removeAll(Collection<? extends Figure> figures) {
-        willChange();
-        for (Figure f : new LinkedList<Figure>(figures)) {
-            remove(f);
+        // Only this figure changes, so we don't call willChange() and
+        // changed() on the children
+        super.willChange();
+        ArrayList<Figure> removed = new ArrayList<>(figures.size());
+        int[] indices = basicRemoveChildren(figures, removed);
+        if (!removed.isEmpty()) {
+            if (getDrawing() != null) {
+                for (Figure f : removed) {
+                    f.removeNotify(getDrawing());
+                }
+            }
+            fireFiguresRemoved(removed, indices);
         }
-        changed();
+        super.changed();
     }
 
     /**
@@ -248,20 +384,68 @@ public abstract class AbstractCompositeFigure
      */
     @Override
     public void basicRemoveAllChildren() {
-        for (Figure f : new LinkedList<>(getChildren())) {
-            basicRemove(f);
-        }
+        basicRemoveChildren(new ArrayList<>(children), new ArrayList<>(children.size()));
     }
 
     /**
-     * Removes all children.
+     * Removes all specified children.
      *
      * @see #add
      */
     public void basicRemoveAll(Collection<? extends Figure> figures) {
+        basicRemoveChildren(figures, new ArrayList<>(figures.size()));
+    }
+
+    /**
+     * Removes the specified children with a single pass over the children
+     * list. Figures which are not children of this figure are ignored.
+     * <p>
+     * Subclasses which keep additional data about their children must
+     * override this method as well as {@link #basicRemoveChild}.
+     *
+     * @param figures the figures to be removed.
+     * @param removed the removed figures are added to this list in ascending
+     * z-order.
+     * @return the indices which the removed figures had, in ascending order.
+     */
+    protected int[] basicRemoveChildren(Collection<? extends Figure> figures, java.util.List<Figure> removed) {
+        int[] indices = new int[figures.size()];
+        int n = 0;
         for (Figure f : figures) {
-            basicRemove(f);
+            int index = indexOf(f);
+            if (index != -1) {
+                indices[n++] = index;
+            }
+        }
+        Arrays.sort(indices, 0, n);
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (m == 0 || indices[i] != indices[m - 1]) {
+                indices[m++] = indices[i];
+            }
         }
+        indices = Arrays.copyOf(indices, m);
+        if (m == 0) {
+            return indices;
+        }
+        for (int index : indices) {
+            Figure f = children.get(index);
+            f.removeFigureListener(eventHandler);
+            removed.add(f);
+        }
+        // Move the remaining children to the front and cut off the tail
+        int size = children.size();
+        int dst = indices[0];
+        for (int src = dst + 1, k = 1; src < size; src++) {
+            if (k < m && src == indices[k]) {
+                k++;
+            } else {
+                children.set(dst++, children.get(src));
+            }
+        }
+        children.subList(dst, size).clear();
+        invalidate();
+        return indices;
     }
 
     /**
@@ -528,7 +712,7 @@ public abstract class AbstractCompositeFigure
     @Override
     public void read(DOMInput in) throws IOException {
         in.openElement("children");
-        for (int i = 0; i < in.getElementCount(); i++) {
+        for (int i = 0; in.hasElement(i); i++) {
             basicAdd((Figure) in.readObject(i));
         }
         in.closeElement();
@@ -565,14 +749,25 @@ public abstract class AbstractCompositeFigure
 
     @Override
     public void basicAdd(int index, Figure figure) {
+        // Appending a child keeps the child indices valid
+        boolean isAppend = index == children.size() && hasValidChildIndices();
         children.add(index, figure);
         figure.addFigureListener(eventHandler);
+        if (isAppend) {
+            childIndices.put(figure, index);
+            childIndicesModCount = ((ChildList) children).getModCount();
+        }
     }
 
     @Override
     public Figure basicRemoveChild(int index) {
+        boolean isLast = index == children.size() - 1 && hasValidChildIndices();
         Figure figure = children.remove(index);
         figure.removeFigureListener(eventHandler);
+        if (isLast) {
+            childIndices.remove(figure);
+            childIndicesModCount = ((ChildList) children).getModCount();
+        }
         invalidate();
         return figure;
     }
@@ -595,7 +790,12 @@ public abstract class AbstractCompositeFigure
     @Override
     public AbstractCompositeFigure clone() {
         AbstractCompositeFigure that = (AbstractCompositeFigure) super.clone();
-        that.children = new ArrayList<>();
+        that.children = new ChildList();
+        that.childIndices = null;
+        // The cached areas are updated in place; so they must not be shared
+        that.cachedBounds = null;
+        that.cachedDrawingArea = null;
+        that.invalidatingChild = null;
         that.eventHandler = that.createEventHandler();
         for (Figure thisChild : this.children) {
             Figure thatChild = thisChild.clone();
@@ -615,6 +815,90 @@ public abstract class AbstractCompositeFigure
     protected void invalidate() {
         cachedBounds = null;
         cachedDrawingArea = null;
+        invalidatingChild = null;
+        isShrinkPending = false;
+    }
+
+    /**
+     * Returns true if the bounds of this figure are the union of the
+     * {@link #getChildBounds child bounds}, the drawing area is the union of
+     * the drawing areas of the children, and no other cached state of this
+     * figure depends on the geometry of the children.
+     * <p>
+     * If this method returns true, a change of a child updates the cached
+     * areas of this figure instead of invalidating them.
+     * <p>
+     * This implementation returns false.
+     */
+    protected boolean isUnionOfChildren() {
+        return false;
+    }
+
+    /**
+     * Returns the bounds of the specified child, which are used to compute
+     * the bounds of this figure.
+     * <p>
+     * This implementation returns {@code child.getBounds()}.
+     */
+    protected Rectangle2D.Double getChildBounds(Figure child) {
+        return child.getBounds();
+    }
+
+    /**
+     * Remembers whether the area of a child touches the border of the cached
+     * areas. This is called when a child invalidates its area, which it does
+     * before it changes.
+     */
+    private void childAreaInvalidated(Figure child) {
+        if (!isUnionOfChildren() || isChanging() || isShrinkPending
+                || cachedBounds == null && cachedDrawingArea == null) {
+            return;
+        }
+        if (invalidatingChild != null && invalidatingChild != child) {
+            // We can only keep track of one child
+            isShrinkPending = true;
+        } else {
+            invalidatingChild = child;
+            isShrinkPending = cachedBounds != null && !isInside(getChildBounds(child), cachedBounds)
+                    || cachedDrawingArea != null && !isInside(child.getDrawingArea(cachedDrawingAreaFactor), cachedDrawingArea);
+        }
+    }
+
+    /**
+     * Updates the cached bounds and drawing area after the specified child
+     * has changed.
+     * <p>
+     * If the child has invalidated its area before it changed, and its old
+     * area was inside the cached areas, the cached areas can only grow; then
+     * the new area of the child is added to them. Otherwise the union over all
+     * children must be computed again; then the cached areas are left as they
+     * are, and the caller must invalidate this figure.
+     *
+     * @return true if the cached areas have been updated.
+     */
+    protected boolean updateCachedAreas(Figure child) {
+        boolean canGrow = child == invalidatingChild && !isShrinkPending;
+        invalidatingChild = null;
+        isShrinkPending = false;
+        if (canGrow) {
+            // A cached area which is null is computed when it is needed
+            if (cachedBounds != null) {
+                cachedBounds.add(getChildBounds(child));
+            }
+            if (cachedDrawingArea != null) {
+                cachedDrawingArea.add(child.getDrawingArea(cachedDrawingAreaFactor));
+            }
+        }
+        return canGrow;
+    }
+
+    /**
+     * Returns true if r is inside the interior of the specified area.
+     */
+    private static boolean isInside(Rectangle2D.Double r, Rectangle2D.Double area) {
+        return r.x > area.x && r.y > area.y
+                && r.x + r.width < area.x + area.width
+                && r.y + r.height < area.y + area.height;
     }
 
     @Override
@@ -635,16 +919,66 @@ public abstract class AbstractCompositeFigure
 
     @Override
     public int basicRemove(Figure child) {
-        int index = children.indexOf(child);
+        int index = indexOf(child);
         if (index != -1) {
             basicRemoveChild(index);
         }
         return index;
     }
 
+    /**
+     * Returns the index of the specified child, or -1 if the figure is not a
+     * child of this figure.
+     * <p>
+     * Looks the child up in a map, unless the children have changed shortly
+     * before.
+     */
     @Override
     public int indexOf(Figure child) {
-        return children.indexOf(child);
+        if (!(children instanceof ChildList)) {
+            return children.indexOf(child);
+        }
+        if (!hasValidChildIndices()) {
+            if (++staleIndexLookups <= MAX_STALE_INDEX_LOOKUPS) {
+                return children.indexOf(child);
+            }
+            int n = children.size();
+            childIndices = new IdentityHashMap<>(n);
+            for (int i = 0; i < n; i++) {
+                childIndices.put(children.get(i), i);
+            }
+            childIndicesModCount = ((ChildList) children).getModCount();
+            staleIndexLookups = 0;
+        }
+        Integer index = childIndices.get(child);
+        if (index != null && children.get(index) != child) {
+            // The list has been reordered without changing its modification
+            // count, for example by Collections.swap
+            childIndices = null;
+            return children.indexOf(child);
+        }
+        return (index == null) ? -1 : index;
+    }
+
+    /**
+     * Returns the modification count of the list of children, which changes
+     * when children are added, removed or reordered. Returns -1 if the
+     * modification count is not known.
+     */
+    protected int getChildrenModCount() {
+        return (children instanceof ChildList) ? ((ChildList) children).getModCount() : -1;
+    }
+
+    /**
+     * This method is called when a child has changed, or has invalidated its
+     * area because it is about to change. This implementation does nothing.
+     */
+    protected void childChanged(Figure child) {
+    }
+
+    private boolean hasValidChildIndices() {
+        return childIndices != null && children instanceof ChildList
+                && childIndicesModCount == ((ChildList) children).getModCount();
     }
 
     @Override
@@ -655,6 +989,9 @@ public abstract class AbstractCompositeFigure
     @Override
     public Rectangle2D.Double getDrawingArea(double factor) {
         if (cachedDrawingArea == null) {
+            cachedDrawingAreaFactor = factor;
+            // The invalidating child may have changed already
+            isShrinkPending |= invalidatingChild != null;
             if (getChildCount() == 0) {
                 cachedDrawingArea = new Rectangle2D.Double();
             } else {
@@ -673,14 +1010,15 @@ public abstract class AbstractCompositeFigure
     @Override
     public Rectangle2D.Double getBounds() {
         if (cachedBounds == null) {
+            isShrinkPending |= invalidatingChild != null;
             if (getChildCount() == 0) {
                 cachedBounds = new Rectangle2D.Double();
             } else {
                 for (Figure f : children) {
                     if (cachedBounds == null) {
-                        cachedBounds = f.getBounds();
+                        cachedBounds = getChildBounds(f);
                     } else {
-                        cachedBounds.add(f.getBounds());
+                        cachedBounds.add(getChildBounds(f));
                     }
                 }
             }
@@ -732,6 +1070,58 @@ public abstract class AbstractCompositeFigure
         }
     }
 
+    /**
+     * Notify all listeners that have registered interest for notification on
+     * this event type.
+     *
+     * @param figures the added figures in ascending z-order.
+     * @param indices the z-indices of the added figures.
+     */
+    protected void fireFiguresAdded(java.util.List<Figure> figures, int[] indices) {
+        CompositeFigureEvent event = null;
+        Object[] listeners = listenerList.getListenerList();
+        for (int i = listeners.length - 2; i >= 0; i -= 2) {
+            if (listeners[i] == CompositeFigureListener.class) {
+                if (event == null) {
+                    event = new CompositeFigureEvent(this, figures, indices, getUnionOfDrawingAreas(figures));
+                }
+                ((CompositeFigureListener) listeners[i + 1]).figuresAdded(event);
+            }
+        }
+    }
+
+    /**
+     * Notify all listeners that have registered interest for notification on
+     * this event type.
+     *
+     * @param figures the removed figures in ascending z-order.
+     * @param indices the z-indices which the removed figures had.
+     */
+    protected void fireFiguresRemoved(java.util.List<Figure> figures, int[] indices) {
+        CompositeFigureEvent event = null;
+        Object[] listeners = listenerList.getListenerList();
+        for (int i = listeners.length - 2; i >= 0; i -= 2) {
+            if (listeners[i] == CompositeFigureListener.class) {
+                if (event == null) {
+                    event = new CompositeFigureEvent(this, figures, indices, getUnionOfDrawingAreas(figures));
+                }
+                ((CompositeFigureListener) listeners[i + 1]).figuresRemoved(event);
+            }
+        }
+    }
+
+    private static Rectangle2D.Double getUnionOfDrawingAreas(java.util.List<Figure> figures) {
+        Rectangle2D.Double area = null;
+        for (Figure f : figures) {
+            if (area == null) {
+                area = f.getDrawingArea();
+            } else {
+                area.add(f.getDrawingArea());
+            }
+        }
+        return (area == null) ? new Rectangle2D.Double() : area;
+    }
+
     @Override
     public void removeCompositeFigureListener(CompositeFigureListener listener) {
         listenerList.remove(CompositeFigureListener.class, listener);
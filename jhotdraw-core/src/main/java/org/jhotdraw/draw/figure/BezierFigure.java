@@ -67,6 +67,12 @@ public class BezierFigure extends AbstractAttributedFigure {
      * speed of the figure.
      */
     private transient BezierPath cappedPath;
+    /**
+     * The grown outline of the path, which is used for hit testing filled
+     * paths. We cache it, because hit tests are performed on every mouse
+     * movement.
+     */
+    private transient Shape hitShape;
 
     /**
      * Creates an empty <code>BezierFigure</code>, for example without any
@@ -174,11 +180,14 @@ public class BezierFigure extends AbstractAttributedFigure {
             if (path.contains(p)) {
                 return true;
             }
-            double grow = AttributeKeys.getPerpendicularHitGrowth(this, 1.0) * 2d;
-            GrowStroke gs = new GrowStroke(grow,
-                    AttributeKeys.getStrokeTotalWidth(this, 1.0)
-                    * get(STROKE_MITER_LIMIT));
-            if (gs.createStrokedShape(path).contains(p)) {
+            if (hitShape == null) {
+                double grow = AttributeKeys.getPerpendicularHitGrowth(this, 1.0) * 2d;
+                GrowStroke gs = new GrowStroke(grow,
+                        AttributeKeys.getStrokeTotalWidth(this, 1.0)
+                        * get(STROKE_MITER_LIMIT));
+                hitShape = gs.createStrokedShape(path);
+            }
+            if (hitShape.contains(p)) {
                 return true;
             } else {
                 if (isClosed()) {
@@ -262,6 +271,7 @@ public class BezierFigure extends AbstractAttributedFigure {
         super.validate();
         path.invalidatePath();
         cappedPath = null;
+        hitShape = null;
     }
 
     /**
@@ -323,6 +333,7 @@ public class BezierFigure extends AbstractAttributedFigure {
         super.invalidate();
         path.invalidatePath();
         cappedPath = null;
+        hitShape = null;
     }
 
     /**
@@ -403,7 +414,12 @@ public class BezierFigure extends AbstractAttributedFigure {
      * Gets a control point.
      */
     public BezierPath.Node getNode(int index) {
-        return (BezierPath.Node) path.get(index).clone();
+        BezierPath.Node node = new BezierPath.Node(path.getNodeMask(index),
+                path.getX(index, 0), path.getY(index, 0),
+                path.getX(index, 1), path.getY(index, 1),
+                path.getX(index, 2), path.getY(index, 2));
+        node.keepColinear = path.isKeepColinear(index);
+        return node;
     }
 
     /**
@@ -411,14 +427,14 @@ public class BezierFigure extends AbstractAttributedFigure {
      * specified node.
      */
     public Point2D.Double getPoint(int index) {
-        return path.get(index).getControlPoint(0);
+        return path.get(index, 0);
     }
 
     /**
      * Gets the point coordinate of a control point.
      */
     public Point2D.Double getPoint(int index, int coord) {
-        return path.get(index).getControlPoint(coord);
+        return path.get(index, coord);
     }
 
     /**
@@ -510,7 +526,7 @@ public class BezierFigure extends AbstractAttributedFigure {
      * @return the index of the segment or -1 if no segment was hit.
      */
     public int findSegment(Point2D.Double find, double tolerance) {
-        return getBezierPath().findSegment(find, tolerance);
+        return path.findSegment(find, tolerance);
     }
 
     /**
@@ -684,16 +700,15 @@ public class BezierFigure extends AbstractAttributedFigure {
             out.addAttribute("closed", true);
         }
         for (int i = 0, n = getNodeCount(); i < n; i++) {
-            BezierPath.Node node = getNode(i);
             out.openElement("p");
-            out.addAttribute("mask", node.mask, 0);
+            out.addAttribute("mask", path.getNodeMask(i), 0);
             out.addAttribute("colinear", true);
-            out.addAttribute("x", node.x[0]);
-            out.addAttribute("y", node.y[0]);
-            out.addAttribute("c1x", node.x[1], node.x[0]);
-            out.addAttribute("c1y", node.y[1], node.y[0]);
-            out.addAttribute("c2x", node.x[2], node.x[0]);
-            out.addAttribute("c2y", node.y[2], node.y[0]);
+            out.addAttribute("x", path.getX(i, 0));
+            out.addAttribute("y", path.getY(i, 0));
+            out.addAttribute("c1x", path.getX(i, 1), path.getX(i, 0));
+            out.addAttribute("c1y", path.getY(i, 1), path.getY(i, 0));
+            out.addAttribute("c2x", path.getX(i, 2), path.getX(i, 0));
+            out.addAttribute("c2y", path.getY(i, 2), path.getY(i, 0));
             out.closeElement();
         }
         out.closeElement();
@@ -711,7 +726,7 @@ public class BezierFigure extends AbstractAttributedFigure {
         setClosed(in.getAttribute("closed", false));
         for (int i = 0, n = in.getElementCount("p"); i < n; i++) {
             in.openElement("p", i);
-            BezierPath.Node node = new BezierPath.Node(
+            path.add(
                     in.getAttribute("mask", 0),
                     in.getAttribute("x", 0d),
                     in.getAttribute("y", 0d),
@@ -719,9 +734,7 @@ public class BezierFigure extends AbstractAttributedFigure {
                     in.getAttribute("c1y", in.getAttribute("y", 0d)),
                     in.getAttribute("c2x", in.getAttribute("x", 0d)),
                     in.getAttribute("c2y", in.getAttribute("y", 0d)));
-            node.keepColinear = in.getAttribute("colinear", true);
-            path.add(node);
-            path.invalidatePath();
+            path.setKeepColinear(path.size() - 1, in.getAttribute("colinear", true));
             in.closeElement();
         }
         in.closeElement();
@@ -52,4 +52,9 @@ public class GroupFigure extends AbstractCompositeFigure {
         }
         return true;
     }
+
+    @Override
+    protected boolean isUnionOfChildren() {
+        return true;
+    }
 }
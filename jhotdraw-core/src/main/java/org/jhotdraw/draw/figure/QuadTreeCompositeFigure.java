@@ -17,11 +17,14 @@ import org.jhotdraw.draw.event.FigureAdapter;
 import org.jhotdraw.draw.event.FigureEvent;
 import org.jhotdraw.geom.Dimension2DDouble;
 import org.jhotdraw.geom.QuadTree;
+import org.jhotdraw.geom.SpatialIndex;
 import org.jhotdraw.util.*;
 
 /**
  * QuadTreeCompositeFigure.
- *
+ * <p>
+ * Uses a {@link org.jhotdraw.geom.SpatialIndex} to find its children. By
+ * default this is a {@link QuadTree}.
  *
  * @author Werner Randelshofer
  * @version $Id$
@@ -30,7 +33,7 @@ public abstract class QuadTreeCompositeFigure
         extends AbstractCompositeFigure {
 
     private static final long serialVersionUID = 1L;
-    private QuadTree<Figure> quadTree = new QuadTree<>();
+    private SpatialIndex<Figure> spatialIndex;
     private boolean needsSorting = false;
     private FigureHandler figureHandler;
     private Dimension2DDouble canvasSize;
@@ -39,6 +42,16 @@ public abstract class QuadTreeCompositeFigure
      * Creates a new instance.
      */
     public QuadTreeCompositeFigure() {
+        this(new QuadTree<Figure>());
+    }
+
+    /**
+     * Creates a new instance which uses the specified spatial index.
+     *
+     * @param spatialIndex an empty spatial index.
+     */
+    public QuadTreeCompositeFigure(SpatialIndex<Figure> spatialIndex) {
+        this.spatialIndex = spatialIndex;
         figureHandler = createFigureHandler();
     }
 
@@ -54,26 +67,59 @@ public abstract class QuadTreeCompositeFigure
     @Override
     public void basicAdd(int index, Figure figure) {
         children.add(index, figure);
-        quadTree.add(figure, figure.getDrawingArea());
+        spatialIndex.add(figure, figure.getDrawingArea());
         figure.addFigureListener(figureHandler);
         needsSorting = true;
     }
 
+    /**
+     * Adds the figures to the spatial index in a single bulk operation.
+     */
+    @Override
+    public void basicAddAll(int index, Collection<? extends Figure> newFigures) {
+        ArrayList<Figure> figures = new ArrayList<>(newFigures);
+        children.addAll(index, figures);
+        ArrayList<Rectangle2D.Double> bounds = new ArrayList<>(figures.size());
+        for (Figure f : figures) {
+            bounds.add(f.getDrawingArea());
+            f.addFigureListener(figureHandler);
+        }
+        spatialIndex.addAll(figures, bounds, new double[figures.size()]);
+        needsSorting = true;
+    }
+
+    @Override
+    public void basicAddAll(int[] indices, java.util.List<? extends Figure> figures) {
+        for (int i = 0; i < indices.length; i++) {
+            basicAdd(indices[i], figures.get(i));
+        }
+    }
+
     @Override
     public Figure basicRemoveChild(int index) {
         Figure figure = children.get(index);
         children.remove(index);
-        quadTree.remove(figure);
+        spatialIndex.remove(figure);
         figure.removeFigureListener(figureHandler);
         needsSorting = true;
         return figure;
     }
 
+    @Override
+    protected int[] basicRemoveChildren(Collection<? extends Figure> figures, java.util.List<Figure> removed) {
+        int[] indices = super.basicRemoveChildren(figures, removed);
+        for (Figure f : removed) {
+            spatialIndex.remove(f);
+            f.removeFigureListener(figureHandler);
+        }
+        return indices;
+    }
+
     @Override
     public void draw(Graphics2D g) {
         Rectangle2D clipBounds = g.getClipBounds();
         if (clipBounds != null) {
-            Collection<Figure> c = quadTree.findIntersects(clipBounds);
+            Collection<Figure> c = spatialIndex.findIntersects(clipBounds);
             Collection<Figure> toDraw = sort(c);
             draw(g, toDraw);
         } else {
@@ -102,7 +148,7 @@ public abstract class QuadTreeCompositeFigure
     }
 
     public java.util.List<Figure> getFigures(Rectangle2D.Double bounds) {
-        return new LinkedList<>(quadTree.findInside(bounds));
+        return new LinkedList<>(spatialIndex.findInside(bounds));
     }
 
     @Override
@@ -112,7 +158,7 @@ public abstract class QuadTreeCompositeFigure
 
     @Override
     public Figure findFigureInside(Point2D.Double p) {
-        Collection<Figure> c = quadTree.findContains(p);
+        Collection<Figure> c = spatialIndex.findContains(p);
         for (Figure f : getFiguresFrontToBack()) {
             if (c.contains(f) && f.contains(p)) {
                 return f.findFigureInside(p);
@@ -131,7 +177,7 @@ public abstract class QuadTreeCompositeFigure
     }
 
     public Figure findFigure(Point2D.Double p) {
-        Collection<Figure> c = quadTree.findContains(p);
+        Collection<Figure> c = spatialIndex.findContains(p);
         switch (c.size()) {
             case 0:
                 return null;
@@ -151,7 +197,7 @@ public abstract class QuadTreeCompositeFigure
     }
 
     public Figure findFigureExcept(Point2D.Double p, Figure ignore) {
-        Collection<Figure> c = quadTree.findContains(p);
+        Collection<Figure> c = spatialIndex.findContains(p);
         switch (c.size()) {
             case 0: 
                 return null;
@@ -169,7 +215,7 @@ public abstract class QuadTreeCompositeFigure
     }
 
     public Figure findFigureExcept(Point2D.Double p, Collection<Figure> ignore) {
-        Collection<Figure> c = quadTree.findContains(p);
+        Collection<Figure> c = spatialIndex.findContains(p);
         switch (c.size()) {
             case 0:
                 return null;
@@ -217,7 +263,7 @@ public abstract class QuadTreeCompositeFigure
     }
 
     public java.util.List<Figure> findFigures(Rectangle2D.Double r) {
-        LinkedList<Figure> c = new LinkedList<>(quadTree.findIntersects(r));
+        LinkedList<Figure> c = new LinkedList<>(spatialIndex.findIntersects(r));
         switch (c.size()) {
             case 0:
             // fall through
@@ -275,6 +321,21 @@ public abstract class QuadTreeCompositeFigure
         }
     }
 
+    @Override
+    public QuadTreeCompositeFigure clone() {
+        QuadTreeCompositeFigure that = (QuadTreeCompositeFigure) super.clone();
+        that.figureHandler = that.createFigureHandler();
+        that.spatialIndex = spatialIndex.createEmpty();
+        ArrayList<Rectangle2D.Double> bounds = new ArrayList<>(that.children.size());
+        for (Figure f : that.children) {
+            f.removeFigureListener(that.eventHandler);
+            f.addFigureListener(that.figureHandler);
+            bounds.add(f.getDrawingArea());
+        }
+        that.spatialIndex.addAll(that.children, bounds, new double[that.children.size()]);
+        return that;
+    }
+
     public void setCanvasSize(Dimension2DDouble newValue) {
         Dimension2DDouble oldValue = canvasSize;
         canvasSize = newValue;
@@ -306,8 +367,8 @@ public abstract class QuadTreeCompositeFigure
 
         @Override
         public void figureChanged(FigureEvent e) {
-            quadTree.remove(e.getFigure());
-            quadTree.add(e.getFigure(), e.getFigure().getDrawingArea());
+            spatialIndex.remove(e.getFigure());
+            spatialIndex.add(e.getFigure(), e.getFigure().getDrawingArea());
             needsSorting = true;
             if (!isChanging()) {
                 fireAreaInvalidated(e.getInvalidatedArea());
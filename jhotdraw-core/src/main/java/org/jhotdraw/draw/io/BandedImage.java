@@ -0,0 +1,296 @@
+/*
+ * @(#)BandedImage.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.io;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * A {@code RenderedImage} whose tiles are horizontal bands, which are rendered
+ * on demand.
+ * <p>
+ * When a band is requested, the following bands in the direction of the
+ * requests are rendered ahead by the threads of a {@code ForkJoinPool}.
+ * Bands which lie behind the requested band are discarded. So, an image
+ * writer which requests the image in rows from top to bottom, or from bottom
+ * to top, holds only a few bands in memory at the same time. An image writer
+ * which requests the whole image gets all bands rendered in parallel.
+ * <p>
+ * This class is not thread safe. It is intended to be passed to a single
+ * image writer. The renderer is only used until {@link #dispose} returns.
+ *
+ * @version $Id$
+ */
+class BandedImage implements RenderedImage {
+
+    private final int width;
+    private final int height;
+    private final int bandHeight;
+    private final int bandCount;
+    private final ColorModel colorModel;
+    private final SampleModel sampleModel;
+    private final ForkJoinPool pool;
+    /**
+     * Renders the band with the specified bounds into an image of the
+     * specified image type.
+     */
+    private final Function<Rectangle, BufferedImage> renderer;
+    /**
+     * The number of bands which are rendered ahead.
+     */
+    private final int lookAhead;
+    private final HashMap<Integer, ForkJoinTask<BufferedImage>> bands = new HashMap<>();
+    private int lastBand;
+    private int direction = 1;
+    /**
+     * The read lock is held while a band is rendered. The write lock is used
+     * to wait until no band is being rendered.
+     */
+    private final ReentrantReadWriteLock renderLock = new ReentrantReadWriteLock();
+    private volatile boolean isDisposed;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param bandHeight The height of the bands.
+     * @param imageType The image type of the images returned by the renderer.
+     * @param pool The pool on which the bands are rendered.
+     * @param renderer Renders the band with the specified bounds.
+     */
+    public BandedImage(int width, int height, int bandHeight, int imageType,
+            ForkJoinPool pool, Function<Rectangle, BufferedImage> renderer) {
+        this.width = width;
+        this.height = height;
+        this.bandHeight = bandHeight;
+        this.bandCount = (height + bandHeight - 1) / bandHeight;
+        BufferedImage prototype = new BufferedImage(1, 1, imageType);
+        this.colorModel = prototype.getColorModel();
+        this.sampleModel = prototype.getSampleModel().createCompatibleSampleModel(width, Math.min(bandHeight, height));
+        this.pool = pool;
+        this.renderer = renderer;
+        this.lookAhead = Math.max(1, pool.getParallelism());
+    }
+
+    /**
+     * Returns the raster of the specified band.
+     */
+    private Raster getBand(int band) {
+        if (band != lastBand) {
+            direction = (band > lastBand) ? 1 : -1;
+            lastBand = band;
+        }
+        // Discard the bands which are not in the look ahead window
+        for (Iterator<Map.Entry<Integer, ForkJoinTask<BufferedImage>>> i = bands.entrySet().iterator(); i.hasNext();) {
+            Map.Entry<Integer, ForkJoinTask<BufferedImage>> entry = i.next();
+            int distance = (entry.getKey() - band) * direction;
+            if (distance < 0 || distance > lookAhead) {
+                entry.getValue().cancel(false);
+                i.remove();
+            }
+        }
+        for (int i = 0; i <= lookAhead; i++) {
+            int b = band + i * direction;
+            if (b >= 0 && b < bandCount && !bands.containsKey(b)) {
+                bands.put(b, submit(b));
+            }
+        }
+        return bands.get(band).join().getRaster()
+                .createChild(0, 0, width, getBandBounds(band).height, 0, band * bandHeight, null);
+    }
+
+    /**
+     * Starts the rendering of the specified band. The band is not rendered if
+     * the image has been disposed before the rendering starts.
+     */
+    private ForkJoinTask<BufferedImage> submit(int band) {
+        Rectangle bounds = getBandBounds(band);
+        return pool.submit(() -> {
+            renderLock.readLock().lock();
+            try {
+                return isDisposed ? null : renderer.apply(bounds);
+            } finally {
+                renderLock.readLock().unlock();
+            }
+        });
+    }
+
+    private Rectangle getBandBounds(int band) {
+        int y = band * bandHeight;
+        return new Rectangle(0, y, width, Math.min(bandHeight, height - y));
+    }
+
+    /**
+     * Cancels the rendering of the bands and discards them.
+     * <p>
+     * This method waits until the bands which are being rendered are complete,
+     * so that the renderer is not used anymore when this method returns.
+     */
+    public void dispose() {
+        isDisposed = true;
+        for (ForkJoinTask<BufferedImage> task : bands.values()) {
+            task.cancel(false);
+        }
+        bands.clear();
+        renderLock.writeLock().lock();
+        renderLock.writeLock().unlock();
+    }
+
+    @Override
+    public Vector<RenderedImage> getSources() {
+        return null;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return java.awt.Image.UndefinedProperty;
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return null;
+    }
+
+    @Override
+    public ColorModel getColorModel() {
+        return colorModel;
+    }
+
+    @Override
+    public SampleModel getSampleModel() {
+        return sampleModel;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getMinX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinY() {
+        return 0;
+    }
+
+    @Override
+    public int getNumXTiles() {
+        return 1;
+    }
+
+    @Override
+    public int getNumYTiles() {
+        return bandCount;
+    }
+
+    @Override
+    public int getMinTileX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinTileY() {
+        return 0;
+    }
+
+    @Override
+    public int getTileWidth() {
+        return width;
+    }
+
+    @Override
+    public int getTileHeight() {
+        return bandHeight;
+    }
+
+    @Override
+    public int getTileGridXOffset() {
+        return 0;
+    }
+
+    @Override
+    public int getTileGridYOffset() {
+        return 0;
+    }
+
+    @Override
+    public Raster getTile(int tileX, int tileY) {
+        if (tileX != 0 || tileY < 0 || tileY >= bandCount) {
+            throw new IllegalArgumentException("tileX=" + tileX + ", tileY=" + tileY);
+        }
+        return getBand(tileY);
+    }
+
+    @Override
+    public Raster getData() {
+        return getData(new Rectangle(0, 0, width, height));
+    }
+
+    @Override
+    public Raster getData(Rectangle rect) {
+        Rectangle r = rect.intersection(new Rectangle(0, 0, width, height));
+        int first = r.y / bandHeight;
+        int last = (r.y + r.height - 1) / bandHeight;
+        if (!r.isEmpty() && first == last) {
+            // The bands are never changed, so a child raster is a copy
+            return getBand(first).createChild(r.x, r.y, r.width, r.height, r.x, r.y, null);
+        }
+        return copyData(Raster.createWritableRaster(
+                sampleModel.createCompatibleSampleModel(rect.width, rect.height),
+                new Point(rect.x, rect.y)));
+    }
+
+    @Override
+    public WritableRaster copyData(WritableRaster raster) {
+        if (raster == null) {
+            raster = Raster.createWritableRaster(
+                    sampleModel.createCompatibleSampleModel(width, height), null);
+        }
+        Rectangle r = raster.getBounds().intersection(new Rectangle(0, 0, width, height));
+        if (!r.isEmpty()) {
+            int first = r.y / bandHeight;
+            int last = (r.y + r.height - 1) / bandHeight;
+            // Start the rendering of all bands, before waiting for the first
+            for (int b = first; b <= last; b++) {
+                if (!bands.containsKey(b)) {
+                    bands.put(b, submit(b));
+                }
+            }
+            // Discard the bands once they have been copied
+            for (int b = first; b <= last; b++) {
+                raster.setRect(bands.remove(b).join().getRaster()
+                        .createChild(0, 0, width, getBandBounds(b).height, 0, b * bandHeight, null));
+            }
+            lastBand = last;
+        }
+        return raster;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * @(#)BinaryInputOutputFormat.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.io;
+
+import org.jhotdraw.draw.figure.Figure;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.*;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.JComponent;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import org.jhotdraw.datatransfer.InputStreamTransferable;
+import org.jhotdraw.draw.*;
+import org.jhotdraw.xml.*;
+
+/**
+ * An InputFormat and OutputFormat for drawings with DOMStorable figures,
+ * which uses the binary format of {@link BinaryDOMOutput} instead of XML.
+ * <p>
+ * The figures are written with the same {@code DOMFactory} and the same
+ * {@code DOMStorable} methods as with {@link DOMStorableInputOutputFormat};
+ * only the encoding differs. Numbers are stored in binary form and names are
+ * stored once, so files are smaller and are read without parsing text.
+ * Files are read into memory in one piece, and figures are created directly
+ * from the bytes. Files are not kept open or mapped, so a drawing can be
+ * written back to the file it has been read from.
+ * <p>
+ * All figures of a drawing are created when the drawing is read, as with the
+ * XML format. Figures are not created on demand, because a drawing needs all
+ * of its children to compute its bounds, its spatial index and its render
+ * snapshot.
+ *
+ * @version $Id$
+ */
+public class BinaryInputOutputFormat implements OutputFormat, InputFormat {
+
+    private DOMFactory factory;
+    /**
+     * Format description used for the file filter.
+     */
+    private String description;
+    /**
+     * File name extension used for the file filter.
+     */
+    private String fileExtension;
+    /**
+     * The mime type is used for clipboard access.
+     */
+    private String mimeType;
+    /**
+     * The data flavor constructed from the mime type.
+     */
+    private DataFlavor dataFlavor;
+
+    /**
+     * Creates a new instance with format name "Drawing", file extension "jhdb"
+     * and mime type "image/x-jhotdraw-binary".
+     */
+    public BinaryInputOutputFormat(DOMFactory factory) {
+        this(factory, "Drawing", "jhdb", "image/x-jhotdraw-binary");
+    }
+
+    /**
+     * Creates a new instance using the specified parameters.
+     *
+     * @param factory The factory for creating Figures from elements.
+     * @param description The format description to be used for the file filter.
+     * @param fileExtension The file extension to be used for file filter.
+     * @param mimeType The Mime Type is used for clipboard access.
+     */
+    public BinaryInputOutputFormat(
+            DOMFactory factory,
+            String description, String fileExtension, String mimeType) {
+        this.factory = factory;
+        this.description = description;
+        this.fileExtension = fileExtension;
+        this.mimeType = mimeType;
+        try {
+            this.dataFlavor = new DataFlavor(mimeType);
+        } catch (ClassNotFoundException ex) {
+            InternalError error = new InternalError("Unable to create data flavor for mime type:" + mimeType);
+            error.initCause(ex);
+            throw error;
+        }
+    }
+
+    @Override
+    public javax.swing.filechooser.FileFilter getFileFilter() {
+        return new FileNameExtensionFilter(description, fileExtension);
+    }
+
+    @Override
+    public JComponent getOutputFormatAccessory() {
+        return null;
+    }
+
+    @Override
+    public JComponent getInputFormatAccessory() {
+        return null;
+    }
+
+    @Override
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    @Override
+    public boolean isDataFlavorSupported(DataFlavor flavor) {
+        return flavor.equals(dataFlavor);
+    }
+
+    @Override
+    public void write(URI uri, Drawing drawing) throws IOException {
+        write(new File(uri), drawing);
+    }
+
+    public void write(File file, Drawing drawing) throws IOException {
+        try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            write(out, drawing);
+        }
+    }
+
+    @Override
+    public void write(OutputStream out, Drawing drawing) throws IOException {
+        BinaryDOMOutput domo = new BinaryDOMOutput(factory);
+        domo.openElement(factory.getName(drawing));
+        drawing.write(domo);
+        domo.closeElement();
+        domo.save(out);
+    }
+
+    @Override
+    public void read(URI uri, Drawing drawing) throws IOException {
+        read(new File(uri), drawing);
+    }
+
+    @Override
+    public void read(URI uri, Drawing drawing, boolean replace) throws IOException {
+        read(new File(uri), drawing, replace);
+    }
+
+    public void read(File file, Drawing drawing) throws IOException {
+        read(file, drawing, true);
+    }
+
+    /**
+     * Reads a drawing from a file.
+     */
+    public void read(File file, Drawing drawing, boolean replace) throws IOException {
+        read(new BinaryDOMInput(factory, file), drawing, replace);
+    }
+
+    @Override
+    public void read(InputStream in, Drawing drawing, boolean replace) throws IOException {
+        read(new BinaryDOMInput(factory, in), drawing, replace);
+    }
+
+    private void read(BinaryDOMInput domi, Drawing drawing, boolean replace) throws IOException {
+        domi.openElement(factory.getName(drawing));
+        if (replace) {
+            drawing.removeAllChildren();
+        }
+        drawing.read(domi);
+        domi.closeElement();
+    }
+
+    @Override
+    public void read(Transferable t, Drawing drawing, boolean replace) throws UnsupportedFlavorException, IOException {
+        ArrayList<Figure> figures = new ArrayList<>();
+        InputStream in = (InputStream) t.getTransferData(new DataFlavor(mimeType, description));
+        BinaryDOMInput domi = new BinaryDOMInput(factory, in);
+        domi.openElement("Drawing-Clip");
+        for (int i = 0; domi.hasElement(i); i++) {
+            Figure f = (Figure) domi.readObject(i);
+            figures.add(f);
+        }
+        domi.closeElement();
+        if (replace) {
+            drawing.removeAllChildren();
+        }
+        drawing.addAll(figures);
+    }
+
+    @Override
+    public Transferable createTransferable(Drawing drawing, List<Figure> figures, double scaleFactor) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        BinaryDOMOutput domo = new BinaryDOMOutput(factory);
+        domo.openElement("Drawing-Clip");
+        for (Figure f : figures) {
+            domo.writeObject(f);
+        }
+        domo.closeElement();
+        domo.save(buf);
+        return new InputStreamTransferable(new DataFlavor(mimeType, description), buf.toByteArray());
+    }
+
+    @Override
+    public DataFlavor[] getTransferDataFlavors() {
+        return new DataFlavor[]{new DataFlavor(mimeType, description)};
+    }
+}
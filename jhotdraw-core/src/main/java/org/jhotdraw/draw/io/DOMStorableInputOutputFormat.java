@@ -113,11 +113,11 @@ public class DOMStorableInputOutputFormat implements OutputFormat, InputFormat {
      * in the element that represents the drawing.
      */
     protected void read(URL url, InputStream in, Drawing drawing, LinkedList<Figure> figures) throws IOException {
-        JavaxDOMInput domi = new JavaxDOMInput(factory, in);
+        StreamingDOMInput domi = new StreamingDOMInput(factory, in);
         domi.openElement(factory.getName(drawing));
         domi.openElement("figures", 0);
         figures.clear();
-        for (int i = 0, n = domi.getElementCount(); i < n; i++) {
+        for (int i = 0; domi.hasElement(i); i++) {
             Figure f = (Figure) domi.readObject();
             figures.add(f);
         }
@@ -149,11 +149,11 @@ public class DOMStorableInputOutputFormat implements OutputFormat, InputFormat {
 
     @Override
     public void write(OutputStream out, Drawing drawing) throws IOException {
-        JavaxDOMOutput domo = new JavaxDOMOutput(factory);
+        StreamingDOMOutput domo = new StreamingDOMOutput(factory, out);
         domo.openElement(factory.getName(drawing));
         drawing.write(domo);
         domo.closeElement();
-        domo.save(out);
+        domo.finish();
     }
 
     @Override
@@ -178,7 +178,7 @@ public class DOMStorableInputOutputFormat implements OutputFormat, InputFormat {
 
     @Override
     public void read(InputStream in, Drawing drawing, boolean replace) throws IOException {
-        JavaxDOMInput domi = new JavaxDOMInput(factory, in);
+        StreamingDOMInput domi = new StreamingDOMInput(factory, in);
         domi.openElement(factory.getName(drawing));
         if (replace) {
             drawing.removeAllChildren();
@@ -191,9 +191,9 @@ public class DOMStorableInputOutputFormat implements OutputFormat, InputFormat {
     public void read(Transferable t, Drawing drawing, boolean replace) throws UnsupportedFlavorException, IOException {
         LinkedList<Figure> figures = new LinkedList<>();
         InputStream in = (InputStream) t.getTransferData(new DataFlavor(mimeType, description));
-        JavaxDOMInput domi = new JavaxDOMInput(factory, in);
+        StreamingDOMInput domi = new StreamingDOMInput(factory, in);
         domi.openElement("Drawing-Clip");
-        for (int i = 0, n = domi.getElementCount(); i < n; i++) {
+        for (int i = 0; domi.hasElement(i); i++) {
             Figure f = (Figure) domi.readObject(i);
             figures.add(f);
         }
@@ -207,13 +207,18 @@ public class DOMStorableInputOutputFormat implements OutputFormat, InputFormat {
     @Override
     public Transferable createTransferable(Drawing drawing, List<Figure> figures, double scaleFactor) throws IOException {
         ByteArrayOutputStream buf = new ByteArrayOutputStream();
-        JavaxDOMOutput domo = new JavaxDOMOutput(factory);
+        StreamingDOMOutput domo = new StreamingDOMOutput(factory, buf);
         domo.openElement("Drawing-Clip");
         for (Figure f : figures) {
             domo.writeObject(f);
         }
         domo.closeElement();
-        domo.save(buf);
+        domo.finish();
         return new InputStreamTransferable(new DataFlavor(mimeType, description), buf.toByteArray());
     }
+
+    @Override
+    public DataFlavor[] getTransferDataFlavors() {
+        return new DataFlavor[]{new DataFlavor(mimeType, description)};
+    }
 }
@@ -14,6 +14,9 @@ import java.awt.geom.*;
 import java.awt.image.*;
 import java.io.*;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import javax.imageio.*;
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
@@ -24,6 +27,25 @@ import static org.jhotdraw.draw.AttributeKeys.*;
 /**
  * An output format for exporting drawings using one of the image formats
  * supported by javax.imageio.
+ * <p>
+ * The figures are drawn from their live state, so the drawing must not be
+ * changed while it is written. Applications ensure this by writing on the
+ * event dispatch thread, or by disabling the view while a worker thread writes
+ * the drawing. To write a drawing while the user continues to edit it, pass a
+ * snapshot of copies of the figures, which is created by
+ * {@link RenderSnapshot#copyOf(Drawing)}, to
+ * {@link #write(OutputStream, Drawing, RenderSnapshot)}.
+ * <p>
+ * If a band height has been set, images are rendered in horizontal bands of
+ * that height by the threads of the common {@code ForkJoinPool}. The figures
+ * of each band are looked up in a {@link RenderSnapshot}, and are drawn
+ * directly into an image of the image type of this format. When a drawing is
+ * written, the bands are rendered while the image writer requests them, so
+ * that writers which request the image in rows, like the PNG and BMP writers,
+ * never need the whole image in memory. The bands are rendered from the live
+ * figures while the calling thread waits, so only the bands which are being
+ * rendered take additional memory. A figure which intersects several bands is
+ * drawn into one band at a time.
  *
  * @author Werner Randelshofer
  * @version $Id$
@@ -47,6 +69,11 @@ public class ImageOutputFormat implements OutputFormat {
      * BufferedImage.TYPE_INT_ARGB whereas GIF needs BufferedImage.TYPE_
      */
     private int imageType;
+    /**
+     * The height of the bands in pixels, or 0 if images are rendered in one
+     * piece.
+     */
+    private int bandHeight;
 
     /**
      * Creates a new image output format for Portable Network Graphics PNG.
@@ -72,6 +99,22 @@ public class ImageOutputFormat implements OutputFormat {
         this.imageType = bufferedImageType;
     }
 
+    /**
+     * Sets the height of the bands in pixels in which images are rendered in
+     * parallel. If this is 0, images are rendered in one piece by the calling
+     * thread. The default value is 0.
+     */
+    public void setBandHeight(int newValue) {
+        if (newValue < 0) {
+            throw new IllegalArgumentException("bandHeight=" + newValue);
+        }
+        bandHeight = newValue;
+    }
+
+    public int getBandHeight() {
+        return bandHeight;
+    }
+
     @Override
     public javax.swing.filechooser.FileFilter getFileFilter() {
         return new FileNameExtensionFilter(description, fileExtension);
@@ -110,7 +153,24 @@ public class ImageOutputFormat implements OutputFormat {
      */
     @Override
     public void write(OutputStream out, Drawing drawing) throws IOException {
-        write(out, drawing, drawing.getChildren(), null, null);
+        write(out, drawing, getSnapshot(drawing));
+    }
+
+    /**
+     * Writes the visible figures of a render snapshot of the drawing to the
+     * specified output stream.
+     * This method ensures that all figures of the snapshot are visible on
+     * the image.
+     */
+    public void write(OutputStream out, Drawing drawing, RenderSnapshot snapshot) throws IOException {
+        Rectangle2D.Double drawBounds = snapshot.getDrawingArea();
+        if (bandHeight > 0 && drawBounds != null) {
+            Dimension imageSize = new Dimension();
+            AffineTransform transform = createTransform(drawBounds, 1d, false, imageSize);
+            writeBanded(out, drawing, snapshot, transform, imageSize);
+        } else {
+            write(out, toImage(drawing, snapshot, 1d, false));
+        }
     }
 
     /**
@@ -120,7 +180,12 @@ public class ImageOutputFormat implements OutputFormat {
      */
     public void write(OutputStream out, Drawing drawing,
             AffineTransform drawingTransform, Dimension imageSize) throws IOException {
-        write(out, drawing, drawing.getChildren(), drawingTransform, imageSize);
+        RenderSnapshot snapshot = getSnapshot(drawing);
+        if (bandHeight > 0) {
+            writeBanded(out, drawing, snapshot, drawingTransform, imageSize);
+        } else {
+            write(out, toImage(drawing, snapshot.getVisibleFigures(), drawingTransform, imageSize));
+        }
     }
 
     /**
@@ -133,6 +198,11 @@ public class ImageOutputFormat implements OutputFormat {
         return new ImageTransferable(toImage(drawing, figures, scaleFactor, true));
     }
 
+    @Override
+    public DataFlavor[] getTransferDataFlavors() {
+        return new DataFlavor[]{DataFlavor.imageFlavor, ImageTransferable.IMAGE_PNG_FLAVOR};
+    }
+
     /**
      * Writes the figures to the specified output stream.
      * This method ensures that all figures of the drawing are visible on
@@ -149,16 +219,62 @@ public class ImageOutputFormat implements OutputFormat {
      */
     public void write(OutputStream out, Drawing drawing, java.util.List<Figure> figures,
             AffineTransform drawingTransform, Dimension imageSize) throws IOException {
+        if (bandHeight > 0 && !figures.isEmpty()) {
+            RenderSnapshot snapshot = RenderSnapshot.create(figures);
+            if (drawingTransform == null || imageSize == null) {
+                Rectangle2D.Double drawBounds = snapshot.getDrawingArea();
+                if (drawBounds != null) {
+                    imageSize = new Dimension();
+                    drawingTransform = createTransform(drawBounds, 1d, false, imageSize);
+                }
+            }
+            if (drawingTransform != null && imageSize != null) {
+                writeBanded(out, drawing, snapshot, drawingTransform, imageSize);
+                return;
+            }
+        }
         BufferedImage img;
         if (drawingTransform == null || imageSize == null) {
             img = toImage(drawing, figures, 1d, false);
         } else {
             img = toImage(drawing, figures, drawingTransform, imageSize);
         }
+        write(out, img);
+    }
+
+    /**
+     * Returns a render snapshot of the figures of the drawing. The cached
+     * snapshot of the drawing is only used on the event dispatch thread,
+     * because it is updated by the thread which changes the drawing.
+     */
+    private static RenderSnapshot getSnapshot(Drawing drawing) {
+        return EventQueue.isDispatchThread() ? drawing.getRenderSnapshot()
+                : RenderSnapshot.create(drawing.getChildren());
+    }
+
+    private void write(OutputStream out, BufferedImage img) throws IOException {
         ImageIO.write(img, formatName, out);
         img.flush();
     }
 
+    /**
+     * Writes the visible figures of a snapshot as an image which is rendered
+     * in bands while the image writer requests them.
+     */
+    private void writeBanded(OutputStream out, Drawing drawing, RenderSnapshot snapshot,
+            AffineTransform transform, Dimension imageSize) throws IOException {
+        Color background = getBackground(drawing);
+        BandedImage img = new BandedImage(
+                Math.max(1, imageSize.width), Math.max(1, imageSize.height), getBandHeight(background),
+                getTargetType(background), ForkJoinPool.commonPool(),
+                band -> renderBand(snapshot, transform, background, band));
+        try {
+            ImageIO.write(img, formatName, out);
+        } finally {
+            img.dispose();
+        }
+    }
+
     /**
      * Creates a BufferedImage from the specified list of figures.
      * <p>
@@ -176,8 +292,8 @@ public class ImageOutputFormat implements OutputFormat {
     public BufferedImage toImage(Drawing drawing,
             java.util.List<Figure> figures,
             double scaleFactor, boolean clipToFigures) {
-        // Return a transparent 1-pixel image if the drawing is empty.
-        if (drawing.getChildCount() == 0) {
+        // Return a transparent 1-pixel image if there are no figures.
+        if (figures.isEmpty()) {
             return new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
         }
         // Determine the draw bounds of the figures
@@ -189,17 +305,65 @@ public class ImageOutputFormat implements OutputFormat {
                 drawBounds.add(f.getDrawingArea());
             }
         }
+        return toImage(drawing, figures, drawBounds, scaleFactor, clipToFigures);
+    }
+
+    /**
+     * Creates a BufferedImage from a render snapshot of a drawing.
+     * <p>
+     * Only the figures of the snapshot are accessed, and not the children of
+     * the drawing. If the snapshot holds copies of the figures, this method
+     * can be called by any thread while the drawing is changed. Otherwise it
+     * must be called by the thread which changes the drawing. In both cases,
+     * the figures are drawn by the threads of the common {@code ForkJoinPool}
+     * if a band height has been set, while the calling thread waits.
+     *
+     * @param drawing The drawing.
+     * @param snapshot A render snapshot of the drawing.
+     * @param scaleFactor The scale factor used when drawing the figures.
+     * @param clipToFigures If this is true, the image is clipped to the figures.
+     * If this is false, the image includes the drawing area,
+     */
+    public BufferedImage toImage(Drawing drawing, RenderSnapshot snapshot,
+            double scaleFactor, boolean clipToFigures) {
+        Rectangle2D.Double drawBounds = snapshot.getDrawingArea();
+        // Return a transparent 1-pixel image if no figure is visible.
+        if (drawBounds == null) {
+            return new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        }
+        Dimension imageSize = new Dimension();
+        AffineTransform transform = createTransform(drawBounds, scaleFactor, clipToFigures, imageSize);
+        if (bandHeight > 0) {
+            return toBandedImage(drawing, snapshot, transform, imageSize);
+        }
+        return toImage(drawing, snapshot.getVisibleFigures(), transform, imageSize);
+    }
+
+    private BufferedImage toImage(Drawing drawing,
+            java.util.List<Figure> figures, Rectangle2D.Double drawBounds,
+            double scaleFactor, boolean clipToFigures) {
+        Dimension imageSize = new Dimension();
+        AffineTransform transform = createTransform(drawBounds, scaleFactor, clipToFigures, imageSize);
+        return toImage(drawing, figures, transform, imageSize);
+    }
+
+    /**
+     * Returns the transform from drawing to image coordinates, which makes
+     * the specified draw bounds visible on the image.
+     *
+     * @param imageSize Is set to the size of the image.
+     */
+    private static AffineTransform createTransform(Rectangle2D.Double drawBounds,
+            double scaleFactor, boolean clipToFigures, Dimension imageSize) {
+        AffineTransform transform = new AffineTransform();
         if (clipToFigures) {
-            AffineTransform transform = new AffineTransform();
             transform.translate(-drawBounds.x * scaleFactor,
                     -drawBounds.y * scaleFactor);
             transform.scale(scaleFactor, scaleFactor);
-            return toImage(drawing, figures, transform,
-                    new Dimension(
-                            (int) (drawBounds.width * scaleFactor),
-                            (int) (drawBounds.height * scaleFactor)));
+            imageSize.setSize(
+                    (int) (drawBounds.width * scaleFactor),
+                    (int) (drawBounds.height * scaleFactor));
         } else {
-            AffineTransform transform = new AffineTransform();
             if (drawBounds.x < 0) {
                 transform.translate(-drawBounds.x * scaleFactor, 0);
             }
@@ -207,11 +371,11 @@ public class ImageOutputFormat implements OutputFormat {
                 transform.translate(0, -drawBounds.y * scaleFactor);
             }
             transform.scale(scaleFactor, scaleFactor);
-            return toImage(drawing, figures, transform,
-                    new Dimension(
-                            (int) ((Math.max(0, drawBounds.x) + drawBounds.width) * scaleFactor),
-                            (int) ((Math.max(0, drawBounds.y) + drawBounds.height) * scaleFactor)));
+            imageSize.setSize(
+                    (int) ((Math.max(0, drawBounds.x) + drawBounds.width) * scaleFactor),
+                    (int) ((Math.max(0, drawBounds.y) + drawBounds.height) * scaleFactor));
         }
+        return transform;
     }
 
     /**
@@ -228,17 +392,14 @@ public class ImageOutputFormat implements OutputFormat {
             java.util.List<Figure> figures,
             AffineTransform transform,
             Dimension imageSize) {
-        // Create the buffered image and clear it
-        Color background = drawing.get(CANVAS_FILL_COLOR);
-        double opacity = drawing.get(CANVAS_FILL_OPACITY);
-        if (background == null) {
-            background = new Color(0xff, 0xff, 0xff, 0x0);
-        } else {
-            background = new Color(background.getRed(), background.getGreen(), background.getBlue(), (int) (background.getAlpha() * opacity));
+        if (bandHeight > 0) {
+            return toBandedImage(drawing, RenderSnapshot.create(figures), transform, imageSize);
         }
+        // Create the buffered image and clear it
+        Color background = getBackground(drawing);
         BufferedImage buf = new BufferedImage(
                 Math.max(1, imageSize.width), Math.max(1, imageSize.height),
-                (background.getAlpha() == 255) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+                getRenderType(background));
         Graphics2D g = buf.createGraphics();
         // Clear the buffered image with the background color
         Composite savedComposite = g.getComposite();
@@ -258,17 +419,135 @@ public class ImageOutputFormat implements OutputFormat {
             BufferedImage buf2 = new BufferedImage(
                     buf.getWidth(), buf.getHeight(),
                     imageType);
-            g = buf2.createGraphics();
-            setRenderingHints(g);
-            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC));
-            g.drawImage(buf, 0, 0, null);
-            g.dispose();
+            convert(buf, buf2);
             buf.flush();
             buf = buf2;
         }
         return buf;
     }
 
+    /**
+     * Renders the visible figures of a snapshot in bands in parallel.
+     */
+    private BufferedImage toBandedImage(Drawing drawing, RenderSnapshot snapshot,
+            AffineTransform transform, Dimension imageSize) {
+        Color background = getBackground(drawing);
+        BufferedImage img = new BufferedImage(
+                Math.max(1, imageSize.width), Math.max(1, imageSize.height),
+                getTargetType(background));
+        int h = getBandHeight(background);
+        ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int y = 0; y < img.getHeight(); y += h) {
+            BufferedImage band = img.getSubimage(0, y, img.getWidth(), Math.min(h, img.getHeight() - y));
+            int bandY = y;
+            tasks.add(ForkJoinPool.commonPool().submit(
+                    () -> renderBand(snapshot, transform, background, band, bandY)));
+        }
+        // Wait for all bands before a failure is reported, so that no figure
+        // is drawn anymore when this method returns
+        for (ForkJoinTask<?> task : tasks) {
+            task.quietlyJoin();
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        return img;
+    }
+
+    /**
+     * Renders a band of an image.
+     *
+     * @param band The band. Its image type must be the target type.
+     * @param y The y coordinate of the band on the image.
+     */
+    private void renderBand(RenderSnapshot snapshot, AffineTransform transform,
+            Color background, BufferedImage band, int y) {
+        int renderType = getRenderType(background);
+        BufferedImage buf = (getTargetType(background) == renderType) ? band
+                : new BufferedImage(band.getWidth(), band.getHeight(), renderType);
+        Graphics2D g = buf.createGraphics();
+        g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC));
+        g.setColor(background);
+        g.fillRect(0, 0, buf.getWidth(), buf.getHeight());
+        g.setComposite(AlphaComposite.SrcOver);
+        setRenderingHints(g);
+        g.clipRect(0, 0, buf.getWidth(), buf.getHeight());
+        g.translate(0, -y);
+        g.transform(transform);
+        // Grow the band by 2 pixels to account for anti-aliasing
+        Rectangle2D bounds;
+        try {
+            bounds = transform.createInverse().createTransformedShape(
+                    new Rectangle(-2, y - 2, buf.getWidth() + 4, buf.getHeight() + 4)).getBounds2D();
+        } catch (NoninvertibleTransformException e) {
+            bounds = null;
+        }
+        for (Figure f : (bounds == null) ? snapshot.getVisibleFigures() : snapshot.findIntersects(bounds)) {
+            // A figure which intersects several bands must not be drawn by
+            // several threads at the same time
+            synchronized (f) {
+                f.draw(g);
+            }
+        }
+        g.dispose();
+        if (buf != band) {
+            convert(buf, band);
+            buf.flush();
+        }
+    }
+
+    /**
+     * Renders a band of an image into a new image of the target type.
+     */
+    private BufferedImage renderBand(RenderSnapshot snapshot, AffineTransform transform,
+            Color background, Rectangle band) {
+        BufferedImage img = new BufferedImage(band.width, band.height, getTargetType(background));
+        renderBand(snapshot, transform, background, img, band.y);
+        return img;
+    }
+
+    private void convert(BufferedImage src, BufferedImage dst) {
+        Graphics2D g = dst.createGraphics();
+        setRenderingHints(g);
+        g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC));
+        g.drawImage(src, 0, 0, null);
+        g.dispose();
+    }
+
+    private static Color getBackground(Drawing drawing) {
+        Color background = drawing.get(CANVAS_FILL_COLOR);
+        double opacity = drawing.get(CANVAS_FILL_OPACITY);
+        if (background == null) {
+            return new Color(0xff, 0xff, 0xff, 0x0);
+        }
+        return new Color(background.getRed(), background.getGreen(), background.getBlue(), (int) (background.getAlpha() * opacity));
+    }
+
+    /**
+     * Returns the height of the bands. If the bands are converted into the
+     * target type, the height is a multiple of 8, so that the 8 by 8 dither
+     * pattern, which starts at the top of each band, is the same as on an
+     * image which is converted in one piece.
+     */
+    private int getBandHeight(Color background) {
+        return (getTargetType(background) == getRenderType(background)) ? bandHeight
+                : (bandHeight + 7) & ~7;
+    }
+
+    /**
+     * Returns the image type in which the figures are drawn.
+     */
+    private static int getRenderType(Color background) {
+        return (background.getAlpha() == 255) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+    }
+
+    /**
+     * Returns the image type of the images created by this format.
+     */
+    private int getTargetType(Color background) {
+        return (imageType != BufferedImage.TYPE_INT_ARGB) ? imageType : getRenderType(background);
+    }
+
     protected void setRenderingHints(Graphics2D g) {
         g.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION,
                 RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
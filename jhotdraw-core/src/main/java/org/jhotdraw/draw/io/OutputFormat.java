@@ -93,4 +93,18 @@ public interface OutputFormat {
      * @return The Transferable.
      */
     public Transferable createTransferable(Drawing drawing, List<Figure> figures, double scaleFactor) throws IOException;
+
+    /**
+     * Returns the data flavors of the Transferables which are created by
+     * {@link #createTransferable}, so that a Transferable can be created
+     * only when its data is requested.
+     * <p>
+     * This implementation returns null.
+     *
+     * @return The data flavors, or null if they are not known before a
+     * Transferable has been created.
+     */
+    public default DataFlavor[] getTransferDataFlavors() {
+        return null;
+    }
 }
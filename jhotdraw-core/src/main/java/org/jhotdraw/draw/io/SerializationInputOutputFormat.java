@@ -212,4 +212,9 @@ public class SerializationInputOutputFormat implements InputFormat, OutputFormat
             }
         };
     }
+
+    @Override
+    public DataFlavor[] getTransferDataFlavors() {
+        return new DataFlavor[]{dataFlavor};
+    }
 }
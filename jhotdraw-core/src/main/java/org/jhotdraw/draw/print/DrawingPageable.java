@@ -7,7 +7,6 @@
  */
 package org.jhotdraw.draw.print;
 
-import org.jhotdraw.draw.figure.Figure;
 import java.awt.*;
 import java.awt.geom.*;
 import java.awt.print.*;
@@ -40,12 +39,34 @@ public class DrawingPageable implements Pageable {
     private Drawing drawing;
     private PageFormat pageFormat;
     private boolean isAutorotate = false;
+    /**
+     * The render snapshot of the drawing which is printed.
+     */
+    private RenderSnapshot snapshot;
 
     /**
-     * Creates a new instance.
+     * Creates a new instance, which prints the figures of the drawing.
+     * <p>
+     * The figures are printed from their live state, so the drawing must not
+     * be changed while it is printed. The print actions ensure this by
+     * printing on the event dispatch thread, or by disabling the view while
+     * a worker thread prints.
      */
     public DrawingPageable(Drawing drawing) {
+        this(drawing, EventQueue.isDispatchThread() ? drawing.getRenderSnapshot()
+                : RenderSnapshot.create(drawing.getChildren()));
+    }
+
+    /**
+     * Creates a new instance, which prints the visible figures of the
+     * specified render snapshot of the drawing.
+     * <p>
+     * To print the drawing while it is changed, pass a snapshot of copies of
+     * the figures, which is created by {@link RenderSnapshot#copyOf(Drawing)}.
+     */
+    public DrawingPageable(Drawing drawing, RenderSnapshot snapshot) {
         this.drawing = drawing;
+        this.snapshot = snapshot;
         Paper paper = new Paper();
         pageFormat = new PageFormat();
         pageFormat.setPaper(paper);
@@ -78,19 +99,10 @@ public class DrawingPageable implements Pageable {
         if (pageIndex < 0 || pageIndex >= getNumberOfPages()) {
             return Printable.NO_SUCH_PAGE;
         }
-        if (drawing.getChildCount() > 0) {
+        Rectangle2D.Double drawBounds = snapshot.getDrawingArea();
+        if (drawBounds != null) {
             Graphics2D g = (Graphics2D) graphics;
             setRenderingHints(g);
-            // Determine the draw bounds of the drawing
-            Rectangle2D.Double drawBounds = null;
-            double scale = AttributeKeys.getScaleFactorFromGraphics(g);
-            for (Figure f : drawing.getChildren()) {
-                if (drawBounds == null) {
-                    drawBounds = f.getDrawingArea(scale);
-                } else {
-                    drawBounds.add(f.getDrawingArea(scale));
-                }
-            }
             // Setup a transformation for the drawing
             AffineTransform tx = new AffineTransform();
             tx.translate(
@@ -116,7 +128,7 @@ public class DrawingPageable implements Pageable {
             }
             g.transform(tx);
             // Draw the drawing
-            drawing.draw(g);
+            snapshot.draw(g);
         }
         return Printable.PAGE_EXISTS;
     }
@@ -0,0 +1,313 @@
+/*
+ * @(#)TextAreaLayout.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.text;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineBreakMeasurer;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.text.AttributedCharacterIterator;
+import java.text.AttributedString;
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.jhotdraw.draw.AttributeKeys.Alignment;
+
+/**
+ * The lines of a text which has been laid out in a text area.
+ * <p>
+ * The text is split into paragraphs at LF characters. The paragraphs are
+ * broken into lines with a {@code LineBreakMeasurer} at the right margin,
+ * and tab characters advance to the next tab stop. Each line consists of one
+ * {@code TextLayout} for each tab separated segment.
+ * <p>
+ * All coordinates are relative to the top left corner of the text area, so
+ * that the layout stays valid when the text area is moved. The layout is
+ * immutable. Text area figures keep the layout of their text, and lay out
+ * the text anew only if {@link #matches} returns false.
+ *
+ * @version $Id$
+ */
+public final class TextAreaLayout {
+
+    private final String text;
+    private final Font font;
+    private final boolean isUnderlined;
+    private final float rightMargin;
+    private final FontRenderContext frc;
+    /**
+     * The segments of all lines.
+     */
+    private final TextLayout[] segments;
+    /**
+     * The x coordinate of the pen position of each segment.
+     */
+    private final float[] segmentX;
+    /**
+     * The index of the first segment of each line, and the number of
+     * segments as the last entry.
+     */
+    private final int[] lineStarts;
+    /**
+     * The top of each line.
+     */
+    private final float[] lineTops;
+    private final float[] baselines;
+    /**
+     * The union of the bounds of the paragraphs.
+     */
+    private final Rectangle2D.Double bounds;
+    /**
+     * The outline which has been returned last by {@code getOutline}.
+     */
+    private volatile Outline cachedOutline;
+
+    private static class Outline {
+
+        final float maxBaseline;
+        final Shape shape;
+
+        Outline(float maxBaseline, Shape shape) {
+            this.maxBaseline = maxBaseline;
+            this.shape = shape;
+        }
+    }
+
+    /**
+     * Lays out the specified text.
+     *
+     * @param text The text.
+     * @param font The font.
+     * @param isUnderlined Whether the text is underlined.
+     * @param rightMargin The right margin at which lines are broken.
+     * @param tabStops The tab stops. They must only depend on the other
+     * parameters, because {@link #matches} does not compare them.
+     * @param frc The font render context.
+     */
+    public TextAreaLayout(String text, Font font, boolean isUnderlined,
+            float rightMargin, float[] tabStops, FontRenderContext frc) {
+        this.text = text;
+        this.font = font;
+        this.isUnderlined = isUnderlined;
+        this.rightMargin = rightMargin;
+        this.frc = frc;
+
+        ArrayList<TextLayout> segmentList = new ArrayList<>();
+        float[] xs = new float[16];
+        int[] starts = new int[16];
+        float[] tops = new float[16];
+        float[] bases = new float[16];
+        int lineCount = 0;
+        Rectangle2D.Double textBounds = new Rectangle2D.Double();
+        float verticalPos = 0;
+        for (String paragraph : text.split("\n")) {
+            if (paragraph.length() == 0) {
+                paragraph = " ";
+            }
+            AttributedString as = new AttributedString(paragraph);
+            as.addAttribute(TextAttribute.FONT, font);
+            if (isUnderlined) {
+                as.addAttribute(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_LOW_ONE_PIXEL);
+            }
+            AttributedCharacterIterator styledText = as.getIterator();
+            Rectangle2D.Double paragraphBounds = new Rectangle2D.Double(0, verticalPos, 0, 0);
+            int tabCount = 0;
+            for (int i = 0; i < paragraph.length(); i++) {
+                if (paragraph.charAt(i) == '\t') {
+                    tabCount++;
+                }
+            }
+            int[] tabLocations = new int[tabCount + 1];
+            int i = 0;
+            for (char c = styledText.first(); c != AttributedCharacterIterator.DONE; c = styledText.next()) {
+                if (c == '\t') {
+                    tabLocations[i++] = styledText.getIndex();
+                }
+            }
+            tabLocations[tabCount] = styledText.getEndIndex() - 1;
+            // Now tabLocations has an entry for every tab's offset in
+            // the text.  For convenience, the last entry is tabLocations
+            // is the offset of the last character in the text.
+            LineBreakMeasurer measurer = new LineBreakMeasurer(styledText, frc);
+            int currentTab = 0;
+            while (measurer.getPosition() < styledText.getEndIndex()) {
+                // Lay out each line.  All segments on a line must be
+                // computed before the baseline is known, since we must know
+                // the largest ascent on the line.
+                boolean lineContainsText = false;
+                boolean lineComplete = false;
+                float maxAscent = 0, maxDescent = 0;
+                float horizontalPos = 0;
+                if (lineCount + 1 >= starts.length) {
+                    starts = Arrays.copyOf(starts, starts.length * 2);
+                    tops = Arrays.copyOf(tops, tops.length * 2);
+                    bases = Arrays.copyOf(bases, bases.length * 2);
+                }
+                int first = segmentList.size();
+                starts[lineCount] = first;
+                while (!lineComplete) {
+                    float wrappingWidth = rightMargin - horizontalPos;
+                    TextLayout layout = measurer.nextLayout(wrappingWidth,
+                            tabLocations[currentTab] + 1,
+                            lineContainsText);
+                    // layout can be null if lineContainsText is true
+                    if (layout != null) {
+                        if (segmentList.size() == xs.length) {
+                            xs = Arrays.copyOf(xs, xs.length * 2);
+                        }
+                        xs[segmentList.size()] = horizontalPos;
+                        segmentList.add(layout);
+                        horizontalPos += layout.getAdvance();
+                        maxAscent = Math.max(maxAscent, layout.getAscent());
+                        maxDescent = Math.max(maxDescent,
+                                layout.getDescent() + layout.getLeading());
+                    } else {
+                        lineComplete = true;
+                    }
+                    lineContainsText = true;
+                    if (measurer.getPosition() == tabLocations[currentTab] + 1) {
+                        currentTab++;
+                    }
+                    if (measurer.getPosition() == styledText.getEndIndex()) {
+                        lineComplete = true;
+                    } else if (tabStops.length == 0 || horizontalPos >= tabStops[tabStops.length - 1]) {
+                        lineComplete = true;
+                    }
+                    if (!lineComplete) {
+                        // move to next tab stop
+                        int j;
+                        for (j = 0; horizontalPos >= tabStops[j]; j++) {
+                        }
+                        horizontalPos = tabStops[j];
+                    }
+                }
+                tops[lineCount] = verticalPos;
+                verticalPos += maxAscent;
+                bases[lineCount] = verticalPos;
+                lineCount++;
+                for (int s = first; s < segmentList.size(); s++) {
+                    Rectangle2D layoutBounds = segmentList.get(s).getBounds();
+                    paragraphBounds.add(new Rectangle2D.Double(layoutBounds.getX() + xs[s],
+                            layoutBounds.getY() + verticalPos,
+                            layoutBounds.getWidth(),
+                            layoutBounds.getHeight()));
+                }
+                verticalPos += maxDescent;
+            }
+            verticalPos = (float) (paragraphBounds.y + paragraphBounds.height);
+            textBounds.add(paragraphBounds);
+        }
+        starts[lineCount] = segmentList.size();
+        this.segments = segmentList.toArray(new TextLayout[segmentList.size()]);
+        this.segmentX = Arrays.copyOf(xs, segments.length);
+        this.lineStarts = Arrays.copyOf(starts, lineCount + 1);
+        this.lineTops = Arrays.copyOf(tops, lineCount);
+        this.baselines = Arrays.copyOf(bases, lineCount);
+        this.bounds = textBounds;
+    }
+
+    /**
+     * Returns true, if this is the layout of the specified text with the
+     * specified parameters.
+     */
+    public boolean matches(String text, Font font, boolean isUnderlined,
+            float rightMargin, FontRenderContext frc) {
+        return this.rightMargin == rightMargin
+                && this.isUnderlined == isUnderlined
+                && this.text.equals(text)
+                && this.font.equals(font)
+                && this.frc.equals(frc);
+    }
+
+    /**
+     * Returns the number of lines.
+     */
+    public int getLineCount() {
+        return baselines.length;
+    }
+
+    /**
+     * Returns the y coordinate of the baseline of the specified line.
+     */
+    public float getBaseline(int line) {
+        return baselines[line];
+    }
+
+    /**
+     * Returns the union of the bounds of the paragraphs. The bounds start at
+     * the origin of the text area.
+     */
+    public Rectangle2D.Double getBounds() {
+        return (Rectangle2D.Double) bounds.clone();
+    }
+
+    /**
+     * Draws the lines whose top is not below the specified height.
+     * <p>
+     * If a line has only one segment, it is aligned between the left side
+     * of the text area and the right margin with the specified alignment.
+     *
+     * @param g The graphics.
+     * @param x The left side of the text area.
+     * @param y The top of the text area.
+     * @param maxHeight The height of the text area.
+     * @param alignment The alignment of lines with one segment.
+     */
+    public void draw(Graphics2D g, float x, float y, float maxHeight, Alignment alignment) {
+        for (int line = 0; line < baselines.length && lineTops[line] <= maxHeight; line++) {
+            int first = lineStarts[line];
+            int end = lineStarts[line + 1];
+            for (int s = first; s < end; s++) {
+                float penPosition = segmentX[s];
+                if (end - first == 1) {
+                    switch (alignment) {
+                        case TRAILING:
+                            penPosition = rightMargin - segments[s].getVisibleAdvance() - 1;
+                            break;
+                        case CENTER:
+                            penPosition = (rightMargin - 1 - segments[s].getVisibleAdvance()) / 2;
+                            break;
+                        case BLOCK:
+                        // not supported
+                        case LEADING:
+                        default:
+                            break;
+                    }
+                }
+                segments[s].draw(g, x + penPosition, y + baselines[line]);
+            }
+        }
+    }
+
+    /**
+     * Returns the outline of the glyphs of the lines up to the first line
+     * whose baseline is below the specified height. The outline is relative
+     * to the origin of the text area.
+     */
+    public Shape getOutline(float maxBaseline) {
+        Outline outline = cachedOutline;
+        if (outline == null || outline.maxBaseline != maxBaseline) {
+            Path2D.Double path = new Path2D.Double();
+            AffineTransform tx = new AffineTransform();
+            for (int line = 0; line < baselines.length && baselines[line] <= maxBaseline; line++) {
+                for (int s = lineStarts[line]; s < lineStarts[line + 1]; s++) {
+                    tx.setToTranslation(segmentX[s], baselines[line]);
+                    path.append(segments[s].getOutline(tx), false);
+                }
+            }
+            outline = new Outline(maxBaseline, path);
+            cachedOutline = outline;
+        }
+        return outline.shape;
+    }
+}
@@ -34,6 +34,12 @@ import org.jhotdraw.draw.event.TransformEdit;
  * Role: State.<br>
  * Partners: {@link SelectAreaTracker} as State, {@link SelectionTool} as
  * Context, {@link HandleTracker} as State.
+ * <p>
+ * If the drag preview is enabled, and the drawing view is a
+ * {@link DefaultDrawingView}, the dragged figures are rendered once into a
+ * drag preview of the view, which is moved during the drag. The figures are
+ * transformed only once, when the mouse is released. Figures which depend on
+ * the dragged figures, like connections, follow them on release.
  *
  * @see SelectionTool
  *
@@ -43,6 +49,10 @@ import org.jhotdraw.draw.event.TransformEdit;
 public class DefaultDragTracker extends AbstractTool implements DragTracker {
 
     private static final long serialVersionUID = 1L;
+    /**
+     * Constant for the name of the dragPreviewEnabled property.
+     */
+    public static final String DRAG_PREVIEW_ENABLED_PROPERTY = "dragPreviewEnabled";
     protected Figure anchorFigure;
     /**
      * The drag rectangle encompasses the bounds of all dragged figures.
@@ -73,6 +83,15 @@ public class DefaultDragTracker extends AbstractTool implements DragTracker {
     protected Point2D.Double anchorPoint;
     private boolean isDragging;
     private HashSet<Figure> transformedFigures;
+    /**
+     * Represents the state of the dragPreviewEnabled property.
+     */
+    private boolean isDragPreviewEnabled;
+    /**
+     * The view which shows the drag preview of the current drag, or null if
+     * the figures are transformed on each mouse event.
+     */
+    private DefaultDrawingView previewView;
 
     /**
      * Creates a new instance.
@@ -84,6 +103,26 @@ public class DefaultDragTracker extends AbstractTool implements DragTracker {
     public DefaultDragTracker() {
     }
 
+    /**
+     * Sets the dragPreviewEnabled property.
+     * This is a bound property.
+     * By default, this property is set to false.
+     *
+     * @param newValue The new value.
+     */
+    public void setDragPreviewEnabled(boolean newValue) {
+        boolean oldValue = isDragPreviewEnabled;
+        isDragPreviewEnabled = newValue;
+        firePropertyChange(DRAG_PREVIEW_ENABLED_PROPERTY, oldValue, newValue);
+    }
+
+    /**
+     * Returns the value of the dragPreviewEnabled property.
+     */
+    public boolean isDragPreviewEnabled() {
+        return isDragPreviewEnabled;
+    }
+
     @Override
     public void mouseMoved(MouseEvent evt) {
         updateCursor(editor.findView((Container) evt.getSource()), evt.getPoint());
@@ -131,6 +170,10 @@ public class DefaultDragTracker extends AbstractTool implements DragTracker {
             if (isDragging == false) {
                 isDragging = true;
                 updateCursor(editor.findView((Container) evt.getSource()), new Point(evt.getX(), evt.getY()));
+                if (isDragPreviewEnabled && view instanceof DefaultDrawingView) {
+                    previewView = (DefaultDrawingView) view;
+                    previewView.startDragPreview(transformedFigures);
+                }
             }
             Point2D.Double currentPoint = view.viewToDrawing(new Point(evt.getX(), evt.getY()));
             dragRect.x += currentPoint.x - previousPoint.x;
@@ -139,14 +182,20 @@ public class DefaultDragTracker extends AbstractTool implements DragTracker {
             if (view.getConstrainer() != null) {
                 view.getConstrainer().constrainRectangle(constrainedRect);
             }
-            AffineTransform tx = new AffineTransform();
-            tx.translate(
-                    constrainedRect.x - previousOrigin.x,
-                    constrainedRect.y - previousOrigin.y);
-            for (Figure f : transformedFigures) {
-                f.willChange();
-                f.transform(tx);
-                f.changed();
+            if (previewView != null) {
+                previewView.setDragPreviewOffset(
+                        constrainedRect.x - anchorOrigin.x,
+                        constrainedRect.y - anchorOrigin.y);
+            } else {
+                AffineTransform tx = new AffineTransform();
+                tx.translate(
+                        constrainedRect.x - previousOrigin.x,
+                        constrainedRect.y - previousOrigin.y);
+                for (Figure f : transformedFigures) {
+                    f.willChange();
+                    f.transform(tx);
+                    f.changed();
+                }
             }
             previousPoint = currentPoint;
             previousOrigin = new Point2D.Double(constrainedRect.x, constrainedRect.y);
@@ -159,6 +208,22 @@ public class DefaultDragTracker extends AbstractTool implements DragTracker {
         DrawingView view = getView();
         if (transformedFigures != null && !transformedFigures.isEmpty()) {
             isDragging = false;
+            if (previewView != null) {
+                // Transform the figures once to where they have been dragged
+                previewView.endDragPreview();
+                previewView = null;
+                AffineTransform tx = new AffineTransform();
+                tx.translate(
+                        previousOrigin.x - anchorOrigin.x,
+                        previousOrigin.y - anchorOrigin.y);
+                if (!tx.isIdentity()) {
+                    for (Figure f : transformedFigures) {
+                        f.willChange();
+                        f.transform(tx);
+                        f.changed();
+                    }
+                }
+            }
             int x = evt.getX();
             int y = evt.getY();
             updateCursor(editor.findView((Container) evt.getSource()), new Point(x, y));
@@ -199,6 +264,20 @@ public class DefaultDragTracker extends AbstractTool implements DragTracker {
         fireToolDone();
     }
 
+    /**
+     * Cancels the drag preview, if the tracker is deactivated during a drag.
+     * The figures stay where they were before the drag.
+     */
+    @Override
+    public void deactivate(DrawingEditor editor) {
+        if (previewView != null) {
+            previewView.endDragPreview();
+            previewView = null;
+            isDragging = false;
+        }
+        super.deactivate(editor);
+    }
+
     @Override
     public void setDraggedFigure(Figure f) {
         anchorFigure = f;
@@ -159,11 +159,13 @@ public class DefaultSelectAreaTracker extends AbstractTool implements SelectArea
 
     private void selectGroup(boolean toggle) {
         Collection<Figure> figures = getView().findFiguresWithin(rubberband);
+        ArrayList<Figure> selectable = new ArrayList<>(figures.size());
         for (Figure f : figures) {
             if (f.isSelectable()) {
-                getView().addToSelection(f);
+                selectable.add(f);
             }
         }
+        getView().addToSelection(selectable);
     }
 
     protected void clearHoverHandles() {
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw;
+
+import java.awt.BasicStroke;
+import java.awt.Stroke;
+import static org.jhotdraw.draw.AttributeKeys.*;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the strokes which {@link AttributeKeys} caches in the attribute style
+ * of a figure.
+ */
+public class AttributeKeysNGTest {
+
+    public AttributeKeysNGTest() {
+    }
+
+    @Test
+    public void testStrokeIsCachedForStyleAndFactor() {
+        RectangleFigure f1 = new RectangleFigure();
+        RectangleFigure f2 = new RectangleFigure();
+        f1.set(STROKE_WIDTH, 2.0);
+        f2.set(STROKE_WIDTH, 2.0);
+
+        Stroke stroke = getStroke(f1, 1.0);
+        assertSame(getStroke(f1, 1.0), stroke);
+        // Figures with equal attributes share the style and its cache
+        assertSame(getStroke(f2, 1.0), stroke);
+        assertEquals(((BasicStroke) stroke).getLineWidth(), 2f);
+
+        Stroke hitStroke = getHitStroke(f1, 1.0);
+        assertSame(getHitStroke(f1, 1.0), hitStroke);
+        assertNotSame(hitStroke, stroke);
+
+        Stroke scaled = getStroke(f1, 2.0);
+        assertNotSame(scaled, stroke);
+        assertSame(getStroke(f1, 2.0), scaled);
+        assertNotSame(getHitStroke(f1, 2.0), hitStroke);
+    }
+
+    @Test
+    public void testStrokeFollowsAttributeChanges() {
+        RectangleFigure f = new RectangleFigure();
+        f.set(STROKE_WIDTH, 2.0);
+        Stroke stroke = getStroke(f, 2.0);
+        Stroke hitStroke = getHitStroke(f, 2.0);
+
+        f.set(STROKE_WIDTH, 3.0);
+        assertEquals(((BasicStroke) getStroke(f, 1.0)).getLineWidth(), 3f);
+        assertNotSame(getHitStroke(f, 2.0), hitStroke);
+
+        f.set(STROKE_WIDTH, 2.0);
+        assertEquals(getStroke(f, 2.0), stroke);
+
+        // With pixel values, the stroke width does not depend on the factor
+        f.set(IS_STROKE_PIXEL_VALUE, true);
+        Stroke pixelStroke = getStroke(f, 2.0);
+        assertNotSame(pixelStroke, stroke);
+        assertNotEquals(pixelStroke, stroke);
+        assertNotSame(getHitStroke(f, 2.0), hitStroke);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import static org.jhotdraw.draw.AttributeKeys.*;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link AttributeStyle}.
+ */
+public class AttributeStyleNGTest {
+
+    public AttributeStyleNGTest() {
+    }
+
+    @Test
+    public void testEqualAttributesShareTheStyle() {
+        RectangleFigure f1 = new RectangleFigure();
+        RectangleFigure f2 = new RectangleFigure();
+        f1.set(FILL_COLOR, Color.red);
+        f1.set(STROKE_WIDTH, 2.0);
+        f2.set(STROKE_WIDTH, Double.valueOf(2.0));
+        f2.set(FILL_COLOR, new Color(255, 0, 0));
+        assertSame(f1.getAttributesRestoreData(), f2.getAttributesRestoreData());
+
+        f2.set(FILL_COLOR, Color.blue);
+        assertEquals(f1.get(FILL_COLOR), Color.red);
+        assertEquals(f2.get(FILL_COLOR), Color.blue);
+        f2.removeAttribute(FILL_COLOR);
+        assertFalse(f2.hasAttribute(FILL_COLOR));
+        assertEquals(f2.get(FILL_COLOR), FILL_COLOR.getDefaultValue());
+    }
+
+    @Test
+    public void testMutableValuesAreNotShared() {
+        double[] dashes1 = {1, 2};
+        double[] dashes2 = {1, 2};
+        AttributeStyle s1 = AttributeStyle.EMPTY.with(STROKE_DASHES, dashes1);
+        AttributeStyle s2 = AttributeStyle.EMPTY.with(STROKE_DASHES, dashes2);
+        assertNotSame(s1, s2);
+        assertSame(s2.get(STROKE_DASHES), dashes2);
+        assertSame(AttributeStyle.EMPTY.with(STROKE_DASHES, dashes1), s1);
+    }
+
+    @Test
+    public void testSerializationResolvesToInternedStyle() throws Exception {
+        HashMap<AttributeKey<?>, Object> map = new HashMap<>();
+        map.put(FILL_COLOR, Color.green);
+        map.put(STROKE_WIDTH, 3.0);
+        AttributeStyle style = AttributeStyle.of(map);
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buf)) {
+            out.writeObject(style);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray()))) {
+            assertSame(in.readObject(), style);
+        }
+        assertEquals(style.toMap(), map);
+    }
+}
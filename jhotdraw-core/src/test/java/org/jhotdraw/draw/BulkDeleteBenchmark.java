@@ -0,0 +1,66 @@
+/*
+ * @(#)BulkDeleteBenchmark.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+
+/**
+ * Measures how long it takes to delete every other figure of a drawing and to
+ * undo the deletion, once by inserting the figures one at a time and once with
+ * {@link Drawing#addAll(int[], List)}.
+ * <p>
+ * This is not a unit test. Run it with the number of figures, for example
+ * {@code 30000}.
+ */
+public class BulkDeleteBenchmark {
+
+    public static void main(String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 30000;
+        for (int run = 0; run < 3; run++) {
+            run(new DefaultDrawing(), count);
+            run(new QuadTreeDrawing(), count);
+        }
+    }
+
+    private static void run(Drawing drawing, int count) {
+        for (int i = 0; i < count; i++) {
+            drawing.add(new RectangleFigure((i % 200) * 10, (i / 200) * 10, 8, 8));
+        }
+        List<Figure> selection = new ArrayList<>();
+        for (int i = 0; i < count; i += 2) {
+            selection.add(drawing.getChild(i));
+        }
+
+        long start = System.nanoTime();
+        List<Figure> deleted = drawing.sort(selection);
+        int[] indices = new int[deleted.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = drawing.indexOf(deleted.get(i));
+        }
+        drawing.removeAll(deleted);
+        for (int i = 0; i < indices.length; i++) {
+            drawing.add(indices[i], deleted.get(i));
+        }
+        double singleMillis = (System.nanoTime() - start) / 1000000d;
+
+        start = System.nanoTime();
+        deleted = drawing.sort(selection);
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = drawing.indexOf(deleted.get(i));
+        }
+        drawing.removeAll(deleted);
+        drawing.addAll(indices, deleted);
+        double bulkMillis = (System.nanoTime() - start) / 1000000d;
+
+        System.out.printf("%-16s %,7d figures, %,7d deleted: one at a time %9.1f ms, in bulk %9.1f ms%n",
+                drawing.getClass().getSimpleName(), count, deleted.size(), singleMillis, bulkMillis);
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw;
+
+import java.awt.Point;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.swing.JViewport;
+import javax.swing.undo.UndoableEdit;
+import org.jhotdraw.draw.event.FigureAdapter;
+import org.jhotdraw.draw.event.FigureEvent;
+import org.jhotdraw.draw.event.FigureListener;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import org.jhotdraw.draw.handle.Handle;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the selection and the lazily created selection handles of
+ * {@link DefaultDrawingView}.
+ */
+public class DefaultDrawingViewNGTest {
+
+    public DefaultDrawingViewNGTest() {
+    }
+
+    private static class ListenedFigure extends RectangleFigure {
+
+        private static final long serialVersionUID = 1L;
+
+        ListenedFigure(double x, double y, double width, double height) {
+            super(x, y, width, height);
+        }
+
+        int getFigureListenerCount() {
+            return listenerList.getListenerCount(FigureListener.class);
+        }
+    }
+
+    private DefaultDrawing drawing;
+    private DefaultDrawingView view;
+    private JViewport viewport;
+
+    /**
+     * Creates a view of 3000 x 3000 pixels, of which 200 x 200 pixels are
+     * visible.
+     */
+    private void createView(Figure... figures) {
+        drawing = new DefaultDrawing();
+        for (Figure f : figures) {
+            drawing.add(f);
+        }
+        view = new DefaultDrawingView();
+        view.setDrawing(drawing);
+        viewport = new JViewport();
+        viewport.setView(view);
+        viewport.setSize(200, 200);
+        view.setSize(3000, 3000);
+        viewport.setViewPosition(new Point(0, 0));
+        DefaultDrawingEditor editor = new DefaultDrawingEditor();
+        editor.add(view);
+        editor.setActiveView(view);
+    }
+
+    private Point toView(double x, double y) {
+        return view.drawingToView(new Point2D.Double(x, y));
+    }
+
+    private static void move(Figure f, double dx, double dy) {
+        f.willChange();
+        f.transform(AffineTransform.getTranslateInstance(dx, dy));
+        f.changed();
+    }
+
+    @Test
+    public void testSetSelectedFiguresFiresOneEvent() {
+        ListenedFigure a = new ListenedFigure(10, 10, 20, 20);
+        ListenedFigure b = new ListenedFigure(50, 10, 20, 20);
+        ListenedFigure c = new ListenedFigure(90, 10, 20, 20);
+        createView(a, b, c);
+        int unselectedCount = a.getFigureListenerCount();
+        int[] events = new int[1];
+        view.addFigureSelectionListener(e -> events[0]++);
+
+        view.setSelectedFigures(Arrays.<Figure>asList(a, b));
+        assertEquals(events[0], 1);
+        assertEquals(view.getSelectedFigures(), new java.util.HashSet<>(Arrays.asList(a, b)));
+        assertEquals(a.getFigureListenerCount(), unselectedCount + 1);
+        assertEquals(b.getFigureListenerCount(), unselectedCount + 1);
+        assertEquals(c.getFigureListenerCount(), unselectedCount);
+
+        view.setSelectedFigures(Arrays.<Figure>asList(b, c));
+        assertEquals(events[0], 2);
+        assertEquals(a.getFigureListenerCount(), unselectedCount);
+        assertEquals(b.getFigureListenerCount(), unselectedCount + 1);
+        assertEquals(c.getFigureListenerCount(), unselectedCount + 1);
+
+        // Setting the same selection again does nothing
+        view.setSelectedFigures(Arrays.<Figure>asList(c, b));
+        assertEquals(events[0], 2);
+
+        view.setSelectedFigures(Collections.<Figure>emptyList());
+        assertEquals(events[0], 3);
+        assertEquals(b.getFigureListenerCount(), unselectedCount);
+        assertEquals(c.getFigureListenerCount(), unselectedCount);
+    }
+
+    @Test
+    public void testHandlesAreCreatedOnScroll() {
+        RectangleFigure near = new RectangleFigure(50, 50, 20, 20);
+        RectangleFigure far = new RectangleFigure(1500, 1500, 20, 20);
+        createView(near, far);
+        view.setSelectedFigures(Arrays.<Figure>asList(near, far));
+
+        assertNotNull(view.findHandle(toView(50, 50)));
+        // The far figure is outside of the handles area
+        assertNull(view.findHandle(toView(1500, 1500)));
+
+        viewport.setViewPosition(new Point(1400, 1400));
+        Handle h = view.findHandle(toView(1500, 1500));
+        assertNotNull(h);
+        assertSame(h.getOwner(), far);
+    }
+
+    @Test
+    public void testHandlesAreCreatedForFigureMovedIntoView() {
+        RectangleFigure near = new RectangleFigure(50, 50, 20, 20);
+        RectangleFigure far = new RectangleFigure(1500, 1500, 20, 20);
+        createView(near, far);
+        view.setSelectedFigures(Arrays.<Figure>asList(near, far));
+        assertNull(view.findHandle(toView(1500, 1500)));
+
+        move(far, -1400, -1400);
+        Handle h = view.findHandle(toView(100, 100));
+        assertNotNull(h);
+        assertSame(h.getOwner(), far);
+    }
+
+    @Test
+    public void testHandlesOfMovedFiguresAreFound() {
+        RectangleFigure[] figures = new RectangleFigure[8];
+        for (int i = 0; i < figures.length; i++) {
+            figures[i] = new RectangleFigure(10 + (i % 4) * 60, 10 + (i / 4) * 90, 20, 20);
+        }
+        createView(figures);
+        view.setSelectedFigures(Arrays.<Figure>asList(figures));
+        // Builds the handle index
+        assertSame(view.findHandle(toView(10, 10)).getOwner(), figures[0]);
+
+        // A few moved handles are updated in the index
+        move(figures[0], 30, 40);
+        assertNull(view.findHandle(toView(10, 10)));
+        assertSame(view.findHandle(toView(40, 50)).getOwner(), figures[0]);
+
+        // The index is rebuilt, if more than a quarter of the handles moved
+        for (int i = 4; i < 8; i++) {
+            move(figures[i], 0, 40);
+        }
+        for (int i = 4; i < 8; i++) {
+            assertNull(view.findHandle(toView(10 + (i % 4) * 60, 100)));
+            assertSame(view.findHandle(toView(10 + (i % 4) * 60, 140)).getOwner(), figures[i]);
+        }
+        assertSame(view.findHandle(toView(40, 50)).getOwner(), figures[0]);
+    }
+
+    @Test
+    public void testHandlesOfExtendedAreaAreFound() {
+        RectangleFigure near = new RectangleFigure(50, 50, 20, 20);
+        RectangleFigure far = new RectangleFigure(1500, 1500, 20, 20);
+        createView(near, far);
+        view.setSelectedFigures(Arrays.<Figure>asList(near, far));
+        // Builds the handle index without the handles of the far figure
+        Handle h = view.findHandle(toView(50, 50));
+        assertSame(h.getOwner(), near);
+        assertNull(view.findHandle(toView(1500, 1500)));
+
+        // Creates the handles of all selected figures
+        view.getCompatibleHandles(h);
+        assertSame(view.findHandle(toView(1500, 1500)).getOwner(), far);
+    }
+
+    @Test
+    public void testFrontMostHandleWins() {
+        RectangleFigure a = new RectangleFigure(50, 50, 20, 20);
+        RectangleFigure b = new RectangleFigure(50, 50, 20, 20);
+        createView(a, b);
+        view.setSelectedFigures(Arrays.<Figure>asList(a, b));
+        assertSame(view.findHandle(toView(50, 50)).getOwner(), b);
+        assertSame(view.findHandle(toView(70, 70)).getOwner(), b);
+
+        view.clearSelection();
+        view.setSelectedFigures(Arrays.<Figure>asList(b, a));
+        assertSame(view.findHandle(toView(50, 50)).getOwner(), a);
+    }
+
+    @Test
+    public void testDeleteDoesNotChangeRemainingFigures() {
+        QuadTreeDrawing d = new QuadTreeDrawing();
+        ArrayList<RectangleFigure> figures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            RectangleFigure f = new RectangleFigure(i * 10, i * 10, 5, 5);
+            figures.add(f);
+            d.add(f);
+        }
+        ArrayList<UndoableEdit> edits = new ArrayList<>();
+        d.addUndoableEditListener(e -> edits.add(e.getEdit()));
+        view = new DefaultDrawingView();
+        view.setDrawing(d);
+        view.setSize(200, 200);
+        DefaultDrawingEditor editor = new DefaultDrawingEditor();
+        editor.add(view);
+        editor.setActiveView(view);
+        List<Figure> deleted = Arrays.<Figure>asList(figures.get(3), figures.get(50), figures.get(97));
+        view.setSelectedFigures(deleted);
+
+        int[] events = new int[1];
+        FigureAdapter listener = new FigureAdapter() {
+            @Override
+            public void areaInvalidated(FigureEvent e) {
+                events[0]++;
+            }
+
+            @Override
+            public void figureChanged(FigureEvent e) {
+                events[0]++;
+            }
+        };
+        for (Figure f : figures) {
+            if (!deleted.contains(f)) {
+                f.addFigureListener(listener);
+            }
+        }
+
+        view.delete();
+        assertEquals(d.getChildCount(), 97);
+        assertEquals(events[0], 0);
+        assertEquals(edits.size(), 1);
+
+        edits.get(0).undo();
+        assertEquals(d.getChildren(), figures);
+        edits.get(0).redo();
+        assertEquals(d.getChildCount(), 97);
+        assertFalse(d.contains(figures.get(50)));
+        assertEquals(events[0], 0);
+    }
+}
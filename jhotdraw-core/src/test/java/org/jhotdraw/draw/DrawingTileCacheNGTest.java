@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
+import org.jhotdraw.draw.figure.EllipseFigure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Compares the output of {@link DrawingTileCache} with drawing the drawing
+ * directly.
+ */
+public class DrawingTileCacheNGTest {
+
+    public DrawingTileCacheNGTest() {
+    }
+
+    @Test
+    public void testTilesMatchDirectDrawing() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            testTilesMatchDirectDrawing(new DefaultDrawing());
+            testTilesMatchDirectDrawing(new QuadTreeDrawing());
+        });
+    }
+
+    private void testTilesMatchDirectDrawing(Drawing drawing) {
+        for (int i = 0; i < 40; i++) {
+            drawing.add(new RectangleFigure(i * 17, i * 11, 60, 40));
+            drawing.add(new EllipseFigure(400 - i * 9, i * 13, 50, 70));
+        }
+        DrawingTileCache cache = new DrawingTileCache();
+        Point translation = new Point(-30, 20);
+        Rectangle visibleRect = new Rectangle(0, 0, 700, 600);
+        for (double scale : new double[]{1.0, 1.5}) {
+            BufferedImage expected = createImage(visibleRect);
+            Graphics2D g = expected.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+            g.setClip(visibleRect);
+            AffineTransform tx = new AffineTransform();
+            tx.translate(-translation.x, -translation.y);
+            tx.scale(scale, scale);
+            g.transform(tx);
+            drawing.draw(g);
+            g.dispose();
+
+            BufferedImage actual = createImage(visibleRect);
+            g = actual.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+            g.setClip(visibleRect);
+            cache.paint(g, drawing, scale, translation, visibleRect);
+            g.dispose();
+
+            for (int y = 0; y < visibleRect.height; y++) {
+                for (int x = 0; x < visibleRect.width; x++) {
+                    assertTrue(matchesNear(expected, x, y, actual.getRGB(x, y)), "pixel " + x + "," + y + " at scale " + scale);
+                }
+            }
+        }
+        cache.flush();
+    }
+
+    @Test
+    public void testFiguresAreDrawnSeriallyWhilePaintWaits() throws Exception {
+        AtomicInteger drawing = new AtomicInteger();
+        AtomicInteger maxDrawing = new AtomicInteger();
+        AtomicInteger draws = new AtomicInteger();
+        RectangleFigure f = new RectangleFigure(0, 0, 1000, 1000) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void draw(Graphics2D g) {
+                maxDrawing.accumulateAndGet(drawing.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(2);
+                    super.draw(g);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    draws.incrementAndGet();
+                    drawing.decrementAndGet();
+                }
+            }
+        };
+        DefaultDrawing d = new DefaultDrawing();
+        d.add(f);
+        SwingUtilities.invokeAndWait(() -> {
+            DrawingTileCache cache = new DrawingTileCache();
+            Rectangle visibleRect = new Rectangle(0, 0, 1000, 1000);
+            BufferedImage img = createImage(visibleRect);
+            Graphics2D g = img.createGraphics();
+            g.setClip(visibleRect);
+            cache.paint(g, d, 1.0, new Point(), visibleRect);
+            g.dispose();
+            // 4 x 4 tiles
+            assertEquals(draws.get(), 16);
+            assertEquals(drawing.get(), 0);
+        });
+        assertEquals(maxDrawing.get(), 1);
+    }
+
+    /**
+     * Curves may be rasterized one pixel off at the tile borders, because
+     * they are clipped differently.
+     */
+    private boolean matchesNear(BufferedImage img, int x, int y, int rgb) {
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                int nx = x + dx;
+                int ny = y + dy;
+                if (nx >= 0 && ny >= 0 && nx < img.getWidth() && ny < img.getHeight()
+                        && img.getRGB(nx, ny) == rgb) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private BufferedImage createImage(Rectangle r) {
+        return new BufferedImage(r.width, r.height, BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * @(#)FindHandleBenchmark.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Random;
+import org.jhotdraw.draw.figure.BezierFigure;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.handle.Handle;
+import org.jhotdraw.geom.BezierPath;
+
+/**
+ * Measures the latency of {@link DefaultDrawingView#findHandle} with a large
+ * selection, and compares it with a linear scan over the same handles.
+ * <p>
+ * This is not a unit test. Run it with the figure counts as arguments,
+ * for example {@code 10000}. The figures are selected with handle detail
+ * level 0 and 1.
+ */
+public class FindHandleBenchmark {
+
+    private static final int HIT_TESTS = 10000;
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            args = new String[]{"10000"};
+        }
+        for (String arg : args) {
+            run(Integer.parseInt(arg), 0);
+            run(Integer.parseInt(arg), 1);
+        }
+    }
+
+    private static void run(int figureCount, int detailLevel) {
+        Random rnd = new Random(0);
+        DefaultDrawing drawing = new DefaultDrawing();
+        for (int i = 0; i < figureCount; i++) {
+            BezierFigure f = new BezierFigure();
+            double x = rnd.nextDouble() * 4000;
+            double y = rnd.nextDouble() * 4000;
+            for (int j = 0; j < 4; j++) {
+                f.addNode(new BezierPath.Node(x + rnd.nextDouble() * 60, y + rnd.nextDouble() * 60));
+            }
+            drawing.basicAdd(f);
+        }
+        DefaultDrawingView view = new DefaultDrawingView();
+        DefaultDrawingEditor editor = new DefaultDrawingEditor();
+        editor.add(view);
+        editor.setActiveView(view);
+        view.setDrawing(drawing);
+
+        long start = System.nanoTime();
+        view.selectAll();
+        view.setHandleDetailLevel(detailLevel);
+        view.findHandle(new Point(0, 0));
+        double setupMillis = (System.nanoTime() - start) / 1000000d;
+
+        Point[] points = new Point[HIT_TESTS];
+        for (int i = 0; i < HIT_TESTS; i++) {
+            points[i] = new Point(rnd.nextInt(4000), rnd.nextInt(4000));
+        }
+        int hits = 0;
+        start = System.nanoTime();
+        for (Point p : points) {
+            if (view.findHandle(p) != null) {
+                hits++;
+            }
+        }
+        double indexedMicros = (System.nanoTime() - start) / 1000d / HIT_TESTS;
+
+        // The same handles as in the view, scanned like before they were indexed
+        ArrayList<Handle> handles = new ArrayList<>();
+        for (Figure f : view.getSelectedFigures()) {
+            for (Handle h : f.createHandles(view.getHandleDetailLevel())) {
+                h.setView(view);
+                handles.add(h);
+            }
+        }
+        int linearHits = 0;
+        start = System.nanoTime();
+        for (Point p : points) {
+            for (int i = handles.size() - 1; i >= 0; i--) {
+                if (handles.get(i).contains(p)) {
+                    linearHits++;
+                    break;
+                }
+            }
+        }
+        double linearMicros = (System.nanoTime() - start) / 1000d / HIT_TESTS;
+
+        System.out.printf("%,8d figures, detail level %d, %,8d handles: select all + first lookup %8.1f ms, "
+                + "findHandle %8.2f µs, linear scan %8.2f µs (%d/%d hits)%n",
+                figureCount, detailLevel, handles.size(), setupMillis, indexedMicros, linearMicros, hits, linearHits);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * @(#)QuadTreeDrawingBenchmark.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Random;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import org.jhotdraw.geom.RTree;
+
+/**
+ * Measures the latency of hit tests and clip-bounded repaints of a
+ * {@link QuadTreeDrawing} with a quad tree and with an R-tree.
+ * <p>
+ * This is not a unit test. Run it with the figure counts as arguments,
+ * for example {@code 10000 100000 1000000}. Large figure counts need a large
+ * heap.
+ */
+public class QuadTreeDrawingBenchmark {
+
+    private static final int HIT_TESTS = 10000;
+    private static final int REPAINTS = 200;
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            args = new String[]{"10000", "100000", "1000000"};
+        }
+        for (String arg : args) {
+            run(Integer.parseInt(arg), false);
+            run(Integer.parseInt(arg), true);
+        }
+    }
+
+    private static void run(int figureCount, boolean rTree) {
+        // Scatter the figures over an area which grows with their number,
+        // so that the density stays the same.
+        double extent = Math.sqrt(figureCount) * 20;
+        Random rnd = new Random(0);
+        ArrayList<Figure> figures = new ArrayList<>(figureCount);
+        for (int i = 0; i < figureCount; i++) {
+            figures.add(new RectangleFigure(rnd.nextDouble() * extent, rnd.nextDouble() * extent,
+                    5 + rnd.nextDouble() * 30, 5 + rnd.nextDouble() * 30));
+        }
+        QuadTreeDrawing drawing = rTree ? new QuadTreeDrawing(new RTree<Figure>()) : new QuadTreeDrawing();
+        long start = System.nanoTime();
+        drawing.addAll(figures);
+        double loadMillis = (System.nanoTime() - start) / 1000000d;
+        Point2D.Double p = new Point2D.Double();
+
+        // Warm up
+        for (int i = 0; i < HIT_TESTS; i++) {
+            p.setLocation(rnd.nextDouble() * extent, rnd.nextDouble() * extent);
+            drawing.findFigure(p);
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < HIT_TESTS; i++) {
+            p.setLocation(rnd.nextDouble() * extent, rnd.nextDouble() * extent);
+            drawing.findFigure(p);
+        }
+        double hitTestMicros = (System.nanoTime() - start) / 1000d / HIT_TESTS;
+
+        BufferedImage img = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        start = System.nanoTime();
+        for (int i = 0; i < REPAINTS; i++) {
+            int x = (int) (rnd.nextDouble() * (extent - 256));
+            int y = (int) (rnd.nextDouble() * (extent - 256));
+            Graphics2D gr = (Graphics2D) g.create();
+            gr.translate(-x, -y);
+            gr.setClip(x, y, 256, 256);
+            drawing.draw(gr);
+            gr.dispose();
+        }
+        double repaintMillis = (System.nanoTime() - start) / 1000000d / REPAINTS;
+        g.dispose();
+
+        System.out.printf("%-8s %,10d figures: addAll %8.1f ms, findFigure %8.2f us, 256x256 clip repaint %8.3f ms%n",
+                rTree ? "RTree" : "QuadTree", figureCount, loadMillis, hitTestMicros, repaintMillis);
+    }
+}
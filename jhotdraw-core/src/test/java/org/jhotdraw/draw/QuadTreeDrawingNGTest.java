@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jhotdraw.draw.event.CompositeFigureEvent;
+import org.jhotdraw.draw.event.CompositeFigureListener;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import org.jhotdraw.geom.RTree;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the z-order of the results returned by {@link QuadTreeDrawing}.
+ */
+public class QuadTreeDrawingNGTest {
+
+    public QuadTreeDrawingNGTest() {
+    }
+
+    @Test
+    public void testFindFigureReturnsFrontmost() {
+        testFindFigureReturnsFrontmost(new QuadTreeDrawing());
+        testFindFigureReturnsFrontmost(new QuadTreeDrawing(new RTree<Figure>()));
+    }
+
+    private void testFindFigureReturnsFrontmost(QuadTreeDrawing drawing) {
+        Figure back = new RectangleFigure(0, 0, 100, 100);
+        Figure front = new RectangleFigure(50, 50, 100, 100);
+        drawing.add(back);
+        drawing.add(front);
+        Point2D.Double p = new Point2D.Double(75, 75);
+        assertSame(drawing.findFigure(p), front);
+        assertSame(drawing.findFigureExcept(p, front), back);
+        assertSame(drawing.findFigureBehind(p, front), back);
+
+        drawing.bringToFront(back);
+        assertSame(drawing.findFigure(p), back);
+        drawing.sendToBack(back);
+        assertSame(drawing.findFigure(p), front);
+    }
+
+    @Test
+    public void testFindFiguresIsSortedAfterInsertAtIndex() {
+        testFindFiguresIsSortedAfterInsertAtIndex(new QuadTreeDrawing());
+        testFindFiguresIsSortedAfterInsertAtIndex(new QuadTreeDrawing(new RTree<Figure>()));
+    }
+
+    private void testFindFiguresIsSortedAfterInsertAtIndex(QuadTreeDrawing drawing) {
+        Figure a = new RectangleFigure(0, 0, 10, 10);
+        Figure b = new RectangleFigure(5, 5, 10, 10);
+        Figure c = new RectangleFigure(2, 2, 10, 10);
+        Figure d = new RectangleFigure(3, 3, 10, 10);
+        drawing.add(a);
+        drawing.add(b);
+        drawing.add(1, c);
+        drawing.add(0, d);
+        List<Figure> expected = Arrays.asList(d, a, c, b);
+        assertEquals(drawing.getChildren(), expected);
+        assertEquals(drawing.findFigures(new Rectangle2D.Double(0, 0, 20, 20)), expected);
+        assertEquals(drawing.sort(Arrays.asList(b, c, a, d)), expected);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(drawing.indexOf(expected.get(i)), i);
+        }
+
+        drawing.remove(c);
+        assertEquals(drawing.indexOf(c), -1);
+        assertEquals(drawing.findFigures(new Rectangle2D.Double(0, 0, 20, 20)), Arrays.asList(d, a, b));
+
+        drawing.addAll(1, Arrays.asList(c, new RectangleFigure(1, 1, 10, 10)));
+        assertEquals(drawing.findFigures(new Rectangle2D.Double(0, 0, 20, 20)), drawing.getChildren());
+        assertSame(drawing.getChildren().get(1), c);
+    }
+
+    @Test
+    public void testRepeatedInsertAtSameIndex() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        drawing.add(new RectangleFigure(0, 0, 10, 10));
+        drawing.add(new RectangleFigure(0, 0, 10, 10));
+        for (int i = 0; i < 200; i++) {
+            drawing.add(1, new RectangleFigure(0, 0, 10, 10));
+        }
+        List<Figure> children = drawing.getChildren();
+        assertEquals(drawing.findFigures(new Rectangle2D.Double(0, 0, 20, 20)), children);
+        assertSame(drawing.findFigure(new Point2D.Double(5, 5)), children.get(children.size() - 1));
+    }
+
+    @Test
+    public void testRemoveAllFiresOneEvent() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        List<Figure> figures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Figure f = new RectangleFigure(i * 10, 0, 10, 10);
+            figures.add(f);
+            drawing.add(f);
+        }
+        final List<CompositeFigureEvent> bulkEvents = new ArrayList<>();
+        final List<Integer> replayedIndices = new ArrayList<>();
+        drawing.addCompositeFigureListener(new CompositeFigureListener() {
+            @Override
+            public void figureAdded(CompositeFigureEvent e) {
+                replayedIndices.add(e.getIndex());
+            }
+
+            @Override
+            public void figureRemoved(CompositeFigureEvent e) {
+                replayedIndices.add(e.getIndex());
+            }
+
+            @Override
+            public void figuresRemoved(CompositeFigureEvent e) {
+                bulkEvents.add(e);
+                CompositeFigureListener.super.figuresRemoved(e);
+            }
+        });
+
+        List<Figure> removed = Arrays.asList(figures.get(7), figures.get(2), figures.get(3));
+        drawing.removeAll(removed);
+        assertEquals(bulkEvents.size(), 1);
+        CompositeFigureEvent e = bulkEvents.get(0);
+        assertEquals(e.getChildFigures(), Arrays.asList(figures.get(2), figures.get(3), figures.get(7)));
+        assertEquals(e.getIndex(0), 2);
+        assertEquals(e.getIndex(2), 7);
+        // Replayed as single removals, each index is valid at the time of the removal
+        assertEquals(replayedIndices, Arrays.asList(2, 2, 5));
+
+        assertEquals(drawing.getChildCount(), 7);
+        for (int i = 0; i < drawing.getChildCount(); i++) {
+            assertEquals(drawing.indexOf(drawing.getChild(i)), i);
+        }
+        assertEquals(drawing.indexOf(figures.get(3)), -1);
+        assertEquals(drawing.findFigures(new Rectangle2D.Double(0, 0, 100, 10)), drawing.getChildren());
+        assertNull(drawing.findFigure(new Point2D.Double(25, 5)));
+    }
+
+    @Test
+    public void testAddAllAtIndicesRestoresRemovedFigures() {
+        testAddAllAtIndicesRestoresRemovedFigures(new QuadTreeDrawing());
+        testAddAllAtIndicesRestoresRemovedFigures(new QuadTreeDrawing(new RTree<Figure>()));
+        testAddAllAtIndicesRestoresRemovedFigures(new DefaultDrawing());
+    }
+
+    private void testAddAllAtIndicesRestoresRemovedFigures(Drawing drawing) {
+        List<Figure> figures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Figure f = new RectangleFigure(0, 0, 10 + i, 10);
+            figures.add(f);
+            drawing.add(f);
+        }
+        List<Figure> removed = Arrays.asList(figures.get(0), figures.get(4), figures.get(5), figures.get(9));
+        int[] indices = {0, 4, 5, 9};
+        drawing.removeAll(removed);
+        assertEquals(drawing.getChildCount(), 6);
+
+        drawing.addAll(indices, removed);
+        assertEquals(drawing.getChildren(), figures);
+        for (int i = 0; i < figures.size(); i++) {
+            assertEquals(drawing.indexOf(figures.get(i)), i);
+        }
+        assertEquals(drawing.sort(new ArrayList<>(removed)), removed);
+        assertEquals(drawing.findFigures(new Rectangle2D.Double(0, 0, 20, 10)), figures);
+        assertSame(drawing.findFigure(new Point2D.Double(5, 5)), figures.get(9));
+    }
+}
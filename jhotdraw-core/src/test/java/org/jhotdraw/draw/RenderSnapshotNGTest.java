@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import org.jhotdraw.draw.figure.Figure;
+import org.jhotdraw.draw.figure.LineConnectionFigure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that {@link RenderSnapshot}s follow the changes of a drawing, and that
+ * a snapshot does not change once it has been taken.
+ */
+public class RenderSnapshotNGTest {
+
+    public RenderSnapshotNGTest() {
+    }
+
+    @Test
+    public void testSnapshotFollowsChanges() {
+        testSnapshotFollowsChanges(new DefaultDrawing());
+        testSnapshotFollowsChanges(new QuadTreeDrawing());
+    }
+
+    private void testSnapshotFollowsChanges(Drawing drawing) {
+        RectangleFigure[] figures = new RectangleFigure[200];
+        for (int i = 0; i < figures.length; i++) {
+            figures[i] = new RectangleFigure(i * 10, 0, 5, 5);
+            drawing.add(figures[i]);
+        }
+        RenderSnapshot snapshot = drawing.getRenderSnapshot();
+        assertEquals(snapshot.getFigures(), Arrays.asList(figures));
+        assertSame(drawing.getRenderSnapshot(), snapshot);
+
+        // Move a figure
+        Rectangle2D.Double oldArea = snapshot.getDrawingArea(150);
+        figures[150].willChange();
+        figures[150].transform(AffineTransform.getTranslateInstance(0, 1000));
+        figures[150].changed();
+        RenderSnapshot moved = drawing.getRenderSnapshot();
+        assertNotSame(moved, snapshot);
+        assertEquals(snapshot.getDrawingArea(150), oldArea);
+        assertEquals(moved.getDrawingArea(150), figures[150].getDrawingArea());
+        assertEquals(moved.findIntersects(new Rectangle2D.Double(1500, 1000, 5, 5)),
+                Arrays.asList(figures[150]));
+        assertTrue(snapshot.findIntersects(new Rectangle2D.Double(1500, 1000, 5, 5)).isEmpty());
+
+        // Remove and add figures
+        drawing.remove(figures[0]);
+        Figure added = new RectangleFigure(-100, -100, 10, 10);
+        drawing.add(added);
+        RenderSnapshot changed = drawing.getRenderSnapshot();
+        assertEquals(changed.size(), figures.length);
+        assertSame(changed.getFigure(0), figures[1]);
+        assertSame(changed.getFigure(changed.size() - 1), added);
+        assertEquals(moved.size(), figures.length);
+        assertSame(moved.getFigure(0), figures[0]);
+
+        // Hide a figure
+        figures[10].setVisible(false);
+        assertFalse(drawing.getRenderSnapshot().getVisibleFigures().contains(figures[10]));
+        assertTrue(changed.getVisibleFigures().contains(figures[10]));
+    }
+
+    @Test
+    public void testCopyOfIsDetachedFromDrawing() {
+        Drawing drawing = new DefaultDrawing();
+        RectangleFigure a = new RectangleFigure(0, 0, 10, 10);
+        RectangleFigure b = new RectangleFigure(100, 0, 10, 10);
+        LineConnectionFigure c = new LineConnectionFigure();
+        drawing.add(a);
+        drawing.add(b);
+        drawing.add(c);
+        c.setStartConnector(a.findConnector(new Point2D.Double(5, 5), c));
+        c.setEndConnector(b.findConnector(new Point2D.Double(105, 5), c));
+        c.updateConnection();
+
+        // Copied by the event dispatch thread, while this thread waits
+        RenderSnapshot copy = RenderSnapshot.copyOf(drawing);
+        assertEquals(copy.size(), 3);
+        for (int i = 0; i < copy.size(); i++) {
+            assertNotSame(copy.getFigure(i), drawing.getChild(i));
+            assertEquals(copy.getDrawingArea(i), drawing.getChild(i).getDrawingArea());
+        }
+        LineConnectionFigure copiedConnection = (LineConnectionFigure) copy.getFigure(2);
+        assertSame(copiedConnection.getStartFigure(), copy.getFigure(0));
+        assertSame(copiedConnection.getEndFigure(), copy.getFigure(1));
+
+        Rectangle2D.Double copiedArea = copiedConnection.getDrawingArea();
+        b.willChange();
+        b.transform(AffineTransform.getTranslateInstance(0, 200));
+        b.changed();
+        assertFalse(c.getDrawingArea().equals(copiedArea));
+        assertEquals(copiedConnection.getDrawingArea(), copiedArea);
+
+        // A connection to a figure which is not copied is connected to a copy
+        // of the figure
+        copy = RenderSnapshot.copyOf(Arrays.<Figure>asList(c));
+        copiedConnection = (LineConnectionFigure) copy.getFigure(0);
+        assertNotSame(copiedConnection.getEndFigure(), b);
+        assertEquals(copiedConnection.getEndFigure().getBounds(), b.getBounds());
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * @(#)StrokeAllocationBenchmark.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import static org.jhotdraw.draw.AttributeKeys.*;
+import org.jhotdraw.draw.figure.RectangleFigure;
+
+/**
+ * Measures the memory which is allocated by repainting a drawing, and the
+ * share of it which is caused by {@link AttributeKeys#getStroke}.
+ * <p>
+ * This is not a unit test. Run it with the figure counts as arguments,
+ * for example {@code 50000}. The allocation counters require a virtual
+ * machine which supports {@code com.sun.management.ThreadMXBean}.
+ */
+public class StrokeAllocationBenchmark {
+
+    private static final int REPAINTS = 20;
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            args = new String[]{"50000"};
+        }
+        for (String arg : args) {
+            run(Integer.parseInt(arg));
+        }
+    }
+
+    private static void run(int figureCount) {
+        Random rnd = new Random(0);
+        DefaultDrawing drawing = new DefaultDrawing();
+        for (int i = 0; i < figureCount; i++) {
+            RectangleFigure f = new RectangleFigure(rnd.nextDouble() * 1900, rnd.nextDouble() * 1900, 5 + rnd.nextDouble() * 90, 5 + rnd.nextDouble() * 90);
+            f.set(FILL_COLOR, Color.white);
+            f.set(STROKE_COLOR, Color.black);
+            f.set(STROKE_WIDTH, 1.0 + i % 3);
+            if (i % 4 == 0) {
+                f.set(STROKE_DASHES, new double[]{4, 2});
+            }
+            drawing.basicAdd(f);
+        }
+        BufferedImage img = new BufferedImage(2000, 2000, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setClip(0, 0, 2000, 2000);
+        // Warm up
+        for (int i = 0; i < 3; i++) {
+            drawing.draw(g);
+        }
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < REPAINTS; i++) {
+            drawing.draw(g);
+        }
+        double repaintMillis = (System.nanoTime() - start) / 1000000d / REPAINTS;
+        allocated = (allocatedBytes() - allocated) / REPAINTS;
+
+        long strokeAllocated = allocatedBytes();
+        for (int i = 0; i < REPAINTS; i++) {
+            for (org.jhotdraw.draw.figure.Figure f : drawing.getChildren()) {
+                getStroke(f, 1.0);
+            }
+        }
+        strokeAllocated = (allocatedBytes() - strokeAllocated) / REPAINTS;
+        g.dispose();
+
+        System.out.printf("%,8d figures: repaint %8.1f ms, %,12d bytes allocated per repaint, "
+                + "%,10d bytes of them by getStroke (%,.1f bytes/figure)%n",
+                figureCount, repaintMillis, allocated, strokeAllocated, strokeAllocated / (double) figureCount);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw.event;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that a {@link TransformRestoreEdit}, which keeps only the original
+ * state of the figure, can be undone and redone repeatedly.
+ */
+public class TransformRestoreEditNGTest {
+
+    public TransformRestoreEditNGTest() {
+    }
+
+    @Test
+    public void testUndoRedo() {
+        RectangleFigure f = new RectangleFigure(10, 20, 30, 40);
+        Object restoreData = f.getTransformRestoreData();
+        f.willChange();
+        f.transform(AffineTransform.getScaleInstance(2, 3));
+        f.changed();
+        TransformRestoreEdit edit = new TransformRestoreEdit(f, restoreData);
+        for (int i = 0; i < 3; i++) {
+            edit.undo();
+            assertEquals(f.getBounds(), new Rectangle2D.Double(10, 20, 30, 40));
+            edit.redo();
+            assertEquals(f.getBounds(), new Rectangle2D.Double(20, 60, 60, 120));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * @(#)AttributedFigureHeapBenchmark.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.figure;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import static org.jhotdraw.draw.AttributeKeys.*;
+
+/**
+ * Measures the heap footprint of {@link RectangleFigure}s with the attributes
+ * which a {@code DefaultDrawingEditor} applies to new figures.
+ * <p>
+ * This is not a unit test. Run it with the figure counts as arguments,
+ * for example {@code 1000000}. Large figure counts need a large heap.
+ */
+public class AttributedFigureHeapBenchmark {
+
+    private static final Color[] FILL_COLORS = {
+        Color.white, Color.red, Color.green, Color.blue,
+        Color.yellow, Color.cyan, Color.magenta, Color.orange
+    };
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            args = new String[]{"1000000"};
+        }
+        for (String arg : args) {
+            run(Integer.parseInt(arg));
+        }
+    }
+
+    private static void run(int figureCount) {
+        long before = usedMemory();
+        long start = System.nanoTime();
+        ArrayList<Figure> figures = new ArrayList<>(figureCount);
+        for (int i = 0; i < figureCount; i++) {
+            RectangleFigure f = new RectangleFigure(i % 1000 * 20, i / 1000 * 20, 10, 10);
+            // Most figures share the default attributes of the editor,
+            // some have another fill color.
+            f.set(FILL_COLOR, (i % 10 == 0) ? FILL_COLORS[i / 10 % FILL_COLORS.length] : Color.white);
+            f.set(STROKE_COLOR, Color.black);
+            f.set(TEXT_COLOR, Color.black);
+            f.set(STROKE_WIDTH, 1.0);
+            figures.add(f);
+        }
+        double createMillis = (System.nanoTime() - start) / 1000000d;
+        long after = usedMemory();
+
+        start = System.nanoTime();
+        ArrayList<Figure> clones = new ArrayList<>(figureCount);
+        for (Figure f : figures) {
+            clones.add(f.clone());
+        }
+        double cloneMillis = (System.nanoTime() - start) / 1000000d;
+        long afterClone = usedMemory();
+
+        System.out.printf("%,10d figures: %,8.1f bytes/figure, %,8.1f bytes/clone, create %8.1f ms, clone %8.1f ms%n",
+                figureCount, (after - before) / (double) figureCount,
+                (afterClone - after) / (double) figureCount, createMillis, cloneMillis);
+        // Keep the figures reachable until the heap has been measured
+        if (figures.size() + clones.size() == 0) {
+            System.out.println();
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
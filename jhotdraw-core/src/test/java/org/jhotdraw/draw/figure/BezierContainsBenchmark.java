@@ -0,0 +1,76 @@
+/*
+ * @(#)BezierContainsBenchmark.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.figure;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.util.Random;
+import static org.jhotdraw.draw.AttributeKeys.*;
+import org.jhotdraw.geom.BezierPath;
+
+/**
+ * Measures the time of {@link BezierFigure#contains} on an unchanged
+ * figure, as it happens when the mouse hovers over a drawing.
+ * <p>
+ * This is not a unit test. Run it with the node counts as arguments, for
+ * example {@code 1000}.
+ */
+public class BezierContainsBenchmark {
+
+    private static final int QUERIES = 2000;
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            args = new String[]{"1000"};
+        }
+        for (String arg : args) {
+            int nodeCount = Integer.parseInt(arg);
+            run("open  ", createFigure(nodeCount, false), nodeCount);
+            run("closed", createFigure(nodeCount, true), nodeCount);
+        }
+    }
+
+    private static BezierFigure createFigure(int nodeCount, boolean isClosed) {
+        Random rnd = new Random(0);
+        BezierFigure f = new BezierFigure(isClosed);
+        double x = 0, y = 500;
+        for (int i = 0; i < nodeCount; i++) {
+            x += rnd.nextDouble() * 2;
+            y += rnd.nextDouble() * 20 - 10;
+            if (i % 2 == 0) {
+                f.addNode(new BezierPath.Node(x, y));
+            } else {
+                f.addNode(new BezierPath.Node(BezierPath.C1C2_MASK, x, y, x - 1, y + 3, x + 1, y - 3));
+            }
+        }
+        f.set(STROKE_WIDTH, 2d);
+        if (isClosed) {
+            f.set(FILL_COLOR, Color.white);
+        }
+        return f;
+    }
+
+    private static void run(String name, BezierFigure f, int nodeCount) {
+        Random rnd = new Random(1);
+        Point2D.Double[] points = new Point2D.Double[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            points[i] = new Point2D.Double(rnd.nextDouble() * nodeCount * 2, 300 + rnd.nextDouble() * 400);
+        }
+        int hits = 0;
+        // Warm up
+        for (int i = 0; i < QUERIES; i++) {
+            hits += f.contains(points[i]) ? 1 : 0;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            hits += f.contains(points[i]) ? 1 : 0;
+        }
+        double micros = (System.nanoTime() - start) / 1000d / QUERIES;
+        System.out.printf("%s %,6d nodes: %,10.1f us per contains (%d hits)%n", name, nodeCount, micros, hits / 2);
+    }
+}
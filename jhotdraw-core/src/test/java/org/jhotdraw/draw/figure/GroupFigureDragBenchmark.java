@@ -0,0 +1,57 @@
+/*
+ * @(#)GroupFigureDragBenchmark.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.figure;
+
+import java.awt.geom.AffineTransform;
+import java.util.Random;
+import org.jhotdraw.draw.QuadTreeDrawing;
+
+/**
+ * Measures how long it takes to drag all children of a {@link GroupFigure}
+ * which is in a {@link QuadTreeDrawing}. The children are moved like
+ * {@code DefaultDragTracker} moves a selection.
+ * <p>
+ * This is not a unit test. Run it with the figure counts as arguments,
+ * for example {@code 5000}.
+ */
+public class GroupFigureDragBenchmark {
+
+    private static final int DRAG_STEPS = 20;
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            args = new String[]{"5000"};
+        }
+        for (String arg : args) {
+            run(Integer.parseInt(arg));
+        }
+    }
+
+    private static void run(int figureCount) {
+        Random rnd = new Random(0);
+        GroupFigure group = new GroupFigure();
+        for (int i = 0; i < figureCount; i++) {
+            group.basicAdd(new RectangleFigure(rnd.nextDouble() * 4000, rnd.nextDouble() * 4000, 20, 20));
+        }
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        drawing.add(group);
+        AffineTransform tx = AffineTransform.getTranslateInstance(3, 2);
+
+        long start = System.nanoTime();
+        for (int step = 0; step < DRAG_STEPS; step++) {
+            for (Figure f : group.getChildren()) {
+                f.willChange();
+                f.transform(tx);
+                f.changed();
+            }
+        }
+        double stepMillis = (System.nanoTime() - start) / 1000000d / DRAG_STEPS;
+        System.out.printf("%,8d figures: drag step %8.2f ms, %8.2f µs per figure, group bounds %s%n",
+                figureCount, stepMillis, stepMillis * 1000 / figureCount, group.getBounds());
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw.figure;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Random;
+import org.jhotdraw.draw.event.FigureAdapter;
+import org.jhotdraw.draw.event.FigureEvent;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that {@link GroupFigure} keeps its bounds and drawing area up to date
+ * when its children change.
+ */
+public class GroupFigureNGTest {
+
+    public GroupFigureNGTest() {
+    }
+
+    @Test
+    public void testBoundsGrowAndShrink() {
+        GroupFigure group = new GroupFigure();
+        RectangleFigure inner = new RectangleFigure(40, 40, 10, 10);
+        RectangleFigure outer = new RectangleFigure(0, 0, 100, 100);
+        group.add(inner);
+        group.add(outer);
+        assertEquals(group.getBounds(), new Rectangle2D.Double(0, 0, 100, 100));
+
+        // Inside the bounds
+        move(inner, 10, 10);
+        assertEquals(group.getBounds(), new Rectangle2D.Double(0, 0, 100, 100));
+        // Grow
+        move(inner, 100, 0);
+        assertEquals(group.getBounds(), new Rectangle2D.Double(0, 0, 160, 100));
+        // Shrink
+        move(inner, -100, 0);
+        assertEquals(group.getBounds(), new Rectangle2D.Double(0, 0, 100, 100));
+        move(outer, 20, 0);
+        assertEquals(group.getBounds(), new Rectangle2D.Double(20, 0, 100, 100));
+        assertEquals(group.getDrawingArea(), union(group, true));
+    }
+
+    @Test
+    public void testRandomMoves() {
+        Random rnd = new Random(0);
+        GroupFigure group = new GroupFigure();
+        for (int i = 0; i < 50; i++) {
+            group.add(new RectangleFigure(rnd.nextInt(100), rnd.nextInt(100), 1 + rnd.nextInt(20), 1 + rnd.nextInt(20)));
+        }
+        GroupFigure parent = new GroupFigure();
+        parent.add(group);
+        for (int i = 0; i < 1000; i++) {
+            move(group.getChild(rnd.nextInt(group.getChildCount())), rnd.nextInt(21) - 10, rnd.nextInt(21) - 10);
+            assertEquals(group.getBounds(), union(group, false));
+            assertEquals(group.getDrawingArea(), union(group, true));
+            assertEquals(parent.getDrawingArea(), union(group, true));
+        }
+    }
+
+    @Test
+    public void testRemoveAllFiresOneChange() {
+        GroupFigure group = new GroupFigure();
+        RectangleFigure a = new RectangleFigure(0, 0, 10, 10);
+        RectangleFigure b = new RectangleFigure(20, 0, 10, 10);
+        RectangleFigure c = new RectangleFigure(80, 0, 20, 10);
+        group.add(a);
+        group.add(b);
+        group.add(c);
+        int[] changes = new int[1];
+        group.addFigureListener(new FigureAdapter() {
+            @Override
+            public void figureChanged(FigureEvent e) {
+                changes[0]++;
+            }
+        });
+        int[] childEvents = new int[1];
+        FigureAdapter childListener = new FigureAdapter() {
+            @Override
+            public void areaInvalidated(FigureEvent e) {
+                childEvents[0]++;
+            }
+
+            @Override
+            public void figureChanged(FigureEvent e) {
+                childEvents[0]++;
+            }
+        };
+        a.addFigureListener(childListener);
+        b.addFigureListener(childListener);
+        group.removeAll(Arrays.asList(b, c));
+        assertEquals(changes[0], 1);
+        // Neither the remaining nor the removed children change
+        assertEquals(childEvents[0], 0);
+        assertEquals(group.getBounds(), new Rectangle2D.Double(0, 0, 10, 10));
+        assertFalse(group.isChanging());
+        assertFalse(a.isChanging());
+        assertFalse(b.isChanging());
+        assertFalse(c.isChanging());
+
+        // Also fires when nothing is removed
+        group.removeAll(Arrays.asList(b));
+        assertEquals(changes[0], 2);
+    }
+
+    private static void move(Figure f, double dx, double dy) {
+        f.willChange();
+        f.transform(AffineTransform.getTranslateInstance(dx, dy));
+        f.changed();
+    }
+
+    private static Rectangle2D.Double union(CompositeFigure group, boolean isDrawingArea) {
+        Rectangle2D.Double r = null;
+        for (Figure f : group.getChildren()) {
+            Rectangle2D.Double area = isDrawingArea ? f.getDrawingArea(1.0) : f.getBounds();
+            if (r == null) {
+                r = area;
+            } else {
+                r.add(area);
+            }
+        }
+        return r;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * @(#)TextAreaRepaintBenchmark.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.figure;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Measures how long it takes to repaint a drawing with many
+ * {@link TextAreaFigure}s, to move all of them and repaint them, and to
+ * determine whether their text overflows.
+ * <p>
+ * This is not a unit test. Run it with the number of text areas, for example
+ * {@code 5000}.
+ */
+public class TextAreaRepaintBenchmark {
+
+    private static final int REPAINTS = 10;
+    private static final String[] WORDS = {"lorem", "ipsum", "dolor", "sit", "amet",
+        "consectetur", "adipiscing", "elit", "sed", "do", "eiusmod", "tempor"};
+
+    public static void main(String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 5000;
+        for (int run = 0; run < 3; run++) {
+            run(count);
+        }
+    }
+
+    private static void run(int count) {
+        Random rnd = new Random(0);
+        ArrayList<TextAreaFigure> figures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int p = 0; p < 3; p++) {
+                if (p > 0) {
+                    text.append('\n');
+                }
+                for (int w = 0; w < 12; w++) {
+                    text.append(WORDS[rnd.nextInt(WORDS.length)]).append(w == 5 ? '\t' : ' ');
+                }
+            }
+            TextAreaFigure f = new TextAreaFigure(text.toString());
+            double x = rnd.nextDouble() * 1000, y = rnd.nextDouble() * 800;
+            f.setBounds(new Point2D.Double(x, y), new Point2D.Double(x + 150, y + 120));
+            figures.add(f);
+        }
+        BufferedImage img = new BufferedImage(1200, 1000, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REPAINTS; i++) {
+            for (TextAreaFigure f : figures) {
+                f.draw(g);
+            }
+        }
+        double repaintMillis = (System.nanoTime() - start) / 1000000d / REPAINTS;
+
+        start = System.nanoTime();
+        AffineTransform tx = AffineTransform.getTranslateInstance(3, 2);
+        for (int i = 0; i < REPAINTS; i++) {
+            for (TextAreaFigure f : figures) {
+                f.willChange();
+                f.transform(tx);
+                f.changed();
+                f.draw(g);
+            }
+        }
+        double moveMillis = (System.nanoTime() - start) / 1000000d / REPAINTS;
+
+        start = System.nanoTime();
+        int overflowing = 0;
+        for (TextAreaFigure f : figures) {
+            f.invalidate();
+            if (f.isTextOverflow()) {
+                overflowing++;
+            }
+        }
+        double overflowMillis = (System.nanoTime() - start) / 1000000d;
+        g.dispose();
+        System.out.printf("%,6d text areas: repaint %8.1f ms, move and repaint %8.1f ms, overflow check %8.1f ms (%d overflowing)%n",
+                count, repaintMillis, moveMillis, overflowMillis, overflowing);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import org.jhotdraw.draw.DefaultDrawing;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.figure.LineConnectionFigure;
+import org.jhotdraw.xml.DefaultDOMFactory;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that drawings survive a round trip through
+ * {@link BinaryInputOutputFormat} unchanged.
+ */
+public class BinaryInputOutputFormatNGTest {
+
+    private static String toXML(DefaultDOMFactory factory, Drawing drawing) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        new DOMStorableInputOutputFormat(factory).write(buf, drawing);
+        return new String(buf.toByteArray(), "UTF-8");
+    }
+
+    @Test
+    public void testRoundTripReadsSameDrawing() throws IOException {
+        DefaultDOMFactory factory = DOMStorableInputOutputFormatNGTest.createFactory();
+        Drawing drawing = DOMStorableInputOutputFormatNGTest.createDrawing();
+        BinaryInputOutputFormat format = new BinaryInputOutputFormat(factory);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        format.write(written, drawing);
+
+        Drawing read = new DefaultDrawing();
+        format.read(new ByteArrayInputStream(written.toByteArray()), read, true);
+        assertEquals(toXML(factory, read), toXML(factory, drawing));
+        LineConnectionFigure lnk = (LineConnectionFigure) read.getChild(4);
+        assertSame(lnk.getStartFigure(), read.getChild(0));
+        assertSame(lnk.getEndFigure(), read.getChild(1));
+
+        File file = File.createTempFile("BinaryInputOutputFormatNGTest", ".jhdb");
+        try {
+            format.write(file, drawing);
+            Drawing fromFile = new DefaultDrawing();
+            format.read(file, fromFile, true);
+            assertEquals(toXML(factory, fromFile), toXML(factory, drawing));
+
+            // The drawing can be saved back to the file it has been read from
+            fromFile.removeChild(fromFile.getChildCount() - 1);
+            format.write(file, fromFile);
+            Drawing reread = new DefaultDrawing();
+            format.read(file, reread, true);
+            assertEquals(toXML(factory, reread), toXML(factory, fromFile));
+            assertTrue(file.delete());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testTruncatedInputIsRejected() throws IOException {
+        DefaultDOMFactory factory = DOMStorableInputOutputFormatNGTest.createFactory();
+        BinaryInputOutputFormat format = new BinaryInputOutputFormat(factory);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        format.write(written, DOMStorableInputOutputFormatNGTest.createDrawing());
+        byte[] truncated = Arrays.copyOf(written.toByteArray(), written.size() - 1);
+        format.read(new ByteArrayInputStream(truncated), new DefaultDrawing(), true);
+    }
+}
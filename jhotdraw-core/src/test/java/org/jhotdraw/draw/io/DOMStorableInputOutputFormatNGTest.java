@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw.io;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import org.jhotdraw.draw.AttributeKeys;
+import org.jhotdraw.draw.DefaultDrawing;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.connector.ChopRectangleConnector;
+import org.jhotdraw.draw.decoration.ArrowTip;
+import org.jhotdraw.draw.figure.BezierFigure;
+import org.jhotdraw.draw.figure.GroupFigure;
+import org.jhotdraw.draw.figure.LineConnectionFigure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import org.jhotdraw.draw.figure.TextFigure;
+import org.jhotdraw.geom.BezierPath;
+import org.jhotdraw.xml.DOMOutput;
+import org.jhotdraw.xml.DefaultDOMFactory;
+import org.jhotdraw.xml.JavaxDOMInput;
+import org.jhotdraw.xml.JavaxDOMOutput;
+import org.jhotdraw.xml.StreamingDOMOutput;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that {@link StreamingDOMOutput} writes the same bytes as
+ * {@link JavaxDOMOutput}, and that {@link DOMStorableInputOutputFormat} reads
+ * drawings like {@link JavaxDOMInput}.
+ */
+public class DOMStorableInputOutputFormatNGTest {
+
+    static DefaultDOMFactory createFactory() {
+        DefaultDOMFactory factory = new DefaultDOMFactory();
+        factory.addStorableClass("drawing", DefaultDrawing.class);
+        factory.addStorableClass("r", RectangleFigure.class);
+        factory.addStorableClass("b", BezierFigure.class);
+        factory.addStorableClass("t", TextFigure.class);
+        factory.addStorableClass("g", GroupFigure.class);
+        factory.addStorableClass("lnk", LineConnectionFigure.class);
+        factory.addStorableClass("arrowTip", ArrowTip.class);
+        factory.addStorableClass("rConnector", ChopRectangleConnector.class);
+        factory.addEnumClass("strokeType", AttributeKeys.StrokeType.class);
+        factory.addEnumClass("strokePlacement", AttributeKeys.StrokePlacement.class);
+        factory.addEnumClass("underfill", AttributeKeys.Underfill.class);
+        factory.addEnumClass("orientation", AttributeKeys.Orientation.class);
+        return factory;
+    }
+
+    static Drawing createDrawing() {
+        Drawing drawing = new DefaultDrawing();
+        RectangleFigure r1 = new RectangleFigure(10, 20, 30.5, 40);
+        r1.set(AttributeKeys.FILL_COLOR, new Color(0x123456));
+        RectangleFigure r2 = new RectangleFigure(100, 20, 30, 40);
+        drawing.add(r1);
+        drawing.add(r2);
+        TextFigure text = new TextFigure("a < b && \"c\"\né€\u0085😀 ]]>");
+        drawing.add(text);
+        GroupFigure group = new GroupFigure();
+        BezierFigure bezier = new BezierFigure();
+        bezier.addNode(new BezierPath.Node(0, 0));
+        bezier.addNode(new BezierPath.Node(1e-7, 1e10));
+        group.add(bezier);
+        group.add(new RectangleFigure(-5, -5, 1, 1));
+        drawing.add(group);
+        LineConnectionFigure lnk = new LineConnectionFigure();
+        lnk.setStartPoint(new Point2D.Double(40, 40));
+        lnk.setEndPoint(new Point2D.Double(100, 40));
+        lnk.setStartConnector(new ChopRectangleConnector(r1));
+        lnk.setEndConnector(new ChopRectangleConnector(r2));
+        lnk.set(AttributeKeys.END_DECORATION, new ArrowTip());
+        drawing.add(lnk);
+        return drawing;
+    }
+
+    @Test
+    public void testDrawingIsWrittenLikeJavaxDOMOutput() throws IOException {
+        Drawing drawing = createDrawing();
+        DefaultDOMFactory factory = createFactory();
+        JavaxDOMOutput expected = new JavaxDOMOutput(factory);
+        expected.openElement("drawing");
+        drawing.write(expected);
+        expected.closeElement();
+        ByteArrayOutputStream expectedBytes = new ByteArrayOutputStream();
+        expected.save(expectedBytes);
+
+        DOMStorableInputOutputFormat format = new DOMStorableInputOutputFormat(factory);
+        ByteArrayOutputStream actualBytes = new ByteArrayOutputStream();
+        format.write(actualBytes, drawing);
+        assertEquals(new String(actualBytes.toByteArray(), "UTF-8"), new String(expectedBytes.toByteArray(), "UTF-8"));
+        assertEquals(actualBytes.toByteArray(), expectedBytes.toByteArray());
+
+        Drawing read = new DefaultDrawing();
+        format.read(new ByteArrayInputStream(actualBytes.toByteArray()), read, true);
+        assertEquals(read.getChildCount(), drawing.getChildCount());
+        assertEquals(((TextFigure) read.getChild(2)).getText(), ((TextFigure) drawing.getChild(2)).getText());
+    }
+
+    @Test
+    public void testStreamingDOMInputReadsLikeJavaxDOMInput() throws IOException {
+        DefaultDOMFactory factory = createFactory();
+        DOMStorableInputOutputFormat format = new DOMStorableInputOutputFormat(factory);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        format.write(written, createDrawing());
+
+        Drawing expected = new DefaultDrawing();
+        JavaxDOMInput in = new JavaxDOMInput(factory, new ByteArrayInputStream(written.toByteArray()));
+        in.openElement("drawing");
+        expected.read(in);
+        in.closeElement();
+        Drawing actual = new DefaultDrawing();
+        format.read(new ByteArrayInputStream(written.toByteArray()), actual, true);
+
+        ByteArrayOutputStream expectedBytes = new ByteArrayOutputStream();
+        format.write(expectedBytes, expected);
+        ByteArrayOutputStream actualBytes = new ByteArrayOutputStream();
+        format.write(actualBytes, actual);
+        assertEquals(new String(actualBytes.toByteArray(), "UTF-8"), new String(expectedBytes.toByteArray(), "UTF-8"));
+        LineConnectionFigure lnk = (LineConnectionFigure) actual.getChild(4);
+        assertSame(lnk.getStartFigure(), actual.getChild(0));
+        assertSame(lnk.getEndFigure(), actual.getChild(1));
+    }
+
+    @Test
+    public void testRandomContentIsWrittenLikeJavaxDOMOutput() throws IOException {
+        Random rnd = new Random(0);
+        DefaultDOMFactory factory = createFactory();
+        for (int run = 0; run < 20; run++) {
+            long seed = rnd.nextLong();
+            JavaxDOMOutput expected = new JavaxDOMOutput(factory);
+            expected.setDoctype("test");
+            writeRandomContent(expected, new Random(seed));
+            ByteArrayOutputStream expectedBytes = new ByteArrayOutputStream();
+            expected.save(expectedBytes);
+
+            ByteArrayOutputStream actualBytes = new ByteArrayOutputStream();
+            StreamingDOMOutput actual = new StreamingDOMOutput(factory, actualBytes);
+            actual.setDoctype("test");
+            writeRandomContent(actual, new Random(seed));
+            actual.finish();
+            assertEquals(new String(actualBytes.toByteArray(), "UTF-8"), new String(expectedBytes.toByteArray(), "UTF-8"));
+        }
+    }
+
+    private static void writeRandomContent(DOMOutput out, Random rnd) {
+        out.openElement("root");
+        writeRandomElement(out, rnd, 0);
+        out.closeElement();
+    }
+
+    private static void writeRandomElement(DOMOutput out, Random rnd, int depth) {
+        for (int i = rnd.nextInt(6); i > 0; i--) {
+            switch (rnd.nextInt(3)) {
+                case 0:
+                    out.addAttribute("a" + rnd.nextInt(4), randomString(rnd));
+                    break;
+                case 1:
+                    out.addAttribute(rnd.nextBoolean() ? "B" : "c", rnd.nextDouble() * 100);
+                    break;
+                default:
+                    out.addAttribute("n", rnd.nextInt(), 0);
+                    break;
+            }
+        }
+        for (int i = rnd.nextInt(4); i > 0; i--) {
+            switch (rnd.nextInt(4)) {
+                case 0:
+                    out.addText(randomString(rnd));
+                    break;
+                case 1:
+                    out.addComment(randomString(rnd).replace('>', '-'));
+                    break;
+                default:
+                    if (depth < 4) {
+                        out.openElement("e" + rnd.nextInt(3));
+                        writeRandomElement(out, rnd, depth + 1);
+                        out.closeElement();
+                    }
+                    break;
+            }
+        }
+    }
+
+    private static String randomString(Random rnd) {
+        StringBuilder buf = new StringBuilder();
+        for (int i = rnd.nextInt(12); i > 0; i--) {
+            switch (rnd.nextInt(4)) {
+                case 0:
+                    buf.append("&<>\"'\t\n\r-".charAt(rnd.nextInt(9)));
+                    break;
+                case 1:
+                    buf.append((char) (1 + rnd.nextInt(0xa0)));
+                    break;
+                case 2:
+                    buf.append((char) (0xa0 + rnd.nextInt(0xd800 - 0xa0)));
+                    break;
+                default:
+                    buf.appendCodePoint(0x10000 + rnd.nextInt(0x1000));
+                    break;
+            }
+        }
+        return buf.toString();
+    }
+}
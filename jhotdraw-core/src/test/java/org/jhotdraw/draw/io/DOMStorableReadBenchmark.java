@@ -0,0 +1,186 @@
+/*
+ * @(#)DOMStorableReadBenchmark.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Random;
+import org.jhotdraw.draw.AttributeKeys;
+import org.jhotdraw.draw.DefaultDrawing;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.figure.BezierFigure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import org.jhotdraw.draw.figure.TextFigure;
+import org.jhotdraw.geom.BezierPath;
+import org.jhotdraw.xml.DefaultDOMFactory;
+import org.jhotdraw.xml.JavaxDOMInput;
+
+/**
+ * Measures the time and the peak heap usage for reading a large drawing with
+ * {@link JavaxDOMInput}, with {@link DOMStorableInputOutputFormat}, which
+ * uses a streaming {@code DOMInput}, and with {@link BinaryInputOutputFormat}.
+ * <p>
+ * This is not a unit test. Run it with the file size in megabytes, and
+ * optionally {@code javax}, {@code streaming} or {@code binary} to measure
+ * only one of them, for example {@code 100 streaming}. Run each variant in its own
+ * virtual machine to get comparable heap figures.
+ */
+public class DOMStorableReadBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int megabytes = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+        String variant = (args.length > 1) ? args[1] : "both";
+
+        DefaultDOMFactory factory = new DefaultDOMFactory();
+        factory.addStorableClass("drawing", DefaultDrawing.class);
+        factory.addStorableClass("r", RectangleFigure.class);
+        factory.addStorableClass("b", BezierFigure.class);
+        factory.addStorableClass("t", TextFigure.class);
+        factory.addEnumClass("strokeType", AttributeKeys.StrokeType.class);
+        DOMStorableInputOutputFormat format = new DOMStorableInputOutputFormat(factory);
+
+        File file = File.createTempFile("DOMStorableReadBenchmark", ".xml");
+        file.deleteOnExit();
+        Drawing drawing = writeDrawing(format, file, megabytes * 1024L * 1024L);
+        BinaryInputOutputFormat binaryFormat = new BinaryInputOutputFormat(factory);
+        File binaryFile = File.createTempFile("DOMStorableReadBenchmark", ".jhdb");
+        binaryFile.deleteOnExit();
+        binaryFormat.write(binaryFile, drawing);
+        System.out.printf("binary: %,.1f MB%n", binaryFile.length() / 1048576d);
+        drawing = null;
+
+        if (variant.equals("both") || variant.equals("javax")) {
+            measure("JavaxDOMInput", format, factory, file, false);
+        }
+        if (variant.equals("both") || variant.equals("streaming")) {
+            measure("streaming   ", format, factory, file, true);
+        }
+        if (variant.equals("both") || variant.equals("binary")) {
+            measureBinary(binaryFormat, binaryFile);
+        }
+    }
+
+    private static Drawing writeDrawing(DOMStorableInputOutputFormat format, File file, long size) throws IOException {
+        Random rnd = new Random(0);
+        Drawing drawing = new DefaultDrawing();
+        // Write a sample drawing to estimate how many copies of its figures
+        // are needed for the requested size
+        int figureCount = 10000;
+        for (int i = 0; i < figureCount; i++) {
+            double x = rnd.nextDouble() * 10000;
+            double y = rnd.nextDouble() * 10000;
+            switch (i % 3) {
+                case 0:
+                    drawing.basicAdd(new RectangleFigure(x, y, 20, 10));
+                    break;
+                case 1:
+                    drawing.basicAdd(new TextFigure("Text " + i));
+                    break;
+                default:
+                    BezierFigure b = new BezierFigure();
+                    for (int j = 0; j < 4; j++) {
+                        b.addNode(new BezierPath.Node(x + rnd.nextDouble() * 50, y + rnd.nextDouble() * 50));
+                    }
+                    drawing.basicAdd(b);
+                    break;
+            }
+        }
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            format.write(out, drawing);
+        }
+        long sampleSize = file.length();
+        int copies = (int) Math.max(1, size / sampleSize);
+        for (int i = 1; i < copies; i++) {
+            for (int j = 0; j < figureCount; j++) {
+                drawing.basicAdd(drawing.getChild(j).clone());
+            }
+        }
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            format.write(out, drawing);
+        }
+        System.out.printf("%,d figures, %,.1f MB%n", drawing.getChildCount(), file.length() / 1048576d);
+        return drawing;
+    }
+
+    private static void measureBinary(BinaryInputOutputFormat format, File file) throws IOException {
+        System.gc();
+        long baseline = getUsedHeap();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        long start = System.nanoTime();
+        Drawing drawing = new DefaultDrawing();
+        format.read(file, drawing, true);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long peak = getPeakHeap() - baseline;
+        System.gc();
+        long retained = getUsedHeap() - baseline;
+        System.out.printf("binary      : %,d figures in %6.2f s, peak heap %,6d MB, retained heap %,6d MB%n",
+                drawing.getChildCount(), seconds, peak >> 20, retained >> 20);
+    }
+
+    private static void measure(String name, DOMStorableInputOutputFormat format, DefaultDOMFactory factory, File file, boolean isStreaming) throws IOException {
+        System.gc();
+        long baseline = getUsedHeap();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        long start = System.nanoTime();
+        Drawing drawing = new DefaultDrawing();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            if (isStreaming) {
+                format.read(in, drawing, true);
+            } else {
+                JavaxDOMInput domi = new JavaxDOMInput(factory, in);
+                domi.openElement("drawing");
+                drawing.read(domi);
+                domi.closeElement();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long peak = getPeakHeap() - baseline;
+        System.gc();
+        long retained = getUsedHeap() - baseline;
+        System.out.printf("%s: %,d figures in %6.2f s, peak heap %,6d MB, retained heap %,6d MB%n",
+                name, drawing.getChildCount(), seconds, peak >> 20, retained >> 20);
+    }
+
+    private static long getUsedHeap() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Returns the sum of the peak usages of the heap memory pools. This can
+     * be more than the actual peak, because the pools do not peak at the
+     * same time.
+     */
+    private static long getPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * @(#)ImageExportBenchmark.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.io;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Random;
+import org.jhotdraw.draw.AttributeKeys;
+import org.jhotdraw.draw.DefaultDrawing;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.figure.EllipseFigure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+
+/**
+ * Measures the time and the peak heap usage for exporting a large drawing at
+ * 4x scale to a PNG file with {@link ImageOutputFormat}, in one piece and in
+ * bands.
+ * <p>
+ * This is not a unit test. Run it with the number of figures, and optionally
+ * {@code single} or {@code banded} to measure only one of them, for example
+ * {@code 20000 banded}. Run each variant in its own virtual machine to get
+ * comparable heap figures.
+ */
+public class ImageExportBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+        String variant = (args.length > 1) ? args[1] : "both";
+        Random rnd = new Random(0);
+        Drawing drawing = new DefaultDrawing();
+        drawing.set(AttributeKeys.CANVAS_FILL_COLOR, Color.WHITE);
+        for (int i = 0; i < count; i++) {
+            double x = rnd.nextDouble() * 2000, y = rnd.nextDouble() * 2000;
+            RectangleFigure r = new RectangleFigure(x, y, 5 + rnd.nextDouble() * 40, 5 + rnd.nextDouble() * 40);
+            r.set(AttributeKeys.FILL_COLOR, new Color(rnd.nextInt(0x1000000)));
+            drawing.add(r);
+            drawing.add(new EllipseFigure(y, x, 5 + rnd.nextDouble() * 40, 5 + rnd.nextDouble() * 40));
+        }
+        Rectangle2D.Double bounds = drawing.getRenderSnapshot().getDrawingArea();
+        AffineTransform tx = AffineTransform.getScaleInstance(4, 4);
+        Dimension size = new Dimension((int) Math.ceil(bounds.getMaxX() * 4), (int) Math.ceil(bounds.getMaxY() * 4));
+        System.out.printf("%,d figures, %d x %d pixels%n", drawing.getChildCount(), size.width, size.height);
+
+        if (variant.equals("both") || variant.equals("single")) {
+            measure("single", drawing, 0, tx, size);
+        }
+        if (variant.equals("both") || variant.equals("banded")) {
+            measure("banded", drawing, 256, tx, size);
+        }
+    }
+
+    private static void measure(String name, Drawing drawing, int bandHeight,
+            AffineTransform tx, Dimension size) throws IOException {
+        ImageOutputFormat format = new ImageOutputFormat();
+        format.setBandHeight(bandHeight);
+        File file = File.createTempFile("ImageExportBenchmark", ".png");
+        file.deleteOnExit();
+        System.gc();
+        resetPeakUsage();
+        long start = System.nanoTime();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            format.write(out, drawing, tx, size);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%s: %,d ms, peak heap %,d MB, %,d KB%n", name,
+                elapsed / 1000000, getPeakUsage() / 1048576, file.length() / 1024);
+    }
+
+    private static void resetPeakUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long getPeakUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw.io;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import org.jhotdraw.draw.AttributeKeys;
+import org.jhotdraw.draw.DefaultDrawing;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.RenderSnapshot;
+import org.jhotdraw.draw.figure.EllipseFigure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that images rendered in bands are the same as images rendered in one
+ * piece.
+ */
+public class ImageOutputFormatNGTest {
+
+    private static Drawing createDrawing(Color background) {
+        Drawing drawing = new DefaultDrawing();
+        drawing.set(AttributeKeys.CANVAS_FILL_COLOR, background);
+        for (int i = 0; i < 40; i++) {
+            RectangleFigure r = new RectangleFigure(i * 7.3, i * 5.1, 30, 20);
+            r.set(AttributeKeys.FILL_COLOR, new Color(i * 6, 100, 200, 128));
+            r.set(AttributeKeys.STROKE_WIDTH, 2.5);
+            drawing.add(r);
+            drawing.add(new EllipseFigure(200 - i * 4.7, i * 6.9, 25, 35));
+        }
+        return drawing;
+    }
+
+    private static void assertSamePixels(BufferedImage actual, BufferedImage expected) {
+        assertEquals(actual.getType(), expected.getType());
+        assertEquals(actual.getWidth(), expected.getWidth());
+        assertEquals(actual.getHeight(), expected.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(actual.getRGB(x, y), expected.getRGB(x, y), "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    public void testBandedImageIsSameAsImage() {
+        for (Color background : new Color[]{null, Color.WHITE}) {
+            for (int type : new int[]{BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_BYTE_INDEXED}) {
+                Drawing drawing = createDrawing(background);
+                ImageOutputFormat format = new ImageOutputFormat("PNG", "PNG", "png", type);
+                BufferedImage expected = format.toImage(drawing, drawing.getRenderSnapshot(), 2.5, false);
+                format.setBandHeight(7);
+                assertSamePixels(format.toImage(drawing, drawing.getRenderSnapshot(), 2.5, false), expected);
+                assertSamePixels(format.toImage(drawing, drawing.getChildren(), 2.5, true),
+                        format.toImage(drawing, drawing.getRenderSnapshot(), 2.5, true));
+            }
+        }
+    }
+
+    @Test
+    public void testWriteBandedImage() throws IOException {
+        Drawing drawing = createDrawing(null);
+        ImageOutputFormat format = new ImageOutputFormat();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        format.write(expected, drawing);
+        format.setBandHeight(16);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        format.write(actual, drawing);
+        assertSamePixels(ImageIO.read(new ByteArrayInputStream(actual.toByteArray())),
+                ImageIO.read(new ByteArrayInputStream(expected.toByteArray())));
+    }
+
+    @Test
+    public void testWriteSnapshotOfCopies() throws IOException {
+        Drawing drawing = createDrawing(null);
+        ImageOutputFormat format = new ImageOutputFormat();
+        format.setBandHeight(16);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        format.write(expected, drawing);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        format.write(actual, drawing, RenderSnapshot.copyOf(drawing));
+        assertSamePixels(ImageIO.read(new ByteArrayInputStream(actual.toByteArray())),
+                ImageIO.read(new ByteArrayInputStream(expected.toByteArray())));
+    }
+}
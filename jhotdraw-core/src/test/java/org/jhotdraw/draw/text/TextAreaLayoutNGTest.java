@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw.text;
+
+import java.awt.Font;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import org.jhotdraw.draw.figure.TextAreaFigure;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the layout of text areas, and that {@link TextAreaFigure} keeps its
+ * layout when it is moved.
+ */
+public class TextAreaLayoutNGTest {
+
+    private static final Font FONT = new Font("Dialog", Font.PLAIN, 12);
+    private static final FontRenderContext FRC = new FontRenderContext(new AffineTransform(), true, true);
+
+    @Test
+    public void testLinesAreBrokenAtRightMargin() {
+        String text = "one two three four five six seven eight nine ten\nsecond paragraph";
+        TextAreaLayout wide = new TextAreaLayout(text, FONT, false, 10000f, new float[0], FRC);
+        TextAreaLayout narrow = new TextAreaLayout(text, FONT, false, 60f, new float[0], FRC);
+        assertEquals(wide.getLineCount(), 2);
+        assertTrue(narrow.getLineCount() > 2);
+        assertTrue(narrow.getBounds().width <= 60);
+        assertTrue(narrow.getBounds().height > wide.getBounds().height);
+        for (int i = 1; i < narrow.getLineCount(); i++) {
+            assertTrue(narrow.getBaseline(i) > narrow.getBaseline(i - 1));
+        }
+        Rectangle2D firstLine = narrow.getOutline(narrow.getBaseline(0)).getBounds2D();
+        Rectangle2D allLines = narrow.getOutline(Float.MAX_VALUE).getBounds2D();
+        assertTrue(firstLine.getMaxY() < narrow.getBaseline(1));
+        assertTrue(allLines.getMaxY() > narrow.getBaseline(narrow.getLineCount() - 2));
+    }
+
+    @Test
+    public void testTrailingTab() {
+        TextAreaLayout layout = new TextAreaLayout("a\t\t\nb\t", FONT, false, 200f,
+                new float[]{20f, 40f, 60f}, FRC);
+        assertEquals(layout.getLineCount(), 2);
+    }
+
+    @Test
+    public void testMatches() {
+        TextAreaLayout layout = new TextAreaLayout("text", FONT, false, 100f, new float[0], FRC);
+        assertTrue(layout.matches("text", FONT, false, 100f, FRC));
+        assertFalse(layout.matches("text2", FONT, false, 100f, FRC));
+        assertFalse(layout.matches("text", FONT.deriveFont(14f), false, 100f, FRC));
+        assertFalse(layout.matches("text", FONT, true, 100f, FRC));
+        assertFalse(layout.matches("text", FONT, false, 101f, FRC));
+    }
+
+    @Test
+    public void testTextOverflowFollowsBounds() {
+        TextAreaFigure f = new TextAreaFigure("one two three four five six seven eight nine ten");
+        f.setBounds(new Point2D.Double(0, 0), new Point2D.Double(60, 20));
+        assertTrue(f.isTextOverflow());
+        f.willChange();
+        f.transform(AffineTransform.getTranslateInstance(100, 50));
+        f.changed();
+        assertTrue(f.isTextOverflow());
+        Rectangle2D.Double b = f.getBounds();
+        f.willChange();
+        f.setBounds(new Point2D.Double(b.x, b.y), new Point2D.Double(b.x + 1000, b.y + 100));
+        f.changed();
+        assertFalse(f.isTextOverflow());
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.draw.tool;
+
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import javax.swing.undo.UndoableEdit;
+import org.jhotdraw.draw.DefaultDrawingEditor;
+import org.jhotdraw.draw.DefaultDrawingView;
+import org.jhotdraw.draw.QuadTreeDrawing;
+import org.jhotdraw.draw.figure.RectangleFigure;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that a drag with the drag preview of {@link DefaultDragTracker} moves
+ * the figures once, when the mouse is released.
+ */
+public class DefaultDragTrackerNGTest {
+
+    private static MouseEvent event(DefaultDrawingView view, int id, int x, int y) {
+        return new MouseEvent(view, id, 0, InputEvent.BUTTON1_DOWN_MASK, x, y, 1, false, MouseEvent.BUTTON1);
+    }
+
+    @Test
+    public void testDragPreviewMovesFiguresOnRelease() {
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        RectangleFigure r1 = new RectangleFigure(10, 10, 20, 20);
+        RectangleFigure r2 = new RectangleFigure(50, 10, 20, 20);
+        drawing.add(r1);
+        drawing.add(r2);
+        ArrayList<UndoableEdit> edits = new ArrayList<>();
+        drawing.addUndoableEditListener(e -> edits.add(e.getEdit()));
+        DefaultDrawingView view = new DefaultDrawingView();
+        view.setDrawing(drawing);
+        view.setSize(200, 200);
+        DefaultDrawingEditor editor = new DefaultDrawingEditor();
+        editor.add(view);
+        editor.setActiveView(view);
+        view.addToSelection(Arrays.asList(r1, r2));
+        DefaultDragTracker tracker = new DefaultDragTracker(r1);
+        tracker.setDragPreviewEnabled(true);
+        editor.setTool(tracker);
+
+        tracker.mousePressed(event(view, MouseEvent.MOUSE_PRESSED, 20, 20));
+        tracker.mouseDragged(event(view, MouseEvent.MOUSE_DRAGGED, 25, 30));
+        tracker.mouseDragged(event(view, MouseEvent.MOUSE_DRAGGED, 30, 50));
+        assertTrue(view.isDragPreviewActive());
+        assertEquals(r1.getBounds(), new Rectangle2D.Double(10, 10, 20, 20));
+        assertTrue(drawing.findFigures(new Rectangle2D.Double(20, 40, 1, 1)).isEmpty());
+
+        tracker.mouseReleased(event(view, MouseEvent.MOUSE_RELEASED, 30, 50));
+        assertFalse(view.isDragPreviewActive());
+        assertEquals(r1.getBounds(), new Rectangle2D.Double(20, 40, 20, 20));
+        assertEquals(r2.getBounds(), new Rectangle2D.Double(60, 40, 20, 20));
+        assertEquals(drawing.findFigures(new Rectangle2D.Double(20, 40, 1, 1)), Arrays.asList(r1));
+        assertEquals(edits.size(), 1);
+        edits.get(0).undo();
+        assertEquals(r1.getBounds(), new Rectangle2D.Double(10, 10, 20, 20));
+    }
+}
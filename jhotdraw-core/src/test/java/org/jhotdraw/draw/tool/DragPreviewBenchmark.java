@@ -0,0 +1,107 @@
+/*
+ * @(#)DragPreviewBenchmark.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.draw.tool;
+
+import java.awt.Graphics2D;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Random;
+import javax.swing.SwingUtilities;
+import org.jhotdraw.draw.DefaultDrawingEditor;
+import org.jhotdraw.draw.DefaultDrawingView;
+import org.jhotdraw.draw.QuadTreeDrawing;
+import org.jhotdraw.draw.connector.ChopRectangleConnector;
+import org.jhotdraw.draw.figure.LineConnectionFigure;
+import org.jhotdraw.draw.figure.RectangleFigure;
+
+/**
+ * Measures how long a mouse drag of {@link DefaultDragTracker} takes for a
+ * selection of connected figures in a {@link QuadTreeDrawing}, with and
+ * without the drag preview. Each drag step consists of a mouse event and a
+ * paint of the view.
+ * <p>
+ * This is not a unit test. Run it with the number of selected figures, for
+ * example {@code 2000}.
+ */
+public class DragPreviewBenchmark {
+
+    private static final int DRAG_STEPS = 50;
+
+    public static void main(String[] args) throws InterruptedException, InvocationTargetException {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        SwingUtilities.invokeAndWait(() -> {
+            for (int run = 0; run < 2; run++) {
+                run(count, false);
+                run(count, true);
+            }
+        });
+        System.exit(0);
+    }
+
+    private static void run(int count, boolean isPreview) {
+        Random rnd = new Random(0);
+        QuadTreeDrawing drawing = new QuadTreeDrawing();
+        ArrayList<RectangleFigure> figures = new ArrayList<>();
+        for (int i = 0; i < count * 2; i++) {
+            RectangleFigure r = new RectangleFigure(rnd.nextDouble() * 1200, rnd.nextDouble() * 900, 20, 20);
+            figures.add(r);
+            drawing.add(r);
+        }
+        for (int i = 0; i < count / 2; i++) {
+            LineConnectionFigure c = new LineConnectionFigure();
+            c.setStartConnector(new ChopRectangleConnector(figures.get(rnd.nextInt(figures.size()))));
+            c.setEndConnector(new ChopRectangleConnector(figures.get(rnd.nextInt(figures.size()))));
+            c.updateConnection();
+            drawing.add(c);
+        }
+        DefaultDrawingView view = new DefaultDrawingView();
+        view.setDrawingDoubleBuffered(false);
+        view.setDrawing(drawing);
+        view.setSize(1200, 900);
+        DefaultDrawingEditor editor = new DefaultDrawingEditor();
+        editor.add(view);
+        editor.setActiveView(view);
+        view.addToSelection(new ArrayList<>(figures.subList(0, count)));
+
+        RectangleFigure anchor = figures.get(0);
+        DefaultDragTracker tracker = new DefaultDragTracker(anchor);
+        tracker.setDragPreviewEnabled(isPreview);
+        editor.setTool(tracker);
+        BufferedImage img = new BufferedImage(1200, 900, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        int x = (int) anchor.getBounds().getCenterX();
+        int y = (int) anchor.getBounds().getCenterY();
+
+        long start = System.nanoTime();
+        tracker.mousePressed(event(view, MouseEvent.MOUSE_PRESSED, x, y));
+        long eventNanos = 0;
+        for (int step = 1; step <= DRAG_STEPS; step++) {
+            long t = System.nanoTime();
+            tracker.mouseDragged(event(view, MouseEvent.MOUSE_DRAGGED, x + step * 3, y + step * 2));
+            eventNanos += System.nanoTime() - t;
+            g.setClip(0, 0, 1200, 900);
+            view.paintComponent(g);
+        }
+        long t = System.nanoTime();
+        tracker.mouseReleased(event(view, MouseEvent.MOUSE_RELEASED, x + DRAG_STEPS * 3, y + DRAG_STEPS * 2));
+        long releaseNanos = System.nanoTime() - t;
+        double stepMillis = (t - start) / 1000000d / DRAG_STEPS;
+        g.dispose();
+        System.out.printf("%,6d figures, preview %-5s: drag step %8.2f ms (mouse event %8.2f ms), release %8.2f ms, moved to x=%.0f%n",
+                count, isPreview, stepMillis, eventNanos / 1000000d / DRAG_STEPS, releaseNanos / 1000000d,
+                anchor.getBounds().x);
+    }
+
+    private static MouseEvent event(DefaultDrawingView view, int id, int x, int y) {
+        return new MouseEvent(view, id, System.currentTimeMillis(), InputEvent.BUTTON1_DOWN_MASK,
+                x, y, 1, false, MouseEvent.BUTTON1);
+    }
+}
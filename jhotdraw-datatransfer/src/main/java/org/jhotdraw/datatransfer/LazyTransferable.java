@@ -0,0 +1,157 @@
+/*
+ * @(#)LazyTransferable.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.datatransfer;
+
+import java.awt.datatransfer.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A composite Transferable which creates the Transferable for a data flavor
+ * only when the data is requested in this flavor.
+ * <p>
+ * Each Transferable is created at most once, and is kept for subsequent
+ * requests. Transferables can also be created in the background with
+ * {@link #createInBackground}. A request for the data of a Transferable which
+ * is being created in the background waits until it has been created.
+ * <p>
+ * The producers must not depend on state which may change after the
+ * LazyTransferable has been created. For example, a producer which writes
+ * figures should write copies of the figures, and not the figures of a
+ * drawing which the user may continue to edit.
+ *
+ * @version $Id$
+ */
+public class LazyTransferable implements Transferable, ClipboardOwner {
+
+    private HashMap<DataFlavor, FutureTask<? extends Transferable>> transferables = new HashMap<>();
+    private LinkedList<DataFlavor> flavors = new LinkedList<>();
+
+    /**
+     * Creates a new instance.
+     */
+    public LazyTransferable() {
+    }
+
+    /**
+     * Adds a Transferable which has already been created.
+     */
+    public void add(final Transferable t) {
+        FutureTask<Transferable> task = new FutureTask<>(new Callable<Transferable>() {
+            @Override
+            public Transferable call() {
+                return t;
+            }
+        });
+        task.run();
+        add(t.getTransferDataFlavors(), task);
+    }
+
+    /**
+     * Adds a producer which creates a Transferable for the specified data
+     * flavors when the data is requested in one of them.
+     *
+     * @param flavors The data flavors which are supported by the
+     * Transferable that the producer creates.
+     * @param producer The producer.
+     */
+    public void add(DataFlavor[] flavors, Callable<? extends Transferable> producer) {
+        add(flavors, new FutureTask<>(producer));
+    }
+
+    private void add(DataFlavor[] f, FutureTask<? extends Transferable> task) {
+        for (DataFlavor f1 : f) {
+            if (!transferables.containsKey(f1)) {
+                flavors.add(f1);
+            }
+            transferables.put(f1, task);
+        }
+    }
+
+    /**
+     * Creates all Transferables which have not been created yet with the
+     * specified executor.
+     */
+    public void createInBackground(Executor executor) {
+        for (FutureTask<? extends Transferable> task : new LinkedHashSet<>(transferables.values())) {
+            if (!task.isDone()) {
+                executor.execute(task);
+            }
+        }
+    }
+
+    /**
+     * Returns an object which represents the data to be transferred. The class
+     * of the object returned is defined by the representation class of the flavor.
+     * <p>
+     * Creates the Transferable for the flavor, if it has not been created yet.
+     *
+     * @param flavor the requested flavor for the data
+     * @see DataFlavor#getRepresentationClass
+     * @exception IOException if the data is no longer available
+     * in the requested flavor, or if the Transferable could not be created.
+     * @exception UnsupportedFlavorException if the requested data flavor is
+     * not supported.
+     */
+    @Override
+    public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException, IOException {
+        FutureTask<? extends Transferable> task = transferables.get(flavor);
+        if (task == null) {
+            throw new UnsupportedFlavorException(flavor);
+        }
+        // Does nothing if the task is already running or done
+        task.run();
+        Transferable t;
+        try {
+            t = task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+        return t.getTransferData(flavor);
+    }
+
+    /**
+     * Returns an array of DataFlavor objects indicating the flavors the data
+     * can be provided in. The array should be ordered according to preference
+     * for providing the data (from most richly descriptive to least descriptive).
+     *
+     * @return an array of data flavors in which this data can be transferred
+     */
+    @Override
+    public DataFlavor[] getTransferDataFlavors() {
+        return flavors.toArray(new DataFlavor[flavors.size()]);
+    }
+
+    /**
+     * Returns whether or not the specified data flavor is supported for
+     * this object.
+     *
+     * @param flavor the requested flavor for the data
+     * @return boolean indicating whether or not the data flavor is supported
+     */
+    @Override
+    public boolean isDataFlavorSupported(DataFlavor flavor) {
+        return transferables.containsKey(flavor);
+    }
+
+    @Override
+    public void lostOwnership(Clipboard clipboard, Transferable contents) {
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.datatransfer;
+
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.Transferable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that a {@link LazyTransferable} creates each Transferable at most
+ * once, and only when its data is requested.
+ */
+public class LazyTransferableNGTest {
+
+    public LazyTransferableNGTest() {
+    }
+
+    @Test
+    public void testTransferableIsCreatedOnDemand() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        LazyTransferable t = new LazyTransferable();
+        t.add(new DataFlavor[]{DataFlavor.stringFlavor}, new Callable<Transferable>() {
+            @Override
+            public Transferable call() {
+                count.incrementAndGet();
+                return new StringSelection("lazy");
+            }
+        });
+        t.add(new DataFlavor[]{DataFlavor.stringFlavor}, new Callable<Transferable>() {
+            @Override
+            public Transferable call() {
+                return new StringSelection("replaced");
+            }
+        });
+        t.add(new DataFlavor[]{DataFlavor.imageFlavor}, new Callable<Transferable>() {
+            @Override
+            public Transferable call() {
+                throw new AssertionError("must not be created");
+            }
+        });
+        assertEquals(t.getTransferDataFlavors(), new DataFlavor[]{DataFlavor.stringFlavor, DataFlavor.imageFlavor});
+        assertTrue(t.isDataFlavorSupported(DataFlavor.imageFlavor));
+        assertFalse(t.isDataFlavorSupported(DataFlavor.javaFileListFlavor));
+
+        LazyTransferable u = new LazyTransferable();
+        u.add(new DataFlavor[]{DataFlavor.stringFlavor}, new Callable<Transferable>() {
+            @Override
+            public Transferable call() {
+                count.incrementAndGet();
+                return new StringSelection("lazy");
+            }
+        });
+        assertEquals(count.get(), 0);
+        assertEquals(u.getTransferData(DataFlavor.stringFlavor), "lazy");
+        assertEquals(u.getTransferData(DataFlavor.stringFlavor), "lazy");
+        assertEquals(count.get(), 1);
+        assertEquals(t.getTransferData(DataFlavor.stringFlavor), "replaced");
+    }
+
+    @Test
+    public void testCreateInBackground() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        LazyTransferable t = new LazyTransferable();
+        t.add(new StringSelection("eager"));
+        t.add(new DataFlavor[]{DataFlavor.imageFlavor}, new Callable<Transferable>() {
+            @Override
+            public Transferable call() {
+                count.incrementAndGet();
+                return new StringSelection("background");
+            }
+        });
+        t.createInBackground(new java.util.concurrent.Executor() {
+            @Override
+            public void execute(Runnable r) {
+                r.run();
+            }
+        });
+        assertEquals(count.get(), 1);
+        assertEquals(t.getTransferData(DataFlavor.stringFlavor), "eager");
+        t.createInBackground(new java.util.concurrent.Executor() {
+            @Override
+            public void execute(Runnable r) {
+                fail("must not be created twice");
+            }
+        });
+    }
+}
@@ -121,6 +121,15 @@ public class ODGGroupFigure extends GroupFigure implements ODGFigure {
         return (Rectangle2D.Double) cachedBounds.clone();
     }
 
+    /**
+     * The bounds skip children as long as their union is empty; so they can
+     * not be updated incrementally.
+     */
+    @Override
+    protected boolean isUnionOfChildren() {
+        return false;
+    }
+
     @Override
     public LinkedList<Handle> createHandles(int detailLevel) {
         LinkedList<Handle> handles = new LinkedList<Handle>();
@@ -7,6 +7,7 @@
  */
 package org.jhotdraw.samples.svg;
 
+import org.jhotdraw.draw.figure.AbstractAttributedFigure;
 import org.jhotdraw.draw.figure.Figure;
 import java.awt.*;
 import org.jhotdraw.draw.*;
@@ -21,6 +22,11 @@ import org.jhotdraw.util.ResourceBundleUtil;
 public class SVGAttributeKeys extends AttributeKeys {
 
     private static final ResourceBundleUtil LABELS = ResourceBundleUtil.getBundle("org.jhotdraw.samples.svg.Labels");
+    /**
+     * Identify the paints which are cached in an {@link AttributeStyle}.
+     */
+    private static final Object FILL_PAINT_CACHE_KIND = new Object();
+    private static final Object STROKE_PAINT_CACHE_KIND = new Object();
 
     public enum TextAnchor {
         START, MIDDLE, END
@@ -113,12 +119,8 @@ public class SVGAttributeKeys extends AttributeKeys {
             return f.get(FILL_GRADIENT).getPaint(f, opacity);
         }
         Color color = f.get(FILL_COLOR);
-        if (color != null) {
-            if (opacity != 1) {
-                color = new Color(
-                        (color.getRGB() & 0xffffff) | (int) (opacity * 255) << 24,
-                        true);
-            }
+        if (color != null && opacity != 1) {
+            color = getTranslucentColor(f, FILL_PAINT_CACHE_KIND, color, opacity);
         }
         return color;
     }
@@ -134,16 +136,31 @@ public class SVGAttributeKeys extends AttributeKeys {
             return f.get(STROKE_GRADIENT).getPaint(f, opacity);
         }
         Color color = f.get(STROKE_COLOR);
-        if (color != null) {
-            if (opacity != 1) {
-                color = new Color(
-                        (color.getRGB() & 0xffffff) | (int) (opacity * 255) << 24,
-                        true);
-            }
+        if (color != null && opacity != 1) {
+            color = getTranslucentColor(f, STROKE_PAINT_CACHE_KIND, color, opacity);
         }
         return color;
     }
 
+    /**
+     * Returns the color with the specified opacity. The color is cached in
+     * the attribute style of the figure, since it only depends on the
+     * attributes of the figure.
+     */
+    private static Color getTranslucentColor(Figure f, Object kind, Color color, double opacity) {
+        AttributeStyle style = (f instanceof AbstractAttributedFigure) ? ((AbstractAttributedFigure) f).getAttributeStyle() : null;
+        Color translucent = (style == null) ? null : (Color) style.getCachedValue(kind, 1.0);
+        if (translucent == null) {
+            translucent = new Color(
+                    (color.getRGB() & 0xffffff) | (int) (opacity * 255) << 24,
+                    true);
+            if (style != null) {
+                style.putCachedValue(kind, 1.0, translucent);
+            }
+        }
+        return translucent;
+    }
+
     /**
      * Sets SVG default values.
      */
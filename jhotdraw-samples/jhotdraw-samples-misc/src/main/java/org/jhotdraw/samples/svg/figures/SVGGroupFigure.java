@@ -102,25 +102,12 @@ public class SVGGroupFigure extends GroupFigure implements SVGFigure {
     }
 
     @Override
-    public Rectangle2D.Double getBounds() {
-        if (cachedBounds == null) {
-            if (getChildCount() == 0) {
-                cachedBounds = new Rectangle2D.Double();
-            } else {
-                for (Figure f : children) {
-                    Rectangle2D.Double bounds = f.getBounds();
-                    if (f.get(TRANSFORM) != null) {
-                        bounds.setRect(f.get(TRANSFORM).createTransformedShape(bounds).getBounds2D());
-                    }
-                    if (cachedBounds == null) {
-                        cachedBounds = bounds;
-                    } else {
-                        cachedBounds.add(bounds);
-                    }
-                }
-            }
+    protected Rectangle2D.Double getChildBounds(Figure child) {
+        Rectangle2D.Double bounds = child.getBounds();
+        if (child.get(TRANSFORM) != null) {
+            bounds.setRect(child.get(TRANSFORM).createTransformedShape(bounds).getBounds2D());
         }
-        return (Rectangle2D.Double) cachedBounds.clone();
+        return bounds;
     }
 
     @Override
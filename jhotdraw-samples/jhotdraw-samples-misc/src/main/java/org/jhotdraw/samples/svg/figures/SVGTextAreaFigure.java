@@ -11,7 +11,6 @@ import org.jhotdraw.draw.figure.TextHolderFigure;
 import java.awt.*;
 import java.awt.font.*;
 import java.awt.geom.*;
-import java.text.*;
 import java.util.*;
 import org.jhotdraw.draw.*;
 import static org.jhotdraw.draw.AttributeKeys.FILL_COLOR;
@@ -27,6 +26,7 @@ import org.jhotdraw.draw.handle.Handle;
 import org.jhotdraw.draw.handle.ResizeHandleKit;
 import org.jhotdraw.draw.handle.TextOverflowHandle;
 import org.jhotdraw.draw.handle.TransformHandleKit;
+import org.jhotdraw.draw.text.TextAreaLayout;
 import org.jhotdraw.draw.tool.TextAreaEditingTool;
 import org.jhotdraw.draw.tool.Tool;
 import org.jhotdraw.geom.Dimension2DDouble;
@@ -58,6 +58,11 @@ public class SVGTextAreaFigure extends SVGAttributedFigure
      */
     private transient Rectangle2D.Double cachedDrawingArea;
     private transient Shape cachedTextShape;
+    /**
+     * The layout of the text. Unlike the text shape, the layout is relative
+     * to the text area, and is kept when the figure is moved.
+     */
+    private transient TextAreaLayout cachedTextLayout;
 
     /**
      * Creates a new instance.
@@ -129,164 +134,41 @@ public class SVGTextAreaFigure extends SVGAttributedFigure
         if (cachedTextShape == null) {
             Path2D.Double shape;
             cachedTextShape = shape = new Path2D.Double();
-            if (getText() != null || isEditable()) {
-                Font font = getFont();
-                boolean isUnderlined = get(FONT_UNDERLINE);
+            if (getText() != null) {
                 Insets2D.Double insets = getInsets();
                 Rectangle2D.Double textRect = new Rectangle2D.Double(
                         bounds.x + insets.left,
                         bounds.y + insets.top,
                         bounds.width - insets.left - insets.right,
                         bounds.height - insets.top - insets.bottom);
-                float leftMargin = (float) textRect.x;
-                float rightMargin = (float) Math.max(leftMargin + 1, textRect.x + textRect.width);
-                float verticalPos = (float) textRect.y;
-                float maxVerticalPos = (float) (textRect.y + textRect.height);
-                if (leftMargin < rightMargin) {
-                    float tabWidth = (float) (getTabSize() * font.getStringBounds("m", getFontRenderContext()).getWidth());
-                    float[] tabStops = new float[(int) (textRect.width / tabWidth)];
-                    for (int i = 0; i < tabStops.length; i++) {
-                        tabStops[i] = (float) (textRect.x + (int) (tabWidth * (i + 1)));
-                    }
-                    if (getText() != null) {
-                        String[] paragraphs = getText().split("\n"); //Strings.split(getText(), '\n');
-                        for (int i = 0; i < paragraphs.length; i++) {
-                            if (paragraphs[i].length() == 0) {
-                                paragraphs[i] = " ";
-                            }
-                            AttributedString as = new AttributedString(paragraphs[i]);
-                            as.addAttribute(TextAttribute.FONT, font);
-                            if (isUnderlined) {
-                                as.addAttribute(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_LOW_ONE_PIXEL);
-                            }
-                            int tabCount = paragraphs[i].split("\t").length - 1;
-                            Rectangle2D.Double paragraphBounds = appendParagraph(
-                                    shape, as.getIterator(),
-                                    verticalPos, maxVerticalPos, leftMargin, rightMargin, tabStops, tabCount);
-                            verticalPos = (float) (paragraphBounds.y + paragraphBounds.height);
-                            if (verticalPos > textRect.y + textRect.height) {
-                                break;
-                            }
-                        }
-                    }
-                }
+                Shape outline = getTextAreaLayout(textRect.width).getOutline((float) textRect.height);
+                shape.append(outline.getPathIterator(
+                        AffineTransform.getTranslateInstance(textRect.x, textRect.y)), false);
             }
         }
         return cachedTextShape;
     }
 
     /**
-     * Appends a paragraph of text at the specified y location and returns
-     * the bounds of the paragraph.
-     *
-     *
-     * @param shape Shape to which to add the glyphs of the paragraph. This
-     * parameter is null, if we only want to measure the size of the paragraph.
-     * @param styledText the text of the paragraph.
-     * @param verticalPos the top bound of the paragraph
-     * @param maxVerticalPos the bottom bound of the paragraph
-     * @param leftMargin the left bound of the paragraph
-     * @param rightMargin the right bound of the paragraph
-     * @param tabStops an array with tab stops
-     * @param tabCount the number of entries in tabStops which contain actual
-     * values
-     * @return Returns the actual bounds of the paragraph.
+     * Returns the layout of the text in a text area of the specified width.
+     * The layout is kept, until the text, the font or the width change.
      */
-    private Rectangle2D.Double appendParagraph(Path2D.Double shape,
-            AttributedCharacterIterator styledText,
-            float verticalPos, float maxVerticalPos,
-            float leftMargin, float rightMargin,
-            float[] tabStops, int tabCount) {
-        // assume styledText is an AttributedCharacterIterator, and the number
-        // of tabs in styledText is tabCount
-        Rectangle2D.Double paragraphBounds = new Rectangle2D.Double(leftMargin, verticalPos, 0, 0);
-        int[] tabLocations = new int[tabCount + 1];
-        int i = 0;
-        for (char c = styledText.first(); c != CharacterIterator.DONE; c = styledText.next()) {
-            if (c == '\t') {
-                tabLocations[i++] = styledText.getIndex();
+    private TextAreaLayout getTextAreaLayout(double width) {
+        Font font = getFont();
+        boolean isUnderlined = get(FONT_UNDERLINE);
+        float rightMargin = (float) Math.max(1, width);
+        FontRenderContext frc = getFontRenderContext();
+        TextAreaLayout layout = cachedTextLayout;
+        if (layout == null || !layout.matches(getText(), font, isUnderlined, rightMargin, frc)) {
+            float tabWidth = (float) (getTabSize() * font.getStringBounds("m", frc).getWidth());
+            float[] tabStops = new float[Math.max(0, (int) (width / tabWidth))];
+            for (int i = 0; i < tabStops.length; i++) {
+                tabStops[i] = (float) (int) (tabWidth * (i + 1));
             }
+            layout = new TextAreaLayout(getText(), font, isUnderlined, rightMargin, tabStops, frc);
+            cachedTextLayout = layout;
         }
-        tabLocations[tabCount] = styledText.getEndIndex() - 1;
-        // Now tabLocations has an entry for every tab's offset in
-        // the text.  For convenience, the last entry is tabLocations
-        // is the offset of the last character in the text.
-        LineBreakMeasurer measurer = new LineBreakMeasurer(styledText, getFontRenderContext());
-        int currentTab = 0;
-        while (measurer.getPosition() < styledText.getEndIndex()) {
-            // Lay out and draw each line.  All segments on a line
-            // must be computed before any drawing can occur, since
-            // we must know the largest ascent on the line.
-            // TextLayouts are computed and stored in a List;
-            // their horizontal positions are stored in a parallel
-            // List.
-            // lineContainsText is true after first segment is drawn
-            boolean lineContainsText = false;
-            boolean lineComplete = false;
-            float maxAscent = 0, maxDescent = 0;
-            float horizontalPos = leftMargin;
-            LinkedList<TextLayout> layouts = new LinkedList<TextLayout>();
-            LinkedList<Float> penPositions = new LinkedList<Float>();
-            while (!lineComplete) {
-                float wrappingWidth = rightMargin - horizontalPos;
-                TextLayout layout = null;
-                layout
-                        = measurer.nextLayout(wrappingWidth,
-                                tabLocations[currentTab] + 1,
-                                lineContainsText);
-                // layout can be null if lineContainsText is true
-                if (layout != null) {
-                    layouts.add(layout);
-                    penPositions.add(horizontalPos);
-                    horizontalPos += layout.getAdvance();
-                    maxAscent = Math.max(maxAscent, layout.getAscent());
-                    maxDescent = Math.max(maxDescent,
-                            layout.getDescent() + layout.getLeading());
-                } else {
-                    lineComplete = true;
-                }
-                lineContainsText = true;
-                if (measurer.getPosition() == tabLocations[currentTab] + 1) {
-                    currentTab++;
-                }
-                if (measurer.getPosition() == styledText.getEndIndex()) {
-                    lineComplete = true;
-                } else if (tabStops.length == 0 || horizontalPos >= tabStops[tabStops.length - 1]) {
-                    lineComplete = true;
-                }
-                if (!lineComplete) {
-                    // move to next tab stop
-                    int j;
-                    for (j = 0; horizontalPos >= tabStops[j]; j++) {
-                    }
-                    horizontalPos = tabStops[j];
-                }
-            }
-            verticalPos += maxAscent;
-            if (verticalPos > maxVerticalPos) {
-                break;
-            }
-            Iterator<TextLayout> layoutEnum = layouts.iterator();
-            Iterator<Float> positionEnum = penPositions.iterator();
-            // now iterate through layouts and draw them
-            while (layoutEnum.hasNext()) {
-                TextLayout nextLayout = layoutEnum.next();
-                float nextPosition = positionEnum.next();
-                AffineTransform tx = new AffineTransform();
-                tx.translate(nextPosition, verticalPos);
-                if (shape != null) {
-                    Shape outline = nextLayout.getOutline(tx);
-                    shape.append(outline, false);
-                }
-                Rectangle2D layoutBounds = nextLayout.getBounds();
-                paragraphBounds.add(new Rectangle2D.Double(layoutBounds.getX() + nextPosition,
-                        layoutBounds.getY() + verticalPos,
-                        layoutBounds.getWidth(),
-                        layoutBounds.getHeight()));
-            }
-            verticalPos += maxDescent;
-        }
-        return paragraphBounds;
+        return layout;
     }
 
     @Override
@@ -538,7 +420,12 @@ public class SVGTextAreaFigure extends SVGAttributedFigure
     public boolean isTextOverflow() {
         if (isTextOverflow == null) {
             Insets2D.Double insets = getInsets();
-            isTextOverflow = getPreferredTextSize(getBounds().width - insets.left - insets.right).height > getBounds().height - insets.top - insets.bottom;
+            double textHeight = 0;
+            if (getText() != null) {
+                Rectangle2D.Double r = getTextAreaLayout(bounds.width - insets.left - insets.right).getBounds();
+                textHeight = Math.abs(r.y) + r.height;
+            }
+            isTextOverflow = textHeight > bounds.height - insets.top - insets.bottom;
         }
         return isTextOverflow;
     }
@@ -555,37 +442,10 @@ public class SVGTextAreaFigure extends SVGAttributedFigure
      */
     public Dimension2DDouble getPreferredTextSize(double maxWidth) {
         Rectangle2D.Double textRect = new Rectangle2D.Double();
-        if (getText() != null) {
-            Font font = getFont();
-            boolean isUnderlined = get(FONT_UNDERLINE);
-            float leftMargin = 0;
-            float rightMargin = (float) maxWidth - 1;
-            float verticalPos = 0;
-            float maxVerticalPos = Float.MAX_VALUE;
-            if (leftMargin < rightMargin) {
-                float tabWidth = (float) (getTabSize() * font.getStringBounds("m", getFontRenderContext()).getWidth());
-                float[] tabStops = new float[(int) (textRect.width / tabWidth)];
-                for (int i = 0; i < tabStops.length; i++) {
-                    tabStops[i] = (float) (textRect.x + (int) (tabWidth * (i + 1)));
-                }
-                if (getText() != null) {
-                    String[] paragraphs = getText().split("\n"); //Strings.split(getText(), '\n');
-                    for (int i = 0; i < paragraphs.length; i++) {
-                        if (paragraphs[i].length() == 0) {
-                            paragraphs[i] = " ";
-                        }
-                        AttributedString as = new AttributedString(paragraphs[i]);
-                        as.addAttribute(TextAttribute.FONT, font);
-                        if (isUnderlined) {
-                            as.addAttribute(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_LOW_ONE_PIXEL);
-                        }
-                        int tabCount = paragraphs[i].split("\t").length - 1;
-                        Rectangle2D.Double paragraphBounds = appendParagraph(null, as.getIterator(), verticalPos, maxVerticalPos, leftMargin, rightMargin, tabStops, tabCount);
-                        verticalPos = (float) (paragraphBounds.y + paragraphBounds.height);
-                        textRect.add(paragraphBounds);
-                    }
-                }
-            }
+        float rightMargin = (float) maxWidth - 1;
+        if (getText() != null && rightMargin > 0) {
+            textRect = new TextAreaLayout(getText(), getFont(), get(FONT_UNDERLINE),
+                    rightMargin, new float[0], getFontRenderContext()).getBounds();
         }
         return new Dimension2DDouble(Math.abs(textRect.x) + textRect.width, Math.abs(textRect.y) + textRect.height);
     }
@@ -203,6 +203,11 @@ public class ImageMapOutputFormat implements OutputFormat {
         return new InputStreamTransferable(new DataFlavor("text/html", "HTML Image Map"), buf.toByteArray());
     }
 
+    @Override
+    public DataFlavor[] getTransferDataFlavors() {
+        return new DataFlavor[]{new DataFlavor("text/html", "HTML Image Map")};
+    }
+
     protected void writeElement(Element parent, Figure f) throws IOException {
         if (f instanceof SVGEllipseFigure) {
             writeEllipseElement(parent, (SVGEllipseFigure) f);
@@ -29,6 +29,10 @@ import javax.swing.text.DefaultStyledDocument;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import org.jhotdraw.draw.*;
 import org.jhotdraw.draw.io.InputFormat;
 import org.jhotdraw.formatter.FontFormatter;
@@ -43,7 +47,9 @@ import org.jhotdraw.samples.svg.figures.SVGFigure;
 import org.jhotdraw.util.LocaleUtil;
 import org.jhotdraw.xml.css.CSSParser;
 import org.jhotdraw.xml.css.StyleManager;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
@@ -57,6 +63,11 @@ import org.xml.sax.SAXException;
  * Name: Abstract Factory.<br>
  * Role: Client.<br>
  * Partners: {@link SVGFigureFactory} as Abstract Factory.
+ * <p>
+ * By default, the input format reads the whole document into a DOM before it
+ * creates the figures. In streaming mode, the input format creates the figures
+ * while it parses the document, and adds them to the drawing in batches. See
+ * {@link #setStreaming}.
  *
  *
  * @author Werner Randelshofer
@@ -159,6 +170,21 @@ public class SVGInputFormat implements InputFormat {
      * Holds the document that is currently being read.
      */
     private Element document;
+    /**
+     * Set this to true, to create the figures while the document is parsed.
+     */
+    private boolean isStreaming;
+    /**
+     * In streaming mode, holds the figures which can be referenced by a "use"
+     * element. The figures are copies which have not been transformed by the
+     * elements which contain them. Null if not in streaming mode.
+     */
+    private HashMap<String, Figure> useTargets;
+    /**
+     * In streaming mode, the number of figures which are added to the
+     * drawing at once.
+     */
+    private static final int STREAMING_BATCH_SIZE = 1000;
 
     /**
      * Creates a new instance.
@@ -171,6 +197,29 @@ public class SVGInputFormat implements InputFormat {
         this.factory = factory;
     }
 
+    /**
+     * Sets whether figures are created while the document is parsed.
+     * <p>
+     * In streaming mode, the document is parsed with a StAX parser. Only the
+     * element which is currently being read, and the attributes of the
+     * elements which contain it, are held in memory. CSS rules and "style"
+     * attributes are applied to each element when it is read. Figures are
+     * added to the drawing in batches, so that a view of the drawing can show
+     * the progress.
+     * <p>
+     * Elements which reference a gradient or an element which has not been
+     * read yet, are read at the end of the document. "use" elements can only
+     * reference elements which follow them, or which are in a "defs"
+     * element.
+     */
+    public void setStreaming(boolean newValue) {
+        isStreaming = newValue;
+    }
+
+    public boolean isStreaming() {
+        return isStreaming;
+    }
+
     @Override
     public void read(URI uri, Drawing drawing) throws IOException {
         read(new File(uri), drawing);
@@ -218,12 +267,17 @@ public class SVGInputFormat implements InputFormat {
      */
     @Override
     public void read(InputStream in, Drawing drawing, boolean replace) throws IOException {
+        if (isStreaming) {
+            readStreaming(in, drawing, replace);
+            return;
+        }
         long start;
         if (DEBUG) {
             start = System.currentTimeMillis();
         }
         this.figures = new LinkedList<Figure>();
         DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
         DocumentBuilder builder;
         try {
             builder = factory.newDocumentBuilder();
@@ -235,45 +289,25 @@ public class SVGInputFormat implements InputFormat {
             System.out.println("SVGInputFormat parser created " + (System.currentTimeMillis() - start));
         }
         try {
-            document = (Element) builder.parse(in);
+            Document doc = builder.parse(in);
+            document = doc.getDocumentElement();
+            // The read methods expect that elements only have elements as
+            // parents and children, like the elements which are created in
+            // streaming mode.
+            doc.removeChild(document);
         } catch (SAXException ex) {
             Logger.getLogger(SVGInputFormat.class.getName()).log(Level.SEVERE, null, ex);
             throw new IOException(ex);
         }
+        removeNonElementNodes(document, false);
         if (DEBUG) {
             System.out.println("SVGInputFormat document created " + (System.currentTimeMillis() - start));
         }
         // Search for the first 'svg' element in the XML document
         // in preorder sequence
-        Element svg = document;
-        Stack<Element> stack = new Stack<Element>();
-        //LinkedList<Element> ll = new LinkedList<Element>();
-        //ll.add(document);
-        stack.push((Element) document.getFirstChild());
-        while (!stack.empty() && stack.peek().getNextSibling() != null) {
-            Element iter = stack.peek();
-            Element node = (Element) iter.getNextSibling();
-            stack.set(stack.indexOf(iter), node);
-            Element children = (Element) node.getFirstChild();
-            if (iter.getNextSibling() == null) {
-                stack.pop();
-            }
-            if (children != null && children.getNextSibling() != null) {
-                stack.push(children);
-            }
-            if (node.getLocalName() != null
-                    && node.getLocalName().equals("svg")
-                    && (node.getPrefix() == null
-                    || node.getPrefix().equals(SVG_NAMESPACE))) {
-                svg = node;
-                break;
-            }
-        }
-        if (svg.getLocalName() == null
-                || !svg.getLocalName().equals("svg")
-                || (svg.getPrefix() != null
-                && !svg.getPrefix().equals(SVG_NAMESPACE))) {
-            throw new IOException("'svg' element expected: " + svg.getLocalName());
+        Element svg = findSVGElement(document);
+        if (svg == null) {
+            throw new IOException("'svg' element expected: " + document.getLocalName());
         }
         //long end1 = System.currentTimeMillis();
         // Flatten CSS Styles
@@ -312,6 +346,613 @@ public class SVGInputFormat implements InputFormat {
         styleManager = null;
     }
 
+    /**
+     * Removes the text, comment and processing instruction nodes from the
+     * specified element and the elements in it. Text elements keep all their
+     * nodes.
+     */
+    private static void removeNonElementNodes(Element elem, boolean isInTextElement) {
+        isInTextElement |= TEXT_ELEMENTS.contains(elem.getLocalName());
+        Node node = elem.getFirstChild();
+        while (node != null) {
+            Node next = node.getNextSibling();
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                removeNonElementNodes((Element) node, isInTextElement);
+            } else if (!isInTextElement) {
+                elem.removeChild(node);
+            }
+            node = next;
+        }
+    }
+
+    /**
+     * Returns the first "svg" element in preorder sequence, or null if
+     * there is none.
+     */
+    private static Element findSVGElement(Element elem) {
+        if ("svg".equals(elem.getLocalName())
+                && (elem.getPrefix() == null || elem.getPrefix().equals(SVG_NAMESPACE))) {
+            return elem;
+        }
+        for (Node node = elem.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                Element svg = findSVGElement((Element) node);
+                if (svg != null) {
+                    return svg;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the document in streaming mode.
+     *
+     * @see #setStreaming
+     */
+    private void readStreaming(InputStream in, Drawing drawing, boolean replace) throws IOException {
+        identifiedElements = new HashMap<String, Element>();
+        elementObjects = new HashMap<Element, Object>();
+        viewportStack = new Stack<Viewport>();
+        viewportStack.push(new Viewport());
+        styleManager = new StyleManager();
+        useTargets = new HashMap<String, Figure>();
+        try {
+            if (replace) {
+                drawing.removeAllChildren();
+            }
+            new StreamingReader(drawing, replace).read(in);
+        } finally {
+            // Get rid of all objects we don't need anymore to help garbage collector.
+            identifiedElements = null;
+            elementObjects = null;
+            viewportStack = null;
+            styleManager = null;
+            useTargets = null;
+        }
+    }
+
+    /**
+     * The elements which are read by the {@code StreamingReader}. Elements
+     * with other names are skipped.
+     */
+    private static final HashSet<String> STREAMED_ELEMENTS = new HashSet<String>(
+            Arrays.asList(new String[]{
+        "a", "circle", "defs", "ellipse", "g", "image", "line", "linearGradient",
+        "path", "polygon", "polyline", "radialGradient", "rect", "solidColor",
+        "style", "svg", "switch", "text", "textArea", "use"
+    }));
+    /**
+     * The elements which define a paint, which can be referenced with an
+     * "url(...)" value.
+     */
+    private static final HashSet<String> PAINT_ELEMENTS = new HashSet<String>(
+            Arrays.asList(new String[]{"linearGradient", "radialGradient", "solidColor"}));
+    /**
+     * The elements in which the {@code StreamingReader} keeps white space.
+     */
+    private static final HashSet<String> TEXT_ELEMENTS = new HashSet<String>(
+            Arrays.asList(new String[]{"style", "text", "textArea", "tspan"}));
+
+    /**
+     * An "svg", "g" or "a" element which is being read by the
+     * {@code StreamingReader}.
+     */
+    private static class Frame {
+
+        final Frame parent;
+        /**
+         * Holds the attributes of the element. The elements which are
+         * contained in it are added to it while they are being read, so that
+         * they can inherit its attributes.
+         */
+        final Element elem;
+        /**
+         * The figure of a "g" or an "a" element. Null for an "svg" element, the
+         * figures of which are top level figures.
+         */
+        final CompositeFigure group;
+        /**
+         * The transform of a "g" element, or the view box transform of an
+         * "svg" element.
+         */
+        final AffineTransform transform;
+        boolean isLink;
+        String link;
+        String linkTarget;
+        int childCount;
+        int deferredCount;
+
+        Frame(Frame parent, Element elem, CompositeFigure group, AffineTransform transform) {
+            this.parent = parent;
+            this.elem = elem;
+            this.group = group;
+            this.transform = transform;
+        }
+    }
+
+    /**
+     * An element which references an element which has not been read yet.
+     */
+    private static class DeferredElement {
+
+        final Element elem;
+        final Frame frame;
+        /**
+         * The composite figure to which the figure of the element is added.
+         */
+        final CompositeFigure parent;
+        final int index;
+        /**
+         * The transforms of the elements which contain the element, innermost
+         * first.
+         */
+        final ArrayList<AffineTransform> transforms = new ArrayList<AffineTransform>();
+
+        DeferredElement(Element elem, Frame frame, CompositeFigure parent, int index) {
+            this.elem = elem;
+            this.frame = frame;
+            this.parent = parent;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Reads a document with a StAX parser.
+     * <p>
+     * The reader keeps a DOM element with the attributes of each open "svg",
+     * "g" and "a" element. All other elements are read into a DOM element
+     * which is added to the element which contains it, and then read with
+     * the same methods as in DOM mode.
+     */
+    private class StreamingReader {
+
+        private final Drawing drawing;
+        private final boolean replace;
+        private XMLStreamReader reader;
+        private Document document;
+        /**
+         * Holds the top level figures which have not been added to the drawing
+         * yet.
+         */
+        private final ArrayList<Figure> batch = new ArrayList<Figure>();
+        /**
+         * The index of the next top level figure in the drawing.
+         */
+        private int topLevelIndex;
+        /**
+         * The ids which have been referenced by "use" elements.
+         */
+        private final HashSet<String> referencedIds = new HashSet<String>();
+        private final ArrayList<DeferredElement> deferredElements = new ArrayList<DeferredElement>();
+
+        StreamingReader(Drawing drawing, boolean replace) {
+            this.drawing = drawing;
+            this.replace = replace;
+            topLevelIndex = drawing.getChildCount();
+        }
+
+        void read(InputStream in) throws IOException {
+            XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+            inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+            inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+            // Don't load the SVG DTD from the network
+            inputFactory.setXMLResolver((publicID, systemID, baseURI, namespace)
+                    -> new ByteArrayInputStream(new byte[0]));
+            try {
+                document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+                reader = inputFactory.createXMLStreamReader(in);
+                try {
+                    readDocument();
+                } finally {
+                    reader.close();
+                }
+            } catch (XMLStreamException | ParserConfigurationException ex) {
+                throw new IOException(ex);
+            }
+            flushBatch();
+            readDeferredElements();
+        }
+
+        private void readDocument() throws XMLStreamException, IOException {
+            Frame frame = null;
+            boolean isSVGFound = false;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (frame == null) {
+                        // Search for the first 'svg' element in preorder sequence
+                        if (isSVGElement() && "svg".equals(reader.getLocalName())) {
+                            isSVGFound = true;
+                            frame = startViewport(null);
+                            if (replace) {
+                                Viewport viewport = viewportStack.firstElement();
+                                drawing.set(VIEWPORT_FILL, VIEWPORT_FILL.get(viewport.attributes));
+                                drawing.set(VIEWPORT_FILL_OPACITY, VIEWPORT_FILL_OPACITY.get(viewport.attributes));
+                                drawing.set(VIEWPORT_HEIGHT, VIEWPORT_HEIGHT.get(viewport.attributes));
+                                drawing.set(VIEWPORT_WIDTH, VIEWPORT_WIDTH.get(viewport.attributes));
+                            }
+                        }
+                    } else if (!isSVGElement() || !STREAMED_ELEMENTS.contains(reader.getLocalName())) {
+                        skipElement();
+                    } else {
+                        String name = reader.getLocalName();
+                        if ("svg".equals(name)) {
+                            frame = startViewport(frame);
+                        } else if ("g".equals(name) || "a".equals(name)) {
+                            frame = startGroup(frame);
+                        } else if ("defs".equals(name)) {
+                            readDefsElement(frame);
+                        } else {
+                            readChildElement(frame);
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && frame != null) {
+                    frame = endFrame(frame);
+                    if (frame == null) {
+                        break;
+                    }
+                }
+            }
+            if (!isSVGFound) {
+                throw new IOException("'svg' element expected");
+            }
+        }
+
+        private Frame startViewport(Frame parent) throws IOException {
+            Element elem = createElement(parent);
+            flattenStyles(elem);
+            return new Frame(parent, elem, null, pushViewport(elem));
+        }
+
+        private Frame startGroup(Frame parent) throws IOException {
+            Element elem = createElement(parent);
+            flattenStyles(elem);
+            HashMap<AttributeKey<?>, Object> a = new HashMap<AttributeKey<?>, Object>();
+            readCoreAttributes(elem, a);
+            Frame frame;
+            if ("a".equals(elem.getLocalName())) {
+                frame = new Frame(parent, elem, factory.createG(a), null);
+                frame.isLink = true;
+                frame.link = readAttribute(elem, "xlink:href", null);
+                if (frame.link == null) {
+                    frame.link = readAttribute(elem, "href", null);
+                }
+                frame.linkTarget = readAttribute(elem, "target", null);
+            } else {
+                readOpacityAttribute(elem, a);
+                CompositeFigure g = factory.createG(a);
+                HashMap<AttributeKey<?>, Object> t = new HashMap<AttributeKey<?>, Object>();
+                readTransformAttribute(elem, t);
+                frame = new Frame(parent, elem, g, TRANSFORM.get(t));
+            }
+            return frame;
+        }
+
+        /**
+         * Ends an "svg", "g" or "a" element.
+         *
+         * @return the frame of the element which contains the element.
+         */
+        private Frame endFrame(Frame frame) throws IOException {
+            Element elem = frame.elem;
+            if (frame.group == null) {
+                viewportStack.pop();
+            } else {
+                CompositeFigure g = frame.group;
+                Figure f;
+                if (frame.isLink) {
+                    f = (g.getChildCount() == 1 && frame.deferredCount == 0) ? g.getChild(0) : g;
+                } else {
+                    if (frame.transform != null) {
+                        g.transform(frame.transform);
+                    }
+                    f = g;
+                }
+                if (f instanceof SVGFigure && ((SVGFigure) f).isEmpty() && frame.deferredCount == 0) {
+                    f = null;
+                }
+                if (f != null) {
+                    retainUseTarget(elem, f);
+                    addChild(frame.parent, elem, f);
+                }
+            }
+            // Deferred elements need the attributes of the element
+            if (!elem.hasChildNodes() && elem.getParentNode() != null) {
+                elem.getParentNode().removeChild(elem);
+            }
+            return frame.parent;
+        }
+
+        /**
+         * Reads an element, which is not an "svg", "g", "a" or "defs" element.
+         */
+        private void readChildElement(Frame frame) throws XMLStreamException, IOException {
+            Element elem = readSubtree(frame.elem, false);
+            // This also parses the CSS rules of a "style" element
+            flattenStyles(elem);
+            if ("style".equals(elem.getLocalName())) {
+                frame.elem.removeChild(elem);
+                return;
+            }
+            if (hasForwardReference(elem)) {
+                deferElement(frame, elem);
+                return;
+            }
+            Figure f = readElement(elem);
+            String id = getId(elem);
+            if (f == null && id != null && elementObjects.containsKey(elem)) {
+                // Keep gradients, so that figures can reference them
+                identifiedElements.put(id, elem);
+            } else {
+                forgetElements(elem);
+                if (f != null) {
+                    retainUseTarget(elem, f);
+                    addChild(frame, elem, f);
+                }
+            }
+            frame.elem.removeChild(elem);
+        }
+
+        /**
+         * Reads a "defs" element. The figures in it can be referenced by
+         * "use" elements.
+         */
+        private void readDefsElement(Frame frame) throws XMLStreamException, IOException {
+            Element elem = readSubtree(frame.elem, false);
+            flattenStyles(elem);
+            identifyElements(elem);
+            NodeList list = elem.getChildNodes();
+            for (int i = 0; i < list.getLength(); i++) {
+                if (list.item(i) instanceof Element) {
+                    Element child = (Element) list.item(i);
+                    Figure f = readElement(child);
+                    String id = getId(child);
+                    if (f != null && id != null) {
+                        useTargets.put(id, f);
+                    }
+                }
+            }
+            frame.elem.removeChild(elem);
+        }
+
+        /**
+         * Adds the figure of a child element to the figure of its parent
+         * element, or to the top level figures.
+         */
+        private void addChild(Frame frame, Element elem, Figure f) {
+            if (frame.isLink) {
+                f.set(LINK, frame.link);
+                f.set(LINK_TARGET, frame.linkTarget);
+            }
+            // skip invisible elements
+            if (!isVisible(elem)) {
+                return;
+            }
+            if (frame.group != null) {
+                frame.group.basicAdd(f);
+                frame.childCount++;
+            } else {
+                f.transform(frame.transform);
+                batch.add(f);
+                topLevelIndex++;
+                if (batch.size() >= STREAMING_BATCH_SIZE) {
+                    flushBatch();
+                }
+            }
+        }
+
+        private void flushBatch() {
+            if (!batch.isEmpty()) {
+                drawing.addAll(batch);
+                batch.clear();
+            }
+        }
+
+        /**
+         * Returns true if the element is a "use" element or has a fill or
+         * stroke paint, which references an element which has not been read
+         * yet.
+         */
+        private boolean hasForwardReference(Element elem) {
+            String name = elem.getLocalName();
+            if ("linearGradient".equals(name) || "radialGradient".equals(name)
+                    || "solidColor".equals(name)) {
+                return false;
+            }
+            if ("use".equals(name)) {
+                String href = readAttribute(elem, "xlink:href", null);
+                if (href != null && href.startsWith("#")) {
+                    referencedIds.add(href.substring(1));
+                    if (!useTargets.containsKey(href.substring(1))) {
+                        return true;
+                    }
+                }
+            }
+            return isUnresolvedPaint(readInheritColorAttribute(elem, "fill", null))
+                    || isUnresolvedPaint(readInheritColorAttribute(elem, "stroke", null));
+        }
+
+        private boolean isUnresolvedPaint(String value) {
+            if (value == null || !value.trim().startsWith("url(#")) {
+                return false;
+            }
+            String str = value.trim();
+            int end = str.indexOf(')');
+            String id = str.substring(5, end == -1 ? str.length() : end).trim();
+            return !identifiedElements.containsKey(id);
+        }
+
+        /**
+         * Defers reading an element to the end of the document. The element
+         * stays in the element which contains it, so that it can inherit its
+         * attributes.
+         */
+        private void deferElement(Frame frame, Element elem) {
+            DeferredElement d;
+            if (frame.group != null) {
+                d = new DeferredElement(elem, frame, frame.group, frame.childCount++);
+            } else {
+                d = new DeferredElement(elem, frame, drawing, topLevelIndex++);
+            }
+            for (Frame f = frame; f != null; f = f.parent) {
+                if (f.transform != null) {
+                    d.transforms.add(f.transform);
+                }
+                if (f.group == null) {
+                    // The figures of an "svg" element are top level figures
+                    break;
+                }
+            }
+            for (Frame f = frame; f != null; f = f.parent) {
+                f.deferredCount++;
+            }
+            deferredElements.add(d);
+        }
+
+        /**
+         * Reads the deferred elements, and inserts their figures at the
+         * position of the elements in the document.
+         */
+        private void readDeferredElements() throws IOException {
+            IdentityHashMap<CompositeFigure, Integer> missingCounts = new IdentityHashMap<CompositeFigure, Integer>();
+            for (DeferredElement d : deferredElements) {
+                Figure f = readElement(d.elem);
+                Integer missingCount = missingCounts.get(d.parent);
+                int missing = (missingCount == null) ? 0 : missingCount;
+                if (f == null || !isVisible(d.elem)) {
+                    missingCounts.put(d.parent, missing + 1);
+                } else {
+                    retainUseTarget(d.elem, f);
+                    if (d.frame.isLink) {
+                        f.set(LINK, d.frame.link);
+                        f.set(LINK_TARGET, d.frame.linkTarget);
+                    }
+                    for (AffineTransform tx : d.transforms) {
+                        f.transform(tx);
+                    }
+                    d.parent.add(d.index - missing, f);
+                }
+                forgetElements(d.elem);
+            }
+            deferredElements.clear();
+        }
+
+        /**
+         * Keeps an untransformed copy of a figure, if it is referenced by a
+         * "use" element.
+         */
+        private void retainUseTarget(Element elem, Figure f) {
+            String id = getId(elem);
+            if (id != null && referencedIds.contains(id)) {
+                useTargets.put(id, f.clone());
+            }
+        }
+
+        /**
+         * Creates a DOM element for the current start element of the reader
+         * and adds it to the specified parent element.
+         */
+        private Element createElement(Frame parent) {
+            return createElement(parent == null ? null : parent.elem);
+        }
+
+        private Element createElement(Element parent) {
+            Element elem;
+            if (isSVGElement()) {
+                elem = document.createElementNS(SVG_NAMESPACE, reader.getLocalName());
+            } else {
+                String prefix = reader.getPrefix();
+                elem = document.createElementNS(reader.getNamespaceURI(),
+                        (prefix == null || prefix.isEmpty()) ? reader.getLocalName() : prefix + ":" + reader.getLocalName());
+            }
+            for (int i = 0, n = reader.getAttributeCount(); i < n; i++) {
+                String prefix = reader.getAttributePrefix(i);
+                if (prefix == null || prefix.isEmpty()) {
+                    elem.setAttributeNS(null, reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                } else {
+                    elem.setAttributeNS(reader.getAttributeNamespace(i),
+                            prefix + ":" + reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                }
+            }
+            if (parent != null) {
+                parent.appendChild(elem);
+            }
+            return elem;
+        }
+
+        /**
+         * Reads the current element of the reader and all elements in it into
+         * a DOM element. White space is only kept in text elements.
+         */
+        private Element readSubtree(Element parent, boolean keepWhiteSpace) throws XMLStreamException {
+            Element elem = createElement(parent);
+            keepWhiteSpace |= TEXT_ELEMENTS.contains(elem.getLocalName());
+            while (true) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        readSubtree(elem, keepWhiteSpace);
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (keepWhiteSpace || !reader.isWhiteSpace()) {
+                            elem.appendChild(document.createTextNode(reader.getText()));
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        return elem;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        private void skipElement() throws XMLStreamException {
+            for (int depth = 1; depth > 0;) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+        }
+
+        private boolean isSVGElement() {
+            String ns = reader.getNamespaceURI();
+            return ns == null || ns.isEmpty() || ns.equals(SVG_NAMESPACE);
+        }
+
+        private boolean isVisible(Element elem) {
+            return readAttribute(elem, "visibility", "visible").equals("visible")
+                    && !readAttribute(elem, "display", "inline").equals("none");
+        }
+
+        private String getId(Element elem) {
+            if (elem.hasAttribute("id")) {
+                return elem.getAttribute("id");
+            } else if (elem.hasAttribute("xml:id")) {
+                return elem.getAttribute("xml:id");
+            }
+            return null;
+        }
+
+        /**
+         * Removes the objects which have been created from an element and
+         * the elements in it from {@code elementObjects}.
+         */
+        private void forgetElements(Element elem) {
+            elementObjects.remove(elem);
+            NodeList list = elem.getChildNodes();
+            for (int i = 0; i < list.getLength(); i++) {
+                if (list.item(i) instanceof Element) {
+                    forgetElements((Element) list.item(i));
+                }
+            }
+        }
+    }
+
     private void initStorageContext(Element root) {
         identifiedElements = new HashMap<String, Element>();
         identifyElements(root);
@@ -351,8 +992,9 @@ public class SVGInputFormat implements InputFormat {
                 styleManager.applyStylesTo(elem);
                 NodeList list = elem.getChildNodes();
                 for (int i = 0; i < list.getLength(); i++) {
-                    Element child = (Element) list.item(i);
-                    flattenStyles(child);
+                    if (list.item(i) instanceof Element) {
+                        flattenStyles((Element) list.item(i));
+                    }
                 }
             }
         }
@@ -529,6 +1171,32 @@ public class SVGInputFormat implements InputFormat {
      */
     private Figure readSVGElement(Element elem)
             throws IOException {
+        AffineTransform viewBoxTransform = pushViewport(elem);
+        // Read the figures
+        NodeList list = elem.getChildNodes();
+        for (int i = 0; i < list.getLength(); i++) {
+            Element child = (Element) list.item(i);
+            Figure childFigure = readElement(child);
+            // skip invisible elements
+            if (readAttribute(child, "visibility", "visible").equals("visible")
+                    && !readAttribute(child, "display", "inline").equals("none")) {
+                if (childFigure != null) {
+                    childFigure.transform(viewBoxTransform);
+                    figures.add(childFigure);
+                }
+            }
+        }
+        viewportStack.pop();
+        return null;
+    }
+
+    /**
+     * Establishes the viewport of an SVG "svg" element.
+     *
+     * @return The transform from the view box of the element to the viewport.
+     */
+    private AffineTransform pushViewport(Element elem)
+            throws IOException {
         // Establish a new viewport
         Viewport viewport = new Viewport();
         String widthValue = readAttribute(elem, "width", "100%");
@@ -580,22 +1248,7 @@ public class SVGInputFormat implements InputFormat {
         }
         viewportStack.push(viewport);
         readViewportAttributes(elem, viewportStack.firstElement().attributes);
-        // Read the figures
-        NodeList list = elem.getChildNodes();
-        for (int i = 0; i < list.getLength(); i++) {
-            Element child = (Element) list.item(i);
-            Figure childFigure = readElement(child);
-            // skip invisible elements
-            if (readAttribute(child, "visibility", "visible").equals("visible")
-                    && !readAttribute(child, "display", "inline").equals("none")) {
-                if (childFigure != null) {
-                    childFigure.transform(viewBoxTransform);
-                    figures.add(childFigure);
-                }
-            }
-        }
-        viewportStack.pop();
-        return null;
+        return viewBoxTransform;
     }
 
     /**
@@ -1079,26 +1732,31 @@ public class SVGInputFormat implements InputFormat {
         readFontAttributes(elem, a2);
         String href = readAttribute(elem, "xlink:href", null);
         if (href != null && href.startsWith("#")) {
-            Element refElem = identifiedElements.get(href.substring(1));
-            if (refElem == null) {
+            Figure obj = null;
+            if (useTargets != null) {
+                obj = useTargets.get(href.substring(1));
+            } else {
+                Element refElem = identifiedElements.get(href.substring(1));
+                if (refElem != null) {
+                    obj = readElement(refElem);
+                }
+            }
+            if (obj == null) {
                 if (DEBUG) {
                     System.out.println("SVGInputFormat couldn't find href for <use> element:" + href);
                 }
             } else {
-                Figure obj = readElement(refElem);
-                if (obj != null) {
-                    Figure figure = obj.clone();
-                    for (Map.Entry<AttributeKey<?>, Object> entry : a2.entrySet()) {
-                        figure.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
-                    }
-                    AffineTransform tx
-                            = (TRANSFORM.get(a) == null) ? new AffineTransform() : TRANSFORM.get(a);
-                    double x = toNumber(elem, readAttribute(elem, "x", "0"));
-                    double y = toNumber(elem, readAttribute(elem, "y", "0"));
-                    tx.translate(x, y);
-                    figure.transform(tx);
-                    return figure;
+                Figure figure = obj.clone();
+                for (Map.Entry<AttributeKey<?>, Object> entry : a2.entrySet()) {
+                    figure.set((AttributeKey<Object>) entry.getKey(), entry.getValue());
                 }
+                AffineTransform tx
+                        = (TRANSFORM.get(a) == null) ? new AffineTransform() : TRANSFORM.get(a);
+                double x = toNumber(elem, readAttribute(elem, "x", "0"));
+                double y = toNumber(elem, readAttribute(elem, "y", "0"));
+                tx.translate(x, y);
+                figure.transform(tx);
+                return figure;
             }
         }
         return null;
@@ -1792,12 +2450,17 @@ public class SVGInputFormat implements InputFormat {
      * hashtable {@code identifiedElements}.
      */
     private void identifyElements(Element elem) {
-        identifiedElements.put(elem.getAttribute("id"), elem);
-        identifiedElements.put(elem.getAttribute("xml:id"), elem);
+        if (elem.hasAttribute("id")) {
+            identifiedElements.put(elem.getAttribute("id"), elem);
+        }
+        if (elem.hasAttribute("xml:id")) {
+            identifiedElements.put(elem.getAttribute("xml:id"), elem);
+        }
         NodeList list = elem.getChildNodes();
         for (int i = 0; i < list.getLength(); i++) {
-            Element child = (Element) list.item(i);
-            identifyElements(child);
+            if (list.item(i) instanceof Element) {
+                identifyElements((Element) list.item(i));
+            }
         }
     }
 
@@ -2978,6 +3641,12 @@ public class SVGInputFormat implements InputFormat {
             }
         } else if (str.startsWith("url(")) {
             String href = value.substring(4, value.length() - 1);
+            Element refElem = identifiedElements.get(href.substring(1));
+            if (refElem != null && !elementObjects.containsKey(refElem)
+                    && PAINT_ELEMENTS.contains(refElem.getLocalName())) {
+                // The paint is defined further down in the document
+                readElement(refElem);
+            }
             if (identifiedElements.containsKey(href.substring(1))
                     && elementObjects.containsKey(identifiedElements.get(href.substring(1)))) {
                 Object obj = elementObjects.get(identifiedElements.get(href.substring(1)));
@@ -1348,4 +1348,9 @@ public class SVGOutputFormat implements OutputFormat {
         write(buf, drawing, figures);
         return new InputStreamTransferable(new DataFlavor(SVG_MIMETYPE, "Image SVG"), buf.toByteArray());
     }
+
+    @Override
+    public DataFlavor[] getTransferDataFlavors() {
+        return new DataFlavor[]{new DataFlavor(SVG_MIMETYPE, "Image SVG")};
+    }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.samples.svg;
+
+import java.awt.Color;
+import java.awt.Paint;
+import static org.jhotdraw.samples.svg.SVGAttributeKeys.*;
+import org.jhotdraw.samples.svg.figures.SVGRectFigure;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the paints which {@link SVGAttributeKeys} caches in the attribute
+ * style of a figure.
+ */
+public class SVGAttributeKeysNGTest {
+
+    public SVGAttributeKeysNGTest() {
+    }
+
+    @Test
+    public void testTranslucentPaintIsCached() {
+        SVGRectFigure f1 = new SVGRectFigure(0, 0, 10, 10);
+        SVGRectFigure f2 = new SVGRectFigure(20, 0, 10, 10);
+        for (SVGRectFigure f : new SVGRectFigure[]{f1, f2}) {
+            f.set(FILL_COLOR, Color.red);
+            f.set(FILL_OPACITY, 0.5);
+            f.set(STROKE_COLOR, Color.blue);
+            f.set(STROKE_OPACITY, 0.5);
+        }
+        Paint fill = getFillPaint(f1);
+        Paint stroke = getStrokePaint(f1);
+        assertEquals(fill, new Color(255, 0, 0, 127));
+        assertEquals(stroke, new Color(0, 0, 255, 127));
+        assertSame(getFillPaint(f1), fill);
+        assertSame(getStrokePaint(f1), stroke);
+        assertSame(getFillPaint(f2), fill);
+        assertSame(getStrokePaint(f2), stroke);
+    }
+
+    @Test
+    public void testStrokePaintFollowsOpacity() {
+        SVGRectFigure f = new SVGRectFigure(0, 0, 10, 10);
+        f.set(STROKE_COLOR, Color.blue);
+        f.set(STROKE_OPACITY, 0.5);
+        assertEquals(getStrokePaint(f), new Color(0, 0, 255, 127));
+
+        f.set(STROKE_OPACITY, 0.25);
+        assertEquals(getStrokePaint(f), new Color(0, 0, 255, 63));
+
+        f.set(STROKE_OPACITY, 1.0);
+        assertEquals(getStrokePaint(f), Color.blue);
+
+        f.set(STROKE_OPACITY, 0.5);
+        assertEquals(getStrokePaint(f), new Color(0, 0, 255, 127));
+        f.set(STROKE_COLOR, Color.green);
+        assertEquals(getStrokePaint(f), new Color(0, 255, 0, 127));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.samples.svg.io;
+
+import java.awt.Color;
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import org.jhotdraw.draw.DefaultDrawing;
+import org.jhotdraw.draw.Drawing;
+import org.jhotdraw.draw.figure.Figure;
+import static org.jhotdraw.samples.svg.SVGAttributeKeys.*;
+import org.jhotdraw.samples.svg.LinearGradient;
+import org.jhotdraw.samples.svg.figures.SVGGroupFigure;
+import org.jhotdraw.samples.svg.figures.SVGRectFigure;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that {@link SVGInputFormat} creates the same figures in streaming
+ * mode and in DOM mode.
+ */
+public class SVGInputFormatNGTest {
+
+    /**
+     * The number of rectangles after the special elements of the fixture.
+     */
+    private static final int RECT_COUNT = 1200;
+
+    public SVGInputFormatNGTest() {
+    }
+
+    /**
+     * Returns a document with more than 1000 top level figures, in which
+     * a "use" element and a gradient fill reference elements further down,
+     * a "g" element passes its attributes on to its children, and a figure
+     * has a "style" attribute and a style from a CSS rule.
+     */
+    private static String createFixture() {
+        StringBuilder buf = new StringBuilder();
+        buf.append("<?xml version=\"1.0\"?>\n");
+        buf.append("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\""
+                + " width=\"3000\" height=\"3000\">\n");
+        buf.append("  <style type=\"text/css\">.wide { stroke-width: 7 }</style>\n");
+        buf.append("  <use xlink:href=\"#target\" x=\"100\" y=\"0\"/>\n");
+        buf.append("  <rect x=\"0\" y=\"0\" width=\"50\" height=\"50\" fill=\"url(#gradient)\"/>\n");
+        buf.append("  <g fill=\"#ff0000\" stroke-width=\"3\">\n");
+        buf.append("    <rect x=\"60\" y=\"0\" width=\"10\" height=\"10\"/>\n");
+        buf.append("    <rect x=\"80\" y=\"0\" width=\"10\" height=\"10\" fill=\"#00ff00\"/>\n");
+        buf.append("  </g>\n");
+        buf.append("  <rect x=\"0\" y=\"60\" width=\"10\" height=\"10\" class=\"wide\" style=\"fill: #0000ff; stroke: #000000\"/>\n");
+        for (int i = 0; i < RECT_COUNT; i++) {
+            buf.append("  <rect x=\"").append(i).append("\" y=\"100\" width=\"5\" height=\"5\"/>\n");
+        }
+        buf.append("  <rect id=\"target\" x=\"0\" y=\"200\" width=\"20\" height=\"30\" fill=\"#ffff00\"/>\n");
+        buf.append("  <defs>\n");
+        buf.append("    <linearGradient id=\"gradient\" x1=\"0\" y1=\"0\" x2=\"1\" y2=\"0\">\n");
+        buf.append("      <stop offset=\"0\" stop-color=\"#000000\"/>\n");
+        buf.append("      <stop offset=\"1\" stop-color=\"#ffffff\"/>\n");
+        buf.append("    </linearGradient>\n");
+        buf.append("  </defs>\n");
+        buf.append("</svg>\n");
+        return buf.toString();
+    }
+
+    private static Drawing read(boolean isStreaming) throws Exception {
+        SVGInputFormat format = new SVGInputFormat();
+        format.setStreaming(isStreaming);
+        Drawing drawing = new DefaultDrawing();
+        format.read(new ByteArrayInputStream(createFixture().getBytes(StandardCharsets.UTF_8)), drawing, true);
+        return drawing;
+    }
+
+    @Test
+    public void testStreamingMode() throws Exception {
+        assertFixture(read(true));
+    }
+
+    @Test
+    public void testDOMMode() throws Exception {
+        assertFixture(read(false));
+    }
+
+    @Test
+    public void testStreamingModeMatchesDOMMode() throws Exception {
+        Drawing streamed = read(true);
+        Drawing dom = read(false);
+        assertEquals(streamed.getChildCount(), dom.getChildCount());
+        for (int i = 0; i < dom.getChildCount(); i++) {
+            Figure s = streamed.getChild(i);
+            Figure d = dom.getChild(i);
+            assertEquals(s.getClass(), d.getClass(), "figure " + i);
+            assertEquals(s.getBounds(), d.getBounds(), "figure " + i);
+            assertEquals(s.get(FILL_COLOR), d.get(FILL_COLOR), "figure " + i);
+            assertEquals(s.get(STROKE_COLOR), d.get(STROKE_COLOR), "figure " + i);
+            assertEquals(s.get(STROKE_WIDTH), d.get(STROKE_WIDTH), "figure " + i);
+        }
+    }
+
+    private static void assertFixture(Drawing drawing) {
+        assertEquals(drawing.getChildCount(), 5 + RECT_COUNT);
+
+        // The "use" element is read at its position in the document
+        Figure use = drawing.getChild(0);
+        assertTrue(use instanceof SVGRectFigure);
+        assertEquals(use.getBounds(), new Rectangle2D.Double(100, 200, 20, 30));
+        assertEquals(use.get(FILL_COLOR), Color.yellow);
+
+        Figure gradientFilled = drawing.getChild(1);
+        assertTrue(gradientFilled.get(FILL_GRADIENT) instanceof LinearGradient);
+
+        SVGGroupFigure g = (SVGGroupFigure) drawing.getChild(2);
+        assertEquals(g.getChildCount(), 2);
+        assertEquals(g.getChild(0).get(FILL_COLOR), Color.red);
+        assertEquals(g.getChild(0).get(STROKE_WIDTH), 3.0);
+        assertEquals(g.getChild(1).get(FILL_COLOR), Color.green);
+        assertEquals(g.getChild(1).get(STROKE_WIDTH), 3.0);
+
+        Figure styled = drawing.getChild(3);
+        assertEquals(styled.get(FILL_COLOR), Color.blue);
+        assertEquals(styled.get(STROKE_COLOR), Color.black);
+        assertEquals(styled.get(STROKE_WIDTH), 7.0);
+
+        for (int i = 0; i < RECT_COUNT; i++) {
+            assertEquals(drawing.getChild(4 + i).getBounds(), new Rectangle2D.Double(i, 100, 5, 5), "rect " + i);
+        }
+        Figure target = drawing.getChild(4 + RECT_COUNT);
+        assertEquals(target.getBounds(), new Rectangle2D.Double(0, 200, 20, 30));
+        assertEquals(target.get(FILL_COLOR), Color.yellow);
+    }
+}
@@ -11,6 +11,7 @@ import java.awt.*;
 import java.awt.geom.*;
 import java.io.Serializable;
 import java.util.*;
+import java.util.List;
 
 /**
  * BezierPath allows the construction of paths consisting of straight lines,
@@ -56,6 +57,10 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * We cache a Rectangle2D.Double instance to speed up getBounds operations.
      */
     private transient Rectangle2D.Double bounds;
+    /**
+     * We cache the flattened path to speed up outline queries.
+     */
+    private transient FlattenedPath flattenedPath;
     /**
      * We cache the index of the outermost node to speed up method indexOfOutermostNode();
      */
@@ -68,6 +73,25 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * The winding rule for filling the bezier path.
      */
     private int windingRule = Path2D.Double.WIND_EVEN_ODD;
+    /**
+     * The bit in the flags of a packed node, which is set if the control
+     * points are kept colinear. The other bits hold the mask.
+     */
+    private static final int KEEP_COLINEAR_FLAG = 4;
+    /**
+     * The nodes of the path, if they are stored in packed form. This is null,
+     * if the nodes are stored as Node objects in the list.
+     * <p>
+     * A new path stores its nodes in packed form, until a Node object is
+     * requested from it or added to it. The methods of this class which
+     * do not deal with Node objects work on the packed form directly.
+     */
+    private transient PackedNodes packed = new PackedNodes(4);
+    /**
+     * True, if the packed nodes are shared with another path. They are copied
+     * before they are changed.
+     */
+    private transient boolean isPackedShared;
 
     /**
      * Defines a vertex (node) of the bezier path.
@@ -207,6 +231,15 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         public String toString() {
             StringBuilder buf = new StringBuilder();
             buf.append(super.toString());
+            appendControlPoints(buf, mask, x, y, 0);
+            return buf.toString();
+        }
+
+        /**
+         * Appends the control points of a node, which are stored at the
+         * specified offset of the x and y arrays.
+         */
+        private static void appendControlPoints(StringBuilder buf, int mask, double[] x, double[] y, int offset) {
             buf.append('[');
             for (int i = 0; i < 3; i++) {
                 if (i != 0) {
@@ -219,21 +252,35 @@ public class BezierPath extends ArrayList<BezierPath.Node>
                 buf.append('x');
                 buf.append(i);
                 buf.append('=');
-                buf.append(x[i]);
+                buf.append(x[offset + i]);
                 buf.append(",y");
                 buf.append(i);
                 buf.append('=');
-                buf.append(y[i]);
+                buf.append(y[offset + i]);
             }
             buf.append(']');
-            return buf.toString();
         }
 
         @Override
         public int hashCode() {
+            return nodeHashCode(mask, x, y, 0);
+        }
+
+        /**
+         * Returns the hash code of a node, which is stored at the specified
+         * offset of the x and y arrays. This is the same value which
+         * {@code Arrays.hashCode} yields for arrays of length 3.
+         */
+        private static int nodeHashCode(int mask, double[] x, double[] y, int offset) {
+            int hx = 1;
+            int hy = 1;
+            for (int i = offset; i < offset + 3; i++) {
+                hx = 31 * hx + Double.hashCode(x[i]);
+                hy = 31 * hy + Double.hashCode(y[i]);
+            }
             return (mask & 0x3) << 29
-                    | (Arrays.hashCode(x) & 0x3fff0000)
-                    | (Arrays.hashCode(y) & 0xffff);
+                    | (hx & 0x3fff0000)
+                    | (hy & 0xffff);
         }
 
         @Override
@@ -248,12 +295,250 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         }
     }
 
+    /**
+     * The nodes of a path in packed form. The control points of node i are
+     * stored at the indices 3i to 3i+2 of x and y.
+     */
+    private static class PackedNodes {
+
+        double[] x;
+        double[] y;
+        byte[] flags;
+        int size;
+
+        PackedNodes(int capacity) {
+            x = new double[capacity * 3];
+            y = new double[capacity * 3];
+            flags = new byte[capacity];
+        }
+
+        PackedNodes copy(int capacity) {
+            PackedNodes that = new PackedNodes(0);
+            that.x = Arrays.copyOf(x, capacity * 3);
+            that.y = Arrays.copyOf(y, capacity * 3);
+            that.flags = Arrays.copyOf(flags, capacity);
+            that.size = size;
+            return that;
+        }
+    }
+
     /**
      * Creates a new instance.
      */
     public BezierPath() {
     }
 
+    /**
+     * Converts the packed nodes into Node objects.
+     */
+    private void inflate() {
+        PackedNodes p = packed;
+        if (p != null) {
+            Node[] nodes = new Node[p.size];
+            for (int i = 0; i < p.size; i++) {
+                Node node = new Node(p.flags[i] & C1C2_MASK,
+                        p.x[i * 3], p.y[i * 3],
+                        p.x[i * 3 + 1], p.y[i * 3 + 1],
+                        p.x[i * 3 + 2], p.y[i * 3 + 2]);
+                node.keepColinear = (p.flags[i] & KEEP_COLINEAR_FLAG) != 0;
+                nodes[i] = node;
+            }
+            // Fill the list before we discard the packed nodes, so that the
+            // path is still intact if we run out of memory
+            super.addAll(Arrays.asList(nodes));
+            packed = null;
+            isPackedShared = false;
+        }
+    }
+
+    /**
+     * Returns true if the path stores its nodes in packed form.
+     */
+    boolean isPacked() {
+        return packed != null;
+    }
+
+    /**
+     * Returns true if the packed node at the specified index is equal to the
+     * specified object, as defined by {@link Node#equals}.
+     */
+    private boolean packedNodeEquals(int index, Object o) {
+        if (!(o instanceof Node)) {
+            return false;
+        }
+        Node that = (Node) o;
+        PackedNodes p = packed;
+        if ((p.flags[index] & C1C2_MASK) != that.mask) {
+            return false;
+        }
+        for (int i = 0; i < 3; i++) {
+            if (Double.doubleToLongBits(p.x[index * 3 + i]) != Double.doubleToLongBits(that.x[i])
+                    || Double.doubleToLongBits(p.y[index * 3 + i]) != Double.doubleToLongBits(that.y[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the packed nodes for changing them, and makes sure that there
+     * is room for the specified number of additional nodes.
+     */
+    private PackedNodes getWritablePacked(int additionalNodes) {
+        PackedNodes p = packed;
+        int capacity = p.flags.length;
+        if (p.size + additionalNodes > capacity) {
+            capacity = Math.max(p.size + additionalNodes, capacity * 2);
+        } else if (!isPackedShared) {
+            return p;
+        }
+        packed = p = p.copy(capacity);
+        isPackedShared = false;
+        return p;
+    }
+
+    /**
+     * Returns the nodes of the specified path in packed form, or null if a
+     * node has a mask which can not be packed.
+     */
+    private static PackedNodes pack(BezierPath path) {
+        int n = path.size();
+        PackedNodes p = new PackedNodes(n);
+        for (int i = 0; i < n; i++) {
+            Node node = path.getNode(i);
+            if ((node.mask & ~C1C2_MASK) != 0) {
+                return null;
+            }
+            System.arraycopy(node.x, 0, p.x, i * 3, 3);
+            System.arraycopy(node.y, 0, p.y, i * 3, 3);
+            p.flags[i] = (byte) (node.mask | (node.keepColinear ? KEEP_COLINEAR_FLAG : 0));
+        }
+        p.size = n;
+        return p;
+    }
+
+    /**
+     * Returns the node at the specified index of a path which stores its nodes
+     * as Node objects.
+     */
+    private Node getNode(int index) {
+        return super.get(index);
+    }
+
+    /**
+     * Adds a node with the specified mask, colinear hint and control points.
+     */
+    private void addNode(int mask, boolean keepColinear, double x0, double y0, double x1, double y1, double x2, double y2) {
+        if (packed != null && (mask & ~C1C2_MASK) == 0) {
+            PackedNodes p = getWritablePacked(1);
+            int i = p.size;
+            p.x[i * 3] = x0;
+            p.y[i * 3] = y0;
+            p.x[i * 3 + 1] = x1;
+            p.y[i * 3 + 1] = y1;
+            p.x[i * 3 + 2] = x2;
+            p.y[i * 3 + 2] = y2;
+            p.flags[i] = (byte) (mask | (keepColinear ? KEEP_COLINEAR_FLAG : 0));
+            p.size++;
+            invalidatePath();
+        } else {
+            Node node = new Node(mask, x0, y0, x1, y1, x2, y2);
+            node.keepColinear = keepColinear;
+            add(node);
+        }
+    }
+
+    private void checkNodeIndex(int nodeIndex) {
+        if (nodeIndex < 0 || nodeIndex >= packed.size) {
+            throw new IndexOutOfBoundsException("Index: " + nodeIndex + ", Size: " + packed.size);
+        }
+    }
+
+    /**
+     * Returns the x coordinate of a control point of a node.
+     *
+     * @param nodeIndex The index of the node.
+     * @param ctrlIndex 0, 1 or 2 for the control point C0, C1 or C2.
+     */
+    public double getX(int nodeIndex, int ctrlIndex) {
+        if (packed != null) {
+            checkNodeIndex(nodeIndex);
+            return packed.x[nodeIndex * 3 + ctrlIndex];
+        }
+        return getNode(nodeIndex).x[ctrlIndex];
+    }
+
+    /**
+     * Returns the y coordinate of a control point of a node.
+     *
+     * @param nodeIndex The index of the node.
+     * @param ctrlIndex 0, 1 or 2 for the control point C0, C1 or C2.
+     */
+    public double getY(int nodeIndex, int ctrlIndex) {
+        if (packed != null) {
+            checkNodeIndex(nodeIndex);
+            return packed.y[nodeIndex * 3 + ctrlIndex];
+        }
+        return getNode(nodeIndex).y[ctrlIndex];
+    }
+
+    /**
+     * Returns the mask of a node, which describes which control points in
+     * addition to C0 are in effect.
+     */
+    public int getNodeMask(int nodeIndex) {
+        if (packed != null) {
+            checkNodeIndex(nodeIndex);
+            return packed.flags[nodeIndex] & C1C2_MASK;
+        }
+        return getNode(nodeIndex).mask;
+    }
+
+    /**
+     * Returns the editing hint of a node, which tells whether its control
+     * points shall be kept on the same line.
+     */
+    public boolean isKeepColinear(int nodeIndex) {
+        if (packed != null) {
+            checkNodeIndex(nodeIndex);
+            return (packed.flags[nodeIndex] & KEEP_COLINEAR_FLAG) != 0;
+        }
+        return getNode(nodeIndex).keepColinear;
+    }
+
+    /**
+     * Sets the editing hint of a node, which tells whether its control points
+     * shall be kept on the same line.
+     */
+    public void setKeepColinear(int nodeIndex, boolean newValue) {
+        if (packed != null) {
+            checkNodeIndex(nodeIndex);
+            PackedNodes p = getWritablePacked(0);
+            p.flags[nodeIndex] = (byte) ((p.flags[nodeIndex] & C1C2_MASK) | (newValue ? KEEP_COLINEAR_FLAG : 0));
+        } else {
+            getNode(nodeIndex).keepColinear = newValue;
+        }
+    }
+
+    /**
+     * Sets the mask and a control point of a node.
+     */
+    private void setControlPoint(int nodeIndex, int mask, int ctrlIndex, double x, double y) {
+        if (packed != null) {
+            checkNodeIndex(nodeIndex);
+            PackedNodes p = getWritablePacked(0);
+            p.flags[nodeIndex] = (byte) ((p.flags[nodeIndex] & KEEP_COLINEAR_FLAG) | mask);
+            p.x[nodeIndex * 3 + ctrlIndex] = x;
+            p.y[nodeIndex * 3 + ctrlIndex] = y;
+        } else {
+            Node node = getNode(nodeIndex);
+            node.mask = mask;
+            node.x[ctrlIndex] = x;
+            node.y[ctrlIndex] = y;
+        }
+        invalidatePath();
+    }
+
     /**
      * Adds a node to the path.
      * <p>
@@ -261,7 +546,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * point C0 to the path.
      */
     public void add(Point2D.Double c0) {
-        add(new Node(0, c0, c0, c0));
+        addNode(0, true, c0.x, c0.y, c0.x, c0.y, c0.x, c0.y);
     }
 
     /**
@@ -271,7 +556,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * point C0 to the path.
      */
     public void add(double x, double y) {
-        add(new Node(0, x, y, x, y, x, y));
+        addNode(0, true, x, y, x, y, x, y);
     }
 
     /**
@@ -286,7 +571,19 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @param c2 The coordinates of the C2 control point.
      */
     public void add(int ctrlMask, Point2D.Double c0, Point2D.Double c1, Point2D.Double c2) {
-        add(new Node(ctrlMask, c0, c1, c2));
+        addNode(ctrlMask, true, c0.x, c0.y, c1.x, c1.y, c2.x, c2.y);
+    }
+
+    /**
+     * Adds a node to the path.
+     * <p>
+     * This is a convenience method for adding a node with three control points
+     * C0, C1 and C2, and a mask, without creating a Node object.
+     *
+     * @param ctrlMask An or-combination of C0_MASK,C1_MASK and C2_MASK.
+     */
+    public void add(int ctrlMask, double x0, double y0, double x1, double y1, double x2, double y2) {
+        addNode(ctrlMask, true, x0, y0, x1, y1, x2, y2);
     }
 
     /**
@@ -297,7 +594,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      */
     public void addPolyline(Collection<Point2D.Double> points) {
         for (Point2D.Double c0 : points) {
-            add(new Node(0, c0, c0, c0));
+            add(c0);
         }
     }
 
@@ -309,9 +606,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @param p The control point. The coordinates will be cloned.
      */
     public void set(int nodeIndex, int ctrlIndex, Point2D.Double p) {
-        Node c = get(nodeIndex);
-        c.x[ctrlIndex] = p.x;
-        c.y[ctrlIndex] = p.y;
+        setControlPoint(nodeIndex, getNodeMask(nodeIndex), ctrlIndex, p.x, p.y);
     }
 
     /**
@@ -322,10 +617,9 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @return Returns a clone of the control point.
      */
     public Point2D.Double get(int nodeIndex, int ctrlIndex) {
-        Node c = get(nodeIndex);
         return new Point2D.Double(
-                c.x[ctrlIndex],
-                c.y[ctrlIndex]);
+                getX(nodeIndex, ctrlIndex),
+                getY(nodeIndex, ctrlIndex));
     }
 
     /**
@@ -334,9 +628,311 @@ public class BezierPath extends ArrayList<BezierPath.Node>
     public void invalidatePath() {
         generalPath = null;
         bounds = null;
+        flattenedPath = null;
         outer = -1;
     }
 
+    /**
+     * Returns the flattened path with the specified flatness. The flattened
+     * path is cached until the path is invalidated, or until it is
+     * requested with a different flatness.
+     */
+    public FlattenedPath getFlattenedPath(double flatness) {
+        FlattenedPath fp = flattenedPath;
+        if (fp == null || fp.getFlatness() != flatness) {
+            fp = new FlattenedPath(this, flatness);
+            flattenedPath = fp;
+        }
+        return fp;
+    }
+
+    @Override
+    public int size() {
+        return (packed != null) ? packed.size : super.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the node at the specified index.
+     * <p>
+     * Changes of the node change the path. If the path stores its nodes in
+     * packed form, they are converted into Node objects first.
+     */
+    @Override
+    public Node get(int index) {
+        inflate();
+        return super.get(index);
+    }
+
+    @Override
+    public boolean add(Node node) {
+        inflate();
+        invalidatePath();
+        return super.add(node);
+    }
+
+    @Override
+    public void add(int index, Node node) {
+        inflate();
+        invalidatePath();
+        super.add(index, node);
+    }
+
+    @Override
+    public Node set(int index, Node node) {
+        inflate();
+        invalidatePath();
+        return super.set(index, node);
+    }
+
+    @Override
+    public Node remove(int index) {
+        inflate();
+        invalidatePath();
+        return super.remove(index);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        inflate();
+        invalidatePath();
+        return super.remove(o);
+    }
+
+    /**
+     * Removes all nodes. Afterwards the path stores its nodes in packed form
+     * again.
+     */
+    @Override
+    public void clear() {
+        invalidatePath();
+        super.clear();
+        packed = new PackedNodes(4);
+        isPackedShared = false;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Node> c) {
+        inflate();
+        invalidatePath();
+        return super.addAll(c);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends Node> c) {
+        inflate();
+        invalidatePath();
+        return super.addAll(index, c);
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        inflate();
+        invalidatePath();
+        super.removeRange(fromIndex, toIndex);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        inflate();
+        invalidatePath();
+        return super.removeAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        inflate();
+        invalidatePath();
+        return super.retainAll(c);
+    }
+
+    @Override
+    public boolean removeIf(java.util.function.Predicate<? super Node> filter) {
+        inflate();
+        invalidatePath();
+        return super.removeIf(filter);
+    }
+
+    @Override
+    public void replaceAll(java.util.function.UnaryOperator<Node> operator) {
+        inflate();
+        invalidatePath();
+        super.replaceAll(operator);
+    }
+
+    @Override
+    public void sort(Comparator<? super Node> c) {
+        inflate();
+        invalidatePath();
+        super.sort(c);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (packed == null) {
+            return super.indexOf(o);
+        }
+        for (int i = 0, n = packed.size; i < n; i++) {
+            if (packedNodeEquals(i, o)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        if (packed == null) {
+            return super.lastIndexOf(o);
+        }
+        for (int i = packed.size - 1; i >= 0; i--) {
+            if (packedNodeEquals(i, o)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Iterator<Node> iterator() {
+        inflate();
+        return super.iterator();
+    }
+
+    @Override
+    public ListIterator<Node> listIterator() {
+        inflate();
+        return super.listIterator();
+    }
+
+    @Override
+    public ListIterator<Node> listIterator(int index) {
+        inflate();
+        return super.listIterator(index);
+    }
+
+    @Override
+    public List<Node> subList(int fromIndex, int toIndex) {
+        inflate();
+        return super.subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public Object[] toArray() {
+        inflate();
+        return super.toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        inflate();
+        return super.toArray(a);
+    }
+
+    @Override
+    public void forEach(java.util.function.Consumer<? super Node> action) {
+        inflate();
+        super.forEach(action);
+    }
+
+    @Override
+    public Spliterator<Node> spliterator() {
+        inflate();
+        return super.spliterator();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (packed == null) {
+            if (o instanceof BezierPath && ((BezierPath) o).packed != null) {
+                return o.equals(this);
+            }
+            return super.equals(o);
+        }
+        if (!(o instanceof List)) {
+            return false;
+        }
+        List<?> that = (List<?>) o;
+        int n = packed.size;
+        if (that.size() != n) {
+            return false;
+        }
+        if (that instanceof BezierPath && ((BezierPath) that).packed != null) {
+            PackedNodes p = packed;
+            PackedNodes q = ((BezierPath) that).packed;
+            for (int i = 0; i < n; i++) {
+                if ((p.flags[i] & C1C2_MASK) != (q.flags[i] & C1C2_MASK)) {
+                    return false;
+                }
+            }
+            return Arrays.equals(Arrays.copyOf(p.x, n * 3), Arrays.copyOf(q.x, n * 3))
+                    && Arrays.equals(Arrays.copyOf(p.y, n * 3), Arrays.copyOf(q.y, n * 3));
+        }
+        Iterator<?> i = that.iterator();
+        for (int index = 0; index < n; index++) {
+            if (!i.hasNext() || !packedNodeEquals(index, i.next())) {
+                return false;
+            }
+        }
+        return !i.hasNext();
+    }
+
+    @Override
+    public int hashCode() {
+        if (packed == null) {
+            return super.hashCode();
+        }
+        PackedNodes p = packed;
+        int h = 1;
+        for (int i = 0; i < p.size; i++) {
+            h = 31 * h + Node.nodeHashCode(p.flags[i] & C1C2_MASK, p.x, p.y, i * 3);
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        if (packed == null) {
+            return super.toString();
+        }
+        PackedNodes p = packed;
+        StringBuilder buf = new StringBuilder();
+        buf.append('[');
+        for (int i = 0; i < p.size; i++) {
+            if (i != 0) {
+                buf.append(", ");
+            }
+            buf.append(Node.class.getName());
+            Node.appendControlPoints(buf, p.flags[i] & C1C2_MASK, p.x, p.y, i * 3);
+        }
+        buf.append(']');
+        return buf.toString();
+    }
+
+    /**
+     * Serializes the nodes as Node objects, like the list always did.
+     */
+    private Object writeReplace() {
+        if (packed == null) {
+            return this;
+        }
+        BezierPath that = clone();
+        that.inflate();
+        return that;
+    }
+
     /**
      * Recomputes the BezierPath, if it is invalid.
      */
@@ -352,75 +948,54 @@ public class BezierPath extends ArrayList<BezierPath.Node>
     public Path2D.Double toGeneralPath() {
         Path2D.Double gp = new Path2D.Double();
         gp.setWindingRule(windingRule);
-        if (size() == 0) {
+        int size = size();
+        if (size == 0) {
             gp.moveTo(0, 0);
             gp.lineTo(0, 0 + 1);
-        } else if (size() == 1) {
-            Node current = get(0);
-            gp.moveTo(current.x[0], current.y[0]);
-            gp.lineTo(current.x[0], current.y[0] + 1);
+        } else if (size == 1) {
+            gp.moveTo(getX(0, 0), getY(0, 0));
+            gp.lineTo(getX(0, 0), getY(0, 0) + 1);
         } else {
-            Node previous;
-            Node current;
-            previous = current = get(0);
-            gp.moveTo(current.x[0], current.y[0]);
-            for (int i = 1, n = size(); i < n; i++) {
-                previous = current;
-                current = get(i);
-                if ((previous.mask & C2_MASK) == 0) {
-                    if ((current.mask & C1_MASK) == 0) {
-                        gp.lineTo(
-                                current.x[0], current.y[0]);
-                    } else {
-                        gp.quadTo(
-                                current.x[1], current.y[1],
-                                current.x[0], current.y[0]);
-                    }
-                } else {
-                    if ((current.mask & C1_MASK) == 0) {
-                        gp.quadTo(
-                                previous.x[2], previous.y[2],
-                                current.x[0], current.y[0]);
-                    } else {
-                        gp.curveTo(
-                                previous.x[2], previous.y[2],
-                                current.x[1], current.y[1],
-                                current.x[0], current.y[0]);
-                    }
-                }
+            gp.moveTo(getX(0, 0), getY(0, 0));
+            for (int i = 1; i < size; i++) {
+                appendSegment(gp, i - 1, i);
             }
             if (isClosed) {
-                if (size() > 1) {
-                    previous = get(size() - 1);
-                    current = get(0);
-                    if ((previous.mask & C2_MASK) == 0) {
-                        if ((current.mask & C1_MASK) == 0) {
-                            gp.lineTo(
-                                    current.x[0], current.y[0]);
-                        } else {
-                            gp.quadTo(
-                                    current.x[1], current.y[1],
-                                    current.x[0], current.y[0]);
-                        }
-                    } else {
-                        if ((current.mask & C1_MASK) == 0) {
-                            gp.quadTo(
-                                    previous.x[2], previous.y[2],
-                                    current.x[0], current.y[0]);
-                        } else {
-                            gp.curveTo(
-                                    previous.x[2], previous.y[2],
-                                    current.x[1], current.y[1],
-                                    current.x[0], current.y[0]);
-                        }
-                    }
-                }
+                appendSegment(gp, size - 1, 0);
                 gp.closePath();
             }
         }
         return gp;
     }
 
+    /**
+     * Appends the segment from the previous node to the current node to the
+     * specified path.
+     */
+    private void appendSegment(Path2D.Double gp, int previous, int current) {
+        if ((getNodeMask(previous) & C2_MASK) == 0) {
+            if ((getNodeMask(current) & C1_MASK) == 0) {
+                gp.lineTo(
+                        getX(current, 0), getY(current, 0));
+            } else {
+                gp.quadTo(
+                        getX(current, 1), getY(current, 1),
+                        getX(current, 0), getY(current, 0));
+            }
+        } else {
+            if ((getNodeMask(current) & C1_MASK) == 0) {
+                gp.quadTo(
+                        getX(previous, 2), getY(previous, 2),
+                        getX(current, 0), getY(current, 0));
+            } else {
+                gp.curveTo(
+                        getX(previous, 2), getY(previous, 2),
+                        getX(current, 1), getY(current, 1),
+                        getX(current, 0), getY(current, 0));
+            }
+        }
+    }
+
     @Override
     public boolean contains(Point2D p) {
         validatePath();
@@ -436,7 +1011,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @param tolerance The tolerance for the test.
      */
     public boolean outlineContains(Point2D.Double p, double tolerance) {
-        return Shapes.outlineContains(this, p, tolerance);
+        return getFlattenedPath(tolerance).outlineContains(p.x, p.y, tolerance);
     }
 
     @Override
@@ -475,127 +1050,19 @@ public class BezierPath extends ArrayList<BezierPath.Node>
             if (size == 0) {
                 x1 = y1 = x2 = y2 = 0.0f;
             } else {
-                double x, y;
-                // handle first node
-                Node node = get(0);
-                y1 = y2 = node.y[0];
-                x1 = x2 = node.x[0];
-                if (isClosed && (node.mask & C1_MASK) != 0) {
-                    y = node.y[1];
-                    x = node.x[1];
-                    if (x < x1) {
-                        x1 = x;
-                    }
-                    if (y < y1) {
-                        y1 = y;
-                    }
-                    if (x > x2) {
-                        x2 = x;
-                    }
-                    if (y > y2) {
-                        y2 = y;
-                    }
-                }
-                if ((node.mask & C2_MASK) != 0) {
-                    y = node.y[2];
-                    x = node.x[2];
-                    if (x < x1) {
-                        x1 = x;
-                    }
-                    if (y < y1) {
-                        y1 = y;
-                    }
-                    if (x > x2) {
-                        x2 = x;
-                    }
-                    if (y > y2) {
-                        y2 = y;
-                    }
-                }
-                // handle last node
-                node = get(size - 1);
-                y = node.y[0];
-                x = node.x[0];
-                if (x < x1) {
-                    x1 = x;
-                }
-                if (y < y1) {
-                    y1 = y;
-                }
-                if (x > x2) {
-                    x2 = x;
-                }
-                if (y > y2) {
-                    y2 = y;
-                }
-                if ((node.mask & C1_MASK) != 0) {
-                    y = node.y[1];
-                    x = node.x[1];
-                    if (x < x1) {
-                        x1 = x;
-                    }
-                    if (y < y1) {
-                        y1 = y;
-                    }
-                    if (x > x2) {
-                        x2 = x;
-                    }
-                    if (y > y2) {
-                        y2 = y;
-                    }
-                }
-                if (isClosed && (node.mask & C2_MASK) != 0) {
-                    y = node.y[2];
-                    x = node.x[2];
-                    if (x < x1) {
-                        x1 = x;
-                    }
-                    if (y < y1) {
-                        y1 = y;
-                    }
-                    if (x > x2) {
-                        x2 = x;
-                    }
-                    if (y > y2) {
-                        y2 = y;
-                    }
-                }
-                // handle all other nodes
-                for (int i = 1, n = size - 1; i < n; i++) {
-                    node = get(i);
-                    y = node.y[0];
-                    x = node.x[0];
-                    if (x < x1) {
-                        x1 = x;
-                    }
-                    if (y < y1) {
-                        y1 = y;
-                    }
-                    if (x > x2) {
-                        x2 = x;
-                    }
-                    if (y > y2) {
-                        y2 = y;
-                    }
-                    if ((node.mask & C1_MASK) != 0) {
-                        y = node.y[1];
-                        x = node.x[1];
-                        if (x < x1) {
-                            x1 = x;
-                        }
-                        if (y < y1) {
-                            y1 = y;
-                        }
-                        if (x > x2) {
-                            x2 = x;
-                        }
-                        if (y > y2) {
-                            y2 = y;
+                x1 = x2 = getX(0, 0);
+                y1 = y2 = getY(0, 0);
+                for (int i = 0; i < size; i++) {
+                    int mask = getNodeMask(i);
+                    for (int ctrl = 0; ctrl < 3; ctrl++) {
+                        // C1 of the first node and C2 of the last node are
+                        // only in effect if the path is closed
+                        if (ctrl == 1 && ((mask & C1_MASK) == 0 || i == 0 && size > 1 && !isClosed)
+                                || ctrl == 2 && ((mask & C2_MASK) == 0 || i == size - 1 && size > 1 && !isClosed)) {
+                            continue;
                         }
-                    }
-                    if ((node.mask & C2_MASK) != 0) {
-                        y = node.y[2];
-                        x = node.x[2];
+                        double x = getX(i, ctrl);
+                        double y = getY(i, ctrl);
                         if (x < x1) {
                             x1 = x;
                         }
@@ -646,30 +1113,63 @@ public class BezierPath extends ArrayList<BezierPath.Node>
 
     /**
      * Creates a deep copy of the BezierPath.
+     * <p>
+     * The copy stores its nodes in packed form. If this path stores its nodes
+     * in packed form too, both paths share them until one of the paths is
+     * changed, so that cloning takes constant time.
      */
     @Override
     public BezierPath clone() {
         BezierPath that = (BezierPath) super.clone();
-        for (int i = 0, n = this.size(); i < n; i++) {
-            that.set(i, (Node) this.get(i).clone());
+        if (packed != null) {
+            isPackedShared = that.isPackedShared = true;
+        } else {
+            PackedNodes p = pack(this);
+            if (p != null) {
+                that.clearNodes();
+                that.packed = p;
+            } else {
+                for (int i = 0, n = this.size(); i < n; i++) {
+                    that.set(i, (Node) this.getNode(i).clone());
+                }
+            }
         }
         return that;
     }
 
+    /**
+     * Removes the Node objects of this path without changing its state.
+     */
+    private void clearNodes() {
+        super.clear();
+    }
+
     /**
      * Transforms the BezierPath.
      *
      * @param tx the transformation.
      */
     public void transform(AffineTransform tx) {
-        Point2D.Double p = new Point2D.Double();
-        for (Node cp : this) {
-            for (int i = 0; i < 3; i++) {
-                p.x = cp.x[i];
-                p.y = cp.y[i];
-                tx.transform(p, p);
-                cp.x[i] = p.x;
-                cp.y[i] = p.y;
+        if (packed != null) {
+            PackedNodes p = getWritablePacked(0);
+            double[] pt = new double[2];
+            for (int i = 0, n = p.size * 3; i < n; i++) {
+                pt[0] = p.x[i];
+                pt[1] = p.y[i];
+                tx.transform(pt, 0, pt, 0, 1);
+                p.x[i] = pt[0];
+                p.y[i] = pt[1];
+            }
+        } else {
+            Point2D.Double p = new Point2D.Double();
+            for (Node cp : this) {
+                for (int i = 0; i < 3; i++) {
+                    p.x = cp.x[i];
+                    p.y = cp.y[i];
+                    tx.transform(p, p);
+                    cp.x[i] = p.x;
+                    cp.y[i] = p.y;
+                }
             }
         }
         invalidatePath();
@@ -678,17 +1178,39 @@ public class BezierPath extends ArrayList<BezierPath.Node>
     /**
      * Sets all values of this bezier path to that bezier path, so that this
      * path becomes identical to that path.
+     * <p>
+     * If this path stores its nodes as Node objects, the Node objects are
+     * kept and their values are changed.
      */
     public void setTo(BezierPath that) {
+        if (packed != null) {
+            PackedNodes p = (that.packed != null) ? that.packed : pack(that);
+            if (p != null) {
+                packed = p;
+                isPackedShared = (p == that.packed);
+                that.isPackedShared |= isPackedShared;
+                invalidatePath();
+                return;
+            }
+            inflate();
+        }
         while (that.size() < size()) {
             remove(size() - 1);
         }
         for (int i = 0, n = size(); i < n; i++) {
-            get(i).setTo(that.get(i));
+            for (int ctrl = 0; ctrl < 3; ctrl++) {
+                setControlPoint(i, that.getNodeMask(i), ctrl, that.getX(i, ctrl), that.getY(i, ctrl));
+            }
+            setKeepColinear(i, that.isKeepColinear(i));
         }
         while (size() < that.size()) {
-            add((Node) that.get(size()).clone());
+            int i = size();
+            addNode(that.getNodeMask(i), that.isKeepColinear(i),
+                    that.getX(i, 0), that.getY(i, 0),
+                    that.getX(i, 1), that.getY(i, 1),
+                    that.getX(i, 2), that.getY(i, 2));
         }
+        invalidatePath();
     }
 
     /**
@@ -697,11 +1219,11 @@ public class BezierPath extends ArrayList<BezierPath.Node>
     public Point2D.Double getCenter() {
         double sx = 0;
         double sy = 0;
-        for (Node p : this) {
-            sx += p.x[0];
-            sy += p.y[0];
-        }
         int n = size();
+        for (int i = 0; i < n; i++) {
+            sx += getX(i, 0);
+            sy += getY(i, 0);
+        }
         return new Point2D.Double(sx / n, sy / n);
     }
 
@@ -724,10 +1246,9 @@ public class BezierPath extends ArrayList<BezierPath.Node>
             outer = 0;
             double dist = 0;
             for (int i = 0, n = size(); i < n; i++) {
-                Node cp = get(i);
                 double d = Geom.length2(ctr.x, ctr.y,
-                        cp.x[0],
-                        cp.y[0]);
+                        getX(i, 0),
+                        getY(i, 0));
                 if (d > dist) {
                     dist = d;
                     outer = i;
@@ -745,48 +1266,18 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @param relative a value between 0 and 1.
      */
     public Point2D.Double getPointOnPath(double relative, double flatness) {
-        // This method works only for straight lines
         if (size() == 0) {
             return null;
         } else if (size() == 1) {
-            return get(0).getControlPoint(0);
+            return get(0, 0);
         }
         if (relative <= 0) {
-            return get(0).getControlPoint(0);
+            return get(0, 0);
         } else if (relative >= 1) {
-            return get(size() - 1).getControlPoint(0);
-        }
-        validatePath();
-        // Compute the relative point on the path
-        double len = getLengthOfPath(flatness);
-        double relativeLen = len * relative;
-        double pos = 0;
-        double[] coords = new double[6];
-        PathIterator i = generalPath.getPathIterator(new AffineTransform(), flatness);
-        double prevX = coords[0];
-        double prevY = coords[1];
-        i.next();
-        for (; !i.isDone(); i.next()) {
-            i.currentSegment(coords);
-            double segLen = Geom.length(prevX, prevY, coords[0], coords[1]);
-            if (pos + segLen >= relativeLen) {
-                //if (true) return new Point2D.Double(coords[0], coords[1]);
-                // Compute the relative Point2D.Double on the line
-                /*
-                return new Point2D.Double(
-                prevX * pos / len + coords[0] * (pos + segLen) / len,
-                prevY * pos / len + coords[1] * (pos + segLen) / len
-                );*/
-                double factor = (relativeLen - pos) / segLen;
-                return new Point2D.Double(
-                        prevX * (1 - factor) + coords[0] * factor,
-                        prevY * (1 - factor) + coords[1] * factor);
-            }
-            pos += segLen;
-            prevX = coords[0];
-            prevY = coords[1];
+            return get(size() - 1, 0);
         }
-        throw new InternalError("We should never get here");
+        FlattenedPath fp = getFlattenedPath(flatness);
+        return fp.getPointAt(fp.getLength() * relative);
     }
 
     /**
@@ -795,19 +1286,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @param flatness the flatness used to approximate the length.
      */
     public double getLengthOfPath(double flatness) {
-        double len = 0;
-        PathIterator i = generalPath.getPathIterator(new AffineTransform(), flatness);
-        double[] coords = new double[6];
-        double prevX = coords[0];
-        double prevY = coords[1];
-        i.next();
-        for (; !i.isDone(); i.next()) {
-            i.currentSegment(coords);
-            len += Geom.length(prevX, prevY, coords[0], coords[1]);
-            prevX = coords[0];
-            prevY = coords[1];
-        }
-        return len;
+        return getFlattenedPath(flatness).getLength();
     }
 
     /**
@@ -819,55 +1298,17 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * Returns -1, if the point is not on the path.
      */
     public double getRelativePositionOnPath(Point2D.Double find, double flatness) {
-        // XXX - This method works only for straight lines!
-        double len = getLengthOfPath(flatness);
-        double relativeLen = 0d;
-        Node v1, v2;
-        BezierPath tempPath = new BezierPath();
-        Node t1, t2;
-        tempPath.add(t1 = new Node());
-        tempPath.add(t2 = new Node());
-        for (int i = 0, n = size() - 1; i < n; i++) {
-            v1 = get(i);
-            v2 = get(i + 1);
-            if (v1.mask == 0 && v2.mask == 0) {
-                if (Geom.lineContainsPoint(v1.x[0], v1.y[0], v2.x[0], v2.y[0], find.x, find.y, flatness)) {
-                    relativeLen += Geom.length(v1.x[0], v1.y[0], find.x, find.y);
-                    return relativeLen / len;
-                } else {
-                    relativeLen += Geom.length(v1.x[0], v1.y[0], v2.x[0], v2.y[0]);
-                }
-            } else {
-                t1.setTo(v1);
-                t2.setTo(v2);
-                tempPath.invalidatePath();
-                if (tempPath.outlineContains(find, flatness)) {
-                    relativeLen += Geom.length(v1.x[0], v1.y[0], find.x, find.y);
-                    return relativeLen / len;
-                } else {
-                    relativeLen += Geom.length(v1.x[0], v1.y[0], v2.x[0], v2.y[0]);
-                }
-            }
+        if (size() < 2) {
+            return -1;
         }
-        if (isClosed && size() > 1) {
-            v1 = get(size() - 1);
-            v2 = get(0);
-            if (v1.mask == 0 && v2.mask == 0) {
-                if (Geom.lineContainsPoint(v1.x[0], v1.y[0], v2.x[0], v2.y[0], find.x, find.y, flatness)) {
-                    relativeLen += Geom.length(v1.x[0], v1.y[0], find.x, find.y);
-                    return relativeLen / len;
-                }
-            } else {
-                t1.setTo(v1);
-                t2.setTo(v2);
-                tempPath.invalidatePath();
-                if (tempPath.outlineContains(find, flatness)) {
-                    relativeLen += Geom.length(v1.x[0], v1.y[0], find.x, find.y);
-                    return relativeLen / len;
-                }
-            }
+        FlattenedPath fp = getFlattenedPath(flatness);
+        int s = fp.findSegment(find.x, find.y, flatness);
+        if (s == -1) {
+            return -1;
         }
-        return -1;
+        double len = fp.getLength();
+        double relativeLen = fp.getLengthBefore(s) + fp.getStartPoint(s).distance(find);
+        return (len == 0) ? 0 : Math.min(1, relativeLen / len);
     }
 
     /**
@@ -877,45 +1318,17 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      * @return the index of the segment or -1 if no segment was hit.
      */
     public int findSegment(Point2D.Double find, double tolerance) {
-        // XXX - This works only for straight lines!
-        Node v1, v2;
-        BezierPath tempPath = new BezierPath();
-        Node t1, t2;
-        tempPath.add(t1 = new Node());
-        tempPath.add(t2 = new Node());
-        for (int i = 0, n = size() - 1; i < n; i++) {
-            v1 = get(i);
-            v2 = get(i + 1);
-            if (v1.mask == 0 && v2.mask == 0) {
-                if (Geom.lineContainsPoint(v1.x[0], v1.y[0], v2.x[0], v2.y[0], find.x, find.y, tolerance)) {
-                    return i;
-                }
-            } else {
-                t1.setTo(v1);
-                t2.setTo(v2);
-                tempPath.invalidatePath();
-                if (tempPath.outlineContains(find, tolerance)) {
-                    return i;
-                }
-            }
+        if (size() < 2) {
+            return -1;
         }
-        if (isClosed && size() > 1) {
-            v1 = get(size() - 1);
-            v2 = get(0);
-            if (v1.mask == 0 && v2.mask == 0) {
-                if (Geom.lineContainsPoint(v1.x[0], v1.y[0], v2.x[0], v2.y[0], find.x, find.y, tolerance)) {
-                    return size() - 1;
-                }
-            } else {
-                t1.setTo(v1);
-                t2.setTo(v2);
-                tempPath.invalidatePath();
-                if (tempPath.outlineContains(find, tolerance)) {
-                    return size() - 1;
-                }
-            }
+        FlattenedPath fp = getFlattenedPath(tolerance);
+        int s = fp.findSegment(find.x, find.y, tolerance);
+        if (s == -1) {
+            return -1;
         }
-        return -1;
+        // Path segment 0 is the move to the first node, and the close
+        // segment of a closed path belongs to the last node
+        return Math.min(fp.getPathSegment(s) - 1, size() - 1);
     }
 
     /**
@@ -926,8 +1339,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
      */
     public int joinSegments(Point2D.Double join, double tolerance) {
         for (int i = 0; i < size(); i++) {
-            Node p = get(i);
-            if (Geom.length(p.x[0], p.y[0], join.x, join.y) < tolerance) {
+            if (Geom.length(getX(i, 0), getY(i, 0), join.x, join.y) < tolerance) {
                 remove(i);
                 return i;
             }
@@ -944,26 +1356,47 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         int i = findSegment(split, tolerance);
         int nextI = (i + 1) % size();
         if (i != -1) {
-            if ((get(i).mask & C2_MASK) == C2_MASK
-                    && (get(nextI).mask & C1_MASK) == 0) {
+            int mask = getNodeMask(i);
+            int nextMask = getNodeMask(nextI);
+            if ((mask & C2_MASK) == C2_MASK
+                    && (nextMask & C1_MASK) == 0) {
                 // quadto
-                add(i + 1, new Node(C2_MASK, split, split, split));
-            } else if ((get(i).mask & C2_MASK) == 0
-                    && (get(nextI).mask & C1_MASK) == C1_MASK) {
+                insertNode(i + 1, C2_MASK, split);
+            } else if ((mask & C2_MASK) == 0
+                    && (nextMask & C1_MASK) == C1_MASK) {
                 // quadto
-                add(i + 1, new Node(C1_MASK, split, split, split));
-            } else if ((get(i).mask & C2_MASK) == C2_MASK
-                    && (get(nextI).mask & C1_MASK) == C1_MASK) {
+                insertNode(i + 1, C1_MASK, split);
+            } else if ((mask & C2_MASK) == C2_MASK
+                    && (nextMask & C1_MASK) == C1_MASK) {
                 // cubicto
-                add(i + 1, new Node(C1_MASK | C2_MASK, split, split, split));
+                insertNode(i + 1, C1_MASK | C2_MASK, split);
             } else {
                 // lineto
-                add(i + 1, new Node(split));
+                insertNode(i + 1, 0, split);
             }
         }
         return i + 1;
     }
 
+    /**
+     * Inserts a node with all control points at the specified point.
+     */
+    private void insertNode(int index, int mask, Point2D.Double p) {
+        if (packed != null) {
+            PackedNodes pn = getWritablePacked(1);
+            System.arraycopy(pn.x, index * 3, pn.x, index * 3 + 3, (pn.size - index) * 3);
+            System.arraycopy(pn.y, index * 3, pn.y, index * 3 + 3, (pn.size - index) * 3);
+            System.arraycopy(pn.flags, index, pn.flags, index + 1, pn.size - index);
+            Arrays.fill(pn.x, index * 3, index * 3 + 3, p.x);
+            Arrays.fill(pn.y, index * 3, index * 3 + 3, p.y);
+            pn.flags[index] = (byte) (mask | KEEP_COLINEAR_FLAG);
+            pn.size++;
+            invalidatePath();
+        } else {
+            add(index, new Node(mask, p, p, p));
+        }
+    }
+
     /**
      * Adds the first node to the bezier path.
      * <p>
@@ -974,9 +1407,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         if (size() != 0) {
             throw new IllegalPathStateException("moveTo only allowed when empty");
         }
-        Node node = new Node(x1, y1);
-        node.keepColinear = false;
-        add(node);
+        addNode(0, false, x1, y1, x1, y1, x1, y1);
     }
 
     /**
@@ -994,8 +1425,8 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         if (size() == 0) {
             throw new IllegalPathStateException("lineTo only allowed when not empty");
         }
-        get(size() - 1).keepColinear = false;
-        add(new Node(x1, y1));
+        setKeepColinear(size() - 1, false);
+        addNode(0, true, x1, y1, x1, y1, x1, y1);
     }
 
     /**
@@ -1014,7 +1445,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         if (size() == 0) {
             throw new IllegalPathStateException("quadTo only allowed when not empty");
         }
-        add(new Node(C1_MASK, x2, y2, x1, y1, x2, y2));
+        addNode(C1_MASK, true, x2, y2, x1, y1, x2, y2);
     }
 
     /**
@@ -1032,18 +1463,17 @@ public class BezierPath extends ArrayList<BezierPath.Node>
         if (size() == 0) {
             throw new IllegalPathStateException("curveTo only allowed when not empty");
         }
-        Node lastPoint = get(size() - 1);
-        lastPoint.mask |= C2_MASK;
-        lastPoint.x[2] = x1;
-        lastPoint.y[2] = y1;
-        if ((lastPoint.mask & C1C2_MASK) == C1C2_MASK) {
-            lastPoint.keepColinear = Math.abs(
-                    Geom.angle(lastPoint.x[0], lastPoint.y[0],
-                            lastPoint.x[1], lastPoint.y[1])
-                    - Geom.angle(lastPoint.x[2], lastPoint.y[2],
-                            lastPoint.x[0], lastPoint.y[0])) < 0.001;
+        int last = size() - 1;
+        int mask = getNodeMask(last) | C2_MASK;
+        setControlPoint(last, mask, 2, x1, y1);
+        if ((mask & C1C2_MASK) == C1C2_MASK) {
+            setKeepColinear(last, Math.abs(
+                    Geom.angle(getX(last, 0), getY(last, 0),
+                            getX(last, 1), getY(last, 1))
+                    - Geom.angle(x1, y1,
+                            getX(last, 0), getY(last, 0))) < 0.001);
         }
-        add(new Node(C1_MASK, x3, y3, x2, y2, x3, y3));
+        addNode(C1_MASK, true, x3, y3, x2, y2, x3, y3);
     }
 
     /**
@@ -1084,9 +1514,10 @@ public class BezierPath extends ArrayList<BezierPath.Node>
             return;
         }
         // Get the current (x, y) coordinates of the path
-        Node lastPoint = get(size() - 1);
-        double x0 = ((lastPoint.mask & C2_MASK) == C2_MASK) ? lastPoint.x[2] : lastPoint.x[0];
-        double y0 = ((lastPoint.mask & C2_MASK) == C2_MASK) ? lastPoint.y[2] : lastPoint.y[0];
+        int last = size() - 1;
+        int lastCtrl = ((getNodeMask(last) & C2_MASK) == C2_MASK) ? 2 : 0;
+        double x0 = getX(last, lastCtrl);
+        double y0 = getY(last, lastCtrl);
         if (x0 == x && y0 == y) {
             // If the endpoints (x, y) and (x0, y0) are identical, then this
             // is equivalent to omitting the elliptical arc segment entirely.
@@ -1200,7 +1631,7 @@ public class BezierPath extends ArrayList<BezierPath.Node>
     public Point2D.Double[] toPolygonArray() {
         Point2D.Double[] points = new Point2D.Double[size()];
         for (int i = 0, n = size(); i < n; i++) {
-            points[i] = new Point2D.Double(get(i).x[0], get(i).y[0]);
+            points[i] = new Point2D.Double(getX(i, 0), getY(i, 0));
         }
         return points;
     }
@@ -39,6 +39,10 @@ public class BezierPathIterator implements PathIterator {
      * ??
      */
     private static final int CURVE_SIZE[] = {2, 2, 4, 6, 0};
+    /**
+     * The segment types of curves by their number of points.
+     */
+    private static final int CURVE_TYPES[] = {0, SEG_LINETO, SEG_QUADTO, SEG_CUBICTO};
 
     /**
      * Constructs an iterator given a BezierPath.
@@ -243,90 +247,24 @@ public class BezierPathIterator implements PathIterator {
     public int currentSegment(double[] coords) {
         int numCoords = 0;
         int type = 0;
-        if (index == path.size()) {
+        int size = path.size();
+        if (index == size) {
             // We only get here for closed paths
-            if (path.size() > 1) {
-                BezierPath.Node previous = path.get(path.size() - 1);
-                BezierPath.Node current = path.get(0);
-                if ((previous.mask & BezierPath.C2_MASK) == 0) {
-                    if ((current.mask & BezierPath.C1_MASK) == 0) {
-                        numCoords = 1;
-                        type = SEG_LINETO;
-                        coords[0] = current.x[0];
-                        coords[1] = current.y[0];
-                    } else {
-                        numCoords = 2;
-                        type = SEG_QUADTO;
-                        coords[0] = current.x[1];
-                        coords[1] = current.y[1];
-                        coords[2] = current.x[0];
-                        coords[3] = current.y[0];
-                    }
-                } else {
-                    if ((current.mask & BezierPath.C1_MASK) == 0) {
-                        numCoords = 2;
-                        type = SEG_QUADTO;
-                        coords[0] = previous.x[2];
-                        coords[1] = previous.y[2];
-                        coords[2] = current.x[0];
-                        coords[3] = current.y[0];
-                    } else {
-                        numCoords = 3;
-                        type = SEG_CUBICTO;
-                        coords[0] = previous.x[2];
-                        coords[1] = previous.y[2];
-                        coords[2] = current.x[1];
-                        coords[3] = current.y[1];
-                        coords[4] = current.x[0];
-                        coords[5] = current.y[0];
-                    }
-                }
+            if (size > 1) {
+                numCoords = currentCurve(size - 1, 0, coords);
+                type = CURVE_TYPES[numCoords];
             }
-        } else if (index > path.size()) {
+        } else if (index > size) {
             // We only get here for closed paths
             return SEG_CLOSE;
         } else if (index == 0) {
-            BezierPath.Node current = path.get(index);
-            coords[0] = current.x[0];
-            coords[1] = current.y[0];
+            coords[0] = path.getX(index, 0);
+            coords[1] = path.getY(index, 0);
             numCoords = 1;
             type = SEG_MOVETO;
-        } else if (index < path.size()) {
-            BezierPath.Node current = path.get(index);
-            BezierPath.Node previous = path.get(index - 1);
-            if ((previous.mask & BezierPath.C2_MASK) == 0) {
-                if ((current.mask & BezierPath.C1_MASK) == 0) {
-                    numCoords = 1;
-                    type = SEG_LINETO;
-                    coords[0] = current.x[0];
-                    coords[1] = current.y[0];
-                } else {
-                    numCoords = 2;
-                    type = SEG_QUADTO;
-                    coords[0] = current.x[1];
-                    coords[1] = current.y[1];
-                    coords[2] = current.x[0];
-                    coords[3] = current.y[0];
-                }
-            } else {
-                if ((current.mask & BezierPath.C1_MASK) == 0) {
-                    numCoords = 2;
-                    type = SEG_QUADTO;
-                    coords[0] = previous.x[2];
-                    coords[1] = previous.y[2];
-                    coords[2] = current.x[0];
-                    coords[3] = current.y[0];
-                } else {
-                    numCoords = 3;
-                    type = SEG_CUBICTO;
-                    coords[0] = previous.x[2];
-                    coords[1] = previous.y[2];
-                    coords[2] = current.x[1];
-                    coords[3] = current.y[1];
-                    coords[4] = current.x[0];
-                    coords[5] = current.y[0];
-                }
-            }
+        } else if (index < size) {
+            numCoords = currentCurve(index - 1, index, coords);
+            type = CURVE_TYPES[numCoords];
         }
         if (affine != null) {
             affine.transform(coords, 0, coords, 0, numCoords);
@@ -335,4 +273,40 @@ public class BezierPathIterator implements PathIterator {
         }
         return type;
     }
+
+    /**
+     * Stores the coordinates of the curve from the previous node to the
+     * current node, and returns the number of points.
+     */
+    private int currentCurve(int previous, int current, double[] coords) {
+        if ((path.getNodeMask(previous) & BezierPath.C2_MASK) == 0) {
+            if ((path.getNodeMask(current) & BezierPath.C1_MASK) == 0) {
+                coords[0] = path.getX(current, 0);
+                coords[1] = path.getY(current, 0);
+                return 1;
+            } else {
+                coords[0] = path.getX(current, 1);
+                coords[1] = path.getY(current, 1);
+                coords[2] = path.getX(current, 0);
+                coords[3] = path.getY(current, 0);
+                return 2;
+            }
+        } else {
+            if ((path.getNodeMask(current) & BezierPath.C1_MASK) == 0) {
+                coords[0] = path.getX(previous, 2);
+                coords[1] = path.getY(previous, 2);
+                coords[2] = path.getX(current, 0);
+                coords[3] = path.getY(current, 0);
+                return 2;
+            } else {
+                coords[0] = path.getX(previous, 2);
+                coords[1] = path.getY(previous, 2);
+                coords[2] = path.getX(current, 1);
+                coords[3] = path.getY(current, 1);
+                coords[4] = path.getX(current, 0);
+                coords[5] = path.getY(current, 0);
+                return 3;
+            }
+        }
+    }
 }
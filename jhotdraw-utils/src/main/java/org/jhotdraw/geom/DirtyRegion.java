@@ -0,0 +1,198 @@
+/*
+ * @(#)DirtyRegion.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.geom;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A region which consists of a small number of disjoint rectangles.
+ * <p>
+ * The region is used to collect the areas of a component which need to be
+ * repainted. Unlike a single bounding rectangle, it does not grow over the
+ * space between two small areas which are far apart.
+ * <p>
+ * When a rectangle is added, it is merged with the rectangles of the region
+ * which it intersects, and with the rectangles where the union does not cover
+ * much more area than the two rectangles. If the region holds more than the
+ * maximal number of rectangles, the two rectangles with the smallest union
+ * are merged. Thus the region may cover more area than the rectangles which
+ * have been added to it, but never less.
+ *
+ * @version $Id$
+ */
+public class DirtyRegion {
+
+    private final ArrayList<Rectangle> rects = new ArrayList<>();
+    private final int maxRectangles;
+    /**
+     * The union of two rectangles is used instead of the two rectangles, if
+     * it is at most this much larger than the area of the two rectangles.
+     */
+    private final double mergeFactor;
+
+    /**
+     * Creates a region which holds up to 8 rectangles.
+     */
+    public DirtyRegion() {
+        this(8, 1.25);
+    }
+
+    /**
+     * Creates a region.
+     *
+     * @param maxRectangles the maximal number of rectangles.
+     * @param mergeFactor two rectangles are merged, if their union is at most
+     * this much larger than their area.
+     */
+    public DirtyRegion(int maxRectangles, double mergeFactor) {
+        this.maxRectangles = Math.max(1, maxRectangles);
+        this.mergeFactor = mergeFactor;
+    }
+
+    /**
+     * Adds a rectangle to the region. Does nothing if the rectangle is empty.
+     */
+    public void add(Rectangle r) {
+        if (r.isEmpty()) {
+            return;
+        }
+        Rectangle added = new Rectangle(r);
+        // Merge with the rectangles which intersect the added rectangle, or
+        // which are close to it. The merged rectangle may intersect
+        // rectangles which we have already checked; so repeat until nothing
+        // has been merged.
+        boolean merged;
+        do {
+            merged = false;
+            for (int i = rects.size() - 1; i >= 0; i--) {
+                Rectangle rect = rects.get(i);
+                if (added.intersects(rect) || isCheapUnion(added, rect)) {
+                    added.add(rect);
+                    rects.remove(i);
+                    merged = true;
+                }
+            }
+        } while (merged);
+        rects.add(added);
+
+        while (rects.size() > maxRectangles) {
+            mergeCheapestPair();
+        }
+    }
+
+    /**
+     * Adds all rectangles of the specified region to this region.
+     */
+    public void add(DirtyRegion r) {
+        for (Rectangle rect : r.rects) {
+            add(rect);
+        }
+    }
+
+    /**
+     * Sets the region to the specified rectangle.
+     */
+    public void set(Rectangle r) {
+        rects.clear();
+        add(r);
+    }
+
+    /**
+     * Removes all rectangles from the region.
+     */
+    public void clear() {
+        rects.clear();
+    }
+
+    public boolean isEmpty() {
+        return rects.isEmpty();
+    }
+
+    /**
+     * Returns the disjoint rectangles of the region. The returned list must
+     * not be changed.
+     */
+    public List<Rectangle> getRectangles() {
+        return Collections.unmodifiableList(rects);
+    }
+
+    /**
+     * Returns the bounds of the region.
+     */
+    public Rectangle getBounds() {
+        if (rects.isEmpty()) {
+            return new Rectangle(0, 0, -1, -1);
+        }
+        Rectangle bounds = new Rectangle(rects.get(0));
+        for (int i = 1, n = rects.size(); i < n; i++) {
+            bounds.add(rects.get(i));
+        }
+        return bounds;
+    }
+
+    /**
+     * Returns the number of pixels covered by the region.
+     */
+    public long getArea() {
+        long area = 0;
+        for (Rectangle r : rects) {
+            area += area(r);
+        }
+        return area;
+    }
+
+    /**
+     * Translates all rectangles of the region.
+     */
+    public void translate(int dx, int dy) {
+        for (Rectangle r : rects) {
+            r.translate(dx, dy);
+        }
+    }
+
+    /**
+     * Returns true, if the union of the two disjoint rectangles does not cover
+     * much more area than the rectangles.
+     */
+    private boolean isCheapUnion(Rectangle r1, Rectangle r2) {
+        return area(r1.union(r2)) <= (area(r1) + area(r2)) * mergeFactor;
+    }
+
+    private void mergeCheapestPair() {
+        int best1 = 0;
+        int best2 = 1;
+        long bestWaste = Long.MAX_VALUE;
+        for (int i = 0, n = rects.size(); i < n; i++) {
+            Rectangle r1 = rects.get(i);
+            for (int j = i + 1; j < n; j++) {
+                Rectangle r2 = rects.get(j);
+                long waste = area(r1.union(r2)) - area(r1) - area(r2);
+                if (waste < bestWaste) {
+                    bestWaste = waste;
+                    best1 = i;
+                    best2 = j;
+                }
+            }
+        }
+        Rectangle merged = rects.remove(best2);
+        merged.add(rects.remove(best1));
+        add(merged);
+    }
+
+    private static long area(Rectangle r) {
+        return (long) r.width * r.height;
+    }
+
+    @Override
+    public String toString() {
+        return "DirtyRegion" + rects;
+    }
+}
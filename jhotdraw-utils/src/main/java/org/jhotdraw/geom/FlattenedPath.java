@@ -0,0 +1,311 @@
+/*
+ * @(#)FlattenedPath.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.geom;
+
+import java.awt.Shape;
+import java.awt.geom.CubicCurve2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.QuadCurve2D;
+import java.util.Arrays;
+import static java.lang.Math.*;
+
+/**
+ * The line segments of a shape which has been flattened like with a
+ * {@code FlatteningPathIterator}.
+ * <p>
+ * For each line segment, the index of the path segment of the shape which it
+ * approximates, and the length of the outline up to the end of the segment
+ * are stored. This allows to find a point at a given length with a binary
+ * search.
+ * <p>
+ * The line segments are grouped into blocks of consecutive segments, and the
+ * bounds of the blocks are stored in a binary tree. A query for the segments
+ * near a point only visits the subtrees whose bounds are near the point.
+ * This is useful for hit tests, which are performed many times on a shape
+ * which does not change.
+ * <p>
+ * A flattened path is immutable. It must be created anew when the shape
+ * changes.
+ *
+ * @version $Id$
+ */
+public class FlattenedPath {
+
+    /**
+     * The number of segments in a block.
+     */
+    private static final int BLOCK_SIZE = 8;
+    private final double flatness;
+    /**
+     * The segments. Each segment is stored as x1, y1, x2, y2.
+     */
+    private final double[] segments;
+    private final int segmentCount;
+    /**
+     * The index of the path segment from which each line segment has been
+     * created.
+     */
+    private final int[] pathSegments;
+    /**
+     * The length of the outline from the start up to the end of each segment.
+     */
+    private final double[] lengths;
+    /**
+     * The number of leaves of the tree. This is a power of two.
+     */
+    private final int leafCount;
+    /**
+     * The bounds of the tree nodes. Each node is stored as minX, minY, maxX,
+     * maxY. Node 1 is the root, the children of node i are 2i and 2i+1, and
+     * the bounds of block b are stored in leaf leafCount+b.
+     */
+    private final double[] tree;
+
+    /**
+     * Flattens the specified shape.
+     *
+     * @param shape The shape.
+     * @param flatness The maximal distance of the line segments from the
+     * curves of the shape.
+     */
+    public FlattenedPath(Shape shape, double flatness) {
+        this.flatness = flatness;
+        double[] segs = new double[64];
+        int[] owners = new int[16];
+        int count = 0;
+        double[] coords = new double[6];
+        double[] lineCoords = new double[6];
+        QuadCurve2D.Double quad = new QuadCurve2D.Double();
+        CubicCurve2D.Double cubic = new CubicCurve2D.Double();
+        double prevX = 0, prevY = 0;
+        double moveX = 0, moveY = 0;
+        int pathSegment = 0;
+        for (PathIterator i = shape.getPathIterator(null); !i.isDone(); i.next(), pathSegment++) {
+            int type = i.currentSegment(coords);
+            PathIterator lines;
+            switch (type) {
+                case PathIterator.SEG_MOVETO:
+                    moveX = prevX = coords[0];
+                    moveY = prevY = coords[1];
+                    continue;
+                case PathIterator.SEG_QUADTO:
+                    // The path iterator of a curve flattens it like a
+                    // FlatteningPathIterator flattens it inside of a path
+                    quad.setCurve(prevX, prevY, coords[0], coords[1], coords[2], coords[3]);
+                    lines = quad.getPathIterator(null, flatness);
+                    lines.next();
+                    break;
+                case PathIterator.SEG_CUBICTO:
+                    cubic.setCurve(prevX, prevY, coords[0], coords[1], coords[2], coords[3], coords[4], coords[5]);
+                    lines = cubic.getPathIterator(null, flatness);
+                    lines.next();
+                    break;
+                default:
+                    lines = null;
+                    break;
+            }
+            do {
+                double x, y;
+                if (lines != null) {
+                    lines.currentSegment(lineCoords);
+                    x = lineCoords[0];
+                    y = lineCoords[1];
+                } else if (type == PathIterator.SEG_LINETO) {
+                    x = coords[0];
+                    y = coords[1];
+                } else {
+                    x = moveX;
+                    y = moveY;
+                }
+                if (count * 4 == segs.length) {
+                    segs = Arrays.copyOf(segs, segs.length * 2);
+                    owners = Arrays.copyOf(owners, owners.length * 2);
+                }
+                segs[count * 4] = prevX;
+                segs[count * 4 + 1] = prevY;
+                segs[count * 4 + 2] = x;
+                segs[count * 4 + 3] = y;
+                owners[count] = pathSegment;
+                count++;
+                // Like in Shapes.outlineContains, a segment after a close
+                // starts at the end of the segment before the close
+                if (type != PathIterator.SEG_CLOSE) {
+                    prevX = x;
+                    prevY = y;
+                }
+                if (lines != null) {
+                    lines.next();
+                }
+            } while (lines != null && !lines.isDone());
+        }
+        segments = segs;
+        segmentCount = count;
+        pathSegments = owners;
+
+        lengths = new double[count];
+        double length = 0;
+        for (int s = 0; s < count; s++) {
+            length += Geom.length(segs[s * 4], segs[s * 4 + 1], segs[s * 4 + 2], segs[s * 4 + 3]);
+            lengths[s] = length;
+        }
+
+        int blockCount = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int leaves = 1;
+        while (leaves < blockCount) {
+            leaves *= 2;
+        }
+        leafCount = leaves;
+        tree = new double[leaves * 2 * 4];
+        for (int n = 0; n < leaves * 2; n++) {
+            tree[n * 4] = tree[n * 4 + 1] = Double.POSITIVE_INFINITY;
+            tree[n * 4 + 2] = tree[n * 4 + 3] = Double.NEGATIVE_INFINITY;
+        }
+        for (int s = 0; s < count; s++) {
+            int n = (leaves + s / BLOCK_SIZE) * 4;
+            tree[n] = min(tree[n], min(segs[s * 4], segs[s * 4 + 2]));
+            tree[n + 1] = min(tree[n + 1], min(segs[s * 4 + 1], segs[s * 4 + 3]));
+            tree[n + 2] = max(tree[n + 2], max(segs[s * 4], segs[s * 4 + 2]));
+            tree[n + 3] = max(tree[n + 3], max(segs[s * 4 + 1], segs[s * 4 + 3]));
+        }
+        for (int n = leaves - 1; n >= 1; n--) {
+            int l = n * 8, r = n * 8 + 4;
+            tree[n * 4] = min(tree[l], tree[r]);
+            tree[n * 4 + 1] = min(tree[l + 1], tree[r + 1]);
+            tree[n * 4 + 2] = max(tree[l + 2], tree[r + 2]);
+            tree[n * 4 + 3] = max(tree[l + 3], tree[r + 3]);
+        }
+    }
+
+    /**
+     * Returns the flatness with which the shape has been flattened.
+     */
+    public double getFlatness() {
+        return flatness;
+    }
+
+    /**
+     * Returns the number of line segments.
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Returns the index of the path segment of the shape from which the
+     * specified line segment has been created. The path segments are counted
+     * in the order in which the path iterator of the shape returns them,
+     * including move and close segments.
+     */
+    public int getPathSegment(int segment) {
+        return pathSegments[segment];
+    }
+
+    /**
+     * Returns the length of the outline.
+     */
+    public double getLength() {
+        return (segmentCount == 0) ? 0 : lengths[segmentCount - 1];
+    }
+
+    /**
+     * Returns the length of the outline from the start up to the start of the
+     * specified line segment.
+     */
+    public double getLengthBefore(int segment) {
+        return (segment == 0) ? 0 : lengths[segment - 1];
+    }
+
+    /**
+     * Returns the point on the outline at the specified length from the
+     * start, or null if there are no line segments.
+     */
+    public Point2D.Double getPointAt(double length) {
+        if (segmentCount == 0) {
+            return null;
+        }
+        int s = Arrays.binarySearch(lengths, 0, segmentCount, length);
+        if (s < 0) {
+            s = min(-s - 1, segmentCount - 1);
+        }
+        // Several segments can end at the same length
+        while (s > 0 && lengths[s - 1] == length) {
+            s--;
+        }
+        double start = getLengthBefore(s);
+        double segLen = lengths[s] - start;
+        double factor = (segLen == 0) ? 1 : max(0, min(1, (length - start) / segLen));
+        return new Point2D.Double(
+                segments[s * 4] * (1 - factor) + segments[s * 4 + 2] * factor,
+                segments[s * 4 + 1] * (1 - factor) + segments[s * 4 + 3] * factor);
+    }
+
+    /**
+     * Returns the start point of the specified line segment.
+     */
+    public Point2D.Double getStartPoint(int segment) {
+        return new Point2D.Double(segments[segment * 4], segments[segment * 4 + 1]);
+    }
+
+    /**
+     * Returns true, if the outline of the path contains the specified point.
+     * This gives the same result as {@link Shapes#outlineContains} with the
+     * tolerance which was used as the flatness of this path.
+     *
+     * @param px The x coordinate of the point.
+     * @param py The y coordinate of the point.
+     * @param tolerance The tolerance for the test.
+     */
+    public boolean outlineContains(double px, double py, double tolerance) {
+        return findSegment(px, py, tolerance) != -1;
+    }
+
+    /**
+     * Returns the first line segment which contains the specified point, as
+     * tested by {@link Geom#lineContainsPoint}.
+     *
+     * @param px The x coordinate of the point.
+     * @param py The y coordinate of the point.
+     * @param tolerance The tolerance for the test.
+     * @return The index of the line segment or -1 if no segment contains
+     * the point.
+     */
+    public int findSegment(double px, double py, double tolerance) {
+        if (segmentCount == 0) {
+            return -1;
+        }
+        // Geom.lineContainsPoint does not accept points outside of the
+        // bounds of a segment grown by this amount
+        double grow = max(2, (int) ceil(tolerance));
+        // Depth first search, left subtree first, so that the first segment
+        // is found
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 1;
+        while (top > 0) {
+            int n = stack[--top];
+            if (px < tree[n * 4] - grow || py < tree[n * 4 + 1] - grow
+                    || px > tree[n * 4 + 2] + grow || py > tree[n * 4 + 3] + grow) {
+                continue;
+            }
+            if (n >= leafCount) {
+                for (int s = (n - leafCount) * BLOCK_SIZE, end = min(s + BLOCK_SIZE, segmentCount); s < end; s++) {
+                    if (Geom.lineContainsPoint(
+                            segments[s * 4], segments[s * 4 + 1], segments[s * 4 + 2], segments[s * 4 + 3],
+                            px, py, tolerance)) {
+                        return s;
+                    }
+                }
+            } else {
+                stack[top++] = n * 2 + 1;
+                stack[top++] = n * 2;
+            }
+        }
+        return -1;
+    }
+}
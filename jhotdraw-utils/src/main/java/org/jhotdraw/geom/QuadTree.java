@@ -10,11 +10,13 @@ package org.jhotdraw.geom;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * A QuadTree allows to quickly find an object on a two-dimensional space.
@@ -22,18 +24,46 @@ import java.util.Map;
  * QuadTree recursively subdivides a space into four rectangles. Each node of a QuadTree subdivides
  * the space covered by the rectangle of its parent node into four smaller rectangles covering the
  * upper left, upper right, lower left and lower right quadrant of the parent rectangle.
+ * <p>
+ * Each object can optionally be stored with a z-order value. The
+ * {@code find...InZOrder} methods return their results sorted by this value,
+ * so that a client which keeps the z-order values in sync with its own
+ * ordering does not need to restore the order of the results by itself.
+ * <p>
+ * Objects whose bounds span multiple quadrants are stored in each of them.
+ * For large drawings which are loaded at once, {@link RTree} may be the
+ * better choice.
+ * <p>
+ * The nodes keep the bounds of their objects in primitive arrays, and the
+ * queries mark visited objects with a query number instead of collecting them
+ * into a set. Together with the reusable result buffer this makes the queries
+ * which take a visitor or a result list free of allocations.
  *
  * @author Werner Randelshofer
  * @version $Id$
  */
-public class QuadTree<T> implements Serializable {
+public class QuadTree<T> implements SpatialIndex<T>, Serializable {
 
     private static final long serialVersionUID = 1L;
-    private HashMap<T, Rectangle2D.Double> outside = new HashMap<>();
+    /**
+     * Holds the entries of all objects in the tree, including the ones in
+     * {@code outside}.
+     */
+    private HashMap<T, Entry<T>> entries = new HashMap<>();
+    /**
+     * Holds the objects which are outside of the bounds of the root node.
+     */
+    private QuadNode outside = new QuadNode(new Rectangle2D.Double());
     private QuadNode root;
     private int maxCapacity = 32;
     private int minSize = 32;
     private int maxOutside = 32;
+    /**
+     * The number of the current query. Entries which have been found by the
+     * current query carry this number.
+     */
+    private transient int queryNumber;
+    private transient ZOrderBuffer buffer;
 
     /**
      * Creates a new instance.
@@ -46,78 +76,255 @@ public class QuadTree<T> implements Serializable {
         root = new QuadNode(bounds);
     }
 
+    @Override
     public void add(T o, Rectangle2D.Double bounds) {
+        add(o, bounds, 0d);
+    }
+
+    @Override
+    public void add(T o, Rectangle2D.Double bounds, double zOrder) {
+        Entry<T> entry = new Entry<>(o, (Rectangle2D.Double) bounds.clone(), zOrder);
+        Entry<T> oldEntry = entries.put(o, entry);
+        if (oldEntry != null) {
+            removeEntry(oldEntry);
+        }
         if (root.bounds.contains(bounds)) {
-            root.add(o, (Rectangle2D.Double) bounds.clone());
+            root.add(entry);
         } else {
-            outside.put(o, (Rectangle2D.Double) bounds.clone());
-            if (outside.size() > maxOutside) {
+            outside.addObject(entry);
+            if (outside.count > maxOutside) {
                 reorganize();
             }
         }
     }
 
+    /**
+     * If the tree is empty, the root is resized to the union of the specified
+     * bounds before the objects are added, so that no objects end up outside
+     * of the tree.
+     */
+    @Override
+    public void addAll(List<? extends T> objects, List<Rectangle2D.Double> bounds, double[] zOrders) {
+        if (entries.isEmpty() && !objects.isEmpty()) {
+            Rectangle2D.Double treeBounds = (Rectangle2D.Double) bounds.get(0).clone();
+            for (Rectangle2D.Double r : bounds) {
+                treeBounds.add(r);
+            }
+            root = new QuadNode(treeBounds);
+        }
+        for (int i = 0, n = objects.size(); i < n; i++) {
+            add(objects.get(i), bounds.get(i), zOrders[i]);
+        }
+    }
+
     public void reorganize() {
-        root.join();
-        outside.putAll(root.objects);
-        root.objects.clear();
-        Iterator<Map.Entry<T, Rectangle2D.Double>> i = outside.entrySet().iterator();
-        Map.Entry<T, Rectangle2D.Double> entry = i.next();
-        Rectangle2D.Double treeBounds = (Rectangle2D.Double) (entry.getValue()).clone();
-        while (i.hasNext()) {
-            entry = i.next();
-            Rectangle2D.Double bounds = entry.getValue();
-            treeBounds.add(bounds);
+        if (entries.isEmpty()) {
+            return;
         }
-        root.bounds = treeBounds;
-        i = outside.entrySet().iterator();
-        while (i.hasNext()) {
-            entry = i.next();
-            root.add(entry.getKey(), entry.getValue());
+        Rectangle2D.Double treeBounds = null;
+        for (Entry<T> entry : entries.values()) {
+            if (treeBounds == null) {
+                treeBounds = (Rectangle2D.Double) entry.bounds.clone();
+            } else {
+                treeBounds.add(entry.bounds);
+            }
+        }
+        root = new QuadNode(treeBounds);
+        outside = new QuadNode(new Rectangle2D.Double());
+        for (Entry<T> entry : entries.values()) {
+            root.add(entry);
         }
-        outside.clear();
     }
 
+    @Override
     public void remove(T o) {
-        outside.remove(o);
-        root.remove(o);
+        Entry<T> entry = entries.remove(o);
+        if (entry != null) {
+            removeEntry(entry);
+        }
+    }
+
+    private void removeEntry(Entry<T> entry) {
+        if (!outside.removeObject(entry)) {
+            root.remove(entry);
+        }
     }
 
+    @Override
+    public void clear() {
+        entries.clear();
+        outside = new QuadNode(new Rectangle2D.Double());
+        root = new QuadNode(root.bounds);
+    }
+
+    @Override
+    public boolean contains(T o) {
+        return entries.containsKey(o);
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public double getZOrder(T o) {
+        Entry<T> entry = entries.get(o);
+        return (entry == null) ? Double.NaN : entry.zOrder;
+    }
+
+    /**
+     * Sets the z-order value of the specified object. Does nothing if the
+     * object is not in the tree.
+     * <p>
+     * This does not change the structure of the tree, and is thus much
+     * cheaper than removing and adding the object again.
+     */
+    @Override
+    public void setZOrder(T o, double zOrder) {
+        Entry<T> entry = entries.get(o);
+        if (entry != null) {
+            entry.zOrder = zOrder;
+        }
+    }
+
+    @Override
     public Collection<T> findContains(Point2D.Double p) {
         HashSet<T> result = new HashSet<>();
-        root.findContains(p, result);
-        for (Map.Entry<T, Rectangle2D.Double> entry : outside.entrySet()) {
-            if (entry.getValue().contains(p)) {
-                result.add(entry.getKey());
-            }
-        }
+        findContainsBuffer(p).drainTo(result);
         return result;
     }
 
+    @Override
+    public void findContains(Point2D.Double p, Consumer<? super T> visitor) {
+        findContainsBuffer(p).drainTo(visitor);
+    }
+
+    @Override
+    public List<T> findContainsInZOrder(Point2D.Double p) {
+        ArrayList<T> result = new ArrayList<>();
+        findContainsInZOrder(p, result);
+        return result;
+    }
+
+    @Override
+    public void findContainsInZOrder(Point2D.Double p, List<? super T> result) {
+        ZOrderBuffer found = findContainsBuffer(p);
+        found.sort();
+        found.drainTo(result);
+    }
+
+    @Override
     public Collection<T> findIntersects(Rectangle2D r) {
         return findIntersects(new Rectangle2D.Double(r.getX(), r.getY(), r.getWidth(), r.getHeight()));
     }
 
+    @Override
     public Collection<T> findIntersects(Rectangle2D.Double r) {
         HashSet<T> result = new HashSet<>();
-        root.findIntersects(r, result);
-        for (Map.Entry<T, Rectangle2D.Double> entry : outside.entrySet()) {
-            if (entry.getValue().intersects(r)) {
-                result.add(entry.getKey());
-            }
-        }
+        findIntersectsBuffer(r).drainTo(result);
+        return result;
+    }
+
+    @Override
+    public void findIntersects(Rectangle2D.Double r, Consumer<? super T> visitor) {
+        findIntersectsBuffer(r).drainTo(visitor);
+    }
+
+    @Override
+    public List<T> findIntersectsInZOrder(Rectangle2D r) {
+        ArrayList<T> result = new ArrayList<>();
+        findIntersectsInZOrder(new Rectangle2D.Double(r.getX(), r.getY(), r.getWidth(), r.getHeight()), result);
         return result;
     }
 
+    @Override
+    public void findIntersectsInZOrder(Rectangle2D.Double r, List<? super T> result) {
+        ZOrderBuffer found = findIntersectsBuffer(r);
+        found.sort();
+        found.drainTo(result);
+    }
+
+    @Override
     public Collection<T> findInside(Rectangle2D.Double r) {
         HashSet<T> result = new HashSet<>();
-        root.findInside(r, result);
-        for (Map.Entry<T, Rectangle2D.Double> entry : outside.entrySet()) {
-            if (r.contains(entry.getValue())) {
-                result.add(entry.getKey());
+        findInsideBuffer(r).drainTo(result);
+        return result;
+    }
+
+    @Override
+    public void findInside(Rectangle2D.Double r, Consumer<? super T> visitor) {
+        findInsideBuffer(r).drainTo(visitor);
+    }
+
+    @Override
+    public QuadTree<T> createEmpty() {
+        return new QuadTree<>();
+    }
+
+    private ZOrderBuffer findContainsBuffer(Point2D.Double p) {
+        ZOrderBuffer found = beginQuery();
+        root.findContains(p.x, p.y, found);
+        outside.findContains(p.x, p.y, found);
+        return found;
+    }
+
+    private ZOrderBuffer findIntersectsBuffer(Rectangle2D.Double r) {
+        ZOrderBuffer found = beginQuery();
+        if (r.width > 0 && r.height > 0) {
+            root.findIntersects(r, found);
+            outside.findIntersects(r, found);
+        }
+        return found;
+    }
+
+    private ZOrderBuffer findInsideBuffer(Rectangle2D.Double r) {
+        ZOrderBuffer found = beginQuery();
+        if (r.width > 0 && r.height > 0) {
+            root.findInside(r, found);
+            outside.findInside(r, found);
+        }
+        return found;
+    }
+
+    /**
+     * Starts a new query and returns an empty result buffer.
+     */
+    private ZOrderBuffer beginQuery() {
+        if (++queryNumber == 0) {
+            // The query number has wrapped around, forget all old marks.
+            for (Entry<T> entry : entries.values()) {
+                entry.queryNumber = 0;
             }
+            queryNumber = 1;
+        }
+        ZOrderBuffer found = ZOrderBuffer.acquire(buffer);
+        if (buffer == null) {
+            buffer = found;
+        }
+        return found;
+    }
+
+    /**
+     * Holds an object together with its bounds and its z-order value. An
+     * object which spans multiple nodes shares a single entry.
+     */
+    private static class Entry<T> implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private final T object;
+        private final Rectangle2D.Double bounds;
+        private double zOrder;
+        /**
+         * The number of the last query which has found this entry.
+         */
+        private transient int queryNumber;
+
+        public Entry(T object, Rectangle2D.Double bounds, double zOrder) {
+            this.object = object;
+            this.bounds = bounds;
+            this.zOrder = zOrder;
         }
-        return result;
     }
 
     private class QuadNode implements Serializable {
@@ -125,12 +332,15 @@ public class QuadTree<T> implements Serializable {
         private static final long serialVersionUID = 1L;
         private Rectangle2D.Double bounds;
         /**
-         * We store an object into this map, if 1) the bounds of the object contain our bounds or 2)
-         * we are a leaf.
-         *
-         * key = Object value = Rectangle2D.Double
+         * We store an object into this node, if 1) the bounds of the object contain our bounds or
+         * 2) we are a leaf.
          */
-        private HashMap<T, Rectangle2D.Double> objects;
+        private Entry<?>[] objects;
+        /**
+         * Holds x, y, width and height of the bounds of each object in {@code objects}.
+         */
+        private double[] coords;
+        private int count;
         private QuadNode northEast;
         private QuadNode northWest;
         private QuadNode southEast;
@@ -138,45 +348,91 @@ public class QuadTree<T> implements Serializable {
 
         public QuadNode(Rectangle2D.Double bounds) {
             this.bounds = bounds;
-            this.objects = new HashMap<>();
+            this.objects = new Entry<?>[4];
+            this.coords = new double[16];
         }
 
         public boolean isLeaf() {
             return northEast == null;
         }
 
-        public void remove(T o) {
-            if (objects.remove(o) == null && !isLeaf()) {
-                northEast.remove(o);
-                northWest.remove(o);
-                southEast.remove(o);
-                southWest.remove(o);
+        @SuppressWarnings("unchecked")
+        private Entry<T> object(int i) {
+            return (Entry<T>) objects[i];
+        }
+
+        private void addObject(Entry<T> entry) {
+            if (count == objects.length) {
+                objects = Arrays.copyOf(objects, count * 2);
+                coords = Arrays.copyOf(coords, count * 8);
+            }
+            objects[count] = entry;
+            int j = count * 4;
+            coords[j] = entry.bounds.x;
+            coords[j + 1] = entry.bounds.y;
+            coords[j + 2] = entry.bounds.width;
+            coords[j + 3] = entry.bounds.height;
+            count++;
+        }
+
+        private boolean removeObject(Entry<T> entry) {
+            for (int i = 0; i < count; i++) {
+                if (objects[i] == entry) {
+                    count--;
+                    objects[i] = objects[count];
+                    objects[count] = null;
+                    System.arraycopy(coords, count * 4, coords, i * 4, 4);
+                    return true;
+                }
             }
+            return false;
         }
 
-        public void add(T o, Rectangle2D.Double oBounds) {
+        /**
+         * Removes the entry. Only descends into the nodes which the entry
+         * was added to.
+         */
+        public void remove(Entry<T> entry) {
+            if (!removeObject(entry) && !isLeaf()) {
+                if (northEast.bounds.intersects(entry.bounds)) {
+                    northEast.remove(entry);
+                }
+                if (northWest.bounds.intersects(entry.bounds)) {
+                    northWest.remove(entry);
+                }
+                if (southEast.bounds.intersects(entry.bounds)) {
+                    southEast.remove(entry);
+                }
+                if (southWest.bounds.intersects(entry.bounds)) {
+                    southWest.remove(entry);
+                }
+            }
+        }
+
+        public void add(Entry<T> entry) {
+            Rectangle2D.Double oBounds = entry.bounds;
             // Do we have to split?
             if (isLeaf()
-                    && objects.size() >= maxCapacity
+                    && count >= maxCapacity
                     && bounds.width > minSize && bounds.height > minSize) {
                 split();
             }
             if (isLeaf() || oBounds.contains(bounds)) {
-                // We put an object into our hashtable if we are
+                // We put an object into our arrays if we are
                 // a leaf, or if the bounds of the object contain our bounds.
-                objects.put(o, oBounds);
+                addObject(entry);
             } else {
                 if (northEast.bounds.intersects(oBounds)) {
-                    northEast.add(o, oBounds);
+                    northEast.add(entry);
                 }
                 if (northWest.bounds.intersects(oBounds)) {
-                    northWest.add(o, oBounds);
+                    northWest.add(entry);
                 }
                 if (southEast.bounds.intersects(oBounds)) {
-                    southEast.add(o, oBounds);
+                    southEast.add(entry);
                 }
                 if (southWest.bounds.intersects(oBounds)) {
-                    southWest.add(o, oBounds);
+                    southWest.add(entry);
                 }
             }
         }
@@ -197,52 +453,64 @@ public class QuadTree<T> implements Serializable {
                 southEast = new QuadNode(
                         new Rectangle2D.Double(bounds.x + hw, bounds.y + hh, bounds.width - hw, bounds.height - hh)
                 );
-                HashMap<T, Rectangle2D.Double> temp = objects;
-                objects = new HashMap<>();
-                for (Map.Entry<T, Rectangle2D.Double> entry : temp.entrySet()) {
-                    add(entry.getKey(), entry.getValue());
+                int n = count;
+                Entry<?>[] temp = Arrays.copyOf(objects, n);
+                Arrays.fill(objects, 0, n, null);
+                count = 0;
+                for (int i = 0; i < n; i++) {
+                    @SuppressWarnings("unchecked")
+                    Entry<T> entry = (Entry<T>) temp[i];
+                    add(entry);
                 }
             }
         }
 
-        public void join() {
-            if (!isLeaf()) {
-                northWest.join();
-                northEast.join();
-                southWest.join();
-                southEast.join();
-                objects.putAll(northWest.objects);
-                objects.putAll(northEast.objects);
-                objects.putAll(southWest.objects);
-                objects.putAll(southEast.objects);
-                northWest = null;
-                northEast = null;
-                southWest = null;
-                southEast = null;
+        /**
+         * Adds the entry to the result, unless the current query has already
+         * found it in another node.
+         */
+        private void found(Entry<T> entry, ZOrderBuffer result) {
+            if (entry.queryNumber != queryNumber) {
+                entry.queryNumber = queryNumber;
+                result.add(entry.object, entry.zOrder);
             }
         }
 
-        public void findContains(Point2D.Double p, HashSet<T> result) {
-            if (bounds.contains(p)) {
-                for (Map.Entry<T, Rectangle2D.Double> entry : objects.entrySet()) {
-                    if (entry.getValue().contains(p)) {
-                        result.add(entry.getKey());
+        public void findContains(double px, double py, ZOrderBuffer result) {
+            // The outside node has empty bounds and is searched exhaustively
+            if (this == outside || bounds.contains(px, py)) {
+                double[] c = coords;
+                for (int i = 0, j = 0; i < count; i++, j += 4) {
+                    // Same as Rectangle2D.contains(px, py)
+                    if (px >= c[j] && py >= c[j + 1]
+                            && px < c[j] + c[j + 2] && py < c[j + 1] + c[j + 3]) {
+                        found(object(i), result);
                     }
                 }
                 if (!isLeaf()) {
-                    northWest.findContains(p, result);
-                    northEast.findContains(p, result);
-                    southWest.findContains(p, result);
-                    southEast.findContains(p, result);
+                    northWest.findContains(px, py, result);
+                    northEast.findContains(px, py, result);
+                    southWest.findContains(px, py, result);
+                    southEast.findContains(px, py, result);
                 }
             }
         }
 
-        public void findIntersects(Rectangle2D.Double r, HashSet<T> result) {
-            if (bounds.intersects(r)) {
-                for (Map.Entry<T, Rectangle2D.Double> entry : objects.entrySet()) {
-                    if (entry.getValue().intersects(r)) {
-                        result.add(entry.getKey());
+        public void findIntersects(Rectangle2D.Double r, ZOrderBuffer result) {
+            if (this == outside || bounds.intersects(r)) {
+                double rx = r.x;
+                double ry = r.y;
+                double rmaxx = r.x + r.width;
+                double rmaxy = r.y + r.height;
+                double[] c = coords;
+                for (int i = 0, j = 0; i < count; i++, j += 4) {
+                    // Same as Rectangle2D.intersects(r) for a non-empty r
+                    double w = c[j + 2];
+                    double h = c[j + 3];
+                    if (w > 0 && h > 0
+                            && rmaxx > c[j] && rmaxy > c[j + 1]
+                            && rx < c[j] + w && ry < c[j + 1] + h) {
+                        found(object(i), result);
                     }
                 }
                 if (!isLeaf()) {
@@ -254,11 +522,21 @@ public class QuadTree<T> implements Serializable {
             }
         }
 
-        public void findInside(Rectangle2D.Double r, HashSet<T> result) {
-            if (bounds.intersects(r)) {
-                for (Map.Entry<T, Rectangle2D.Double> entry : objects.entrySet()) {
-                    if (r.contains(entry.getValue())) {
-                        result.add(entry.getKey());
+        public void findInside(Rectangle2D.Double r, ZOrderBuffer result) {
+            if (this == outside || bounds.intersects(r)) {
+                double rx = r.x;
+                double ry = r.y;
+                double rmaxx = r.x + r.width;
+                double rmaxy = r.y + r.height;
+                double[] c = coords;
+                for (int i = 0, j = 0; i < count; i++, j += 4) {
+                    // Same as r.contains(bounds) for a non-empty r
+                    double w = c[j + 2];
+                    double h = c[j + 3];
+                    if (w > 0 && h > 0
+                            && c[j] >= rx && c[j + 1] >= ry
+                            && c[j] + w <= rmaxx && c[j + 1] + h <= rmaxy) {
+                        found(object(i), result);
                     }
                 }
                 if (!isLeaf()) {
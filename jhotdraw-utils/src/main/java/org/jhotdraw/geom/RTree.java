@@ -0,0 +1,656 @@
+/*
+ * @(#)RTree.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.geom;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An RTree allows to quickly find an object on a two-dimensional space.
+ * <p>
+ * RTree groups the bounds of the objects into a balanced tree of bounding
+ * boxes. Unlike {@link QuadTree}, the tree does not need to know the extent of
+ * the space in advance, and each object is stored exactly once.
+ * <p>
+ * The tree is built with the Sort-Tile-Recursive (STR) algorithm when many
+ * objects are added at once with {@link #addAll}, and maintained
+ * incrementally when objects are added or removed one by one. Objects are
+ * removed without searching the tree, because each entry knows its leaf.
+ * <p>
+ * The queries collect their results into a reusable buffer, so that the
+ * queries which take a visitor or a result list do not allocate memory in
+ * steady state.
+ *
+ * @version $Id$
+ */
+public class RTree<T> implements SpatialIndex<T>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final Comparator<Box> CENTER_X_COMPARATOR
+            = (b1, b2) -> Double.compare(b1.minX + b1.maxX, b2.minX + b2.maxX);
+    private static final Comparator<Box> CENTER_Y_COMPARATOR
+            = (b1, b2) -> Double.compare(b1.minY + b1.maxY, b2.minY + b2.maxY);
+    private final int maxEntries;
+    private final int minEntries;
+    private HashMap<T, Entry<T>> entries = new HashMap<>();
+    private Node<T> root;
+    private transient ZOrderBuffer buffer;
+
+    /**
+     * Creates a new instance with a node capacity of 16.
+     */
+    public RTree() {
+        this(16);
+    }
+
+    /**
+     * Creates a new instance with the specified node capacity.
+     *
+     * @param maxEntries the maximal number of children of a node, must be at
+     * least 4.
+     */
+    public RTree(int maxEntries) {
+        if (maxEntries < 4) {
+            throw new IllegalArgumentException("maxEntries must be at least 4, but was " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.minEntries = Math.max(2, maxEntries * 2 / 5);
+        root = new Node<>(true, maxEntries);
+    }
+
+    @Override
+    public void add(T o, Rectangle2D.Double bounds) {
+        add(o, bounds, 0d);
+    }
+
+    @Override
+    public void add(T o, Rectangle2D.Double bounds, double zOrder) {
+        remove(o);
+        Entry<T> entry = new Entry<>(o, bounds, zOrder);
+        entries.put(o, entry);
+        insert(entry);
+    }
+
+    /**
+     * If the tree is empty, or if at least as many objects are added as the
+     * tree already contains, the tree is rebuilt with the STR algorithm.
+     * Otherwise the objects are inserted one by one.
+     */
+    @Override
+    public void addAll(List<? extends T> objects, List<Rectangle2D.Double> bounds, double[] zOrders) {
+        int n = objects.size();
+        if (n == 0) {
+            return;
+        }
+        ArrayList<Entry<T>> added = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            T o = objects.get(i);
+            remove(o);
+            Entry<T> entry = new Entry<>(o, bounds.get(i), zOrders[i]);
+            entries.put(o, entry);
+            added.add(entry);
+        }
+        if (n >= entries.size() - n) {
+            root = bulkLoad(new ArrayList<Box>(entries.values()));
+        } else {
+            for (Entry<T> entry : added) {
+                insert(entry);
+            }
+        }
+    }
+
+    @Override
+    public void remove(T o) {
+        Entry<T> entry = entries.remove(o);
+        if (entry != null) {
+            Node<T> leaf = entry.leaf;
+            leaf.removeChild(entry);
+            entry.leaf = null;
+            condense(leaf);
+        }
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        root = new Node<>(true, maxEntries);
+    }
+
+    @Override
+    public boolean contains(T o) {
+        return entries.containsKey(o);
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public double getZOrder(T o) {
+        Entry<T> entry = entries.get(o);
+        return (entry == null) ? Double.NaN : entry.zOrder;
+    }
+
+    @Override
+    public void setZOrder(T o, double zOrder) {
+        Entry<T> entry = entries.get(o);
+        if (entry != null) {
+            entry.zOrder = zOrder;
+        }
+    }
+
+    @Override
+    public Collection<T> findContains(Point2D.Double p) {
+        ArrayList<T> result = new ArrayList<>();
+        findContainsBuffer(p).drainTo(result);
+        return result;
+    }
+
+    @Override
+    public void findContains(Point2D.Double p, Consumer<? super T> visitor) {
+        findContainsBuffer(p).drainTo(visitor);
+    }
+
+    @Override
+    public List<T> findContainsInZOrder(Point2D.Double p) {
+        ArrayList<T> result = new ArrayList<>();
+        findContainsInZOrder(p, result);
+        return result;
+    }
+
+    @Override
+    public void findContainsInZOrder(Point2D.Double p, List<? super T> result) {
+        ZOrderBuffer found = findContainsBuffer(p);
+        found.sort();
+        found.drainTo(result);
+    }
+
+    @Override
+    public Collection<T> findIntersects(Rectangle2D r) {
+        return findIntersects(new Rectangle2D.Double(r.getX(), r.getY(), r.getWidth(), r.getHeight()));
+    }
+
+    @Override
+    public Collection<T> findIntersects(Rectangle2D.Double r) {
+        ArrayList<T> result = new ArrayList<>();
+        findIntersectsBuffer(r).drainTo(result);
+        return result;
+    }
+
+    @Override
+    public void findIntersects(Rectangle2D.Double r, Consumer<? super T> visitor) {
+        findIntersectsBuffer(r).drainTo(visitor);
+    }
+
+    @Override
+    public List<T> findIntersectsInZOrder(Rectangle2D r) {
+        ArrayList<T> result = new ArrayList<>();
+        findIntersectsInZOrder(new Rectangle2D.Double(r.getX(), r.getY(), r.getWidth(), r.getHeight()), result);
+        return result;
+    }
+
+    @Override
+    public void findIntersectsInZOrder(Rectangle2D.Double r, List<? super T> result) {
+        ZOrderBuffer found = findIntersectsBuffer(r);
+        found.sort();
+        found.drainTo(result);
+    }
+
+    @Override
+    public Collection<T> findInside(Rectangle2D.Double r) {
+        ArrayList<T> result = new ArrayList<>();
+        findInsideBuffer(r).drainTo(result);
+        return result;
+    }
+
+    @Override
+    public void findInside(Rectangle2D.Double r, Consumer<? super T> visitor) {
+        findInsideBuffer(r).drainTo(visitor);
+    }
+
+    @Override
+    public RTree<T> createEmpty() {
+        return new RTree<>(maxEntries);
+    }
+
+    /**
+     * Returns the height of the tree. A tree which consists only of a leaf
+     * has height 1.
+     */
+    public int getHeight() {
+        int height = 1;
+        for (Node<T> node = root; !node.leaf; node = node.childNode(0)) {
+            height++;
+        }
+        return height;
+    }
+
+    private ZOrderBuffer findContainsBuffer(Point2D.Double p) {
+        ZOrderBuffer found = beginQuery();
+        findContains(root, p, found);
+        return found;
+    }
+
+    private ZOrderBuffer findIntersectsBuffer(Rectangle2D.Double r) {
+        ZOrderBuffer found = beginQuery();
+        findIntersects(root, r, found);
+        return found;
+    }
+
+    private ZOrderBuffer findInsideBuffer(Rectangle2D.Double r) {
+        ZOrderBuffer found = beginQuery();
+        findInside(root, r, found);
+        return found;
+    }
+
+    private ZOrderBuffer beginQuery() {
+        ZOrderBuffer found = ZOrderBuffer.acquire(buffer);
+        if (buffer == null) {
+            buffer = found;
+        }
+        return found;
+    }
+
+    private void findContains(Node<T> node, Point2D.Double p, ZOrderBuffer found) {
+        if (node.leaf) {
+            for (int i = 0; i < node.count; i++) {
+                Entry<T> entry = node.childEntry(i);
+                if (entry.bounds.contains(p)) {
+                    found.add(entry.object, entry.zOrder);
+                }
+            }
+        } else {
+            for (int i = 0; i < node.count; i++) {
+                Node<T> child = node.childNode(i);
+                if (child.containsPoint(p.x, p.y)) {
+                    findContains(child, p, found);
+                }
+            }
+        }
+    }
+
+    private void findIntersects(Node<T> node, Rectangle2D.Double r, ZOrderBuffer found) {
+        if (node.leaf) {
+            for (int i = 0; i < node.count; i++) {
+                Entry<T> entry = node.childEntry(i);
+                if (entry.bounds.intersects(r)) {
+                    found.add(entry.object, entry.zOrder);
+                }
+            }
+        } else {
+            for (int i = 0; i < node.count; i++) {
+                Node<T> child = node.childNode(i);
+                if (child.intersects(r)) {
+                    findIntersects(child, r, found);
+                }
+            }
+        }
+    }
+
+    private void findInside(Node<T> node, Rectangle2D.Double r, ZOrderBuffer found) {
+        if (node.leaf) {
+            for (int i = 0; i < node.count; i++) {
+                Entry<T> entry = node.childEntry(i);
+                if (r.contains(entry.bounds)) {
+                    found.add(entry.object, entry.zOrder);
+                }
+            }
+        } else {
+            for (int i = 0; i < node.count; i++) {
+                Node<T> child = node.childNode(i);
+                if (child.intersects(r)) {
+                    findInside(child, r, found);
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts an entry into the leaf which needs the least enlargement, and
+     * splits the nodes on the path to the root if they overflow.
+     */
+    private void insert(Entry<T> entry) {
+        Node<T> node = root;
+        while (!node.leaf) {
+            node.include(entry);
+            node = node.childNode(chooseSubtree(node, entry));
+        }
+        node.addChild(entry);
+        while (node != null && node.count > maxEntries) {
+            Node<T> sibling = split(node);
+            Node<T> parent = node.parent;
+            if (parent == null) {
+                root = new Node<>(false, maxEntries);
+                root.addChild(node);
+                root.addChild(sibling);
+            } else {
+                parent.addChild(sibling);
+            }
+            node = parent;
+        }
+    }
+
+    /**
+     * Returns the index of the child of the node which needs the least
+     * enlargement to include the specified box. Resolves ties by choosing the
+     * child with the smallest area.
+     */
+    private int chooseSubtree(Node<T> node, Box box) {
+        int best = 0;
+        double bestEnlargement = Double.POSITIVE_INFINITY;
+        double bestArea = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < node.count; i++) {
+            Box child = node.children[i];
+            double area = child.area();
+            double enlargement = (Math.max(child.maxX, box.maxX) - Math.min(child.minX, box.minX))
+                    * (Math.max(child.maxY, box.maxY) - Math.min(child.minY, box.minY)) - area;
+            if (enlargement < bestEnlargement
+                    || enlargement == bestEnlargement && area < bestArea) {
+                best = i;
+                bestEnlargement = enlargement;
+                bestArea = area;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Splits an overflowing node. The children are sorted along the axis and
+     * split at the position which yields the least overlap between the two
+     * halves, and then the least total area.
+     *
+     * @return the new sibling which holds the second half of the children.
+     */
+    private Node<T> split(Node<T> node) {
+        Box[] children = Arrays.copyOf(node.children, node.count);
+        int n = children.length;
+        Box[] bestOrder = null;
+        int bestSplit = 0;
+        double bestOverlap = Double.POSITIVE_INFINITY;
+        double bestArea = Double.POSITIVE_INFINITY;
+        Box[] lower = new Box[n];
+        Box[] upper = new Box[n];
+        for (Comparator<Box> axis : Arrays.asList(CENTER_X_COMPARATOR, CENTER_Y_COMPARATOR)) {
+            Box[] order = children.clone();
+            Arrays.sort(order, axis);
+            for (int i = 0; i < n; i++) {
+                lower[i] = new Box(order[i]);
+                if (i > 0) {
+                    lower[i].include(lower[i - 1]);
+                }
+            }
+            for (int i = n - 1; i >= 0; i--) {
+                upper[i] = new Box(order[i]);
+                if (i < n - 1) {
+                    upper[i].include(upper[i + 1]);
+                }
+            }
+            for (int k = minEntries; k <= n - minEntries; k++) {
+                Box a = lower[k - 1];
+                Box b = upper[k];
+                double overlap = a.overlap(b);
+                double area = a.area() + b.area();
+                if (overlap < bestOverlap
+                        || overlap == bestOverlap && area < bestArea) {
+                    bestOrder = order;
+                    bestSplit = k;
+                    bestOverlap = overlap;
+                    bestArea = area;
+                }
+            }
+        }
+        Node<T> sibling = new Node<>(node.leaf, maxEntries);
+        node.clearChildren();
+        for (int i = 0; i < n; i++) {
+            if (i < bestSplit) {
+                node.addChild(bestOrder[i]);
+            } else {
+                sibling.addChild(bestOrder[i]);
+            }
+        }
+        return sibling;
+    }
+
+    /**
+     * Walks up from a leaf from which an entry has been removed. Dissolves
+     * underfull nodes and reinserts their entries, and shrinks the bounds of
+     * the remaining nodes.
+     */
+    private void condense(Node<T> leaf) {
+        ArrayList<Entry<T>> orphans = new ArrayList<>();
+        Node<T> node = leaf;
+        while (node.parent != null) {
+            Node<T> parent = node.parent;
+            if (node.count < minEntries) {
+                parent.removeChild(node);
+                collectEntries(node, orphans);
+            } else {
+                node.recomputeBounds();
+            }
+            node = parent;
+        }
+        root.recomputeBounds();
+        while (!root.leaf && root.count == 1) {
+            root = root.childNode(0);
+            root.parent = null;
+        }
+        if (!root.leaf && root.count == 0) {
+            root = new Node<>(true, maxEntries);
+        }
+        for (Entry<T> orphan : orphans) {
+            insert(orphan);
+        }
+    }
+
+    private void collectEntries(Node<T> node, ArrayList<Entry<T>> result) {
+        for (int i = 0; i < node.count; i++) {
+            if (node.leaf) {
+                Entry<T> entry = node.childEntry(i);
+                entry.leaf = null;
+                result.add(entry);
+            } else {
+                collectEntries(node.childNode(i), result);
+            }
+        }
+    }
+
+    /**
+     * Builds a tree from the specified entries with the Sort-Tile-Recursive
+     * algorithm.
+     */
+    private Node<T> bulkLoad(List<Box> items) {
+        if (items.isEmpty()) {
+            return new Node<>(true, maxEntries);
+        }
+        boolean leaf = true;
+        while (true) {
+            List<Box> nodes = packLevel(items, leaf);
+            if (nodes.size() == 1) {
+                @SuppressWarnings("unchecked")
+                Node<T> newRoot = (Node<T>) nodes.get(0);
+                newRoot.parent = null;
+                return newRoot;
+            }
+            items = nodes;
+            leaf = false;
+        }
+    }
+
+    /**
+     * Packs the items into nodes. The items are sorted into vertical slices
+     * by their x-center, and each slice is sorted by the y-center and cut
+     * into nodes.
+     */
+    private List<Box> packLevel(List<Box> items, boolean leaf) {
+        int n = items.size();
+        int nodeCount = (n + maxEntries - 1) / maxEntries;
+        int sliceCount = (int) Math.ceil(Math.sqrt(nodeCount));
+        int sliceSize = sliceCount * maxEntries;
+        items.sort(CENTER_X_COMPARATOR);
+        ArrayList<Box> nodes = new ArrayList<>(nodeCount);
+        for (int sliceStart = 0; sliceStart < n; sliceStart += sliceSize) {
+            List<Box> slice = items.subList(sliceStart, Math.min(n, sliceStart + sliceSize));
+            slice.sort(CENTER_Y_COMPARATOR);
+            for (int nodeStart = 0; nodeStart < slice.size(); nodeStart += maxEntries) {
+                Node<T> node = new Node<>(leaf, maxEntries);
+                for (Box item : slice.subList(nodeStart, Math.min(slice.size(), nodeStart + maxEntries))) {
+                    node.addChild(item);
+                }
+                nodes.add(node);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * An axis aligned bounding box.
+     */
+    private static class Box implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        protected double minX = Double.POSITIVE_INFINITY;
+        protected double minY = Double.POSITIVE_INFINITY;
+        protected double maxX = Double.NEGATIVE_INFINITY;
+        protected double maxY = Double.NEGATIVE_INFINITY;
+
+        public Box() {
+        }
+
+        public Box(Box that) {
+            include(that);
+        }
+
+        public void include(Box that) {
+            minX = Math.min(minX, that.minX);
+            minY = Math.min(minY, that.minY);
+            maxX = Math.max(maxX, that.maxX);
+            maxY = Math.max(maxY, that.maxY);
+        }
+
+        public double area() {
+            return (maxX - minX) * (maxY - minY);
+        }
+
+        public double overlap(Box that) {
+            double w = Math.min(maxX, that.maxX) - Math.max(minX, that.minX);
+            double h = Math.min(maxY, that.maxY) - Math.max(minY, that.minY);
+            return (w > 0 && h > 0) ? w * h : 0d;
+        }
+
+        public boolean containsPoint(double x, double y) {
+            return x >= minX && x <= maxX && y >= minY && y <= maxY;
+        }
+
+        public boolean intersects(Rectangle2D.Double r) {
+            return r.x <= maxX && r.x + r.width >= minX
+                    && r.y <= maxY && r.y + r.height >= minY;
+        }
+    }
+
+    /**
+     * Holds an object together with its bounds and its z-order value.
+     */
+    private static class Entry<T> extends Box {
+
+        private static final long serialVersionUID = 1L;
+        private final T object;
+        private final Rectangle2D.Double bounds;
+        private double zOrder;
+        /**
+         * The leaf node which holds this entry.
+         */
+        private Node<T> leaf;
+
+        public Entry(T object, Rectangle2D.Double bounds, double zOrder) {
+            this.object = object;
+            this.bounds = (Rectangle2D.Double) bounds.clone();
+            this.zOrder = zOrder;
+            minX = Math.min(bounds.x, bounds.x + bounds.width);
+            minY = Math.min(bounds.y, bounds.y + bounds.height);
+            maxX = Math.max(bounds.x, bounds.x + bounds.width);
+            maxY = Math.max(bounds.y, bounds.y + bounds.height);
+        }
+    }
+
+    /**
+     * A node of the tree. The children of a leaf are entries, the children
+     * of the other nodes are nodes.
+     */
+    private static class Node<T> extends Box {
+
+        private static final long serialVersionUID = 1L;
+        private final boolean leaf;
+        private Node<T> parent;
+        /**
+         * Has room for one more child than allowed, so that a node can
+         * overflow before it is split.
+         */
+        private Box[] children;
+        private int count;
+
+        public Node(boolean leaf, int maxEntries) {
+            this.leaf = leaf;
+            this.children = new Box[maxEntries + 1];
+        }
+
+        @SuppressWarnings("unchecked")
+        public Entry<T> childEntry(int i) {
+            return (Entry<T>) children[i];
+        }
+
+        @SuppressWarnings("unchecked")
+        public Node<T> childNode(int i) {
+            return (Node<T>) children[i];
+        }
+
+        @SuppressWarnings("unchecked")
+        public void addChild(Box child) {
+            children[count++] = child;
+            if (leaf) {
+                ((Entry<T>) child).leaf = this;
+            } else {
+                ((Node<T>) child).parent = this;
+            }
+            include(child);
+        }
+
+        public void removeChild(Box child) {
+            for (int i = 0; i < count; i++) {
+                if (children[i] == child) {
+                    children[i] = children[--count];
+                    children[count] = null;
+                    return;
+                }
+            }
+        }
+
+        public void clearChildren() {
+            Arrays.fill(children, 0, count, null);
+            count = 0;
+            minX = minY = Double.POSITIVE_INFINITY;
+            maxX = maxY = Double.NEGATIVE_INFINITY;
+        }
+
+        public void recomputeBounds() {
+            minX = minY = Double.POSITIVE_INFINITY;
+            maxX = maxY = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < count; i++) {
+                include(children[i]);
+            }
+        }
+    }
+}
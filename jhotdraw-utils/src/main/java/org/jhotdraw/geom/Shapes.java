@@ -8,7 +8,6 @@
 package org.jhotdraw.geom;
 
 import java.awt.Shape;
-import java.awt.geom.AffineTransform;
 import java.awt.geom.FlatteningPathIterator;
 import java.awt.geom.PathIterator;
 import java.awt.geom.Point2D;
@@ -35,10 +34,14 @@ public class Shapes {
      * @param tolerance The tolerance for the test.
      */
     public static boolean outlineContains(Shape shape, Point2D.Double p, double tolerance) {
+        if (shape instanceof BezierPath) {
+            // A bezier path caches its flattened outline
+            return ((BezierPath) shape).outlineContains(p, tolerance);
+        }
         double[] coords = new double[6];
         double prevX = 0, prevY = 0;
         double moveX = 0, moveY = 0;
-        for (PathIterator i = new FlatteningPathIterator(shape.getPathIterator(new AffineTransform(), tolerance), tolerance); !i.isDone(); i.next()) {
+        for (PathIterator i = new FlatteningPathIterator(shape.getPathIterator(null, tolerance), tolerance); !i.isDone(); i.next()) {
             switch (i.currentSegment(coords)) {
                 case PathIterator.SEG_CLOSE:
                     if (Geom.lineContainsPoint(
@@ -0,0 +1,163 @@
+/*
+ * @(#)SpatialIndex.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.geom;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A SpatialIndex allows to quickly find objects on a two-dimensional space
+ * given a point or a rectangular region.
+ * <p>
+ * Each object is stored with its bounds and a z-order value. The
+ * {@code find...InZOrder} methods return their results sorted by ascending
+ * z-order value.
+ * <p>
+ * The query methods which take a visitor or a result list do not allocate
+ * memory in steady state. They are intended for queries which are made very
+ * often, such as hit tests on mouse moves. The visitor is called after the
+ * index has been searched; it may query the index again, but it must not
+ * change it.
+ * <p>
+ * Implementations:
+ * {@link QuadTree} subdivides the space into quadrants and is well suited
+ * for drawings which are built up figure by figure.
+ * {@link RTree} groups the objects into a balanced tree of bounding boxes
+ * and is well suited for large drawings which are loaded at once.
+ *
+ * @param <T> the type of the indexed objects
+ * @version $Id$
+ */
+public interface SpatialIndex<T> {
+
+    /**
+     * Adds an object with the specified bounds and a z-order value of 0.
+     * If the object is already in the index, its entry is replaced.
+     */
+    void add(T o, Rectangle2D.Double bounds);
+
+    /**
+     * Adds an object with the specified bounds and z-order value.
+     * If the object is already in the index, its entry is replaced.
+     */
+    void add(T o, Rectangle2D.Double bounds, double zOrder);
+
+    /**
+     * Adds all specified objects at once. The bounds and the z-order value of
+     * the object at index {@code i} are given by {@code bounds.get(i)} and
+     * {@code zOrders[i]}.
+     * <p>
+     * Implementations may use this to build a better structured index than by
+     * adding the objects one by one.
+     */
+    void addAll(List<? extends T> objects, List<Rectangle2D.Double> bounds, double[] zOrders);
+
+    /**
+     * Removes the object from the index. Does nothing if the object is not in
+     * the index.
+     */
+    void remove(T o);
+
+    /**
+     * Removes all objects from the index.
+     */
+    void clear();
+
+    /**
+     * Returns true if the index contains the specified object.
+     */
+    boolean contains(T o);
+
+    /**
+     * Returns the number of objects in the index.
+     */
+    int size();
+
+    /**
+     * Returns the z-order value of the specified object, or {@code Double.NaN}
+     * if the object is not in the index.
+     */
+    double getZOrder(T o);
+
+    /**
+     * Sets the z-order value of the specified object. Does nothing if the
+     * object is not in the index.
+     */
+    void setZOrder(T o, double zOrder);
+
+    /**
+     * Returns all objects whose bounds contain the specified point.
+     */
+    Collection<T> findContains(Point2D.Double p);
+
+    /**
+     * Returns all objects whose bounds contain the specified point, sorted by
+     * ascending z-order value.
+     */
+    List<T> findContainsInZOrder(Point2D.Double p);
+
+    /**
+     * Returns all objects whose bounds intersect the specified rectangle.
+     */
+    Collection<T> findIntersects(Rectangle2D r);
+
+    /**
+     * Returns all objects whose bounds intersect the specified rectangle.
+     */
+    Collection<T> findIntersects(Rectangle2D.Double r);
+
+    /**
+     * Returns all objects whose bounds intersect the specified rectangle,
+     * sorted by ascending z-order value.
+     */
+    List<T> findIntersectsInZOrder(Rectangle2D r);
+
+    /**
+     * Returns all objects whose bounds are inside the specified rectangle.
+     */
+    Collection<T> findInside(Rectangle2D.Double r);
+
+    /**
+     * Calls the visitor for each object whose bounds contain the specified
+     * point.
+     */
+    void findContains(Point2D.Double p, Consumer<? super T> visitor);
+
+    /**
+     * Appends all objects whose bounds contain the specified point to the
+     * result list, sorted by ascending z-order value.
+     */
+    void findContainsInZOrder(Point2D.Double p, List<? super T> result);
+
+    /**
+     * Calls the visitor for each object whose bounds intersect the specified
+     * rectangle.
+     */
+    void findIntersects(Rectangle2D.Double r, Consumer<? super T> visitor);
+
+    /**
+     * Appends all objects whose bounds intersect the specified rectangle to
+     * the result list, sorted by ascending z-order value.
+     */
+    void findIntersectsInZOrder(Rectangle2D.Double r, List<? super T> result);
+
+    /**
+     * Calls the visitor for each object whose bounds are inside the specified
+     * rectangle.
+     */
+    void findInside(Rectangle2D.Double r, Consumer<? super T> visitor);
+
+    /**
+     * Creates a new empty index of the same kind and with the same
+     * configuration as this one.
+     */
+    SpatialIndex<T> createEmpty();
+}
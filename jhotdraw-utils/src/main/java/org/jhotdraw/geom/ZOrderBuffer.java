@@ -0,0 +1,135 @@
+/*
+ * @(#)ZOrderBuffer.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.geom;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * A reusable buffer for the results of a query on a {@link SpatialIndex}.
+ * <p>
+ * Holds the found objects and their z-order values in arrays which only grow,
+ * so that a query does not allocate memory once the buffer has reached the
+ * size of the typical result set.
+ * <p>
+ * A spatial index keeps one buffer, and only allocates a new one if a query is
+ * made while the results of another query are still being delivered, for
+ * example, when a visitor queries the index again.
+ *
+ * @version $Id$
+ */
+class ZOrderBuffer {
+
+    private Object[] objects = new Object[16];
+    private double[] zOrders = new double[16];
+    private int size;
+    private boolean inUse;
+
+    /**
+     * Returns the specified buffer if it is not in use, or a new buffer
+     * otherwise. The returned buffer is empty and marked as in use.
+     */
+    static ZOrderBuffer acquire(ZOrderBuffer buffer) {
+        if (buffer == null || buffer.inUse) {
+            buffer = new ZOrderBuffer();
+        }
+        buffer.inUse = true;
+        return buffer;
+    }
+
+    /**
+     * Clears the buffer and marks it as no longer in use.
+     */
+    void release() {
+        Arrays.fill(objects, 0, size, null);
+        size = 0;
+        inUse = false;
+    }
+
+    void add(Object o, double zOrder) {
+        if (size == objects.length) {
+            objects = Arrays.copyOf(objects, size * 2);
+            zOrders = Arrays.copyOf(zOrders, size * 2);
+        }
+        objects[size] = o;
+        zOrders[size] = zOrder;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Sorts the buffer by ascending z-order value.
+     */
+    void sort() {
+        sort(0, size - 1);
+    }
+
+    private void sort(int low, int high) {
+        while (high - low > 16) {
+            double pivot = zOrders[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (zOrders[i] < pivot) {
+                    i++;
+                }
+                while (zOrders[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            // Recurse into the smaller half, loop over the larger one
+            if (j - low < high - i) {
+                sort(low, j);
+                low = i;
+            } else {
+                sort(i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && zOrders[j - 1] > zOrders[j]; j--) {
+                swap(j - 1, j);
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        Object o = objects[i];
+        objects[i] = objects[j];
+        objects[j] = o;
+        double z = zOrders[i];
+        zOrders[i] = zOrders[j];
+        zOrders[j] = z;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> void drainTo(Consumer<? super T> visitor) {
+        try {
+            for (int i = 0; i < size; i++) {
+                visitor.accept((T) objects[i]);
+            }
+        } finally {
+            release();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> void drainTo(Collection<? super T> result) {
+        for (int i = 0; i < size; i++) {
+            result.add((T) objects[i]);
+        }
+        release();
+    }
+}
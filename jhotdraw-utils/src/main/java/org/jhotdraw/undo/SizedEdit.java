@@ -0,0 +1,32 @@
+/*
+ * @(#)SizedEdit.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.undo;
+
+import javax.swing.undo.UndoableEdit;
+
+/**
+ * An {@code UndoableEdit} which can estimate how much memory it holds.
+ * <p>
+ * {@link UndoRedoManager} uses the estimate to limit the memory held by its
+ * undo history. Edits which do not implement this interface are assumed to
+ * hold {@link UndoRedoManager#DEFAULT_EDIT_SIZE} bytes.
+ *
+ * @version $Id$
+ */
+public interface SizedEdit extends UndoableEdit {
+
+    /**
+     * Returns an estimate of the number of bytes which are held by the edit,
+     * including the objects which are only kept alive by the edit, such as
+     * figures which have been removed from a drawing.
+     * <p>
+     * The estimate need not be exact, but it should grow with the amount of
+     * data which the edit keeps for undo and redo.
+     */
+    public long getEstimatedSize();
+}
@@ -17,6 +17,11 @@ import org.jhotdraw.util.*;
 /**
  * Same as javax.swing.UndoManager but provides actions for undo and
  * redo operations.
+ * <p>
+ * In addition to the limit on the number of edits, the manager can limit the
+ * memory held by its edits. The size of each edit is estimated when it is
+ * added, see {@link SizedEdit}. When the sum of the estimates exceeds the
+ * memory limit, the oldest edits are discarded.
  *
  * @author Werner Randelshofer
  * @version $Id$
@@ -44,6 +49,20 @@ public class UndoRedoManager extends UndoManager { //javax.swing.undo.UndoManage
      * this flag is true.
      */
     private boolean undoOrRedoInProgress;
+    /**
+     * The estimated size of an edit, which does not implement
+     * {@link SizedEdit}.
+     */
+    public static final long DEFAULT_EDIT_SIZE = 256;
+    /**
+     * The maximal sum of the estimated sizes of the edits, 0 if the memory
+     * held by the edits is not limited.
+     */
+    private long memoryLimit;
+    /**
+     * The estimated sizes of the edits in the {@code edits} vector.
+     */
+    private IdentityHashMap<UndoableEdit, Long> editSizes = new IdentityHashMap<>();
     /**
      * Sending this UndoableEdit event to the UndoRedoManager
      * disables the Undo and Redo functions of the manager.
@@ -143,11 +162,123 @@ public class UndoRedoManager extends UndoManager { //javax.swing.undo.UndoManage
         labels = ResourceBundleUtil.getBundle("org.jhotdraw.undo.Labels", l);
     }
 
+    /**
+     * Sets the maximal number of bytes which may be held by the edits. When
+     * the sum of the estimated sizes of the edits exceeds the limit, the
+     * oldest edits are discarded. The edit which will be undone next is
+     * never discarded for this reason.
+     *
+     * @param newValue The limit in bytes, 0 if the memory held by the edits
+     * is not limited.
+     */
+    public void setMemoryLimit(long newValue) {
+        if (newValue < 0) {
+            throw new IllegalArgumentException("memoryLimit: " + newValue);
+        }
+        long oldValue = memoryLimit;
+        synchronized (this) {
+            memoryLimit = newValue;
+            trimForMemoryLimit();
+        }
+        updateActions();
+        firePropertyChange("memoryLimit", oldValue, newValue);
+    }
+
+    /**
+     * Returns the maximal number of bytes which may be held by the edits, 0
+     * if the memory is not limited.
+     */
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * Returns the sum of the estimated sizes of the edits.
+     */
+    public synchronized long getEstimatedSize() {
+        long size = 0;
+        for (Long editSize : editSizes.values()) {
+            size += editSize;
+        }
+        return size;
+    }
+
+    /**
+     * Returns the estimated size of the specified edit.
+     */
+    public static long estimateSize(UndoableEdit edit) {
+        return (edit instanceof SizedEdit) ? ((SizedEdit) edit).getEstimatedSize() : DEFAULT_EDIT_SIZE;
+    }
+
+    /**
+     * Updates the estimated size of the last edit after {@code anEdit} has
+     * been added, and discards the oldest edits if the memory limit is
+     * exceeded.
+     */
+    private synchronized void updateEditSizes(UndoableEdit anEdit) {
+        if (edits.isEmpty()) {
+            editSizes.clear();
+            return;
+        }
+        UndoableEdit last = edits.lastElement();
+        if (last == anEdit || !editSizes.containsKey(last)) {
+            editSizes.put(last, estimateSize(last));
+        } else {
+            // The edit has been absorbed by the last edit
+            editSizes.put(last, editSizes.get(last) + estimateSize(anEdit));
+        }
+        if (editSizes.size() != edits.size()) {
+            // An edit has been replaced
+            IdentityHashMap<UndoableEdit, Long> sizes = new IdentityHashMap<>(edits.size());
+            for (UndoableEdit edit : edits) {
+                Long size = editSizes.get(edit);
+                sizes.put(edit, (size == null) ? estimateSize(edit) : size);
+            }
+            editSizes = sizes;
+        }
+        trimForMemoryLimit();
+    }
+
+    /**
+     * Discards the oldest edits, until the estimated size of the edits is
+     * within the memory limit. The edit which will be undone next, and the
+     * edits which can be redone are kept.
+     */
+    private synchronized void trimForMemoryLimit() {
+        if (memoryLimit == 0) {
+            return;
+        }
+        long size = getEstimatedSize();
+        int maxCount = edits.indexOf(editToBeUndone());
+        int count = 0;
+        while (size > memoryLimit && count < maxCount) {
+            size -= editSizes.get(edits.get(count));
+            count++;
+        }
+        if (count > 0) {
+            trimEdits(0, count - 1);
+        }
+    }
+
+    /**
+     * Removes the estimated sizes of the removed edits.
+     */
+    @Override
+    protected void trimEdits(int from, int to) {
+        for (int i = from; i <= to; i++) {
+            editSizes.remove(edits.get(i));
+        }
+        super.trimEdits(from, to);
+    }
+
     /**
      * Discards all edits.
      */
     @Override
     public void discardAllEdits() {
+        synchronized (this) {
+            editSizes.clear();
+        }
         super.discardAllEdits();
         updateActions();
         setHasSignificantEdits(false);
@@ -195,6 +326,9 @@ public class UndoRedoManager extends UndoManager { //javax.swing.undo.UndoManage
             return true;
         }
         boolean success = super.addEdit(anEdit);
+        if (success) {
+            updateEditSizes(anEdit);
+        }
         updateActions();
         if (success && anEdit.isSignificant() && editToBeUndone() == anEdit) {
             setHasSignificantEdits(true);
@@ -18,9 +18,15 @@
  */
 package org.jhotdraw.geom;
 
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D;
 import java.awt.geom.PathIterator;
 import java.awt.geom.Point2D;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
 import static org.testng.Assert.*;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.AfterMethod;
@@ -135,4 +141,127 @@ public class BezierPathNGTest {
             pathIterator.next();
         }
     }
+
+    private static BezierPath createCurvedPath() {
+        BezierPath path = new BezierPath();
+        path.moveTo(10, 10);
+        path.lineTo(50, 12);
+        path.quadTo(70, 40, 60, 60);
+        path.curveTo(40, 80, 20, 70, 15, 50);
+        path.arcTo(10, 20, 30, false, true, 5, 30);
+        path.setClosed(true);
+        return path;
+    }
+
+    private static void assertSameSegments(BezierPath actual, BezierPath expected) {
+        PathIterator a = actual.getPathIterator(null);
+        PathIterator e = expected.getPathIterator(null);
+        double[] ac = new double[6];
+        double[] ec = new double[6];
+        for (; !e.isDone(); a.next(), e.next()) {
+            assertFalse(a.isDone());
+            Arrays.fill(ac, 0);
+            Arrays.fill(ec, 0);
+            assertEquals(a.currentSegment(ac), e.currentSegment(ec));
+            assertEquals(ac, ec);
+        }
+        assertTrue(a.isDone());
+    }
+
+    @Test
+    public void testPackedPathBehavesLikeNodePath() {
+        BezierPath packed = createCurvedPath();
+        BezierPath nodes = createCurvedPath();
+        // Requesting a Node converts the path to Node objects
+        nodes.get(0);
+
+        assertSameSegments(packed, nodes);
+        assertEquals(packed.getBounds2D(), nodes.getBounds2D());
+        assertEquals(packed.toPolygonArray(), nodes.toPolygonArray());
+        assertEquals(packed.getCenter(), nodes.getCenter());
+        assertEquals(packed.indexOfOutermostNode(), nodes.indexOfOutermostNode());
+        assertEquals(packed.getLengthOfPath(1), nodes.getLengthOfPath(1));
+        for (int i = 0; i < packed.size(); i++) {
+            assertEquals(packed.getNodeMask(i), nodes.get(i).mask);
+            assertEquals(packed.isKeepColinear(i), nodes.get(i).keepColinear);
+        }
+
+        AffineTransform tx = AffineTransform.getRotateInstance(0.5, 20, 30);
+        packed.transform(tx);
+        nodes.transform(tx);
+        assertSameSegments(packed, nodes);
+        assertEquals(packed.splitSegment(new Point2D.Double(30, 11), 2),
+                nodes.splitSegment(new Point2D.Double(30, 11), 2));
+        assertSameSegments(packed, nodes);
+        assertEquals(packed, nodes);
+    }
+
+    @Test
+    public void testListMethodsKeepPathPacked() {
+        BezierPath path = createCurvedPath();
+        BezierPath nodes = createCurvedPath();
+        nodes.get(0);
+        assertFalse(nodes.isPacked());
+
+        assertTrue(path.equals(nodes));
+        assertTrue(nodes.equals(path));
+        assertTrue(path.equals(path.clone()));
+        assertTrue(path.equals(new java.util.ArrayList<>(nodes)));
+        assertEquals(path.hashCode(), nodes.hashCode());
+        for (int i = 0; i < nodes.size(); i++) {
+            assertTrue(path.contains(nodes.get(i)));
+            assertEquals(path.indexOf(nodes.get(i)), nodes.indexOf(nodes.get(i)));
+            assertEquals(path.lastIndexOf(nodes.get(i)), nodes.lastIndexOf(nodes.get(i)));
+        }
+        assertFalse(path.contains(new BezierPath.Node(-1, -1)));
+        assertEquals(path.indexOf("x"), -1);
+        // Packed nodes have no identity hash code
+        assertEquals(path.toString(), nodes.toString().replaceAll("@[0-9a-f]+", ""));
+        assertTrue(path.isPacked());
+
+        BezierPath changed = path.clone();
+        changed.set(1, 0, new Point2D.Double(100, 100));
+        assertFalse(path.equals(changed));
+        assertFalse(nodes.equals(changed));
+        assertTrue(path.isPacked());
+        assertTrue(changed.isPacked());
+    }
+
+    @Test
+    public void testCloneIsCopyOnWrite() {
+        BezierPath path = createCurvedPath();
+        BezierPath copy = path.clone();
+        assertSameSegments(copy, path);
+
+        copy.set(1, 0, new Point2D.Double(100, 100));
+        assertEquals(path.get(1, 0), new Point2D.Double(50, 12));
+        assertEquals(copy.get(1, 0), new Point2D.Double(100, 100));
+
+        // Changing a Node of the original does not change the copy
+        BezierPath copy2 = path.clone();
+        path.get(2).moveBy(5, 5);
+        assertEquals(copy2.get(2, 0), new Point2D.Double(60, 60));
+
+        // A copy of a path with Node objects is independent of it as well
+        BezierPath copy3 = path.clone();
+        path.get(2).moveBy(5, 5);
+        assertEquals(copy3.get(2, 0), new Point2D.Double(65, 65));
+        assertEquals(path.get(2, 0), new Point2D.Double(70, 70));
+    }
+
+    @Test
+    public void testSerializationKeepsNodes() throws Exception {
+        BezierPath path = createCurvedPath();
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buf)) {
+            out.writeObject(path);
+        }
+        BezierPath read;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray()))) {
+            read = (BezierPath) in.readObject();
+        }
+        assertSameSegments(read, path);
+        read.lineTo(1, 2);
+        assertEquals(read.size(), path.size() + 1);
+    }
 }
@@ -0,0 +1,78 @@
+/*
+ * @(#)BezierPathQueryBenchmark.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.geom;
+
+import java.awt.geom.Point2D;
+import java.util.Random;
+
+/**
+ * Measures the time of the outline queries of an unchanged
+ * {@link BezierPath}, as they are performed by hit tests and label locators.
+ * <p>
+ * This is not a unit test. Run it with the node counts as arguments, for
+ * example {@code 10000}.
+ */
+public class BezierPathQueryBenchmark {
+
+    private static final int QUERIES = 1000;
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            args = new String[]{"10000"};
+        }
+        for (String arg : args) {
+            run(Integer.parseInt(arg));
+        }
+    }
+
+    private static void run(int nodeCount) {
+        Random rnd = new Random(0);
+        BezierPath path = new BezierPath();
+        double x = 0, y = 500;
+        for (int i = 0; i < nodeCount; i++) {
+            x += rnd.nextDouble() * 2;
+            y += rnd.nextDouble() * 20 - 10;
+            path.add(new BezierPath.Node(x, y));
+        }
+        Point2D.Double[] points = new Point2D.Double[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            // Half of the points are on the path
+            Point2D.Double p = path.get(rnd.nextInt(nodeCount)).getControlPoint(0);
+            points[i] = (i % 2 == 0) ? p : new Point2D.Double(p.x, p.y + 50);
+        }
+        long sum = 0;
+        for (int warmUp = 0; warmUp < 2; warmUp++) {
+            long start = System.nanoTime();
+            for (Point2D.Double p : points) {
+                sum += path.outlineContains(p, 2) ? 1 : 0;
+            }
+            long outline = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (Point2D.Double p : points) {
+                sum += path.findSegment(p, 2);
+            }
+            long segment = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (Point2D.Double p : points) {
+                sum += (long) path.getRelativePositionOnPath(p, 2);
+            }
+            long relative = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                sum += (long) path.getPointOnPath(i / (double) QUERIES, 2).x;
+            }
+            long pointOnPath = System.nanoTime() - start;
+            if (warmUp == 1) {
+                System.out.printf("%,7d nodes, us per query: outlineContains %,8.1f, findSegment %,8.1f, "
+                        + "getRelativePositionOnPath %,8.1f, getPointOnPath %,8.1f (%d)%n",
+                        nodeCount, outline / 1000d / QUERIES, segment / 1000d / QUERIES,
+                        relative / 1000d / QUERIES, pointOnPath / 1000d / QUERIES, sum);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.geom;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link DirtyRegion}.
+ */
+public class DirtyRegionNGTest {
+
+    public DirtyRegionNGTest() {
+    }
+
+    @Test
+    public void testDistantRectanglesAreNotMerged() {
+        DirtyRegion region = new DirtyRegion();
+        region.add(new Rectangle(0, 0, 10, 10));
+        region.add(new Rectangle(990, 990, 10, 10));
+        assertEquals(region.getRectangles().size(), 2);
+        assertEquals(region.getArea(), 200);
+        assertEquals(region.getBounds(), new Rectangle(0, 0, 1000, 1000));
+    }
+
+    @Test
+    public void testRegionIsDisjointAndCoversAddedRectangles() {
+        Random rnd = new Random(1);
+        DirtyRegion region = new DirtyRegion(4, 1.25);
+        List<Rectangle> added = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Rectangle r = new Rectangle(rnd.nextInt(1000), rnd.nextInt(1000), 1 + rnd.nextInt(60), 1 + rnd.nextInt(60));
+            region.add(r);
+            added.add(r);
+            List<Rectangle> rects = region.getRectangles();
+            assertTrue(rects.size() <= 4);
+            for (int j = 0; j < rects.size(); j++) {
+                for (int k = j + 1; k < rects.size(); k++) {
+                    assertFalse(rects.get(j).intersects(rects.get(k)));
+                }
+            }
+        }
+        for (Rectangle r : added) {
+            boolean covered = false;
+            for (Rectangle rect : region.getRectangles()) {
+                covered |= rect.contains(r);
+            }
+            assertTrue(covered, r.toString());
+        }
+    }
+}
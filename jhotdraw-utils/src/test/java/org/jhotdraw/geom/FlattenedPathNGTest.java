@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.geom;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.util.Random;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that {@link FlattenedPath} finds the same points on the outline as
+ * {@link Shapes#outlineContains}, and the queries of {@link BezierPath}
+ * which use it.
+ */
+public class FlattenedPathNGTest {
+
+    @Test
+    public void testOutlineContainsLikeShapes() {
+        Random rnd = new Random(0);
+        for (int run = 0; run < 20; run++) {
+            BezierPath path = createRandomPath(rnd, 2 + rnd.nextInt(60));
+            path.setClosed(run % 2 == 0);
+            double tolerance = 1 + rnd.nextInt(4);
+            FlattenedPath flattened = new FlattenedPath(path, tolerance);
+            for (int i = 0; i < 2000; i++) {
+                Point2D.Double p = new Point2D.Double(rnd.nextDouble() * 220 - 10, rnd.nextDouble() * 220 - 10);
+                assertEquals(flattened.outlineContains(p.x, p.y, tolerance), Shapes.outlineContains(path.toGeneralPath(), p, tolerance), "run " + run + " " + p);
+            }
+        }
+    }
+
+    @Test
+    public void testFindSegmentFindsFirstNodeSegment() {
+        Random rnd = new Random(1);
+        for (int run = 0; run < 20; run++) {
+            BezierPath path = createRandomPath(rnd, 2 + rnd.nextInt(40));
+            path.setClosed(run % 2 == 0);
+            for (int i = 0; i < 1000; i++) {
+                Point2D.Double p = new Point2D.Double(rnd.nextDouble() * 220 - 10, rnd.nextDouble() * 220 - 10);
+                assertEquals(path.findSegment(p, 3), findSegmentOfNodes(path, p, 3), "run " + run + " " + p);
+            }
+        }
+    }
+
+    /**
+     * Tests each segment between two nodes on its own.
+     */
+    private static int findSegmentOfNodes(BezierPath path, Point2D.Double p, double tolerance) {
+        int n = path.isClosed() ? path.size() : path.size() - 1;
+        for (int i = 0; i < n; i++) {
+            BezierPath segment = new BezierPath();
+            segment.add((BezierPath.Node) path.get(i).clone());
+            segment.add((BezierPath.Node) path.get((i + 1) % path.size()).clone());
+            if (Shapes.outlineContains(segment.toGeneralPath(), p, tolerance)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static BezierPath createRandomPath(Random rnd, int nodeCount) {
+        BezierPath path = new BezierPath();
+        for (int i = 0; i < nodeCount; i++) {
+            double x = rnd.nextDouble() * 200, y = rnd.nextDouble() * 200;
+            if (rnd.nextBoolean()) {
+                path.add(new BezierPath.Node(x, y));
+            } else {
+                path.add(new BezierPath.Node(BezierPath.C1C2_MASK, x, y, x - 10, y + 5, x + 10, y - 5));
+            }
+        }
+        return path;
+    }
+
+    @Test
+    public void testPositionsOnPolyline() {
+        BezierPath path = new BezierPath();
+        path.add(new BezierPath.Node(10, 10));
+        path.add(new BezierPath.Node(20, 10));
+        path.add(new BezierPath.Node(20, 20));
+        assertEquals(path.getLengthOfPath(1), 20d);
+        assertEquals(path.getPointOnPath(0.25, 1), new Point2D.Double(15, 10));
+        assertEquals(path.getPointOnPath(0.75, 1), new Point2D.Double(20, 15));
+        assertEquals(path.getRelativePositionOnPath(new Point2D.Double(20, 15), 1), 0.75);
+        assertEquals(path.getRelativePositionOnPath(new Point2D.Double(0, 15), 1), -1d);
+
+        path.get(2).moveTo(20, 30);
+        path.invalidatePath();
+        assertEquals(path.getLengthOfPath(1), 30d);
+    }
+
+    @Test
+    public void testSubpathsAreNotJoined() {
+        Path2D.Double shape = new Path2D.Double();
+        shape.moveTo(0, 0);
+        shape.lineTo(10, 0);
+        shape.moveTo(100, 0);
+        shape.lineTo(110, 0);
+        FlattenedPath flattened = new FlattenedPath(shape, 1);
+        assertEquals(flattened.getSegmentCount(), 2);
+        assertTrue(flattened.outlineContains(105, 0, 1));
+        assertFalse(flattened.outlineContains(50, 0, 1));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.geom;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Compares the query results of {@link RTree} and {@link QuadTree} with a
+ * linear search.
+ */
+public class RTreeNGTest {
+
+    public RTreeNGTest() {
+    }
+
+    @Test
+    public void testIncrementalAddAndRemove() {
+        testIndex(new RTree<Integer>(4), false);
+        testIndex(new QuadTree<Integer>(), false);
+    }
+
+    @Test
+    public void testBulkLoad() {
+        testIndex(new RTree<Integer>(), true);
+        testIndex(new QuadTree<Integer>(), true);
+    }
+
+    private void testIndex(SpatialIndex<Integer> index, boolean bulk) {
+        Random rnd = new Random(1);
+        int n = 2000;
+        List<Integer> objects = new ArrayList<>();
+        List<Rectangle2D.Double> bounds = new ArrayList<>();
+        double[] zOrders = new double[n];
+        for (int i = 0; i < n; i++) {
+            objects.add(i);
+            bounds.add(new Rectangle2D.Double(rnd.nextDouble() * 2000 - 500, rnd.nextDouble() * 2000 - 500,
+                    1 + rnd.nextDouble() * 50, 1 + rnd.nextDouble() * 50));
+            zOrders[i] = n - i;
+        }
+        if (bulk) {
+            index.addAll(objects, bounds, zOrders);
+        } else {
+            for (int i = 0; i < n; i++) {
+                index.add(objects.get(i), bounds.get(i), zOrders[i]);
+            }
+        }
+        HashSet<Integer> removed = new HashSet<>();
+        for (int i = 0; i < n; i += 3) {
+            index.remove(i);
+            removed.add(i);
+        }
+        assertEquals(index.size(), n - removed.size());
+
+        for (int q = 0; q < 200; q++) {
+            Point2D.Double p = new Point2D.Double(rnd.nextDouble() * 2000 - 500, rnd.nextDouble() * 2000 - 500);
+            Rectangle2D.Double r = new Rectangle2D.Double(p.x, p.y, rnd.nextDouble() * 200, rnd.nextDouble() * 200);
+            HashSet<Integer> contains = new HashSet<>();
+            HashSet<Integer> intersects = new HashSet<>();
+            HashSet<Integer> inside = new HashSet<>();
+            for (int i = 0; i < n; i++) {
+                if (!removed.contains(i)) {
+                    Rectangle2D.Double b = bounds.get(i);
+                    if (b.contains(p)) {
+                        contains.add(i);
+                    }
+                    if (b.intersects(r)) {
+                        intersects.add(i);
+                    }
+                    if (r.contains(b)) {
+                        inside.add(i);
+                    }
+                }
+            }
+            assertEquals(new HashSet<>(index.findContains(p)), contains);
+            assertEquals(new HashSet<>(index.findIntersects(r)), intersects);
+            assertEquals(new HashSet<>(index.findInside(r)), inside);
+
+            List<Integer> ordered = index.findIntersectsInZOrder(r);
+            assertEquals(ordered.size(), intersects.size());
+            for (int i = 1; i < ordered.size(); i++) {
+                assertTrue(zOrders[ordered.get(i - 1)] < zOrders[ordered.get(i)]);
+            }
+
+            HashSet<Integer> visited = new HashSet<>();
+            index.findContains(p, visited::add);
+            assertEquals(visited, contains);
+            visited.clear();
+            index.findInside(r, visited::add);
+            assertEquals(visited, inside);
+            List<Integer> orderedIntoList = new ArrayList<>();
+            index.findIntersectsInZOrder(r, orderedIntoList);
+            assertEquals(orderedIntoList, ordered);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2015 JHotDraw.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.jhotdraw.undo;
+
+import java.util.ArrayList;
+import javax.swing.undo.AbstractUndoableEdit;
+import static org.testng.Assert.*;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the memory limit of {@link UndoRedoManager}.
+ */
+public class UndoRedoManagerNGTest {
+
+    public UndoRedoManagerNGTest() {
+    }
+
+    private static class Edit extends AbstractUndoableEdit implements SizedEdit {
+
+        private static final long serialVersionUID = 1L;
+        private final long size;
+        boolean isDead;
+        int undoCount;
+
+        Edit(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public long getEstimatedSize() {
+            return size;
+        }
+
+        @Override
+        public void undo() {
+            super.undo();
+            undoCount++;
+        }
+
+        @Override
+        public void die() {
+            super.die();
+            isDead = true;
+        }
+    }
+
+    @Test
+    public void testOldestEditsAreDiscarded() {
+        UndoRedoManager manager = new UndoRedoManager();
+        manager.setMemoryLimit(10000);
+        ArrayList<Edit> edits = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Edit edit = new Edit(3000);
+            edits.add(edit);
+            manager.addEdit(edit);
+        }
+        assertEquals(manager.getEstimatedSize(), 9000);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(edits.get(i).isDead, i < 7, "edit " + i);
+        }
+        while (manager.canUndo()) {
+            manager.undo();
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals(edits.get(i).undoCount, i < 7 ? 0 : 1, "edit " + i);
+        }
+    }
+
+    @Test
+    public void testLastEditIsKept() {
+        UndoRedoManager manager = new UndoRedoManager();
+        manager.setMemoryLimit(1000);
+        Edit small = new Edit(100);
+        Edit large = new Edit(5000);
+        manager.addEdit(small);
+        manager.addEdit(large);
+        assertTrue(small.isDead);
+        assertFalse(large.isDead);
+        assertTrue(manager.canUndo());
+        manager.undo();
+        assertEquals(large.undoCount, 1);
+    }
+
+    @Test
+    public void testRedoableEditsAreKept() {
+        UndoRedoManager manager = new UndoRedoManager();
+        Edit[] edits = new Edit[4];
+        for (int i = 0; i < edits.length; i++) {
+            edits[i] = new Edit(1000);
+            manager.addEdit(edits[i]);
+        }
+        manager.undo();
+        manager.undo();
+        manager.setMemoryLimit(1500);
+        assertTrue(edits[0].isDead);
+        assertFalse(edits[1].isDead);
+        assertFalse(edits[2].isDead);
+        assertFalse(edits[3].isDead);
+        manager.redo();
+        manager.redo();
+        assertFalse(manager.canRedo());
+        assertEquals(manager.getEstimatedSize(), 3000);
+    }
+
+    @Test
+    public void testCompositeEditSize() {
+        UndoRedoManager manager = new UndoRedoManager();
+        CompositeEdit composite = new CompositeEdit();
+        manager.addEdit(composite);
+        manager.addEdit(new Edit(1000));
+        manager.addEdit(new Edit(2000));
+        manager.addEdit(composite);
+        assertEquals(manager.getEstimatedSize(), UndoRedoManager.DEFAULT_EDIT_SIZE + 3000);
+        manager.addEdit(new Edit(500));
+        assertEquals(manager.getEstimatedSize(), UndoRedoManager.DEFAULT_EDIT_SIZE + 3500);
+        manager.discardAllEdits();
+        assertEquals(manager.getEstimatedSize(), 0);
+    }
+}
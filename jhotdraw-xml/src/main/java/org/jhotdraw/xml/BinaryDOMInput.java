@@ -0,0 +1,643 @@
+/*
+ * @(#)BinaryDOMInput.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.xml;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import static org.jhotdraw.xml.BinaryDOMOutput.*;
+
+/**
+ * A {@link DOMInput} which reads a document which has been written with
+ * {@link BinaryDOMOutput}.
+ * <p>
+ * The document is accessed in place in a byte buffer. Nothing is parsed in
+ * advance: the records of an
+ * element are decoded when the element is opened, strings are decoded when
+ * they are first used, and an object is only created when its element is
+ * read with {@link #readObject}. If a reference to an object is read before
+ * the object itself, the object is read from the offset in the object table
+ * of the document.
+ * <p>
+ * Only the decoding is lazy. Objects are not materialized on demand: a
+ * {@code DOMStorable} which reads its children, like a drawing, still creates
+ * all of them when it is read.
+ * <p>
+ * Attribute values are converted to strings like they are written by
+ * {@link JavaxDOMOutput}; so a {@code DOMStorable} reads the same values from
+ * this input as from an XML document. Numbers which are read with the
+ * matching typed {@code getAttribute} method are not converted.
+ * <p>
+ * An instance must only be used by one thread at a time.
+ *
+ * @version $Id$
+ */
+public class BinaryDOMInput implements DOMInput {
+
+    /**
+     * An open element.
+     */
+    private static class Frame {
+
+        final Frame parent;
+        final int nameIndex;
+        /**
+         * The offset of the first attribute.
+         */
+        final int attributesStart;
+        final int attributeCount;
+        final int contentStart;
+        final int contentEnd;
+        /**
+         * The offsets of the child elements which have been found so far.
+         */
+        int[] childOffsets;
+        int childCount;
+        /**
+         * The offset of the next record which has not been searched for
+         * child elements.
+         */
+        int scanPosition;
+
+        Frame(Frame parent, int nameIndex, int attributesStart, int attributeCount, int contentStart, int contentEnd) {
+            this.parent = parent;
+            this.nameIndex = nameIndex;
+            this.attributesStart = attributesStart;
+            this.attributeCount = attributeCount;
+            this.contentStart = contentStart;
+            this.contentEnd = contentEnd;
+            this.scanPosition = contentStart;
+        }
+    }
+    /**
+     * Marks an object which is being read.
+     */
+    private static final Object READING = new Object();
+    private final ByteBuffer buf;
+    private final DOMFactory factory;
+    private final int[] stringOffsets;
+    private final String[] strings;
+    private final int objectTableOffset;
+    /**
+     * The objects which have been read, by their index in the object table.
+     */
+    private final Object[] objects;
+    private final Frame document;
+    /**
+     * The current element used for input.
+     */
+    private Frame current;
+    /**
+     * The position after the last value which has been decoded.
+     */
+    private int position;
+
+    /**
+     * Reads the document from the specified input stream.
+     */
+    public BinaryDOMInput(DOMFactory factory, InputStream in) throws IOException {
+        this(factory, ByteBuffer.wrap(readFully(in)));
+    }
+
+    /**
+     * Reads the specified file into memory, and reads the document from it.
+     * <p>
+     * The file is not memory mapped, because a mapping can not be released
+     * explicitly, and it stays until it is garbage collected. On some
+     * platforms, a file can not be written while it is mapped, so a drawing
+     * could not be saved back to the file it has been read from.
+     */
+    public BinaryDOMInput(DOMFactory factory, File file) throws IOException {
+        this(factory, readFile(file));
+    }
+
+    /**
+     * Reads the document from the specified buffer. The buffer must not be
+     * changed while it is being read.
+     */
+    public BinaryDOMInput(DOMFactory factory, ByteBuffer buf) throws IOException {
+        this.factory = factory;
+        this.buf = buf;
+        int length = buf.limit();
+        if (length < MAGIC.length + 1 + TRAILER_SIZE || !hasMagic(0) || !hasMagic(length - MAGIC.length)) {
+            throw new IOException("Not a binary JHotDraw document");
+        }
+        if (buf.get(MAGIC.length) != VERSION) {
+            throw new IOException("Unsupported version: " + buf.get(MAGIC.length));
+        }
+        int stringTableOffset = buf.getInt(length - TRAILER_SIZE);
+        objectTableOffset = buf.getInt(length - TRAILER_SIZE + 4);
+        int recordsEnd = buf.getInt(length - TRAILER_SIZE + 8);
+        try {
+            position = stringTableOffset;
+            stringOffsets = new int[readVarInt()];
+            for (int i = 0; i < stringOffsets.length; i++) {
+                stringOffsets[i] = position;
+                int stringLength = readVarInt();
+                position += stringLength;
+            }
+            strings = new String[stringOffsets.length];
+            position = objectTableOffset;
+            objects = new Object[readVarInt()];
+        } catch (IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Corrupt binary JHotDraw document", e);
+        }
+        document = new Frame(null, -1, 0, 0, MAGIC.length + 1, recordsEnd);
+        current = document;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] b = new byte[8192];
+        for (int n; (n = in.read(b)) != -1;) {
+            out.write(b, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static ByteBuffer readFile(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large: " + file);
+            }
+            ByteBuffer buf = ByteBuffer.allocate((int) size);
+            while (buf.hasRemaining() && channel.read(buf) != -1) {
+            }
+            buf.flip();
+            return buf;
+        }
+    }
+
+    private boolean hasMagic(int offset) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buf.get(offset + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int readVarInt() {
+        int v = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = buf.get(position++);
+            v |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return v;
+            }
+        }
+    }
+
+    private String getString(int index) {
+        String str = strings[index];
+        if (str == null) {
+            position = stringOffsets[index];
+            str = readUTF8();
+            strings[index] = str;
+        }
+        return str;
+    }
+
+    private String readUTF8() {
+        int length = readVarInt();
+        byte[] b = new byte[length];
+        for (int i = 0; i < length; i++) {
+            b[i] = buf.get(position + i);
+        }
+        position += length;
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Skips the value of an attribute of the specified type.
+     */
+    private void skipValue(byte type) {
+        switch (type) {
+            case STRING:
+            case INT:
+            case ID:
+                readVarInt();
+                break;
+            case FLOAT:
+                position += 4;
+                break;
+            case DOUBLE:
+                position += 8;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Decodes the element at the specified offset.
+     */
+    private Frame openFrame(Frame parent, int offset) {
+        position = offset + 1;
+        int nameIndex = readVarInt();
+        int attributeCount = readVarInt();
+        int attributesStart = position;
+        for (int i = 0; i < attributeCount; i++) {
+            readVarInt();
+            skipValue(buf.get(position++));
+        }
+        int contentLength = buf.getInt(position);
+        int contentStart = position + 4;
+        return new Frame(parent, nameIndex, attributesStart, attributeCount, contentStart, contentStart + contentLength);
+    }
+
+    /**
+     * Returns the offset after the record at the specified offset.
+     */
+    private int skipRecord(int offset) {
+        position = offset + 1;
+        if (buf.get(offset) == ELEMENT) {
+            readVarInt();
+            int attributeCount = readVarInt();
+            for (int i = 0; i < attributeCount; i++) {
+                readVarInt();
+                skipValue(buf.get(position++));
+            }
+            return position + 4 + buf.getInt(position);
+        } else {
+            int length = readVarInt();
+            return position + length;
+        }
+    }
+
+    /**
+     * Searches the child elements of the specified element until the
+     * element with the specified index has been found or all records have
+     * been searched.
+     */
+    private void scanChildren(Frame frame, int index) {
+        while (frame.childCount <= index && frame.scanPosition < frame.contentEnd) {
+            int offset = frame.scanPosition;
+            if (buf.get(offset) == ELEMENT) {
+                if (frame.childOffsets == null) {
+                    frame.childOffsets = new int[8];
+                } else if (frame.childCount == frame.childOffsets.length) {
+                    frame.childOffsets = Arrays.copyOf(frame.childOffsets, frame.childCount * 2);
+                }
+                frame.childOffsets[frame.childCount++] = offset;
+            }
+            frame.scanPosition = skipRecord(offset);
+        }
+    }
+
+    /**
+     * Returns the type of the last attribute with the specified name of the
+     * current element, and sets the position to its value. Returns 0 if there
+     * is no such attribute.
+     */
+    private byte findAttribute(Frame frame, String name) {
+        byte foundType = 0;
+        int foundPosition = 0;
+        position = frame.attributesStart;
+        for (int i = 0; i < frame.attributeCount; i++) {
+            int nameIndex = readVarInt();
+            byte type = buf.get(position++);
+            int valuePosition = position;
+            // getString changes the position
+            if (getString(nameIndex).equals(name)) {
+                foundType = type;
+                foundPosition = valuePosition;
+            }
+            position = valuePosition;
+            skipValue(type);
+        }
+        position = foundPosition;
+        return foundType;
+    }
+
+    /**
+     * Returns the attribute value as a string, like JavaxDOMOutput writes
+     * it, or an empty string if there is no such attribute.
+     */
+    private String getAttributeString(Frame frame, String name) {
+        byte type = findAttribute(frame, name);
+        switch (type) {
+            case STRING:
+                return getString(readVarInt());
+            case INT: {
+                int v = readVarInt();
+                return Integer.toString((v >>> 1) ^ -(v & 1));
+            }
+            case FLOAT: {
+                String str = Float.toString(Float.intBitsToFloat(buf.getInt(position)));
+                return str.endsWith(".0") ? str.substring(0, str.length() - 2) : str;
+            }
+            case DOUBLE: {
+                String str = Double.toString(Double.longBitsToDouble(buf.getLong(position)));
+                return str.endsWith(".0") ? str.substring(0, str.length() - 2) : str;
+            }
+            case TRUE:
+                return "true";
+            case FALSE:
+                return "false";
+            case ID:
+                return Integer.toString(readVarInt(), 16);
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * Returns the index of an object in the object table, or -1 if the
+     * current element has no such attribute.
+     */
+    private int getObjectIndex(String name) throws IOException {
+        byte type = findAttribute(current, name);
+        if (type == 0) {
+            return -1;
+        }
+        if (type != ID) {
+            throw new IOException("Illegal " + name + " attribute: <" + getTagName() + " " + name + "=" + getAttributeString(current, name) + ">");
+        }
+        int index = readVarInt();
+        if (index >= objects.length) {
+            throw new IOException("Illegal " + name + " attribute value: <" + getTagName() + " " + name + "=" + Integer.toString(index, 16) + ">");
+        }
+        return index;
+    }
+
+    /**
+     * Returns the tag name of the current element.
+     */
+    @Override
+    public String getTagName() {
+        return (current.nameIndex == -1) ? null : getString(current.nameIndex);
+    }
+
+    /**
+     * Gets an attribute of the current element.
+     */
+    @Override
+    public String getAttribute(String name, String defaultValue) {
+        String value = getAttributeString(current, name);
+        return (value.length() == 0) ? defaultValue : value;
+    }
+
+    /**
+     * Gets the text of the current element.
+     */
+    @Override
+    public String getText() {
+        return getText(null);
+    }
+
+    /**
+     * Gets the text of the current element. This is the text of the
+     * element and of all its descendants, including comments.
+     */
+    @Override
+    public String getText(String defaultValue) {
+        if (current.contentStart == current.contentEnd) {
+            return defaultValue;
+        }
+        StringBuilder text = new StringBuilder();
+        getText(current.contentStart, current.contentEnd, text);
+        return text.toString();
+    }
+
+    private void getText(int start, int end, StringBuilder text) {
+        for (int offset = start; offset < end;) {
+            if (buf.get(offset) == ELEMENT) {
+                Frame child = openFrame(null, offset);
+                getText(child.contentStart, child.contentEnd, text);
+                offset = child.contentEnd;
+            } else {
+                position = offset + 1;
+                text.append(readUTF8());
+                offset = position;
+            }
+        }
+    }
+
+    /**
+     * Gets an attribute of the current element and of all parent elements.
+     */
+    @Override
+    public java.util.List<String> getInheritedAttribute(String name) {
+        LinkedList<String> values = new LinkedList<String>();
+        for (Frame frame = current; frame != document; frame = frame.parent) {
+            values.addFirst(getAttributeString(frame, name));
+        }
+        return values;
+    }
+
+    /**
+     * Gets an attribute of the current element.
+     */
+    @Override
+    public int getAttribute(String name, int defaultValue) {
+        if (findAttribute(current, name) == INT) {
+            int v = readVarInt();
+            return (v >>> 1) ^ -(v & 1);
+        }
+        String value = getAttributeString(current, name);
+        return (value.length() == 0) ? defaultValue : Long.decode(value).intValue();
+    }
+
+    /**
+     * Gets an attribute of the current element.
+     */
+    @Override
+    public double getAttribute(String name, double defaultValue) {
+        if (findAttribute(current, name) == DOUBLE) {
+            return Double.longBitsToDouble(buf.getLong(position));
+        }
+        String value = getAttributeString(current, name);
+        return (value.length() == 0) ? defaultValue : Double.parseDouble(value);
+    }
+
+    /**
+     * Gets an attribute of the current element.
+     */
+    @Override
+    public boolean getAttribute(String name, boolean defaultValue) {
+        switch (findAttribute(current, name)) {
+            case TRUE:
+                return true;
+            case FALSE:
+                return false;
+            default:
+                String value = getAttributeString(current, name);
+                return (value.length() == 0) ? defaultValue : Boolean.valueOf(value).booleanValue();
+        }
+    }
+
+    /**
+     * Returns the number of child elements of the current element.
+     */
+    @Override
+    public int getElementCount() {
+        scanChildren(current, Integer.MAX_VALUE);
+        return current.childCount;
+    }
+
+    /**
+     * Returns the number of child elements with the specified tag name
+     * of the current element.
+     */
+    @Override
+    public int getElementCount(String tagName) {
+        scanChildren(current, Integer.MAX_VALUE);
+        int count = 0;
+        for (int i = 0; i < current.childCount; i++) {
+            if (getChildName(i).equals(tagName)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private String getChildName(int index) {
+        position = current.childOffsets[index] + 1;
+        return getString(readVarInt());
+    }
+
+    @Override
+    public boolean hasElement(int index) {
+        scanChildren(current, index);
+        return index < current.childCount;
+    }
+
+    /**
+     * Opens the element with the specified index and makes it the current node.
+     */
+    @Override
+    public void openElement(int index) {
+        if (!hasElement(index)) {
+            throw new IllegalArgumentException("no such child [" + index + "]");
+        }
+        current = openFrame(current, current.childOffsets[index]);
+    }
+
+    /**
+     * Opens the first element with the specified name and makes it the
+     * current node.
+     */
+    @Override
+    public void openElement(String tagName) {
+        for (int i = 0; hasElement(i); i++) {
+            if (getChildName(i).equals(tagName)) {
+                current = openFrame(current, current.childOffsets[i]);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("element not found:" + tagName);
+    }
+
+    /**
+     * Opens the element with the specified name and index and makes it the
+     * current node.
+     */
+    @Override
+    public void openElement(String tagName, int index) {
+        int count = 0;
+        for (int i = 0; hasElement(i); i++) {
+            if (getChildName(i).equals(tagName) && count++ == index) {
+                current = openFrame(current, current.childOffsets[i]);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("no such child " + tagName + "[" + index + "]");
+    }
+
+    /**
+     * Closes the current element.
+     * The parent of the current element becomes the current element.
+     */
+    @Override
+    public void closeElement() {
+        current = current.parent;
+    }
+
+    /**
+     * Reads an object from the current element.
+     */
+    @Override
+    public Object readObject() throws IOException {
+        return readObject(0);
+    }
+
+    /**
+     * Reads an object from the current element.
+     */
+    @Override
+    public Object readObject(int index) throws IOException {
+        openElement(index);
+        Object o;
+        int ref = getObjectIndex("ref");
+        int id = getObjectIndex("id");
+        if (ref != -1 && id != -1) {
+            throw new IOException("Element has both an id and a ref attribute: <" + getTagName() + " id=" + id + " ref=" + ref + ">");
+        }
+        if (ref != -1) {
+            o = objects[ref];
+            if (o == null) {
+                o = readReferencedObject(ref);
+            }
+        } else if (id != -1 && objects[id] != null) {
+            // The object has already been read through a reference
+            o = objects[id];
+        } else {
+            o = readObjectContent(id);
+        }
+        if (o == READING) {
+            throw new IOException("Object refers to itself while it is being created: <" + getTagName() + " ref=" + Integer.toString(ref, 16) + ">");
+        }
+        closeElement();
+        return o;
+    }
+
+    /**
+     * Reads the object of the current element.
+     */
+    private Object readObjectContent(int id) throws IOException {
+        if (id != -1) {
+            objects[id] = READING;
+        }
+        Object o = factory.read(this);
+        if (id != -1) {
+            objects[id] = o;
+        }
+        if (o instanceof DOMStorable) {
+            ((DOMStorable) o).read(this);
+        }
+        return o;
+    }
+
+    /**
+     * Reads an object from the offset in the object table. The object is
+     * read as if it was a child of the document.
+     */
+    private Object readReferencedObject(int id) throws IOException {
+        Frame saved = current;
+        current = openFrame(document, buf.getInt(objectTableOffset + varIntSize(objects.length) + id * 4));
+        try {
+            return readObjectContent(id);
+        } finally {
+            current = saved;
+        }
+    }
+
+    private static int varIntSize(int v) {
+        int size = 1;
+        while ((v & ~0x7f) != 0) {
+            v >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,422 @@
+/*
+ * @(#)BinaryDOMOutput.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.xml;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A {@link DOMOutput} which writes the document in a compact binary format,
+ * which can be read with {@link BinaryDOMInput}.
+ * <p>
+ * The document consists of the same elements, attributes and texts as an XML
+ * document written by {@link JavaxDOMOutput}, but:
+ * <ul>
+ * <li>Element names, attribute names and string values are stored once in a
+ * string table and are referenced by their index.</li>
+ * <li>Numbers and booleans are stored in binary form; for example a
+ * coordinate takes 8 bytes and does not need to be parsed.</li>
+ * <li>Each element is prefixed with its length, so that a reader can skip
+ * it.</li>
+ * <li>An object table holds the offsets of the elements of all objects which
+ * have been written with {@link #writeObject}, so that a reader can read an
+ * object when a reference to it is encountered.</li>
+ * </ul>
+ * <p>
+ * Layout of the document; all numbers are big endian:
+ * <pre>
+ * Document     := Magic Version Record* StringTable ObjectTable Trailer
+ * Magic        := 'J' 'H' 'D' 'B'
+ * Version      := u1
+ * Record       := ELEMENT name:varint attributeCount:varint Attribute* contentLength:u4 Record*
+ *               | TEXT length:varint utf8
+ *               | COMMENT length:varint utf8
+ * Attribute    := name:varint (STRING value:varint | INT value:zigzag-varint
+ *               | FLOAT value:f4 | DOUBLE value:f8 | TRUE | FALSE | ID value:varint)
+ * StringTable  := count:varint (length:varint utf8)*
+ * ObjectTable  := count:varint offset:u4*
+ * Trailer      := stringTableOffset:u4 objectTableOffset:u4 recordsEnd:u4 Magic
+ * </pre>
+ * The ids and references of objects are stored as {@code ID} attributes
+ * named "id" and "ref". The value is the index of the object in the object
+ * table.
+ * <p>
+ * The document is kept in memory until it is saved, because the length of
+ * an element is only known after it has been closed.
+ *
+ * @version $Id$
+ */
+public class BinaryDOMOutput implements DOMOutput {
+
+    static final byte[] MAGIC = {'J', 'H', 'D', 'B'};
+    static final int VERSION = 1;
+    static final int TRAILER_SIZE = 16;
+    static final byte ELEMENT = 1;
+    static final byte TEXT = 2;
+    static final byte COMMENT = 3;
+    static final byte STRING = 1;
+    static final byte INT = 2;
+    static final byte FLOAT = 3;
+    static final byte DOUBLE = 4;
+    static final byte TRUE = 5;
+    static final byte FALSE = 6;
+    static final byte ID = 7;
+    /**
+     * This map is used to marshall references to objects. A key in this map
+     * is a Java Object, a value in this map is the index of the object in the
+     * object table.
+     */
+    private HashMap<Object, Integer> objectids = new HashMap<Object, Integer>();
+    /**
+     * The offsets of the elements of the objects which have been written.
+     */
+    private int[] objectOffsets = new int[16];
+    /**
+     * This map is used to cache prototype objects.
+     */
+    private HashMap<String, Object> prototypes;
+    private HashMap<String, Integer> stringIndices = new HashMap<String, Integer>();
+    private ArrayList<String> strings = new ArrayList<String>();
+    /**
+     * The names of the open elements.
+     */
+    private ArrayList<String> openElements = new ArrayList<String>();
+    /**
+     * The positions of the content lengths of the open elements.
+     */
+    private int[] lengthPositions = new int[16];
+    /**
+     * The position of the attribute count of the current element, or -1 if
+     * content has been added to the current element.
+     */
+    private int attributeCountPosition = -1;
+    private int attributeCount;
+    /**
+     * The offset of the element which has been opened last.
+     */
+    private int elementOffset;
+    private byte[] buf = new byte[8192];
+    private int pos;
+    /**
+     * The factory used to create objects.
+     */
+    private DOMFactory factory;
+
+    public BinaryDOMOutput(DOMFactory factory) {
+        this.factory = factory;
+        write(MAGIC, 0, MAGIC.length);
+        writeByte(VERSION);
+    }
+
+    /**
+     * Writes the document into the specified output stream.
+     *
+     * @throws IllegalStateException if not all elements have been closed.
+     */
+    public void save(OutputStream out) throws IOException {
+        if (!openElements.isEmpty()) {
+            throw new IllegalStateException("Element not closed:" + openElements.get(openElements.size() - 1));
+        }
+        int recordsEnd = pos;
+        int stringTableOffset = pos;
+        writeVarInt(strings.size());
+        for (String str : strings) {
+            writeUTF8(str);
+        }
+        int objectTableOffset = pos;
+        writeVarInt(objectids.size());
+        for (int i = 0, n = objectids.size(); i < n; i++) {
+            writeInt(objectOffsets[i]);
+        }
+        writeInt(stringTableOffset);
+        writeInt(objectTableOffset);
+        writeInt(recordsEnd);
+        write(MAGIC, 0, MAGIC.length);
+        out.write(buf, 0, pos);
+        out.flush();
+        // Remove the tables again, so that writing can continue
+        pos = recordsEnd;
+    }
+
+    private void ensureCapacity(int n) {
+        if (pos + n > buf.length) {
+            long newLength = Math.max(buf.length * 2L, pos + (long) n);
+            if (newLength > Integer.MAX_VALUE - 8) {
+                throw new OutOfMemoryError("Document too large");
+            }
+            buf = Arrays.copyOf(buf, (int) newLength);
+        }
+    }
+
+    private void write(byte[] b, int off, int len) {
+        ensureCapacity(len);
+        System.arraycopy(b, off, buf, pos, len);
+        pos += len;
+    }
+
+    private void writeByte(int b) {
+        ensureCapacity(1);
+        buf[pos++] = (byte) b;
+    }
+
+    private void writeInt(int v) {
+        ensureCapacity(4);
+        putInt(pos, v);
+        pos += 4;
+    }
+
+    private void putInt(int position, int v) {
+        buf[position] = (byte) (v >>> 24);
+        buf[position + 1] = (byte) (v >>> 16);
+        buf[position + 2] = (byte) (v >>> 8);
+        buf[position + 3] = (byte) v;
+    }
+
+    private void writeLong(long v) {
+        writeInt((int) (v >>> 32));
+        writeInt((int) v);
+    }
+
+    private void writeVarInt(int v) {
+        ensureCapacity(5);
+        while ((v & ~0x7f) != 0) {
+            buf[pos++] = (byte) ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+    }
+
+    private void writeUTF8(String str) {
+        byte[] b = str.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(b.length);
+        write(b, 0, b.length);
+    }
+
+    private void writeString(String str) {
+        Integer index = stringIndices.get(str);
+        if (index == null) {
+            index = strings.size();
+            strings.add(str);
+            stringIndices.put(str, index);
+        }
+        writeVarInt(index);
+    }
+
+    /**
+     * Writes the attribute count of the current element, if content is
+     * added to it.
+     */
+    private void endAttributes() {
+        if (attributeCountPosition != -1) {
+            // The attribute count is a single byte placeholder; move the
+            // attributes if the count needs more bytes
+            if (attributeCount < 0x80) {
+                buf[attributeCountPosition] = (byte) attributeCount;
+            } else {
+                int attributesStart = attributeCountPosition + 1;
+                byte[] attributes = Arrays.copyOfRange(buf, attributesStart, pos);
+                pos = attributeCountPosition;
+                writeVarInt(attributeCount);
+                write(attributes, 0, attributes.length);
+            }
+            attributeCountPosition = -1;
+            int depth = openElements.size() - 1;
+            lengthPositions[depth] = pos;
+            writeInt(0);
+        }
+    }
+
+    /**
+     * Puts a new element into the document.
+     * The new element is added as a child to the current element.
+     * Then it becomes the current element.
+     * The element must be closed using closeElement.
+     */
+    @Override
+    public void openElement(String tagName) {
+        endAttributes();
+        elementOffset = pos;
+        writeByte(ELEMENT);
+        writeString(tagName);
+        openElements.add(tagName);
+        if (openElements.size() > lengthPositions.length) {
+            lengthPositions = Arrays.copyOf(lengthPositions, lengthPositions.length * 2);
+        }
+        attributeCountPosition = pos;
+        attributeCount = 0;
+        writeByte(0);
+    }
+
+    /**
+     * Closes the current element.
+     * The parent of the current element becomes the current element.
+     */
+    @Override
+    public void closeElement() {
+        endAttributes();
+        int depth = openElements.size() - 1;
+        openElements.remove(depth);
+        int lengthPosition = lengthPositions[depth];
+        putInt(lengthPosition, pos - lengthPosition - 4);
+    }
+
+    /**
+     * Adds a comment to the current element.
+     */
+    @Override
+    public void addComment(String comment) {
+        endAttributes();
+        writeByte(COMMENT);
+        writeUTF8(comment);
+    }
+
+    /**
+     * Adds a text to current element.
+     */
+    @Override
+    public void addText(String text) {
+        endAttributes();
+        writeByte(TEXT);
+        writeUTF8(text);
+    }
+
+    private void beginAttribute(String name, byte type) {
+        if (attributeCountPosition == -1) {
+            throw new IllegalStateException("Attribute after element content:" + name);
+        }
+        attributeCount++;
+        writeString(name);
+        writeByte(type);
+    }
+
+    /**
+     * Adds an attribute to current element.
+     */
+    @Override
+    public void addAttribute(String name, String value) {
+        if (value != null) {
+            beginAttribute(name, STRING);
+            writeString(value);
+        }
+    }
+
+    /**
+     * Adds an attribute to current element.
+     */
+    @Override
+    public void addAttribute(String name, int value) {
+        beginAttribute(name, INT);
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Adds an attribute to current element.
+     */
+    @Override
+    public void addAttribute(String name, boolean value) {
+        beginAttribute(name, value ? TRUE : FALSE);
+    }
+
+    /**
+     * Adds an attribute to current element.
+     */
+    @Override
+    public void addAttribute(String name, float value) {
+        beginAttribute(name, FLOAT);
+        writeInt(Float.floatToRawIntBits(value));
+    }
+
+    /**
+     * Adds an attribute to current element.
+     */
+    @Override
+    public void addAttribute(String name, double value) {
+        beginAttribute(name, DOUBLE);
+        writeLong(Double.doubleToRawLongBits(value));
+    }
+
+    @Override
+    public void writeObject(Object o) throws IOException {
+        String tagName = factory.getName(o);
+        if (tagName == null) {
+            throw new IllegalArgumentException("no tag name for:" + o);
+        }
+        openElement(tagName);
+        Integer id = objectids.get(o);
+        if (id != null) {
+            beginAttribute("ref", ID);
+            writeVarInt(id);
+        } else {
+            id = objectids.size();
+            objectids.put(o, id);
+            if (id == objectOffsets.length) {
+                objectOffsets = Arrays.copyOf(objectOffsets, id * 2);
+            }
+            objectOffsets[id] = elementOffset;
+            beginAttribute("id", ID);
+            writeVarInt(id);
+            factory.write(this, o);
+        }
+        closeElement();
+    }
+
+    @Override
+    public void addAttribute(String name, float value, float defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, int value, int defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, double value, double defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, boolean value, boolean defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, String value, String defaultValue) {
+        if (!value.equals(defaultValue)) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public Object getPrototype() {
+        if (prototypes == null) {
+            prototypes = new HashMap<String, Object>();
+        }
+        String name = openElements.isEmpty() ? "#document" : openElements.get(openElements.size() - 1);
+        if (!prototypes.containsKey(name)) {
+            prototypes.put(name, factory.create(name));
+        }
+        return prototypes.get(name);
+    }
+
+    /**
+     * The binary format has no doctype. This method does nothing.
+     */
+    @Override
+    public void setDoctype(String doctype) {
+    }
+}
@@ -86,6 +86,19 @@ public interface DOMInput {
      */
     public int getElementCount(String tagName);
 
+    /**
+     * Returns true if the current element has a child element with the
+     * specified index.
+     * <p>
+     * Unlike {@link #getElementCount()}, this method does not need to know
+     * all child elements. Use it to iterate over the child elements, so that
+     * implementations which read the document while it is being accessed
+     * do not need to read ahead.
+     */
+    public default boolean hasElement(int index) {
+        return index < getElementCount();
+    }
+
     /**
      * Opens the element with the specified index and makes it the current node.
      */
@@ -46,13 +46,24 @@ public class JavaxDOMInput implements DOMInput {
      * The factory used to create objects from XML tag names.
      */
     private DOMFactory factory;
-    protected static DocumentBuilder documentBuilder;
+    /**
+     * Caches the child elements of the current node and of its ancestors,
+     * so that iterating over the child elements of a node is a linear
+     * operation. The nodes are in the order of their depth.
+     */
+    private ArrayList<Node> cachedNodes = new ArrayList<Node>();
+    private ArrayList<ArrayList<Element>> cachedChildElements = new ArrayList<ArrayList<Element>>();
+    /**
+     * A document builder is not thread safe; so each thread gets its own.
+     */
+    private static final ThreadLocal<DocumentBuilder> documentBuilders = new ThreadLocal<DocumentBuilder>();
 
     /**
-     * Lazily create the document builder and keep a reference to it for
-     * performance improvement.
+     * Lazily create the document builder of the current thread and keep a
+     * reference to it for performance improvement.
      */
     protected static DocumentBuilder getBuilder() throws IOException {
+        DocumentBuilder documentBuilder = documentBuilders.get();
         if (documentBuilder == null) {
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
             factory.setNamespaceAware(true);
@@ -66,10 +77,44 @@ public class JavaxDOMInput implements DOMInput {
                 error.initCause(ex);
                 throw error;
             }
+            documentBuilders.set(documentBuilder);
         }
         return documentBuilder;
     }
 
+    /**
+     * Returns the child elements of the current node.
+     */
+    private ArrayList<Element> getChildElements() {
+        // Remove the nodes which are not ancestors of the current node
+        for (int last = cachedNodes.size() - 1; last >= 0; last--) {
+            Node cached = cachedNodes.get(last);
+            if (cached == current) {
+                return cachedChildElements.get(last);
+            }
+            Node n = current.getParentNode();
+            while (n != null && n != cached) {
+                n = n.getParentNode();
+            }
+            if (n != null) {
+                break;
+            }
+            cachedNodes.remove(last);
+            cachedChildElements.remove(last);
+        }
+        ArrayList<Element> elements = new ArrayList<Element>();
+        NodeList list = current.getChildNodes();
+        for (int i = 0, n = list.getLength(); i < n; i++) {
+            Node node = list.item(i);
+            if (node instanceof Element) {
+                elements.add((Element) node);
+            }
+        }
+        cachedNodes.add(current);
+        cachedChildElements.add(elements);
+        return elements;
+    }
+
     public JavaxDOMInput(DOMFactory factory, InputStream in) throws IOException {
         this.factory = factory;
         try {
@@ -190,15 +235,7 @@ public class JavaxDOMInput implements DOMInput {
      */
     @Override
     public int getElementCount() {
-        int count = 0;
-        NodeList list = current.getChildNodes();
-        for (int i = 0; i < list.getLength(); i++) {
-            Node node = list.item(i);
-            if ((node instanceof Element)) {
-                count++;
-            }
-        }
-        return count;
+        return getChildElements().size();
     }
 
     /**
@@ -224,17 +261,9 @@ public class JavaxDOMInput implements DOMInput {
      */
     @Override
     public void openElement(int index) {
-        int count = 0;
-        NodeList list = current.getChildNodes();
-        int len = list.getLength();
-        for (int i = 0; i < len; i++) {
-            Node node = list.item(i);
-            if ((node instanceof Element)) {
-                if (count++ == index) {
-                    current = node;
-                    return;
-                }
-            }
+        ArrayList<Element> elements = getChildElements();
+        if (index < elements.size()) {
+            current = elements.get(index);
         }
     }
 
@@ -0,0 +1,491 @@
+/*
+ * @(#)StreamingDOMInput.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.xml;
+
+import java.io.*;
+import java.util.*;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * A {@link DOMInput} which reads the XML document with a pull parser while
+ * it is being accessed, instead of parsing the whole document into a DOM
+ * document first.
+ * <p>
+ * The document is read only as far as needed to answer a request. For
+ * example, {@link #hasElement} reads up to the start tag of the requested
+ * child element, and {@link #readObject(int)} reads up to the end tag of the
+ * element of the object. Thus, when the child elements of an element are
+ * iterated with {@code hasElement} and {@code readObject}, the objects are
+ * created while the document is still being read. Methods which need to
+ * know the whole content of the current element, such as
+ * {@link #getElementCount()} and {@link #getText()}, read up to the end tag
+ * of the current element.
+ * <p>
+ * The elements which have been read are kept in memory, with one exception:
+ * If the parent of an object element had not been read completely when
+ * {@code readObject} opened the element, the content of the object element
+ * is discarded after the object has been read. Opening such an element
+ * again throws an {@code IllegalStateException}. References to objects
+ * which have been read are tracked like in {@link JavaxDOMInput}.
+ * <p>
+ * An instance must only be used by one thread at a time. Several instances
+ * can be used concurrently.
+ *
+ * @version $Id$
+ */
+public class StreamingDOMInput implements DOMInput {
+
+    /**
+     * An element of the document.
+     */
+    private static class Element {
+
+        final Element parent;
+        final String name;
+        /**
+         * Names and values of the attributes in alternating order.
+         */
+        String[] attributes;
+        /**
+         * The text and the child elements in document order.
+         */
+        ArrayList<Object> content;
+        ArrayList<Element> elements;
+        /**
+         * Set to true when the end tag of the element has been read.
+         */
+        boolean isComplete;
+        /**
+         * Set to true when a child element was opened before this element
+         * had been read completely.
+         */
+        boolean isStreamed;
+        /**
+         * Set to true when the content of the element has been discarded.
+         */
+        boolean isDiscarded;
+
+        Element(Element parent, String name, String[] attributes) {
+            this.parent = parent;
+            this.name = name;
+            this.attributes = attributes;
+        }
+
+        String getAttribute(String name) {
+            for (int i = 0; i < attributes.length; i += 2) {
+                if (attributes[i].equals(name)) {
+                    return attributes[i + 1];
+                }
+            }
+            return "";
+        }
+
+        void add(Object child) {
+            if (content == null) {
+                content = new ArrayList<Object>();
+            }
+            content.add(child);
+            if (child instanceof Element) {
+                if (elements == null) {
+                    elements = new ArrayList<Element>();
+                }
+                elements.add((Element) child);
+            }
+        }
+
+        int getElementCount() {
+            return (elements == null) ? 0 : elements.size();
+        }
+
+        void discard() {
+            isDiscarded = true;
+            attributes = null;
+            content = null;
+            elements = null;
+        }
+    }
+    private static final String[] NO_ATTRIBUTES = new String[0];
+    /**
+     * This map is used to unmarshall references to objects to
+     * the XML DOM. A key in this map is a String representing a marshalled
+     * reference. A value in this map is an unmarshalled Object.
+     */
+    private HashMap<String, Object> idobjects = new HashMap<String, Object>();
+    /**
+     * The document node. Its children are the root element and the comments
+     * outside of the root element.
+     */
+    private Element document = new Element(null, null, NO_ATTRIBUTES);
+    /**
+     * The current element used for input.
+     */
+    private Element current = document;
+    /**
+     * The innermost element whose end tag has not been read yet.
+     */
+    private Element parsing = document;
+    private XMLStreamReader reader;
+    /**
+     * The factory used to create objects from XML tag names.
+     */
+    private DOMFactory factory;
+
+    public StreamingDOMInput(DOMFactory factory, InputStream in) throws IOException {
+        this.factory = factory;
+        try {
+            reader = createInputFactory().createXMLStreamReader(in);
+            // Fail early if the input is not an XML document
+            read(document, 1);
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    public StreamingDOMInput(DOMFactory factory, Reader in) throws IOException {
+        this.factory = factory;
+        try {
+            reader = createInputFactory().createXMLStreamReader(in);
+            // Fail early if the input is not an XML document
+            read(document, 1);
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Reads the document until the specified element has the specified
+     * number of child elements, or until the element is complete.
+     * Throws an UncheckedIOException if the document can not be read,
+     * because most methods of {@code DOMInput} can not throw IOException.
+     */
+    private void read(Element elem, int elementCount) {
+        try {
+            while (!elem.isComplete && elem.getElementCount() < elementCount
+                    && reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT: {
+                        int n = reader.getAttributeCount();
+                        String[] attributes = (n == 0) ? NO_ATTRIBUTES : new String[n * 2];
+                        for (int i = 0; i < n; i++) {
+                            attributes[i * 2] = getQualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i));
+                            attributes[i * 2 + 1] = reader.getAttributeValue(i);
+                        }
+                        Element child = new Element(parsing, getQualifiedName(reader.getPrefix(), reader.getLocalName()), attributes);
+                        parsing.add(child);
+                        parsing = child;
+                        break;
+                    }
+                    case XMLStreamConstants.END_ELEMENT:
+                        parsing.isComplete = true;
+                        parsing = parsing.parent;
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                    case XMLStreamConstants.COMMENT:
+                        if (parsing != document || reader.getEventType() == XMLStreamConstants.COMMENT) {
+                            parsing.add(reader.getText());
+                        }
+                        break;
+                    case XMLStreamConstants.END_DOCUMENT:
+                        document.isComplete = true;
+                        reader.close();
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (XMLStreamException ex) {
+            throw new UncheckedIOException(new IOException(ex.getMessage(), ex));
+        }
+    }
+
+    private static String getQualifiedName(String prefix, String localName) {
+        return (prefix == null || prefix.isEmpty()) ? localName : prefix + ':' + localName;
+    }
+
+    /**
+     * Reads the document until the end tag of the specified element.
+     */
+    private void readAll(Element elem) {
+        read(elem, Integer.MAX_VALUE);
+    }
+
+    private Element getElement(int index) {
+        read(current, index + 1);
+        return (index < current.getElementCount()) ? current.elements.get(index) : null;
+    }
+
+    /**
+     * Makes the specified child element the current element.
+     */
+    private void open(Element child) {
+        if (child.isDiscarded) {
+            throw new IllegalStateException("element has already been read:" + child.name);
+        }
+        if (!current.isComplete) {
+            current.isStreamed = true;
+        }
+        current = child;
+    }
+
+    /**
+     * Returns the tag name of the current element.
+     */
+    @Override
+    public String getTagName() {
+        return current.name;
+    }
+
+    /**
+     * Gets an attribute of the current element.
+     */
+    @Override
+    public String getAttribute(String name, String defaultValue) {
+        String value = current.getAttribute(name);
+        return (value.length() == 0) ? defaultValue : value;
+    }
+
+    /**
+     * Gets the text of the current element.
+     */
+    @Override
+    public String getText() {
+        return getText(null);
+    }
+
+    /**
+     * Gets the text of the current element. This is the text of the
+     * element and of all its descendants, including comments.
+     */
+    @Override
+    public String getText(String defaultValue) {
+        readAll(current);
+        if (current.content == null) {
+            return defaultValue;
+        }
+        StringBuilder buf = new StringBuilder();
+        getText(current, buf);
+        return buf.toString();
+    }
+
+    private static void getText(Element elem, StringBuilder buf) {
+        if (elem.content != null) {
+            for (Object o : elem.content) {
+                if (o instanceof String) {
+                    buf.append((String) o);
+                } else {
+                    getText((Element) o, buf);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets an attribute of the current element and of all parent elements.
+     */
+    @Override
+    public java.util.List<String> getInheritedAttribute(String name) {
+        LinkedList<String> values = new LinkedList<String>();
+        for (Element elem = current; elem != document; elem = elem.parent) {
+            values.addFirst(elem.getAttribute(name));
+        }
+        return values;
+    }
+
+    /**
+     * Gets an attribute of the current element.
+     */
+    @Override
+    public int getAttribute(String name, int defaultValue) {
+        String value = current.getAttribute(name);
+        return (value.length() == 0) ? defaultValue : Long.decode(value).intValue();
+    }
+
+    /**
+     * Gets an attribute of the current element.
+     */
+    @Override
+    public double getAttribute(String name, double defaultValue) {
+        String value = current.getAttribute(name);
+        return (value.length() == 0) ? defaultValue : Double.parseDouble(value);
+    }
+
+    /**
+     * Gets an attribute of the current element.
+     */
+    @Override
+    public boolean getAttribute(String name, boolean defaultValue) {
+        String value = current.getAttribute(name);
+        return (value.length() == 0) ? defaultValue : Boolean.valueOf(value).booleanValue();
+    }
+
+    /**
+     * Returns the number of child elements of the current element.
+     */
+    @Override
+    public int getElementCount() {
+        readAll(current);
+        return current.getElementCount();
+    }
+
+    /**
+     * Returns the number of child elements with the specified tag name
+     * of the current element.
+     */
+    @Override
+    public int getElementCount(String tagName) {
+        readAll(current);
+        int count = 0;
+        for (int i = 0, n = current.getElementCount(); i < n; i++) {
+            if (current.elements.get(i).name.equals(tagName)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns true if the current element has a child element with the
+     * specified index. Reads the document up to the start tag of the child
+     * element.
+     */
+    @Override
+    public boolean hasElement(int index) {
+        return getElement(index) != null;
+    }
+
+    /**
+     * Opens the element with the specified index and makes it the current node.
+     */
+    @Override
+    public void openElement(int index) {
+        Element child = getElement(index);
+        if (child == null) {
+            throw new IllegalArgumentException("no such child [" + index + "]");
+        }
+        open(child);
+    }
+
+    /**
+     * Opens the first element with the specified name and makes it the
+     * current node.
+     */
+    @Override
+    public void openElement(String tagName) {
+        for (int i = 0;; i++) {
+            Element child = getElement(i);
+            if (child == null) {
+                throw new IllegalArgumentException("element not found:" + tagName);
+            }
+            if (child.name.equals(tagName)) {
+                open(child);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Opens the element with the specified name and index and makes it the
+     * current node.
+     */
+    @Override
+    public void openElement(String tagName, int index) {
+        int count = 0;
+        for (int i = 0;; i++) {
+            Element child = getElement(i);
+            if (child == null) {
+                throw new IllegalArgumentException("no such child " + tagName + "[" + index + "]");
+            }
+            if (child.name.equals(tagName) && count++ == index) {
+                open(child);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Closes the current element.
+     * The parent of the current element becomes the current element.
+     */
+    @Override
+    public void closeElement() {
+        current = current.parent;
+    }
+
+    /**
+     * Reads an object from the current element.
+     */
+    @Override
+    public Object readObject() throws IOException {
+        return readObject(0);
+    }
+
+    /**
+     * Reads an object from the current element.
+     */
+    @Override
+    public Object readObject(int index) throws IOException {
+        Element parent = current;
+        try {
+            openElement(index);
+            readAll(current);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Element elem = current;
+        Object o;
+        String ref = getAttribute("ref", null);
+        String id = getAttribute("id", null);
+        if (ref != null && id != null) {
+            throw new IOException("Element has both an id and a ref attribute: <" + getTagName() + " id=" + id + " ref=" + ref + ">");
+        }
+        if (id != null && idobjects.containsKey(id)) {
+            throw new IOException("Duplicate id attribute: <" + getTagName() + " id=" + id + ">");
+        }
+        if (ref != null && !idobjects.containsKey(ref)) {
+            throw new IOException("Illegal ref attribute value: <" + getTagName() + " ref=" + ref + ">");
+        }
+        // Keep track of objects which have an ID
+        if (ref != null) {
+            o = idobjects.get(ref);
+        } else {
+            try {
+                o = factory.read(this);
+                if (id != null) {
+                    idobjects.put(id, o);
+                }
+                if (o instanceof DOMStorable) {
+                    ((DOMStorable) o).read(this);
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        closeElement();
+        if (parent.isStreamed) {
+            elem.discard();
+        }
+        return o;
+    }
+}
@@ -0,0 +1,433 @@
+/*
+ * @(#)StreamingDOMOutput.java
+ *
+ * Copyright (c) 1996-2010 The authors and contributors of JHotDraw.
+ * You may not use, copy or modify this file, except in compliance with the
+ * accompanying license terms.
+ */
+package org.jhotdraw.xml;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A {@link DOMOutput} which writes the XML document to a stream while it is
+ * being produced, instead of building a DOM document in memory.
+ * <p>
+ * The output is byte for byte the same as the output of
+ * {@link JavaxDOMOutput#save}: the attributes of an element are written in
+ * the order of their names, elements without content are written as empty
+ * elements, and characters are escaped like the identity transformer of the
+ * Java runtime does it. Thus files written with this class can be read with
+ * {@link JavaxDOMInput}.
+ * <p>
+ * Only the names of the open elements, and the attributes of the element
+ * which is currently being opened, are kept in memory. References to objects
+ * which have already been written are tracked like in {@code JavaxDOMOutput}.
+ * <p>
+ * The doctype must be set before the first element is opened.
+ * {@link #finish} must be called after the last element has been closed.
+ *
+ * @version $Id$
+ */
+public class StreamingDOMOutput implements DOMOutput {
+
+    /**
+     * The doctype of the XML document.
+     */
+    private String doctype;
+    /**
+     * This map is used to marshall references to objects to
+     * the XML DOM. A key in this map is a Java Object, a value in this map
+     * is String representing a marshalled reference to that object.
+     */
+    private HashMap<Object, String> objectids;
+    /**
+     * This map is used to cache prototype objects.
+     */
+    private HashMap<String, Object> prototypes;
+    /**
+     * The names of the open elements.
+     */
+    private ArrayList<String> openElements = new ArrayList<String>();
+    /**
+     * The attributes of the last opened element, sorted by name. The start
+     * tag of the element is written when content is added to the element,
+     * or when the element is closed.
+     */
+    private TreeMap<String, String> pendingAttributes = new TreeMap<String, String>();
+    /**
+     * True if the start tag of the current element has not been written yet.
+     */
+    private boolean isStartTagPending;
+    /**
+     * True if the XML declaration has been written.
+     */
+    private boolean isHeaderWritten;
+    /**
+     * The writer used for output.
+     */
+    private Writer out;
+    /**
+     * Holds an I/O error which happened in a method which can not throw it.
+     * It is thrown by {@link #finish}.
+     */
+    private IOException error;
+    /**
+     * The factory used to create objects.
+     */
+    private DOMFactory factory;
+
+    /**
+     * Creates a new instance which writes to the specified output stream
+     * using the UTF-8 encoding.
+     */
+    public StreamingDOMOutput(DOMFactory factory, OutputStream out) {
+        this(factory, new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates a new instance which writes to the specified writer.
+     */
+    public StreamingDOMOutput(DOMFactory factory, Writer out) {
+        this.factory = factory;
+        this.out = new BufferedWriter(out);
+        objectids = new HashMap<Object, String>();
+    }
+
+    /**
+     * Writes the remaining output and flushes the underlying stream.
+     * The underlying stream is not closed.
+     *
+     * @throws IOException if an I/O error occurred during writing.
+     * @throws IllegalStateException if not all elements have been closed.
+     */
+    public void finish() throws IOException {
+        if (!openElements.isEmpty()) {
+            throw new IllegalStateException("Element not closed:" + openElements.get(openElements.size() - 1));
+        }
+        try {
+            writeHeader();
+            out.flush();
+        } catch (IOException e) {
+            handleError(e);
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void handleError(IOException e) {
+        if (error == null) {
+            error = e;
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        if (!isHeaderWritten) {
+            isHeaderWritten = true;
+            if (doctype != null) {
+                out.write("<!DOCTYPE ");
+                out.write(doctype);
+                out.write(">\n");
+            }
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+        }
+    }
+
+    /**
+     * Writes the start tag of the current element, if it has not been
+     * written yet.
+     */
+    private void writeStartTag() throws IOException {
+        writeHeader();
+        if (isStartTagPending) {
+            isStartTagPending = false;
+            out.write('<');
+            out.write(openElements.get(openElements.size() - 1));
+            writeAttributes();
+            out.write('>');
+        }
+    }
+
+    private void writeAttributes() throws IOException {
+        for (Map.Entry<String, String> entry : pendingAttributes.entrySet()) {
+            out.write(' ');
+            out.write(entry.getKey());
+            out.write("=\"");
+            writeEscaped(entry.getValue(), true);
+            out.write('"');
+        }
+        pendingAttributes.clear();
+    }
+
+    /**
+     * Writes text or an attribute value. Markup characters, control
+     * characters and supplementary characters are written as references.
+     */
+    private void writeEscaped(String str, boolean isAttribute) throws IOException {
+        int start = 0;
+        for (int i = 0, n = str.length(); i < n; i++) {
+            char c = str.charAt(i);
+            String replacement;
+            switch (c) {
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                case '"':
+                    replacement = isAttribute ? "&quot;" : null;
+                    break;
+                case '\t':
+                case '\n':
+                    replacement = isAttribute ? "&#" + (int) c + ";" : null;
+                    break;
+                default:
+                    if (c < 0x20 || !isAttribute && c >= 0x7f && c <= 0x9f) {
+                        replacement = "&#" + (int) c + ";";
+                    } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(str.charAt(i + 1))) {
+                        replacement = "&#" + str.codePointAt(i) + ";";
+                        out.write(str, start, i - start);
+                        out.write(replacement);
+                        start = i + 2;
+                        i++;
+                        continue;
+                    } else {
+                        replacement = null;
+                    }
+                    break;
+            }
+            if (replacement != null) {
+                out.write(str, start, i - start);
+                out.write(replacement);
+                start = i + 1;
+            }
+        }
+        out.write(str, start, str.length() - start);
+    }
+
+    /**
+     * Writes the start tag of the previous element, and opens a new element.
+     * The start tag of the new element is written when content is added to
+     * it, or when it is closed.
+     * The element must be closed using closeElement.
+     */
+    @Override
+    public void openElement(String tagName) {
+        try {
+            writeStartTag();
+        } catch (IOException e) {
+            handleError(e);
+        }
+        openElements.add(tagName);
+        isStartTagPending = true;
+    }
+
+    /**
+     * Closes the current element.
+     * The parent of the current element becomes the current element.
+     */
+    @Override
+    public void closeElement() {
+        String tagName = openElements.remove(openElements.size() - 1);
+        try {
+            if (isStartTagPending) {
+                isStartTagPending = false;
+                out.write('<');
+                out.write(tagName);
+                writeAttributes();
+                out.write("/>");
+            } else {
+                out.write("</");
+                out.write(tagName);
+                out.write('>');
+            }
+        } catch (IOException e) {
+            handleError(e);
+        }
+    }
+
+    /**
+     * Adds a comment to the current element.
+     */
+    @Override
+    public void addComment(String comment) {
+        try {
+            writeStartTag();
+            out.write("<!--");
+            // Consecutive dashes are not allowed in a comment, and the
+            // comment must not end with a dash
+            for (int i = 0, n = comment.length(); i < n; i++) {
+                char c = comment.charAt(i);
+                out.write(c);
+                if (c == '-' && (i == n - 1 || comment.charAt(i + 1) == '-')) {
+                    out.write(' ');
+                }
+            }
+            out.write("-->");
+        } catch (IOException e) {
+            handleError(e);
+        }
+    }
+
+    /**
+     * Adds a text to current element.
+     */
+    @Override
+    public void addText(String text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        try {
+            writeStartTag();
+            writeEscaped(text, false);
+        } catch (IOException e) {
+            handleError(e);
+        }
+    }
+
+    /**
+     * Adds an attribute to current element.
+     *
+     * @throws IllegalStateException if content has already been added to
+     * the current element.
+     */
+    @Override
+    public void addAttribute(String name, String value) {
+        if (value != null) {
+            if (!isStartTagPending) {
+                throw new IllegalStateException("Attribute after element content:" + name);
+            }
+            pendingAttributes.put(name, value);
+        }
+    }
+
+    /**
+     * Adds an attribute to current element.
+     */
+    @Override
+    public void addAttribute(String name, int value) {
+        addAttribute(name, Integer.toString(value));
+    }
+
+    /**
+     * Adds an attribute to current element.
+     */
+    @Override
+    public void addAttribute(String name, boolean value) {
+        addAttribute(name, Boolean.toString(value));
+    }
+
+    /**
+     * Adds an attribute to current element.
+     */
+    @Override
+    public void addAttribute(String name, float value) {
+        // Remove the awkard .0 at the end of each number
+        String str = Float.toString(value);
+        if (str.endsWith(".0")) {
+            str = str.substring(0, str.length() - 2);
+        }
+        addAttribute(name, str);
+    }
+
+    /**
+     * Adds an attribute to current element.
+     */
+    @Override
+    public void addAttribute(String name, double value) {
+        // Remove the awkard .0 at the end of each number
+        String str = Double.toString(value);
+        if (str.endsWith(".0")) {
+            str = str.substring(0, str.length() - 2);
+        }
+        addAttribute(name, str);
+    }
+
+    @Override
+    public void writeObject(Object o) throws IOException {
+        String tagName = factory.getName(o);
+        if (tagName == null) {
+            throw new IllegalArgumentException("no tag name for:" + o);
+        }
+        openElement(tagName);
+        if (objectids.containsKey(o)) {
+            addAttribute("ref", objectids.get(o));
+        } else {
+            String id = Integer.toString(objectids.size(), 16);
+            objectids.put(o, id);
+            addAttribute("id", id);
+            factory.write(this, o);
+        }
+        closeElement();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, float value, float defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, int value, int defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, double value, double defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, boolean value, boolean defaultValue) {
+        if (value != defaultValue) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public void addAttribute(String name, String value, String defaultValue) {
+        if (!value.equals(defaultValue)) {
+            addAttribute(name, value);
+        }
+    }
+
+    @Override
+    public Object getPrototype() {
+        if (prototypes == null) {
+            prototypes = new HashMap<String, Object>();
+        }
+        String name = openElements.isEmpty() ? "#document" : openElements.get(openElements.size() - 1);
+        if (!prototypes.containsKey(name)) {
+            prototypes.put(name, factory.create(name));
+        }
+        return prototypes.get(name);
+    }
+
+    /**
+     * Sets the doctype of the document.
+     *
+     * @throws IllegalStateException if output has already been written.
+     */
+    @Override
+    public void setDoctype(String doctype) {
+        if (isHeaderWritten) {
+            throw new IllegalStateException("Doctype after start of document");
+        }
+        this.doctype = doctype;
+    }
+}